@@ -0,0 +1,106 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.hsqldb.server.ServerConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmark for the creation of {@link ServerProperties}.
+ * <p>
+ * The configuration contains the default settings and a number of databases with placeholders for system
+ * properties and custom session limits, that are substituted and validated while the properties are loaded.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ServerPropertiesBenchmark {
+    /**
+     * Number of databases in the configuration.
+     */
+    @Param({"1", "10", "100"})
+    public int databases;
+
+    private File file;
+
+    @Benchmark
+    public void create(Blackhole blackhole) throws IOException {
+        final ServerProperties props = new ServerProperties(ServerConstants.SC_PROTOCOL_HSQL, file);
+        blackhole.consume(props.getCustomIntProperty(ServerProperties.CONNECTIONS_MAX, 0));
+        blackhole.consume(props.getCustomIntProperties(ServerProperties.CONNECTIONS_DATABASE));
+        blackhole.consume(props.getProperty("server.database.0"));
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        // the placeholders are replaced with this system property
+        if (System.getProperty(ServerUtils.VAR_DIR_PROPERTY) == null)
+            System.setProperty(ServerUtils.VAR_DIR_PROPERTY, FileUtils.getTempDirectoryPath());
+
+        final List<String> lines = new ArrayList<>();
+        lines.add("server.port=9001");
+        lines.add("server.silent=true");
+        lines.add("server.tls=false");
+        lines.add("server.remote_open=false");
+        lines.add("server.connections.max=50");
+        lines.add("server.connections.queue=100");
+        lines.add("server.connections.queue.timeout=30000");
+        lines.add("server.connections.client=10");
+        lines.add("server.metrics=false");
+        lines.add("server.metrics.port=9002");
+        lines.add("server.init.threads=0");
+        lines.add("server.statements=true");
+        lines.add("server.statements.slow=1000");
+        for (int i = 0; i < databases; i++) {
+            lines.add("server.database." + i + "=file:${" + ServerUtils.VAR_DIR_PROPERTY + "}/data/db" + i + "/db");
+            lines.add("server.dbname." + i + "=db" + i);
+            lines.add("server.connections.database.db" + i + "=" + (10 + i));
+        }
+
+        file = File.createTempFile("server-", ".properties");
+        FileUtils.writeLines(file, StandardCharsets.ISO_8859_1.name(), lines);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(file);
+    }
+}
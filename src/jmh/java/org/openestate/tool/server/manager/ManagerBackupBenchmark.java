@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openestate.tool.server.utils.BenchmarkDatabase;
+import org.openestate.tool.server.utils.CompressionUtils;
+import org.openestate.tool.server.utils.DumpUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for the creation of dump archives by {@link ManagerBackup}.
+ * <p>
+ * A generated database is dumped into a compressed tar archive. With deduplication the LOB directory is kept
+ * between the invocations, so that only the first invocation writes the LOB files, as for nightly backups.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class ManagerBackupBenchmark {
+    /**
+     * Number of LOB's in the generated database.
+     */
+    @Param({"100"})
+    public int lobCount;
+
+    /**
+     * Size of every LOB in bytes.
+     */
+    @Param({"65536"})
+    public int lobSize;
+
+    /**
+     * Compression of the archive.
+     */
+    @Param({"NONE", "FAST", "GZIP"})
+    public CompressionUtils.Codec codec;
+
+    /**
+     * Number of threads, that compress the archive concurrently.
+     */
+    @Param({"1", "4"})
+    public int compressionThreads;
+
+    /**
+     * Write LOB's into a shared directory instead of the archive.
+     */
+    @Param({"false", "true"})
+    public boolean deduplicate;
+
+    private BenchmarkDatabase database;
+    private File backupDir;
+    private File archive;
+
+    @Benchmark
+    public File doDump() throws IOException, SQLException {
+        final DumpUtils.Settings settings = new DumpUtils.Settings();
+        settings.setDeduplicate(deduplicate);
+        archive = ManagerBackup.doDump(database.getConnection(), database::openConnection, backupDir, settings,
+                codec, compressionThreads);
+        return archive;
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() {
+        FileUtils.deleteQuietly(archive);
+        archive = null;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = BenchmarkDatabase.create(1000, lobCount, lobSize);
+        backupDir = Files.createTempDirectory("backup-benchmark-").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        FileUtils.deleteQuietly(backupDir);
+        database.close();
+    }
+}
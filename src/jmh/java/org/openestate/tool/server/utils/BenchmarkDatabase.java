@@ -0,0 +1,153 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * An in-memory database with generated data for benchmarks.
+ * <p>
+ * The tables are modeled on the data of OpenEstate-ImmoTool: real estates with a textual description and
+ * attached files. The data is generated from a fixed seed, so that every benchmark run processes the same
+ * content. Attached files consist of random bytes, that can't be compressed.
+ *
+ * @since 1.1
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public final class BenchmarkDatabase implements AutoCloseable {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final long SEED = 20190101L;
+    private final String url;
+    private final Connection connection;
+
+    private BenchmarkDatabase(String url) throws SQLException {
+        this.url = url;
+        this.connection = openConnection();
+    }
+
+    /**
+     * Create a database with generated data.
+     *
+     * @param rows     number of real estates, at least one
+     * @param lobCount number of attached files
+     * @param lobSize  size of every attached file in bytes
+     * @return created database
+     * @throws SQLException if the database can't be created
+     */
+    public static BenchmarkDatabase create(int rows, int lobCount, int lobSize) throws SQLException {
+        final BenchmarkDatabase db = new BenchmarkDatabase(
+                "jdbc:hsqldb:mem:benchmark" + COUNTER.incrementAndGet());
+        try {
+            db.init(rows, lobCount, lobSize);
+            return db;
+        } catch (SQLException | RuntimeException ex) {
+            db.close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try (Statement s = connection.createStatement()) {
+            s.execute("SHUTDOWN;");
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Get the connection, that created the database.
+     *
+     * @return database connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get the JDBC URL of the database.
+     *
+     * @return JDBC URL
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    private void init(int rows, int lobCount, int lobSize) throws SQLException {
+        try (Statement s = connection.createStatement()) {
+            s.execute("CREATE TABLE immotool_objects ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "public_id VARCHAR(50) NOT NULL, "
+                    + "title VARCHAR(255) NOT NULL, "
+                    + "price DECIMAL(15,2), "
+                    + "created TIMESTAMP NOT NULL, "
+                    + "description CLOB);");
+            s.execute("CREATE TABLE immotool_files ("
+                    + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                    + "object_id BIGINT NOT NULL, "
+                    + "file_name VARCHAR(255) NOT NULL, "
+                    + "file_data BLOB NOT NULL, "
+                    + "FOREIGN KEY (object_id) REFERENCES immotool_objects(id) ON DELETE CASCADE);");
+        }
+
+        final Random random = new Random(SEED);
+        final String words = "apartment house garden balcony kitchen garage basement terrace view quiet central ";
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO immotool_objects "
+                + "(public_id, title, price, created, description) VALUES (?, ?, ?, ?, ?);")) {
+            for (int i = 1; i <= rows; i++) {
+                insert.setString(1, "OBJ-" + i);
+                insert.setString(2, StringUtils.capitalize(words.substring(random.nextInt(40)).trim()));
+                insert.setBigDecimal(3, BigDecimal.valueOf(50000 + random.nextInt(950000)));
+                insert.setTimestamp(4, new Timestamp(SEED * 1000 + i * 60000L));
+                insert.setString(5, StringUtils.repeat(words, 1 + random.nextInt(20)));
+                insert.addBatch();
+                if (i % 1000 == 0) insert.executeBatch();
+            }
+            if (rows % 1000 != 0) insert.executeBatch();
+        }
+
+        final byte[] data = new byte[lobSize];
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO immotool_files "
+                + "(object_id, file_name, file_data) VALUES (?, ?, ?);")) {
+            for (int i = 1; i <= lobCount; i++) {
+                random.nextBytes(data);
+                insert.setLong(1, 1 + (i % rows));
+                insert.setString(2, "image-" + i + ".jpg");
+                insert.setBytes(3, data);
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Open another connection to the database.
+     *
+     * @return database connection
+     * @throws SQLException if the connection can't be established
+     */
+    public Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(url, "SA", StringUtils.EMPTY);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link DumpUtils#dump(java.sql.Connection, DumpUtils.ConnectionProvider, DumpUtils.Target, String, File, DumpUtils.Settings)}.
+ * <p>
+ * The schema and the LOB's of a generated database are dumped into a directory for different numbers and sizes
+ * of LOB's.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class DumpUtilsBenchmark {
+    /**
+     * Number of real estates in the generated database.
+     */
+    @Param({"1000"})
+    public int rows;
+
+    /**
+     * Number of LOB's in the generated database.
+     */
+    @Param({"10", "100"})
+    public int lobCount;
+
+    /**
+     * Size of every LOB in bytes.
+     */
+    @Param({"1024", "65536", "1048576"})
+    public int lobSize;
+
+    /**
+     * Number of threads, that export LOB's concurrently.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    private BenchmarkDatabase database;
+    private File dir;
+
+    @Benchmark
+    public File dump() throws IOException, SQLException {
+        final DumpUtils.Settings settings = new DumpUtils.Settings();
+        settings.setThreads(threads);
+        DumpUtils.dump(database.getConnection(), database::openConnection,
+                new DumpUtils.DirectoryTarget(dir), "db", dir, settings);
+        return dir;
+    }
+
+    @TearDown(Level.Invocation)
+    public void clean() throws IOException {
+        FileUtils.cleanDirectory(dir);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        database = BenchmarkDatabase.create(rows, lobCount, lobSize);
+        dir = Files.createTempDirectory("dump-benchmark-").toFile();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        FileUtils.deleteQuietly(dir);
+        database.close();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark for {@link MigrationUtils#migrateFromOldDatabase(File, String)}.
+ * <p>
+ * A synthetic script of an HSQLDB 2.2 database is migrated. The script contains mostly inserted rows and a share
+ * of trigger definitions, that are rewritten by the migration. Without rewritten lines the script is only read.
+ *
+ * @since 1.1
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@State(Scope.Benchmark)
+public class MigrationUtilsBenchmark {
+    private static final String NAME = "db";
+
+    /**
+     * Number of lines in the script.
+     */
+    @Param({"100000", "1000000"})
+    public int lines;
+
+    /**
+     * Share of lines in percent, that are rewritten by the migration.
+     */
+    @Param({"0", "1", "10"})
+    public int migratedPercent;
+
+    private File dir;
+    private File dbDir;
+    private File template;
+
+    @Benchmark
+    public File migrate() throws IOException {
+        MigrationUtils.migrateFromOldDatabase(dbDir, NAME);
+        return dbDir;
+    }
+
+    /**
+     * Restore the original script, that was replaced by the previous migration.
+     *
+     * @throws IOException if the script can't be copied
+     */
+    @Setup(Level.Invocation)
+    public void restore() throws IOException {
+        FileUtils.deleteQuietly(new File(dbDir, NAME + ".script.old"));
+        Files.copy(template.toPath(), new File(dbDir, NAME + ".script").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("migration-benchmark-").toFile();
+        dbDir = new File(dir, NAME);
+        if (!dbDir.mkdirs())
+            throw new IOException("Can't create directory " + dbDir.getAbsolutePath() + "!");
+
+        FileUtils.writeStringToFile(new File(dbDir, NAME + ".properties"),
+                "version=2.2.9\nmodified=no\n", StandardCharsets.ISO_8859_1);
+
+        template = new File(dir, "template.script");
+        final int interval = (migratedPercent > 0) ? Math.max(1, 100 / migratedPercent) : 0;
+        try (Writer writer = new BufferedWriter(Files.newBufferedWriter(template.toPath(), StandardCharsets.UTF_8))) {
+            writer.write("SET DATABASE UNIQUE NAME HSQLDB0123456789\n");
+            writer.write("CREATE MEMORY TABLE PUBLIC.IMMOTOOL_OBJECTS(ID BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 1) NOT NULL PRIMARY KEY,TITLE VARCHAR(255))\n");
+            for (int i = 1; i <= lines; i++) {
+                if (interval > 0 && i % interval == 0) {
+                    writer.write("CREATE TRIGGER PUBLIC.TRG_" + i + " AFTER INSERT ON PUBLIC.IMMOTOOL_OBJECTS "
+                            + "REFERENCING NEW ROW AS NEWROW FOR EACH ROW BEGIN ATOMIC DECLARE NEW_ID BIGINT; "
+                            + "SELECT ID INTO NEW_ID FROM PUBLIC.IMMOTOOL_OBJECTS WHERE ID = CURRENT VALUE FOR PUBLIC.SEQ_OBJECTS; END\n");
+                } else {
+                    writer.write("INSERT INTO IMMOTOOL_OBJECTS VALUES(" + i + ",'apartment with garden and balcony number " + i + "')\n");
+                }
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(dir);
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of client connections per client address and the number of sessions per database.
+ * <p>
+ * HSQLDB selects the database of a connection while processing its first request. Therefore the number of
+ * sessions per database is checked, when the login of a client is acknowledged. Sessions, that exceed the limit
+ * of a database, are rejected before they can execute any statement.
+ * <p>
+ * Connections and sessions are counted, when they are admitted, and must be released, when they are closed.
+ *
+ * @since 1.1
+ */
+class AdmissionControl {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdmissionControl.class);
+    private final int maxClientConnections;
+    private final int maxDatabaseSessions;
+    private final Map<String, Integer> maxDatabaseSessionsByName;
+    private final Map<InetAddress, Integer> clientConnections = new ConcurrentHashMap<>();
+    private final Map<String, Integer> databaseSessions = new ConcurrentHashMap<>();
+    private final AtomicLong rejectedClientCount = new AtomicLong();
+    private final AtomicLong rejectedDatabaseCount = new AtomicLong();
+
+    /**
+     * Create admission control.
+     *
+     * @param maxClientConnections      maximal number of connections per client address, 0 for no limit
+     * @param maxDatabaseSessions       maximal number of sessions per database, 0 for no limit
+     * @param maxDatabaseSessionsByName maximal number of sessions of certain databases by their name
+     */
+    AdmissionControl(int maxClientConnections, int maxDatabaseSessions, Map<String, Integer> maxDatabaseSessionsByName) {
+        this.maxClientConnections = maxClientConnections;
+        this.maxDatabaseSessions = maxDatabaseSessions;
+        this.maxDatabaseSessionsByName = maxDatabaseSessionsByName;
+    }
+
+    private static <K> boolean acquire(Map<K, Integer> counts, K key, int limit) {
+        if (counts.merge(key, 1, Integer::sum) <= limit) return true;
+        release(counts, key);
+        return false;
+    }
+
+    private static <K> void release(Map<K, Integer> counts, K key) {
+        counts.computeIfPresent(key, (k, count) -> (count > 1) ? count - 1 : null);
+    }
+
+    /**
+     * Check, if a new client connection is accepted.
+     * <p>
+     * An accepted connection is counted, until it is released by {@link #releaseClient(InetAddress)}.
+     *
+     * @param address client address
+     * @return true, if the connection may be processed
+     */
+    boolean admitClient(InetAddress address) {
+        if (maxClientConnections < 1 || address == null) return true;
+        if (acquire(clientConnections, address, maxClientConnections)) return true;
+
+        rejectedClientCount.incrementAndGet();
+        LOGGER.warn("Rejected connection from {}, because the client already opened {} connections.",
+                address, maxClientConnections);
+        return false;
+    }
+
+    /**
+     * Check, if a new session of a database is accepted.
+     * <p>
+     * An accepted session is counted, until it is released by {@link #releaseSession(String)}.
+     *
+     * @param name database name
+     * @return true, if the session may be processed
+     */
+    boolean admitSession(String name) {
+        final int limit = (name != null) ? getMaxDatabaseSessions(name) : 0;
+        if (limit < 1) return true;
+        if (acquire(databaseSessions, name, limit)) return true;
+
+        rejectedDatabaseCount.incrementAndGet();
+        LOGGER.warn("Rejected session of '{}' database, because it exceeds the limit of {} sessions.",
+                name, limit);
+        return false;
+    }
+
+    /**
+     * Get number of counted connections of a client address.
+     *
+     * @param address client address
+     * @return number of connections
+     */
+    int getClientConnections(InetAddress address) {
+        final Integer count = clientConnections.get(address);
+        return (count != null) ? count : 0;
+    }
+
+    /**
+     * Get number of counted sessions of a database.
+     *
+     * @param name database name
+     * @return number of sessions
+     */
+    int getDatabaseSessions(String name) {
+        final Integer count = databaseSessions.get(name);
+        return (count != null) ? count : 0;
+    }
+
+    /**
+     * Get maximal number of sessions of a database.
+     *
+     * @param name database name
+     * @return maximal number of sessions, 0 for no limit
+     */
+    int getMaxDatabaseSessions(String name) {
+        final Integer limit = maxDatabaseSessionsByName.get(name);
+        return (limit != null) ? limit : maxDatabaseSessions;
+    }
+
+    /**
+     * Get number of connections, that were rejected because of the limit per client address.
+     *
+     * @return number of rejected connections
+     */
+    long getRejectedClientCount() {
+        return rejectedClientCount.get();
+    }
+
+    /**
+     * Get number of sessions, that were rejected because of the limit per database.
+     *
+     * @return number of rejected sessions
+     */
+    long getRejectedDatabaseCount() {
+        return rejectedDatabaseCount.get();
+    }
+
+    /**
+     * Test, if the number of sessions is limited for any database.
+     *
+     * @return true, if sessions are limited
+     */
+    boolean isDatabaseLimited() {
+        return maxDatabaseSessions > 0 || maxDatabaseSessionsByName.values().stream().anyMatch(limit -> limit > 0);
+    }
+
+    /**
+     * Release a connection, that was accepted by {@link #admitClient(InetAddress)}.
+     *
+     * @param address client address
+     */
+    void releaseClient(InetAddress address) {
+        if (maxClientConnections < 1 || address == null) return;
+        release(clientConnections, address);
+    }
+
+    /**
+     * Release a session, that was accepted by {@link #admitSession(String)}.
+     *
+     * @param name database name
+     */
+    void releaseSession(String name) {
+        if (name == null || getMaxDatabaseSessions(name) < 1) return;
+        release(databaseSessions, name);
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Limits the number of client connections, that are processed concurrently.
+ * <p>
+ * HSQLDB processes every client connection by a separate thread until the connection is closed. Connections,
+ * that exceed the configured limit, are kept in a bounded queue until another connection was closed. Connections
+ * are rejected, if the queue is full or if they waited too long.
+ * <p>
+ * Processed connections are counted by the dispatcher itself. Therefore the handler has to make sure, that
+ * {@link #connectionClosed()} is called exactly once for every connection, that was passed to it.
+ *
+ * @since 1.1
+ */
+class ConnectionDispatcher {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionDispatcher.class);
+
+    private final int maxConnections;
+    private final int maxQueueSize;
+    private final long queueTimeout;
+    private final Consumer<Socket> handler;
+    private final Deque<QueuedConnection> queue = new ArrayDeque<>();
+    private final Object lock = new Object();
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    private final AtomicLong rejectedConnectionCount = new AtomicLong();
+    private Thread thread = null;
+    private int activeConnections = 0;
+
+    /**
+     * Create dispatcher.
+     *
+     * @param maxConnections maximal number of concurrently processed connections
+     * @param maxQueueSize   maximal number of waiting connections
+     * @param queueTimeout   maximal waiting time of a connection in milliseconds, 0 waits without limit
+     * @param handler        starts processing of a connection
+     */
+    ConnectionDispatcher(int maxConnections, int maxQueueSize, long queueTimeout, Consumer<Socket> handler) {
+        this.maxConnections = maxConnections;
+        this.maxQueueSize = maxQueueSize;
+        this.queueTimeout = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+        this.handler = handler;
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOGGER.debug("Can't close rejected connection!", ex);
+        }
+    }
+
+    /**
+     * Notify the dispatcher, that a processed connection was closed.
+     */
+    void connectionClosed() {
+        synchronized (lock) {
+            if (activeConnections > 0) activeConnections--;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Process a new client connection or add it to the queue.
+     *
+     * @param socket client connection
+     */
+    void dispatch(Socket socket) {
+        synchronized (lock) {
+            // queue the connection, if the limit is reached
+            if (!queue.isEmpty() || activeConnections >= maxConnections) {
+                if (queue.size() >= maxQueueSize) {
+                    rejectedConnectionCount.incrementAndGet();
+                    LOGGER.warn("Rejected connection from {}, because {} connections are already waiting.",
+                            socket.getInetAddress(), queue.size());
+                    close(socket);
+                    return;
+                }
+
+                queue.add(new QueuedConnection(socket));
+                if (thread == null) {
+                    thread = new Thread(this::run, "ConnectionDispatcher");
+                    thread.setDaemon(true);
+                    thread.start();
+                }
+                lock.notifyAll();
+                return;
+            }
+
+            activeConnections++;
+            queueLatency.record(0);
+        }
+
+        // process the connection immediately
+        start(socket);
+    }
+
+    /**
+     * Get waiting time of connections in the queue.
+     *
+     * @return histogram of waiting times
+     */
+    LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    /**
+     * Get number of connections, that currently wait in the queue.
+     *
+     * @return number of waiting connections
+     */
+    int getQueueSize() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Get number of connections, that were rejected.
+     *
+     * @return number of rejected connections
+     */
+    long getRejectedConnectionCount() {
+        return rejectedConnectionCount.get();
+    }
+
+    /**
+     * Wait for the next connection in the queue, that may be processed.
+     *
+     * @return connection or null, if the dispatcher was stopped
+     */
+    private Socket nextConnection() {
+        synchronized (lock) {
+            while (thread == Thread.currentThread()) {
+                final QueuedConnection next = queue.peek();
+                final long now = System.nanoTime();
+
+                if (next == null) {
+                    waitForNotification(0);
+                } else if (queueTimeout > 0 && now - next.queued >= queueTimeout) {
+                    queue.poll();
+                    rejectedConnectionCount.incrementAndGet();
+                    queueLatency.record(now - next.queued);
+                    LOGGER.warn("Rejected connection from {} after waiting {} ms.",
+                            next.socket.getInetAddress(), TimeUnit.NANOSECONDS.toMillis(now - next.queued));
+                    close(next.socket);
+                } else if (activeConnections < maxConnections) {
+                    queue.poll();
+                    activeConnections++;
+                    queueLatency.record(now - next.queued);
+                    return next.socket;
+                } else {
+                    // wait for a closed connection or until the next connection timed out
+                    waitForNotification((queueTimeout > 0) ?
+                            Math.max(1, TimeUnit.NANOSECONDS.toMillis(next.queued + queueTimeout - now)) : 0);
+                }
+            }
+            return null;
+        }
+    }
+
+    private void run() {
+        Socket socket;
+        while ((socket = nextConnection()) != null) {
+            start(socket);
+        }
+    }
+
+    /**
+     * Start processing of a connection without holding the lock of the dispatcher.
+     *
+     * @param socket client connection
+     */
+    private void start(Socket socket) {
+        try {
+            handler.accept(socket);
+        } catch (RuntimeException ex) {
+            LOGGER.error("Can't process connection!", ex);
+            close(socket);
+        }
+    }
+
+    /**
+     * Stop the dispatcher thread and close all waiting connections.
+     */
+    void stop() {
+        synchronized (lock) {
+            thread = null;
+            for (QueuedConnection connection : queue) {
+                close(connection.socket);
+            }
+            queue.clear();
+            lock.notifyAll();
+        }
+    }
+
+    private void waitForNotification(long timeout) {
+        try {
+            lock.wait(timeout);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            thread = null;
+        }
+    }
+
+    /**
+     * A connection waiting in the queue.
+     */
+    private static class QueuedConnection {
+        private final Socket socket;
+        private final long queued = System.nanoTime();
+
+        private QueuedConnection(Socket socket) {
+            this.socket = socket;
+        }
+    }
+}
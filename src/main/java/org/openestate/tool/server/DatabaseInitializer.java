@@ -0,0 +1,190 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hsqldb.DatabaseManager;
+import org.hsqldb.DatabaseURL;
+import org.hsqldb.persist.HsqlProperties;
+import org.openestate.tool.server.utils.MigrationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Initializes the databases of the server before it is started.
+ * <p>
+ * HSQLDB opens the configured databases one after another, when the server is started. This class migrates,
+ * validates and opens the databases concurrently on a bounded number of threads instead. HSQLDB afterwards uses the
+ * databases, that were already opened.
+ *
+ * @since 1.1
+ */
+class DatabaseInitializer {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseInitializer.class);
+    private final Server server;
+    private final int maxThreads;
+    private final Map<String, Long> openTimes = new ConcurrentHashMap<>();
+
+    /**
+     * Create initializer.
+     *
+     * @param server     server instance
+     * @param maxThreads maximal number of databases, that are initialized concurrently
+     */
+    DatabaseInitializer(Server server, int maxThreads) {
+        this.server = server;
+        this.maxThreads = Math.max(1, maxThreads);
+    }
+
+    /**
+     * Get time, that was spent on opening a database.
+     *
+     * @param name database name
+     * @return time in milliseconds or 0, if the database was not opened by this initializer
+     */
+    long getOpenTime(String name) {
+        final Long time = (name != null) ? openTimes.get(name) : null;
+        return (time != null) ? time : 0;
+    }
+
+    /**
+     * Initialize a database.
+     *
+     * @param name database name
+     * @param path database path
+     * @return true, if the database was opened
+     */
+    private boolean init(String name, String path) {
+        final long start = System.nanoTime();
+
+        // migrate and validate database files
+        if (path.startsWith("file:")) {
+            final File dbDir = new File(FilenameUtils.separatorsToSystem(StringUtils.substringAfter(path, "file:"))).getParentFile();
+            final String dbName = StringUtils.substringBefore(StringUtils.substringAfterLast(path, "/"), ";");
+            LOGGER.info("Initializing database '" + dbDir.getAbsolutePath() + "'.");
+            try {
+                MigrationUtils.migrateFromOldDatabase(dbDir, dbName);
+            } catch (Exception ex) {
+                LOGGER.warn("Can't migrate database at '" + dbDir.getAbsolutePath() + "'!");
+                LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
+            }
+            if (!validate(dbDir, dbName)) return false;
+        }
+        final long migrated = System.nanoTime();
+
+        // open the database
+        final HsqlProperties properties = DatabaseURL.parseURL(path, false, false);
+        if (properties == null) {
+            LOGGER.warn("The path of database '" + name + "' is malformed.");
+            return false;
+        }
+        try {
+            DatabaseManager.getDatabase(properties.getProperty(DatabaseURL.url_connection_type),
+                    properties.getProperty(DatabaseURL.url_database), server, properties);
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Can't open database '" + name + "'!");
+            LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
+            return false;
+        }
+        final long opened = System.nanoTime();
+
+        openTimes.put(name, TimeUnit.NANOSECONDS.toMillis(opened - migrated));
+        LOGGER.info("Opened database '" + name + "' in " + TimeUnit.NANOSECONDS.toMillis(opened - migrated) + " ms "
+                + "after migration in " + TimeUnit.NANOSECONDS.toMillis(migrated - start) + " ms.");
+        return true;
+    }
+
+    /**
+     * Initialize all databases of the server.
+     * <p>
+     * This method returns after all databases were initialized. Databases, that can't be initialized, are opened
+     * by HSQLDB as usual.
+     */
+    void run() {
+        final List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (int i = 0; ; i++) {
+            final String name = server.getDatabaseName(i, true);
+            final String path = server.getDatabasePath(i, true);
+            if (path == null) break;
+            if (name == null) continue;
+            tasks.add(() -> init(name, path));
+        }
+        if (tasks.isEmpty()) return;
+
+        final int threads = Math.min(maxThreads, tasks.size());
+        final AtomicInteger threadCount = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(runnable, "DatabaseInitializer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final long start = System.currentTimeMillis();
+        int opened = 0;
+        try {
+            for (Future<Boolean> result : executor.invokeAll(tasks)) {
+                try {
+                    if (result.get()) opened++;
+                } catch (ExecutionException ex) {
+                    LOGGER.warn("Can't initialize database!", ex.getCause());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.info("Opened " + opened + " of " + tasks.size() + " databases in "
+                + (System.currentTimeMillis() - start) + " ms with " + threads + " threads.");
+    }
+
+    /**
+     * Make sure, that the files of a database are accessible.
+     *
+     * @param dbDir  database directory
+     * @param dbName database name
+     * @return true, if the database files are accessible
+     */
+    private static boolean validate(File dbDir, String dbName) {
+        if (!dbDir.exists()) return true;
+        if (!dbDir.isDirectory() || !dbDir.canWrite()) {
+            LOGGER.warn("The database directory '" + dbDir.getAbsolutePath() + "' is not writable.");
+            return false;
+        }
+        for (String suffix : new String[]{".properties", ".script", ".data", ".log", ".backup"}) {
+            final File file = new File(dbDir, dbName + suffix);
+            if (file.exists() && (!file.isFile() || !file.canRead() || !file.canWrite())) {
+                LOGGER.warn("The database file '" + file.getAbsolutePath() + "' is not accessible.");
+                return false;
+            }
+        }
+        return true;
+    }
+}
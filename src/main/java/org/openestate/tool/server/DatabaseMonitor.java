@@ -0,0 +1,164 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hsqldb.Database;
+import org.hsqldb.persist.DataFileCache;
+import org.openestate.tool.server.utils.LatencyHistogram;
+
+/**
+ * Management bean of a database provided by the server.
+ * <p>
+ * Values are read directly from the database engine on every request and are not synchronized with running
+ * statements. Therefore they might be slightly outdated, but reading them does not block database clients.
+ *
+ * @since 1.1
+ */
+public class DatabaseMonitor implements DatabaseMonitorMBean {
+    private final Server server;
+    private final int index;
+
+    /**
+     * Create management bean.
+     *
+     * @param server server instance
+     * @param index  index of the database in the server configuration
+     */
+    DatabaseMonitor(Server server, int index) {
+        this.server = server;
+        this.index = index;
+    }
+
+    @Override
+    public int getCacheCapacity() {
+        final DataFileCache cache = getCache();
+        return (cache != null) ? cache.capacity() : 0;
+    }
+
+    @Override
+    public long getCacheCapacityBytes() {
+        final DataFileCache cache = getCache();
+        return (cache != null) ? cache.bytesCapacity() : 0;
+    }
+
+    @Override
+    public long getCachedBytes() {
+        final DataFileCache cache = getCache();
+        return (cache != null) ? cache.getTotalCachedBlockSize() : 0;
+    }
+
+    @Override
+    public int getCachedRows() {
+        final DataFileCache cache = getCache();
+        return (cache != null) ? cache.getCachedObjectCount() : 0;
+    }
+
+    private DataFileCache getCache() {
+        final Database database = server.getDatabase(index);
+        return (database != null && database.logger.hasCache()) ? database.logger.getCache() : null;
+    }
+
+    @Override
+    public long getDataFileLostBytes() {
+        final DataFileCache cache = getCache();
+        return (cache != null) ? cache.getLostBlockSize() : 0;
+    }
+
+    @Override
+    public long getDataFileSize() {
+        return getFileSize(".data");
+    }
+
+    private long getFileSize(String suffix) {
+        final String path = getPath();
+        if (!StringUtils.startsWith(path, "file:")) return 0;
+        return new File(FilenameUtils.separatorsToSystem(StringUtils.substringAfter(path, "file:")) + suffix).length();
+    }
+
+    @Override
+    public long getLobsFileSize() {
+        return getFileSize(".lobs");
+    }
+
+    @Override
+    public long getLogFileSize() {
+        return getFileSize(".log");
+    }
+
+    @Override
+    public String getName() {
+        return server.getDatabaseName(index, true);
+    }
+
+    @Override
+    public long getOpenTime() {
+        final DatabaseInitializer initializer = server.getDatabaseInitializer();
+        return (initializer != null) ? initializer.getOpenTime(getName()) : 0;
+    }
+
+    @Override
+    public String getPath() {
+        return server.getDatabasePath(index, true);
+    }
+
+    @Override
+    public long getScriptFileSize() {
+        return getFileSize(".script");
+    }
+
+    @Override
+    public int getSessionCount() {
+        final Database database = server.getDatabase(index);
+        return (database != null) ? database.sessionManager.getAllSessions().length : 0;
+    }
+
+    @Override
+    public long getStatementCount() {
+        final StatementStatistics statistics = server.getStatementStatistics(index);
+        return (statistics != null) ? statistics.getLatency().getCount() : 0;
+    }
+
+    /**
+     * Get latencies of statements executed on behalf of clients.
+     *
+     * @return histogram of statement latencies or null, if statistics about statements are not enabled
+     */
+    LatencyHistogram getStatementLatency() {
+        final StatementStatistics statistics = server.getStatementStatistics(index);
+        return (statistics != null) ? statistics.getLatency() : null;
+    }
+
+    @Override
+    public String[] getStatementStatistics() {
+        final StatementStatistics statistics = server.getStatementStatistics(index);
+        return (statistics != null) ? statistics.getTopStatements(50).toArray(new String[0]) : new String[0];
+    }
+
+    @Override
+    public long getStatementTime() {
+        final StatementStatistics statistics = server.getStatementStatistics(index);
+        return (statistics != null) ? TimeUnit.NANOSECONDS.toMillis(statistics.getLatency().getSum()) : 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return server.getDatabase(index) != null;
+    }
+}
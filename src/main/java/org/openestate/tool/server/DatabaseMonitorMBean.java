@@ -0,0 +1,145 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+/**
+ * Management interface of a database provided by the server.
+ *
+ * @since 1.1
+ */
+@SuppressWarnings("unused")
+public interface DatabaseMonitorMBean {
+    /**
+     * Get maximum number of rows in the cache.
+     *
+     * @return number of rows or 0, if the database does not use a cache
+     */
+    int getCacheCapacity();
+
+    /**
+     * Get maximum size of rows in the cache.
+     *
+     * @return size in bytes or 0, if the database does not use a cache
+     */
+    long getCacheCapacityBytes();
+
+    /**
+     * Get number of rows currently kept in the cache.
+     *
+     * @return number of rows
+     */
+    int getCachedRows();
+
+    /**
+     * Get size of rows currently kept in the cache.
+     *
+     * @return size in bytes
+     */
+    long getCachedBytes();
+
+    /**
+     * Get size of the <code>.data</code> file.
+     *
+     * @return size in bytes
+     */
+    long getDataFileSize();
+
+    /**
+     * Get size of unused space in the <code>.data</code> file.
+     *
+     * @return size in bytes
+     */
+    long getDataFileLostBytes();
+
+    /**
+     * Get size of the <code>.lobs</code> file.
+     *
+     * @return size in bytes
+     */
+    long getLobsFileSize();
+
+    /**
+     * Get size of the <code>.log</code> file.
+     *
+     * @return size in bytes
+     */
+    long getLogFileSize();
+
+    /**
+     * Get name of the database.
+     *
+     * @return database name
+     */
+    String getName();
+
+    /**
+     * Get time, that was spent on opening the database, when the server was started.
+     *
+     * @return time in milliseconds or 0, if the database was not opened at startup
+     */
+    long getOpenTime();
+
+    /**
+     * Get path of the database.
+     *
+     * @return database path
+     */
+    String getPath();
+
+    /**
+     * Get size of the <code>.script</code> file.
+     *
+     * @return size in bytes
+     */
+    long getScriptFileSize();
+
+    /**
+     * Get number of open sessions.
+     *
+     * @return number of sessions
+     */
+    int getSessionCount();
+
+    /**
+     * Get number of statements executed on behalf of clients.
+     *
+     * @return number of statements or 0, if statistics about statements are not enabled
+     */
+    long getStatementCount();
+
+    /**
+     * Get statistics of the statements with the highest total duration.
+     * <p>
+     * Statements are grouped by their SQL text with literal values replaced by <code>?</code>.
+     *
+     * @return statistics of up to 50 statements
+     */
+    String[] getStatementStatistics();
+
+    /**
+     * Get total duration of statements executed on behalf of clients.
+     *
+     * @return duration in milliseconds or 0, if statistics about statements are not enabled
+     */
+    long getStatementTime();
+
+    /**
+     * Test, if the database is currently open.
+     *
+     * @return true, if the database is open
+     */
+    boolean isOpen();
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Listening socket, that is provided to HSQLDB instead of the socket opened by HSQLDB.
+ * <p>
+ * The socket is either inherited from systemd (socket activation) or opened with <code>SO_REUSEPORT</code>, so
+ * that another server process can take over the port. The socket may stop accepting connections before it is
+ * closed by HSQLDB.
+ * <p>
+ * The socket waits for connections in non-blocking mode. This allows the socket to accept all connections, that
+ * are pending in its backlog, before it stops accepting connections.
+ *
+ * @since 1.1
+ */
+class ListenSocket extends ServerSocket {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(ListenSocket.class);
+    private static final SocketOption<Boolean> SO_REUSEPORT;
+    private static final long PAUSE_TIMEOUT = 5000;
+    private final ServerSocketChannel channel;
+    private final Selector selector;
+    private final boolean inherited;
+    private final Object lock = new Object();
+    private boolean paused = false;
+    private boolean drained = false;
+    private boolean closed = false;
+
+    static {
+        SocketOption<Boolean> reusePort = null;
+        try {
+            final SocketOption<?> option = (SocketOption<?>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+            if (option.type() == Boolean.class) {
+                @SuppressWarnings("unchecked")
+                final SocketOption<Boolean> booleanOption = (SocketOption<Boolean>) option;
+                reusePort = booleanOption;
+            }
+        } catch (NoSuchFieldException | IllegalAccessException ex) {
+            LOGGER.debug("SO_REUSEPORT is not supported by this Java runtime.");
+        }
+        SO_REUSEPORT = reusePort;
+    }
+
+    private ListenSocket(ServerSocketChannel channel, boolean inherited) throws IOException {
+        super();
+        this.channel = channel;
+        this.inherited = inherited;
+        this.selector = Selector.open();
+        try {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException | RuntimeException ex) {
+            selector.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Open a listening socket, that may be shared with another process.
+     *
+     * @param address local address or null for any address
+     * @param port    local port
+     * @return listening socket
+     * @throws IOException if the socket can't be opened
+     */
+    static ListenSocket bind(String address, int port) throws IOException {
+        if (!isReusePortSupported())
+            throw new IOException("SO_REUSEPORT is not supported by this Java runtime or operating system.");
+
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(SO_REUSEPORT, true);
+            channel.bind((StringUtils.isBlank(address)) ?
+                    new InetSocketAddress(port) :
+                    new InetSocketAddress(InetAddress.getByName(address.trim()), port));
+            return new ListenSocket(channel, false);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the listening socket, that was passed by systemd as standard input.
+     *
+     * @return listening socket or null, if no socket was passed
+     * @throws IOException if the inherited channel is not available
+     */
+    static ListenSocket inherit() throws IOException {
+        final Channel channel = System.inheritedChannel();
+        if (channel instanceof ServerSocketChannel)
+            return new ListenSocket((ServerSocketChannel) channel, true);
+
+        if (StringUtils.isNotBlank(System.getenv("LISTEN_FDS")))
+            LOGGER.warn("Socket activation requires StandardInput=socket in the service unit.");
+        return null;
+    }
+
+    /**
+     * Test, if sockets may be shared with another process.
+     *
+     * @return true, if <code>SO_REUSEPORT</code> is supported
+     */
+    static boolean isReusePortSupported() {
+        if (SO_REUSEPORT == null) return false;
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(SO_REUSEPORT);
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public Socket accept() throws IOException {
+        while (true) {
+            final boolean draining;
+            synchronized (lock) {
+                if (closed || drained) break;
+                draining = paused;
+            }
+
+            final SocketChannel client;
+            try {
+                if (!draining) {
+                    selector.select();
+                    selector.selectedKeys().clear();
+                }
+                client = channel.accept();
+            } catch (ClosedChannelException | ClosedSelectorException ex) {
+                break;
+            } catch (IOException ex) {
+                synchronized (lock) {
+                    if (closed || paused) break;
+                }
+                throw ex;
+            }
+
+            if (client != null) {
+                client.configureBlocking(true);
+                return client.socket();
+            }
+
+            // all pending connections were accepted, further connections are sent to another process
+            if (draining) {
+                closeChannel();
+                synchronized (lock) {
+                    drained = true;
+                    lock.notifyAll();
+                }
+            }
+        }
+
+        // wait until the socket is closed, if accepting was paused
+        synchronized (lock) {
+            while (paused && !closed) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        throw new SocketException("Socket is closed");
+    }
+
+    private void closeChannel() throws IOException {
+        channel.close();
+
+        // the registered channel is finally closed by the next selection
+        try {
+            selector.selectNow();
+        } catch (ClosedSelectorException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            channel.close();
+        } finally {
+            selector.close();
+        }
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return channel.socket().getInetAddress();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return channel.socket().getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return channel.socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public boolean isBound() {
+        return channel.socket().isBound();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Test, if the socket was inherited from systemd.
+     *
+     * @return true, if the socket was inherited
+     */
+    boolean isInherited() {
+        return inherited;
+    }
+
+    /**
+     * Stop accepting connections.
+     * <p>
+     * Connections, that are pending in the backlog of the socket, are still passed to HSQLDB. Afterwards the
+     * underlying socket is closed, so that new connections are sent to another process listening on the same
+     * port. HSQLDB keeps waiting for connections until this socket is closed.
+     * <p>
+     * The kernel may assign a new connection to this socket until the underlying socket is actually closed. Such a
+     * connection is reset by the operating system.
+     *
+     * @throws IOException if the underlying socket can't be closed
+     */
+    void pause() throws IOException {
+        synchronized (lock) {
+            paused = true;
+            selector.wakeup();
+
+            // wait until HSQLDB accepted the pending connections
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PAUSE_TIMEOUT);
+            while (!drained && !closed) {
+                final long timeout = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (timeout < 1) {
+                    LOGGER.warn("Pending connections were not accepted in time.");
+                    break;
+                }
+                try {
+                    lock.wait(timeout);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (drained || closed) return;
+        }
+        channel.close();
+        selector.wakeup();
+    }
+
+    @Override
+    public String toString() {
+        return "ListenSocket[" + channel + "]";
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.StringUtils;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP listener, that provides metrics of the server in Prometheus text format.
+ * <p>
+ * Metrics of the databases are collected periodically by a background thread, that publishes a snapshot of the
+ * collected values. Requests are processed by separate threads and only read the latest snapshot or counters,
+ * that are updated without locking. Therefore requests neither block the server nor its databases, never execute
+ * SQL and are not delayed by a running collection.
+ *
+ * @since 1.1
+ */
+class MetricsServer {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetricsServer.class);
+    private static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final long REFRESH_INTERVAL = 5000;
+    private static final int HTTP_THREADS = 2;
+    private final Server server;
+    private final ServerMonitor monitor;
+    private final HttpServer httpServer;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService httpExecutor;
+    private volatile DatabaseMetrics[] databases = new DatabaseMetrics[0];
+
+    private MetricsServer(Server server, ServerMonitor monitor, InetSocketAddress address) throws IOException {
+        this.server = server;
+        this.monitor = monitor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread t = new Thread(r, "metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS, r -> {
+            final Thread t = new Thread(r, "metrics-http");
+            t.setDaemon(true);
+            return t;
+        });
+        this.httpServer = HttpServer.create(address, 0);
+        this.httpServer.createContext("/", this::handle);
+        this.httpServer.setExecutor(httpExecutor);
+    }
+
+    /**
+     * Start the HTTP listener.
+     *
+     * @param server  server instance
+     * @param monitor management bean of the server instance
+     * @param address address of the HTTP listener or null, if all interfaces are used
+     * @param port    port of the HTTP listener
+     * @return started HTTP listener
+     * @throws IOException if the HTTP listener can't be started
+     */
+    static MetricsServer start(Server server, ServerMonitor monitor, String address, int port) throws IOException {
+        final MetricsServer metricsServer = new MetricsServer(server, monitor, (StringUtils.isNotBlank(address)) ?
+                new InetSocketAddress(address, port) : new InetSocketAddress(port));
+        metricsServer.scheduler.scheduleWithFixedDelay(metricsServer::refresh, 0, REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+        metricsServer.httpServer.start();
+        return metricsServer;
+    }
+
+    private static void appendHelp(StringBuilder metrics, String name, String type, String help) {
+        metrics.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void appendHistogram(StringBuilder metrics, String name, String labels, LatencyHistogram latency) {
+        final String prefix = (labels != null) ? labels + "," : "";
+        final double[] buckets = latency.getBuckets();
+        final long[] counts = latency.getCumulativeCounts();
+        for (int i = 0; i < buckets.length; i++) {
+            appendValue(metrics, name + "_bucket",
+                    prefix + "le=\"" + BigDecimal.valueOf(buckets[i]).movePointLeft(3).stripTrailingZeros().toPlainString() + "\"", counts[i]);
+        }
+        appendValue(metrics, name + "_bucket", prefix + "le=\"+Inf\"", counts[buckets.length]);
+        appendValue(metrics, name + "_sum", labels, latency.getSum() / 1e9d);
+        appendValue(metrics, name + "_count", labels, counts[buckets.length]);
+    }
+
+    private static void appendValue(StringBuilder metrics, String name, String labels, double value) {
+        metrics.append(name);
+        if (labels != null) metrics.append('{').append(labels).append('}');
+        metrics.append(' ');
+        if (value == Math.rint(value) && !Double.isInfinite(value))
+            metrics.append((long) value);
+        else
+            metrics.append(value);
+        metrics.append('\n');
+    }
+
+    private static String escape(String value) {
+        return StringUtils.replaceEach(StringUtils.defaultString(value),
+                new String[]{"\\", "\"", "\n"}, new String[]{"\\\\", "\\\"", "\\n"});
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!PATH.equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            final byte[] response = render().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Collect metrics of the databases and publish them as a new snapshot for requests.
+     */
+    private void refresh() {
+        try {
+            final List<DatabaseMonitor> monitors = monitor.getDatabases();
+            final DatabaseMetrics[] metrics = new DatabaseMetrics[monitors.size()];
+            for (int i = 0; i < metrics.length; i++) {
+                metrics[i] = new DatabaseMetrics(monitors.get(i));
+            }
+            databases = metrics;
+        } catch (Exception ex) {
+            LOGGER.warn("Can't collect metrics of databases!", ex);
+        }
+    }
+
+    /**
+     * Create metrics in Prometheus text format.
+     *
+     * @return metrics
+     */
+    private String render() {
+        final StringBuilder metrics = new StringBuilder(4096);
+
+        // server
+        appendHelp(metrics, "openestate_server_online", "gauge", "Whether the server is available for incoming connections.");
+        appendValue(metrics, "openestate_server_online", null, (monitor.getUptime() > 0) ? 1 : 0);
+        appendHelp(metrics, "openestate_server_uptime_seconds", "gauge", "Time since the server was started.");
+        appendValue(metrics, "openestate_server_uptime_seconds", null, monitor.getUptime() / 1000d);
+        appendHelp(metrics, "openestate_server_connections_accepted_total", "counter", "Client connections accepted since the server was started.");
+        appendValue(metrics, "openestate_server_connections_accepted_total", null, monitor.getAcceptedConnections());
+        appendHelp(metrics, "openestate_server_connections_active", "gauge", "Currently open client connections.");
+        appendValue(metrics, "openestate_server_connections_active", null, monitor.getActiveConnections());
+
+        // connection queue
+        final ConnectionDispatcher dispatcher = server.getConnectionDispatcher();
+        if (dispatcher != null) {
+            appendHelp(metrics, "openestate_server_connections_queued", "gauge", "Client connections waiting for processing.");
+            appendValue(metrics, "openestate_server_connections_queued", null, dispatcher.getQueueSize());
+            appendHelp(metrics, "openestate_server_connection_queue_wait_seconds", "histogram", "Waiting time of client connections before they were processed.");
+            appendHistogram(metrics, "openestate_server_connection_queue_wait_seconds", null, dispatcher.getQueueLatency());
+        }
+
+        // rejected connections
+        final AdmissionControl admission = server.getAdmissionControl();
+        if (dispatcher != null || admission != null) {
+            appendHelp(metrics, "openestate_server_connections_rejected_total", "counter", "Client connections rejected because of exceeded limits.");
+            if (dispatcher != null)
+                appendValue(metrics, "openestate_server_connections_rejected_total", "reason=\"queue\"", dispatcher.getRejectedConnectionCount());
+            if (admission != null) {
+                appendValue(metrics, "openestate_server_connections_rejected_total", "reason=\"client\"", admission.getRejectedClientCount());
+                appendValue(metrics, "openestate_server_connections_rejected_total", "reason=\"database\"", admission.getRejectedDatabaseCount());
+            }
+        }
+
+        // delivery of state changes to listeners
+        final ServerStateDispatcher stateDispatcher = server.getStateDispatcher();
+        appendHelp(metrics, "openestate_server_state_changes_pending", "gauge", "State changes, that were not delivered to listeners yet.");
+        appendValue(metrics, "openestate_server_state_changes_pending", null, stateDispatcher.getPendingCount());
+        appendHelp(metrics, "openestate_server_state_change_lag_seconds", "histogram", "Time between state changes and the completed notification of listeners.");
+        appendHistogram(metrics, "openestate_server_state_change_lag_seconds", null, stateDispatcher.getLag());
+
+        // statement latencies
+        appendHelp(metrics, "openestate_server_statement_duration_seconds", "histogram", "Latency of statements served by the server.");
+        appendHistogram(metrics, "openestate_server_statement_duration_seconds", null, server.getStatementLatency());
+
+        // databases
+        final DatabaseMetrics[] databases = this.databases;
+        appendHelp(metrics, "openestate_database_open", "gauge", "Whether the database is open.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_open", database.labels, (database.open) ? 1 : 0);
+        }
+        appendHelp(metrics, "openestate_database_open_duration_seconds", "gauge", "Time spent on opening the database at startup.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_open_duration_seconds", database.labels, database.openTime / 1000d);
+        }
+        appendHelp(metrics, "openestate_database_sessions", "gauge", "Open sessions of the database.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_sessions", database.labels, database.sessions);
+        }
+        appendHelp(metrics, "openestate_database_cache_rows", "gauge", "Rows currently kept in the cache of the database.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_cache_rows", database.labels, database.cachedRows);
+        }
+        appendHelp(metrics, "openestate_database_cache_bytes", "gauge", "Size of rows currently kept in the cache of the database.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_cache_bytes", database.labels, database.cachedBytes);
+        }
+        appendHelp(metrics, "openestate_database_cache_capacity_bytes", "gauge", "Maximum size of rows in the cache of the database.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_cache_capacity_bytes", database.labels, database.cacheCapacityBytes);
+        }
+        appendHelp(metrics, "openestate_database_file_size_bytes", "gauge", "Size of the files of the database.");
+        for (DatabaseMetrics database : databases) {
+            appendValue(metrics, "openestate_database_file_size_bytes", database.labels + ",file=\"data\"", database.dataFileSize);
+            appendValue(metrics, "openestate_database_file_size_bytes", database.labels + ",file=\"log\"", database.logFileSize);
+            appendValue(metrics, "openestate_database_file_size_bytes", database.labels + ",file=\"script\"", database.scriptFileSize);
+            appendValue(metrics, "openestate_database_file_size_bytes", database.labels + ",file=\"lobs\"", database.lobsFileSize);
+        }
+        appendHelp(metrics, "openestate_database_statement_duration_seconds", "histogram", "Latency of statements executed by the database.");
+        for (DatabaseMetrics database : databases) {
+            if (database.statementLatency != null)
+                appendHistogram(metrics, "openestate_database_statement_duration_seconds", database.labels, database.statementLatency);
+        }
+
+        // JVM
+        final MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        appendHelp(metrics, "jvm_memory_heap_used_bytes", "gauge", "Used heap memory of the JVM.");
+        appendValue(metrics, "jvm_memory_heap_used_bytes", null, heap.getUsed());
+        appendHelp(metrics, "jvm_memory_heap_committed_bytes", "gauge", "Committed heap memory of the JVM.");
+        appendValue(metrics, "jvm_memory_heap_committed_bytes", null, heap.getCommitted());
+        appendHelp(metrics, "jvm_memory_heap_max_bytes", "gauge", "Maximum heap memory of the JVM.");
+        appendValue(metrics, "jvm_memory_heap_max_bytes", null, heap.getMax());
+        final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        appendHelp(metrics, "jvm_gc_collections_total", "counter", "Garbage collections of the JVM.");
+        for (GarbageCollectorMXBean collector : collectors) {
+            appendValue(metrics, "jvm_gc_collections_total", "gc=\"" + escape(collector.getName()) + "\"", Math.max(0, collector.getCollectionCount()));
+        }
+        appendHelp(metrics, "jvm_gc_collection_seconds_total", "counter", "Time spent on garbage collection of the JVM.");
+        for (GarbageCollectorMXBean collector : collectors) {
+            appendValue(metrics, "jvm_gc_collection_seconds_total", "gc=\"" + escape(collector.getName()) + "\"", Math.max(0, collector.getCollectionTime()) / 1000d);
+        }
+        appendHelp(metrics, "jvm_threads", "gauge", "Live threads of the JVM.");
+        appendValue(metrics, "jvm_threads", null, ManagementFactory.getThreadMXBean().getThreadCount());
+
+        return metrics.toString();
+    }
+
+    /**
+     * Stop the HTTP listener.
+     */
+    void stop() {
+        httpServer.stop(0);
+        httpExecutor.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Metrics of a database, that were collected by the background thread.
+     */
+    private static class DatabaseMetrics {
+        private final String labels;
+        private final boolean open;
+        private final long openTime;
+        private final int sessions;
+        private final long cachedRows;
+        private final long cachedBytes;
+        private final long cacheCapacityBytes;
+        private final long dataFileSize;
+        private final long logFileSize;
+        private final long scriptFileSize;
+        private final long lobsFileSize;
+        private final LatencyHistogram statementLatency;
+
+        private DatabaseMetrics(DatabaseMonitor monitor) {
+            this.labels = String.format(Locale.ENGLISH, "database=\"%s\"", escape(monitor.getName()));
+            this.open = monitor.isOpen();
+            this.openTime = monitor.getOpenTime();
+            this.sessions = monitor.getSessionCount();
+            this.cachedRows = monitor.getCachedRows();
+            this.cachedBytes = monitor.getCachedBytes();
+            this.cacheCapacityBytes = monitor.getCacheCapacityBytes();
+            this.dataFileSize = monitor.getDataFileSize();
+            this.logFileSize = monitor.getLogFileSize();
+            this.scriptFileSize = monitor.getScriptFileSize();
+            this.lobsFileSize = monitor.getLobsFileSize();
+            this.statementLatency = monitor.getStatementLatency();
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.lib.DataOutputStream;
+import org.hsqldb.lib.StringConverter;
+import org.hsqldb.result.Result;
+import org.hsqldb.result.ResultConstants;
+import org.hsqldb.rowio.RowOutputBinary;
+
+/**
+ * A client connection, that detects requests of the client.
+ * <p>
+ * HSQLDB clients send a request and wait for its response before the next request is sent. Therefore a request
+ * starts, when data is received after a response was sent, and it ends with the last data sent before the next
+ * request is received.
+ * <p>
+ * The beginning of every request and of its response is kept, in order to tell the listener about the kind of
+ * the finished request without parsing the whole HSQLDB protocol.
+ * <p>
+ * The listener may reject the login of a client. The client receives an error instead of the acknowledgement of its
+ * login and HSQLDB closes the connection without executing any statement for the session.
+ *
+ * @since 1.1
+ */
+class MonitoredSocket extends Socket {
+    private static final int REQUEST_HEAD_SIZE = 4096;
+    private static final int RESPONSE_HEAD_SIZE = 32;
+    private final Socket socket;
+    private final RequestListener listener;
+    private final Object lock = new Object();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final Request request;
+    private InputStream input = null;
+    private OutputStream output = null;
+    private long requestStart = -1;
+    private long responseEnd = -1;
+    private boolean responded = false;
+    private boolean rejected = false;
+
+    /**
+     * Create a monitored connection.
+     *
+     * @param socket         connection to monitor
+     * @param captureQueries keep the SQL text of requests, that is provided by {@link Request#getSql()}
+     * @param listener       receives finished requests
+     */
+    MonitoredSocket(Socket socket, boolean captureQueries, RequestListener listener) {
+        super();
+        this.socket = socket;
+        this.listener = listener;
+        this.request = new Request(captureQueries ? REQUEST_HEAD_SIZE : Request.HEADER_SIZE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // the listener is notified only once, even if the connection is closed repeatedly
+        if (!closed.compareAndSet(false, true)) return;
+        try {
+            socket.close();
+        } finally {
+            synchronized (lock) {
+                finishRequest();
+            }
+            listener.connectionClosed();
+        }
+    }
+
+    private void finishRequest() {
+        // called while holding the lock, the request is reused for the next request of the connection
+        if (requestStart < 0 || responseEnd < 0) return;
+        final long duration = responseEnd - requestStart;
+        requestStart = -1;
+        responseEnd = -1;
+        try {
+            listener.requestFinished(duration, request);
+        } finally {
+            request.reset();
+        }
+    }
+
+    /**
+     * Get the receiver of finished requests.
+     *
+     * @return listener
+     */
+    RequestListener getListener() {
+        return listener;
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return socket.getInetAddress();
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        synchronized (lock) {
+            if (input == null) input = new MonitoredInputStream(socket.getInputStream());
+            return input;
+        }
+    }
+
+    @Override
+    public boolean getKeepAlive() throws SocketException {
+        return socket.getKeepAlive();
+    }
+
+    @Override
+    public void setKeepAlive(boolean on) throws SocketException {
+        socket.setKeepAlive(on);
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+        return socket.getLocalAddress();
+    }
+
+    @Override
+    public int getLocalPort() {
+        return socket.getLocalPort();
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return socket.getLocalSocketAddress();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        synchronized (lock) {
+            if (output == null) output = new MonitoredOutputStream(socket.getOutputStream());
+            return output;
+        }
+    }
+
+    @Override
+    public int getPort() {
+        return socket.getPort();
+    }
+
+    @Override
+    public synchronized int getReceiveBufferSize() throws SocketException {
+        return socket.getReceiveBufferSize();
+    }
+
+    @Override
+    public synchronized void setReceiveBufferSize(int size) throws SocketException {
+        socket.setReceiveBufferSize(size);
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return socket.getRemoteSocketAddress();
+    }
+
+    @Override
+    public synchronized int getSendBufferSize() throws SocketException {
+        return socket.getSendBufferSize();
+    }
+
+    @Override
+    public synchronized void setSendBufferSize(int size) throws SocketException {
+        socket.setSendBufferSize(size);
+    }
+
+    @Override
+    public synchronized int getSoTimeout() throws SocketException {
+        return socket.getSoTimeout();
+    }
+
+    @Override
+    public synchronized void setSoTimeout(int timeout) throws SocketException {
+        socket.setSoTimeout(timeout);
+    }
+
+    @Override
+    public boolean getTcpNoDelay() throws SocketException {
+        return socket.getTcpNoDelay();
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) throws SocketException {
+        socket.setTcpNoDelay(on);
+    }
+
+    @Override
+    public boolean isBound() {
+        return socket.isBound();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected();
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return socket.isInputShutdown();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return socket.isOutputShutdown();
+    }
+
+    private void rejectLogin(String reason) throws IOException {
+        final DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+        Result.newErrorResult(Error.error(ErrorCode.X_08004, reason)).write(null, output, new RowOutputBinary(64, 1));
+        output.flush();
+
+        // HSQLDB closes the connection and its session, when it tries to read the next request
+        socket.shutdownInput();
+    }
+
+    private void received(byte[] b, int off, int len) {
+        final boolean started;
+        synchronized (lock) {
+            // the previous request was answered and a new request is started
+            if (responseEnd >= 0) finishRequest();
+
+            started = requestStart < 0;
+            if (started) requestStart = System.nanoTime();
+            request.received(b, off, len);
+        }
+        if (started) listener.requestStarted();
+    }
+
+    private void sent(byte[] b, int off, int len) {
+        synchronized (lock) {
+            if (requestStart < 0) return;
+            responseEnd = System.nanoTime();
+            request.sent(b, off, len);
+        }
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        socket.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        socket.shutdownOutput();
+    }
+
+    @Override
+    public String toString() {
+        return socket.toString();
+    }
+
+    /**
+     * Receiver of finished requests.
+     */
+    interface RequestListener {
+        /**
+         * The database acknowledged the login of the client.
+         * <p>
+         * This method is called by the thread, that processes the connection, before the acknowledgement is sent.
+         *
+         * @param databaseId HSQLDB ID of the database
+         * @return null to accept the login or the reason, why the login is rejected
+         */
+        default String checkLogin(int databaseId) {
+            return null;
+        }
+
+        /**
+         * The connection was closed.
+         * <p>
+         * This method is called only once for every connection.
+         */
+        default void connectionClosed() {
+        }
+
+        /**
+         * A request was finished.
+         * <p>
+         * The request is only valid during this call, as it is reused for the next request of the connection.
+         *
+         * @param duration time between receiving the request and sending the end of its response in nanoseconds
+         * @param request  the finished request
+         */
+        void requestFinished(long duration, Request request);
+
+        /**
+         * A request was started.
+         * <p>
+         * This method is called by the thread, that reads the request from the client.
+         */
+        default void requestStarted() {
+        }
+    }
+
+    /**
+     * Beginning of a request and of its response.
+     * <p>
+     * HSQLDB writes every message as a mode byte, followed by the length of the message and its content.
+     * The first request of a connection is preceded by the protocol version.
+     */
+    static class Request {
+        private static final int HEADER_SIZE = 32;
+        private final byte[] data;
+        private final byte[] response = new byte[RESPONSE_HEAD_SIZE];
+        private int dataLength = 0;
+        private int responseLength = 0;
+        private int offset = 4;
+
+        private Request(int size) {
+            this.data = new byte[size];
+        }
+
+        private static int getInt(byte[] b, int length, int pos) {
+            if (pos + 4 > length) return -1;
+            return ((b[pos] & 0xff) << 24) | ((b[pos + 1] & 0xff) << 16) | ((b[pos + 2] & 0xff) << 8)
+                    | (b[pos + 3] & 0xff);
+        }
+
+        private static long getLong(byte[] b, int length, int pos) {
+            if (pos + 8 > length) return -1;
+            return ((long) getInt(b, length, pos) << 32) | (getInt(b, length, pos + 4) & 0xffffffffL);
+        }
+
+        /**
+         * Get the database, that accepted the connection.
+         *
+         * @return HSQLDB database ID or -1, if the request did not open a connection
+         */
+        int getDatabaseId() {
+            return (getResponseMode() == ResultConstants.CONNECTACKNOWLEDGE) ? getInt(response, responseLength, 5) : -1;
+        }
+
+        /**
+         * Get the kind of request.
+         *
+         * @return a mode of {@link ResultConstants} or -1, if unknown
+         */
+        int getMode() {
+            return (offset < dataLength) ? data[offset] : -1;
+        }
+
+        /**
+         * Get the kind of response.
+         *
+         * @return a mode of {@link ResultConstants} or -1, if unknown
+         */
+        int getResponseMode() {
+            return (responseLength > 0) ? response[0] : -1;
+        }
+
+        /**
+         * Get the SQL text of a direct execution or of a prepared statement.
+         * <p>
+         * The text is decoded on every call.
+         *
+         * @return SQL text or null, if not available or if the request was too large to keep its text
+         */
+        String getSql() {
+            final int pos;
+            switch (getMode()) {
+                case ResultConstants.EXECDIRECT:
+                    // max rows, fetch size, return type
+                    pos = offset + 14;
+                    break;
+                case ResultConstants.PREPARE:
+                    // return type
+                    pos = offset + 6;
+                    break;
+                default:
+                    return null;
+            }
+            final int length = getInt(data, dataLength, pos);
+            if (length < 0 || pos + 4 + length > dataLength) return null;
+            try {
+                return StringConverter.readUTF(data, pos + 4, length);
+            } catch (IOException ex) {
+                return null;
+            }
+        }
+
+        /**
+         * Get the executed prepared statement or the statement, that was prepared by the request.
+         *
+         * @return HSQLDB statement ID or -1, if not available
+         */
+        long getStatementId() {
+            switch (getMode()) {
+                case ResultConstants.EXECUTE:
+                case ResultConstants.BATCHEXECUTE:
+                    // max rows, fetch size
+                    return getLong(data, dataLength, offset + 13);
+                case ResultConstants.PREPARE:
+                    // return type
+                    return (getResponseMode() == ResultConstants.PREPARE_ACK) ? getLong(response, responseLength, 6) : -1;
+                default:
+                    return -1;
+            }
+        }
+
+        /**
+         * Get the kind of transaction end.
+         *
+         * @return a transaction type of {@link ResultConstants} or -1, if the request does not end a transaction
+         */
+        int getTransactionType() {
+            return (getMode() == ResultConstants.ENDTRAN) ? getInt(data, dataLength, offset + 5) : -1;
+        }
+
+        /**
+         * Get the number of updated rows.
+         *
+         * @return number of rows or -1, if the response does not contain an update count
+         */
+        int getUpdateCount() {
+            return (getResponseMode() == ResultConstants.UPDATECOUNT) ? getInt(response, responseLength, 5) : -1;
+        }
+
+        private void received(byte[] b, int off, int len) {
+            final int count = Math.min(len, data.length - dataLength);
+            if (count < 1) return;
+            System.arraycopy(b, off, data, dataLength, count);
+            dataLength += count;
+        }
+
+        private void reset() {
+            dataLength = 0;
+            responseLength = 0;
+            offset = 0;
+        }
+
+        private void sent(byte[] b, int off, int len) {
+            final int count = Math.min(len, response.length - responseLength);
+            if (count < 1) return;
+            System.arraycopy(b, off, response, responseLength, count);
+            responseLength += count;
+        }
+    }
+
+    private class MonitoredInputStream extends FilterInputStream {
+        private final byte[] single = new byte[1];
+
+        private MonitoredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int b = in.read();
+            if (b >= 0) {
+                single[0] = (byte) b;
+                received(single, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final int count = in.read(b, off, len);
+            if (count > 0) received(b, off, count);
+            return count;
+        }
+    }
+
+    private class MonitoredOutputStream extends FilterOutputStream {
+        private final byte[] single = new byte[1];
+
+        private MonitoredOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (rejected) return;
+            responded = true;
+            out.write(b);
+            single[0] = (byte) b;
+            sent(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // responses to a rejected login are discarded
+            if (rejected) return;
+
+            // HSQLDB writes the whole acknowledgement of a login at once
+            if (!responded && len > 0) {
+                responded = true;
+                if (len >= 9 && b[off] == ResultConstants.CONNECTACKNOWLEDGE) {
+                    final String reason = listener.checkLogin(Request.getInt(b, off + len, off + 5));
+                    if (reason != null) {
+                        rejected = true;
+                        rejectLogin(reason);
+                        return;
+                    }
+                }
+            }
+
+            out.write(b, off, len);
+            sent(b, off, len);
+        }
+    }
+}
@@ -23,13 +23,37 @@ import java.awt.SystemTray;
 import java.awt.TrayIcon;
 import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.imageio.ImageIO;
-import org.apache.commons.io.FilenameUtils;
+import javax.net.ssl.SSLSocket;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
+import org.hsqldb.Database;
+import org.hsqldb.DatabaseManager;
+import org.hsqldb.Session;
+import org.hsqldb.server.HsqlSocketFactory;
 import org.hsqldb.server.ServerConfiguration;
 import org.hsqldb.server.ServerConstants;
-import org.openestate.tool.server.utils.MigrationUtils;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.openestate.tool.server.utils.UnixSocket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -44,8 +68,6 @@ import org.xnap.commons.i18n.I18nFactory;
 public class Server extends org.hsqldb.Server {
     @SuppressWarnings("unused")
     private static final Logger LOGGER;
-    @SuppressWarnings("unused")
-    private static final I18n I18N = I18nFactory.getI18n(Server.class);
 
     /**
      * Current server instance.
@@ -55,7 +77,7 @@ public class Server extends org.hsqldb.Server {
     /**
      * System tray icon used by the server instance.
      */
-    private static TrayIcon systemTrayIcon = null;
+    private static volatile TrayIcon systemTrayIcon = null;
 
     /**
      * This variable is set to true,
@@ -63,6 +85,131 @@ public class Server extends org.hsqldb.Server {
      */
     private static boolean shutdownHookTriggered = false;
 
+    /**
+     * Maximal time in milliseconds to deliver pending state changes before the application exits.
+     */
+    private static final long STATE_DISPATCHER_TIMEOUT = 15000;
+
+    /**
+     * Maximal number of concurrently running checks, whether the databases are responsive.
+     */
+    private static final int MAX_RESPONSIVENESS_CHECKS = 4;
+
+    /**
+     * Management bean of the server instance.
+     */
+    private ServerMonitor monitor = null;
+
+    /**
+     * HTTP listener for metrics of the server instance.
+     */
+    private MetricsServer metricsServer = null;
+
+    /**
+     * Limits the number of concurrently processed client connections.
+     */
+    private ConnectionDispatcher connectionDispatcher = null;
+
+    /**
+     * Limits the number of connections per client address and the number of sessions per database.
+     */
+    private AdmissionControl admissionControl = null;
+
+    /**
+     * Initializes the databases before the server is started.
+     */
+    private DatabaseInitializer databaseInitializer = null;
+
+    /**
+     * Accepts connections from local clients through a Unix domain socket.
+     */
+    private UnixSocketListener unixSocketListener = null;
+
+    /**
+     * Listening socket, that was inherited from systemd or may be shared with another server process.
+     */
+    private volatile ListenSocket listenSocket = null;
+
+    /**
+     * Hands over the listening socket to a newly started server process.
+     */
+    private ServerHandover serverHandover = null;
+
+    /**
+     * Socket factory, that configures encrypted connections before they are monitored.
+     */
+    private ConfiguredSocketFactory configuredSocketFactory = null;
+
+    /**
+     * Receives the connection, that checks the accept loop of the server.
+     */
+    private volatile CountDownLatch acceptProbe = null;
+
+    /**
+     * Local port of the connection, that checks the accept loop of the server.
+     */
+    private volatile int acceptProbePort = -1;
+
+    /**
+     * Executes statements, that check whether the databases are responsive.
+     */
+    private final ExecutorService responsivenessExecutor = new ThreadPoolExecutor(0, MAX_RESPONSIVENESS_CHECKS,
+            30, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+        final Thread t = new Thread(r, "ResponsivenessCheck");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Running or last finished check of a database by its name.
+     */
+    private final Map<String, Future<Boolean>> responsivenessChecks = new ConcurrentHashMap<>();
+
+    /**
+     * Number of client connections accepted since the server was started.
+     */
+    private final AtomicLong acceptedConnectionCount = new AtomicLong();
+
+    /**
+     * Number of currently open client connections.
+     */
+    private final AtomicInteger activeConnectionCount = new AtomicInteger();
+
+    /**
+     * Latencies of statements served since the server was started.
+     */
+    private final LatencyHistogram statementLatency = new LatencyHistogram();
+
+    /**
+     * Statistics about executed statements by database name.
+     */
+    private final Map<String, StatementStatistics> statementStatistics = new ConcurrentHashMap<>();
+
+    /**
+     * Enable statistics about executed statements.
+     */
+    private boolean statementStatisticsEnabled = false;
+
+    /**
+     * Record the number of rows updated by executed statements.
+     */
+    private boolean statementStatisticsRows = false;
+
+    /**
+     * Minimal duration of slow statements in milliseconds.
+     */
+    private long slowStatementThreshold = 0;
+
+    /**
+     * Time, when the server became available for incoming connections.
+     */
+    private volatile long startTime = 0;
+
+    /**
+     * Notifies listeners about changes of the server state.
+     */
+    private final ServerStateDispatcher stateDispatcher = new ServerStateDispatcher();
+
     static {
         ServerUtils.init();
 
@@ -76,6 +223,7 @@ public class Server extends org.hsqldb.Server {
      */
     protected Server() {
         super();
+        stateDispatcher.addListener(this::startOrStopComponents);
     }
 
     /**
@@ -88,14 +236,363 @@ public class Server extends org.hsqldb.Server {
     }
 
     /**
-     * Load system tray icon for the server instance.
+     * Register a listener for changes of the server state.
+     *
+     * @param listener listener to register
      */
-    private static void initSystemTray() {
-        //LOGGER.debug( "init system tray" );
-        if (!ServerUtils.isSystemTrayEnabled()) {
-            //LOGGER.debug( "The system tray is disabled." );
+    public void addStateListener(ServerStateListener listener) {
+        stateDispatcher.addListener(listener);
+    }
+
+    /**
+     * Get number of client connections accepted since the server was started.
+     *
+     * @return number of accepted connections
+     */
+    long getAcceptedConnectionCount() {
+        return acceptedConnectionCount.get();
+    }
+
+    /**
+     * Get number of currently open client connections.
+     *
+     * @return number of active connections
+     */
+    int getActiveConnectionCount() {
+        return activeConnectionCount.get();
+    }
+
+    /**
+     * Create a server instance, that is configured by the provided properties.
+     * <p>
+     * In contrast to {@link #main(String[])} the server is not registered as the server instance of the
+     * application. Therefore it may be embedded into another application, e.g. for benchmarks. The databases are
+     * opened, when the server is started.
+     *
+     * @param serverProperties server configuration
+     * @return created server
+     * @throws Exception if the server can't be configured
+     */
+    public static Server create(ServerProperties serverProperties) throws Exception {
+        final Server server = new Server();
+        server.setProperties(serverProperties);
+        if (server.isTls())
+            server.configuredSocketFactory = new ConfiguredSocketFactory(HsqlSocketFactory.getInstance(true));
+
+        // configure statistics about executed statements
+        server.statementStatisticsEnabled = serverProperties.getCustomBooleanProperty(ServerProperties.STATEMENTS, false);
+        server.statementStatisticsRows = serverProperties.getCustomBooleanProperty(ServerProperties.STATEMENTS_ROWS, false);
+        server.slowStatementThreshold = Math.max(0, serverProperties.getCustomIntProperty(ServerProperties.STATEMENTS_SLOW, 0));
+
+        // limit the number of concurrently processed connections
+        final int maxConnections = serverProperties.getCustomIntProperty(ServerProperties.CONNECTIONS_MAX, 0);
+        if (maxConnections > 0) {
+            server.connectionDispatcher = new ConnectionDispatcher(maxConnections,
+                    Math.max(0, serverProperties.getCustomIntProperty(ServerProperties.CONNECTIONS_QUEUE, 100)),
+                    Math.max(0, serverProperties.getCustomIntProperty(ServerProperties.CONNECTIONS_QUEUE_TIMEOUT, 30000)),
+                    server::startConnection);
+            LOGGER.info("Processing at most " + maxConnections + " connections concurrently.");
+        }
+
+        // limit the number of connections per client and per database
+        final int maxClientConnections = serverProperties.getCustomIntProperty(ServerProperties.CONNECTIONS_CLIENT, 0);
+        final int maxDatabaseSessions = serverProperties.getCustomIntProperty(ServerProperties.CONNECTIONS_DATABASE, 0);
+        final Map<String, Integer> maxDatabaseSessionsByName = serverProperties.getCustomIntProperties(ServerProperties.CONNECTIONS_DATABASE);
+        final AdmissionControl admission = new AdmissionControl(maxClientConnections, maxDatabaseSessions, maxDatabaseSessionsByName);
+        if (maxClientConnections > 0 || admission.isDatabaseLimited()) {
+            server.admissionControl = admission;
+            if (maxClientConnections > 0)
+                LOGGER.info("Accepting at most " + maxClientConnections + " connections per client.");
+        }
+
+        return server;
+    }
+
+    /**
+     * Get the component, that limits the number of connections per client address and per database.
+     *
+     * @return admission control or null, if these connections are not limited
+     */
+    AdmissionControl getAdmissionControl() {
+        return admissionControl;
+    }
+
+    /**
+     * Get the component, that limits the number of concurrently processed client connections.
+     *
+     * @return dispatcher or null, if the number of connections is not limited
+     */
+    ConnectionDispatcher getConnectionDispatcher() {
+        return connectionDispatcher;
+    }
+
+    /**
+     * Get the name of an opened database.
+     *
+     * @param databaseId HSQLDB ID of the opened database
+     * @return database name or null, if the database is not open
+     */
+    private String getDatabaseNameById(int databaseId) {
+        final String[] aliases = dbAlias;
+        final int[] ids = dbID;
+        if (aliases == null || ids == null) return null;
+
+        for (int i = 0; i < aliases.length && i < ids.length; i++) {
+            if (ids[i] == databaseId) return aliases[i];
+        }
+        return null;
+    }
+
+    /**
+     * Get an opened database of the server.
+     *
+     * @param index index of the database in the server configuration
+     * @return database or null, if the database is not open
+     */
+    Database getDatabase(int index) {
+        final String name = getDatabaseName(index, true);
+        final String[] aliases = dbAlias;
+        final int[] ids = dbID;
+        if (getState() != ServerConstants.SERVER_STATE_ONLINE || name == null || aliases == null || ids == null)
+            return null;
+
+        // HSQLDB does not keep the order of the configured databases
+        for (int i = 0; i < aliases.length && i < ids.length; i++) {
+            if (name.equals(aliases[i])) return DatabaseManager.getDatabase(ids[i]);
+        }
+        return null;
+    }
+
+    /**
+     * Get the component, that initialized the databases before the server was started.
+     *
+     * @return initializer or null, if the server was not created by {@link #main(String[])}
+     */
+    DatabaseInitializer getDatabaseInitializer() {
+        return databaseInitializer;
+    }
+
+    /**
+     * Get management bean of the server instance.
+     *
+     * @return management bean or null, if the server was not created by {@link #main(String[])}
+     */
+    public ServerMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Get the component, that notifies listeners about changes of the server state.
+     *
+     * @return dispatcher
+     */
+    ServerStateDispatcher getStateDispatcher() {
+        return stateDispatcher;
+    }
+
+    /**
+     * Get latencies of statements served since the server was started.
+     *
+     * @return histogram of statement latencies
+     */
+    LatencyHistogram getStatementLatency() {
+        return statementLatency;
+    }
+
+    /**
+     * Get statistics about statements executed by a database.
+     *
+     * @param index index of the database in the server configuration
+     * @return statistics or null, if statistics are not enabled or the database is not open
+     */
+    StatementStatistics getStatementStatistics(int index) {
+        final String name = getDatabaseName(index, true);
+        return (name != null) ? statementStatistics.get(name) : null;
+    }
+
+
+    /**
+     * Get time, when the server became available for incoming connections.
+     *
+     * @return time in milliseconds or 0, if the server is not online
+     */
+    long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public int getPort() {
+        // HSQLDB listens on a placeholder socket until the listening socket is used
+        final ListenSocket listen = listenSocket;
+        if (listen != null) return (socket == listen) ? listen.getLocalPort() : super.getPort();
+
+        // provide the ephemeral port, that was chosen for port 0
+        final ServerSocket current = socket;
+        final int port = super.getPort();
+        return (port == 0 && current != null) ? current.getLocalPort() : port;
+    }
+
+    @Override
+    public void handleConnection(Socket socket) {
+        // the server checks its own accept loop
+        final CountDownLatch probe = acceptProbe;
+        if (probe != null && socket.getPort() == acceptProbePort && socket.getInetAddress().isLoopbackAddress()) {
+            probe.countDown();
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+
+        acceptedConnectionCount.incrementAndGet();
+
+        // HSQLDB configures encrypted connections through the original socket
+        final ConfiguredSocketFactory factory = configuredSocketFactory;
+        if (factory != null) factory.configure(socket);
+
+        final AdmissionControl admission = admissionControl;
+        if (admission != null && !admission.admitClient(socket.getInetAddress())) {
+            try {
+                socket.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Can't close rejected connection!", ex);
+            }
             return;
         }
+
+        // admitted connections are released, when the connection is closed while being queued or processed
+        final MonitoredSocket monitoredSocket = new MonitoredSocket(socket, statementStatisticsEnabled,
+                new ConnectionListener(admission, socket.getInetAddress()));
+
+        final ConnectionDispatcher dispatcher = connectionDispatcher;
+        if (dispatcher != null)
+            dispatcher.dispatch(monitoredSocket);
+        else
+            startConnection(monitoredSocket);
+    }
+
+    /**
+     * Test, if the server accepts connections and its databases execute statements.
+     * <p>
+     * Statements are executed by a bounded pool of daemon threads. If the previous check of a database is still
+     * running, the database is not checked again and the running check is awaited instead.
+     *
+     * @param timeout maximal time in milliseconds to wait for the server
+     * @return true, if the server is responsive
+     */
+    boolean isResponsive(long timeout) {
+        final Thread serverThread = getServerThread();
+        if (getState() != ServerConstants.SERVER_STATE_ONLINE || serverThread == null || !serverThread.isAlive())
+            return false;
+
+        final long deadline = System.currentTimeMillis() + timeout;
+
+        // connect to the accept loop of the server
+        final ServerSocket serverSocket = socket;
+        final InetAddress address = (serverSocket != null) ? serverSocket.getInetAddress() : null;
+        final CountDownLatch probe = new CountDownLatch(1);
+        try (Socket socket = new Socket()) {
+            socket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            acceptProbe = probe;
+            acceptProbePort = socket.getLocalPort();
+            socket.connect(new InetSocketAddress(
+                    (address == null || address.isAnyLocalAddress()) ? InetAddress.getLoopbackAddress() : address,
+                    getPort()), (int) timeout);
+            if (!probe.await(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                return false;
+        } catch (IOException ex) {
+            LOGGER.warn("Can't connect to the server!", ex);
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            acceptProbe = null;
+            acceptProbePort = -1;
+        }
+
+        // execute a statement in every opened database
+        for (int i = 0; ; i++) {
+            final String name = getDatabaseName(i, true);
+            if (name == null) break;
+
+            final Database database = getDatabase(i);
+            if (database == null) continue;
+
+            // wait for a previous check, that is still running, instead of starting another one
+            Future<Boolean> check = responsivenessChecks.get(name);
+            if (check == null || check.isDone()) {
+                try {
+                    check = responsivenessExecutor.submit(() -> {
+                        final Session session = database.sessionManager.newSysSession();
+                        try {
+                            return !session.executeDirectStatement("VALUES 1").isError();
+                        } finally {
+                            session.close();
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    LOGGER.warn("Too many checks of unresponsive databases are running!");
+                    return false;
+                }
+                responsivenessChecks.put(name, check);
+            }
+            try {
+                if (!check.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS))
+                    return false;
+            } catch (ExecutionException | TimeoutException ex) {
+                LOGGER.warn("The '" + name + "' database is not responsive!");
+                return false;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Start processing of a client connection.
+     *
+     * @param socket client connection, that was created by {@link #handleConnection(Socket)}
+     */
+    private void startConnection(Socket socket) {
+        final MonitoredSocket monitoredSocket = (MonitoredSocket) socket;
+        ((ConnectionListener) monitoredSocket.getListener()).start();
+
+        try {
+            super.handleConnection(monitoredSocket);
+        } catch (RuntimeException ex) {
+            // notify about the closed connection
+            try {
+                monitoredSocket.close();
+            } catch (IOException ignored) {
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Record statements executed by the opened databases.
+     */
+    private void installStatementStatistics() {
+        for (int i = 0; ; i++) {
+            final String name = getDatabaseName(i, true);
+            if (name == null) break;
+            if (getDatabase(i) == null) continue;
+
+            statementStatistics.put(name, new StatementStatistics(name, slowStatementThreshold, statementStatisticsRows));
+        }
+    }
+
+    /**
+     * Load system tray icon for the server instance.
+     * <p>
+     * This method is called in background, because AWT and ImageIO take a while to initialize. Messages about the
+     * server state are shown, after the icon was added to the system tray.
+     */
+    private static void initSystemTray() {
         if (!SystemTray.isSupported()) {
             LOGGER.info("The operating system does not support system tray.");
             return;
@@ -111,7 +608,7 @@ public class Server extends org.hsqldb.Server {
         }
 
         final PopupMenu popup = new PopupMenu();
-        final MenuItem stopItem = new MenuItem(I18N.tr("shutdown {0}", ServerUtils.TITLE));
+        final MenuItem stopItem = new MenuItem(I18nHolder.I18N.tr("shutdown {0}", ServerUtils.TITLE));
         stopItem.addActionListener(e -> {
             stopItem.setEnabled(false);
             server.shutdown();
@@ -124,12 +621,53 @@ public class Server extends org.hsqldb.Server {
         final SystemTray tray = SystemTray.getSystemTray();
         try {
             tray.add(systemTrayIcon);
+            server.addStateListener(Server::displayStateMessage);
         } catch (AWTException ex) {
             LOGGER.error("Can't add icon to system tray!");
             LOGGER.error("> " + ex.getLocalizedMessage(), ex);
         }
     }
 
+    /**
+     * Show a message about the changed server state in the system tray.
+     *
+     * @param event state change
+     */
+    private static void displayStateMessage(ServerStateEvent event) {
+        switch (event.getState()) {
+            case ServerConstants.SERVER_STATE_ONLINE:
+                systemTrayIcon.displayMessage(
+                        ServerUtils.TITLE,
+                        I18nHolder.I18N.tr("{0} is available for incoming connections.", ServerUtils.TITLE),
+                        TrayIcon.MessageType.INFO);
+                break;
+
+            case ServerConstants.SERVER_STATE_CLOSING:
+                systemTrayIcon.displayMessage(
+                        ServerUtils.TITLE,
+                        I18nHolder.I18N.tr("{0} is shutting down.", ServerUtils.TITLE),
+                        TrayIcon.MessageType.INFO);
+                break;
+
+            case ServerConstants.SERVER_STATE_OPENING:
+                systemTrayIcon.displayMessage(
+                        ServerUtils.TITLE,
+                        I18nHolder.I18N.tr("{0} is starting up.", ServerUtils.TITLE),
+                        TrayIcon.MessageType.INFO);
+                break;
+
+            case ServerConstants.SERVER_STATE_SHUTDOWN:
+                systemTrayIcon.displayMessage(
+                        ServerUtils.TITLE,
+                        I18nHolder.I18N.tr("{0} has been closed and is not available anymore.", ServerUtils.TITLE),
+                        TrayIcon.MessageType.INFO);
+                break;
+
+            default:
+                break;
+        }
+    }
+
     @Override
     public boolean isNoSystemExit() {
         return shutdownHookTriggered || super.isNoSystemExit();
@@ -143,10 +681,6 @@ public class Server extends org.hsqldb.Server {
     public static void main(String[] args) {
         //org.hsqldb.Server.main( args );
 
-        if (!SystemUtils.isJavaAwtHeadless()) {
-            initSystemTray();
-        }
-
         // load server configuration
         final ServerProperties serverProperties;
         try {
@@ -172,53 +706,143 @@ public class Server extends org.hsqldb.Server {
         ServerConfiguration.translateAddressProperty(serverProperties);
 
         // create the database server
-        server = new Server();
         try {
-            server.setProperties(serverProperties);
+            server = create(serverProperties);
         } catch (Exception ex) {
-            server.printError("Failed to set server properties!");
-            server.printStackTrace(ex);
+            LOGGER.error("Failed to set server properties!");
+            LOGGER.error("> " + ex.getLocalizedMessage(), ex);
             return;
         }
 
-        // init databases before the server is started
-        for (int i = 0; ; i++) {
-            String path = server.getDatabasePath(i, true);
-            if (path == null) break;
-            if (!path.startsWith("file:")) continue;
+        // accept connections from local clients through a Unix domain socket
+        final String socketPath = StringUtils.trimToNull(serverProperties.getCustomProperty(ServerProperties.SOCKET));
+        if (socketPath != null) {
+            if (UnixSocket.isSupported())
+                server.unixSocketListener = new UnixSocketListener(new File(socketPath), server::handleConnection);
+            else
+                LOGGER.warn("Unix domain sockets require Java 16 or newer. The socket " + socketPath + " is not opened.");
+        }
+
+        // notify about changes of the server state
+        if (!SystemUtils.isJavaAwtHeadless() && ServerUtils.isSystemTrayEnabled()) {
+            final Thread trayThread = new Thread(Server::initSystemTray, "SystemTray");
+            trayThread.setDaemon(true);
+            trayThread.start();
+        }
+        final SystemdNotifier systemdNotifier = SystemdNotifier.create();
+        if (systemdNotifier != null)
+            server.addStateListener(systemdNotifier);
+        try {
+            for (ServerStateListener listener : ServiceLoader.load(ServerStateListener.class)) {
+                server.addStateListener(listener);
+                LOGGER.info("Registered state listener " + listener.getClass().getName() + ".");
+            }
+        } catch (ServiceConfigurationError ex) {
+            LOGGER.error("Can't load state listeners!", ex);
+        }
 
-            File dbDir = new File(FilenameUtils.separatorsToSystem(StringUtils.substringAfter(path, "file:"))).getParentFile();
-            String dbName = StringUtils.substringAfterLast(path, "/");
-            LOGGER.info("Initializing database '" + dbDir.getAbsolutePath() + "'.");
+        // use the listening socket provided by systemd or share the port with a running server
+        try {
+            server.listenSocket = ListenSocket.inherit();
+            if (server.listenSocket != null) {
+                LOGGER.info("Using listening socket " + server.listenSocket.getLocalSocketAddress() + " provided by systemd.");
+            } else if (serverProperties.getCustomBooleanProperty(ServerProperties.HANDOVER, false)) {
+                if (server.isTls()) {
+                    LOGGER.warn("The handover is not supported for encrypted connections.");
+                } else if (!ListenSocket.isReusePortSupported()) {
+                    LOGGER.warn("The handover requires SO_REUSEPORT, which is not supported by this system.");
+                } else {
+                    server.listenSocket = ListenSocket.bind(server.getAddress(), server.getPort());
+                    server.serverHandover = new ServerHandover(new File(ServerUtils.getVarDir(), "server.handover"),
+                            Math.max(0, serverProperties.getCustomIntProperty(ServerProperties.HANDOVER_TIMEOUT, 30000)));
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.error("Can't open listening socket!");
+            LOGGER.error("> " + ex.getLocalizedMessage(), ex);
+            System.exit(1);
+            return;
+        }
+        if (server.listenSocket != null && server.listenSocket.isInherited() && server.isTls()) {
+            LOGGER.error("Socket activation is not supported for encrypted connections!");
+            System.exit(1);
+            return;
+        }
+        if (server.listenSocket != null) {
+            // HSQLDB opens a placeholder socket, that is replaced after the databases were opened
+            server.setAddress(InetAddress.getLoopbackAddress().getHostAddress());
+            server.setPort(0);
+        }
+
+        // wait until a running server has closed its databases
+        if (server.serverHandover != null) {
+            try {
+                if (server.serverHandover.request())
+                    LOGGER.info("Took over the port from the running server.");
+            } catch (IOException ex) {
+                LOGGER.error("Can't take over the port from the running server!");
+                LOGGER.error("> " + ex.getLocalizedMessage(), ex);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // register management beans
+        server.monitor = ServerMonitor.register(server);
+
+        // start HTTP listener for metrics
+        if (serverProperties.getCustomBooleanProperty(ServerProperties.METRICS, false)) {
+            final int port = serverProperties.getCustomIntProperty(ServerProperties.METRICS_PORT, 9002);
             try {
-                MigrationUtils.migrateFromOldDatabase(dbDir, dbName);
-            } catch (Exception ex) {
-                LOGGER.warn("Can't migrate database at '" + dbDir.getAbsolutePath() + "'!");
-                LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
+                server.metricsServer = MetricsServer.start(server, server.monitor,
+                        serverProperties.getCustomProperty(ServerProperties.METRICS_ADDRESS), port);
+                LOGGER.info("Providing metrics at port " + port + ".");
+            } catch (IOException ex) {
+                LOGGER.error("Can't start HTTP listener for metrics!");
+                LOGGER.error("> " + ex.getLocalizedMessage(), ex);
             }
         }
 
+        // init databases concurrently before the server is started
+        final int initThreads = serverProperties.getCustomIntProperty(ServerProperties.INIT_THREADS, 0);
+        server.databaseInitializer = new DatabaseInitializer(server,
+                (initThreads > 0) ? initThreads : Runtime.getRuntime().availableProcessors());
+        server.databaseInitializer.run();
+
         // properly shutdown the server
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             if (shutdownHookTriggered) return;
             shutdownHookTriggered = true;
-            if (Server.server == null) return;
+            final Server current = Server.server;
+            if (current == null) return;
 
-            final int state = Server.server.getState();
+            final int state = current.getState();
             switch (state) {
                 case ServerConstants.SERVER_STATE_ONLINE:
                 case ServerConstants.SERVER_STATE_OPENING:
                 case ServerConstants.SERVER_STATE_CLOSING:
                     LOGGER.info("Starting shutdown sequence.");
-                    Server.server.shutdown();
+                    current.shutdown();
                     Server.server = null;
             }
+
+            // deliver pending state changes before the application exits
+            current.stateDispatcher.close(STATE_DISPATCHER_TIMEOUT);
         }));
 
         // start the database server
         server.start();
     }
 
+    /**
+     * Unregister a listener for changes of the server state.
+     *
+     * @param listener listener to unregister
+     */
+    public void removeStateListener(ServerStateListener listener) {
+        stateDispatcher.removeListener(listener);
+    }
+
     @Override
     protected void print(String msg) {
         //super.print( msg );
@@ -238,44 +862,220 @@ public class Server extends org.hsqldb.Server {
     }
 
     @Override
-    protected synchronized void setState(int state) {
+    protected void setState(int state) {
         //LOGGER.debug( "set server state: " + state );
 
-        if (systemTrayIcon != null && this.getState() != state) {
-            switch (state) {
-                case ServerConstants.SERVER_STATE_ONLINE:
-                    systemTrayIcon.displayMessage(
-                            ServerUtils.TITLE,
-                            I18N.tr("{0} is available for incoming connections.", ServerUtils.TITLE),
-                            TrayIcon.MessageType.INFO);
-                    break;
+        // Components of the server are started and stopped by the state dispatcher, so that the server
+        // is not blocked while it holds its monitor. Only the listening socket and the socket factory are
+        // replaced right here, because HSQLDB starts accepting connections right after the server became online.
+        final int previousState = this.getState();
 
-                case ServerConstants.SERVER_STATE_CLOSING:
-                    systemTrayIcon.displayMessage(
-                            ServerUtils.TITLE,
-                            I18N.tr("{0} is shutting down.", ServerUtils.TITLE),
-                            TrayIcon.MessageType.INFO);
-                    break;
+        if (state == ServerConstants.SERVER_STATE_ONLINE)
+            startTime = System.currentTimeMillis();
+        else if (state == ServerConstants.SERVER_STATE_SHUTDOWN)
+            startTime = 0;
 
-                case ServerConstants.SERVER_STATE_OPENING:
-                    systemTrayIcon.displayMessage(
-                            ServerUtils.TITLE,
-                            I18N.tr("{0} is starting up.", ServerUtils.TITLE),
-                            TrayIcon.MessageType.INFO);
-                    break;
-
-                case ServerConstants.SERVER_STATE_SHUTDOWN:
-                    systemTrayIcon.displayMessage(
-                            ServerUtils.TITLE,
-                            I18N.tr("{0} has been closed and is not available anymore.", ServerUtils.TITLE),
-                            TrayIcon.MessageType.INFO);
-                    break;
-
-                default:
-                    break;
+        // accept connections through the listening socket instead of the placeholder socket
+        final ListenSocket listen = listenSocket;
+        if (state == ServerConstants.SERVER_STATE_ONLINE && previousState != state
+                && listen != null && socket != null && socket != listen) {
+            final ServerSocket placeholder = socket;
+            socket = listen;
+            try {
+                placeholder.close();
+            } catch (IOException ex) {
+                LOGGER.warn("Can't close placeholder socket!", ex);
             }
+            LOGGER.info("Accepting connections on port " + listen.getLocalPort() + ".");
         }
 
+        // HSQLDB replaces the socket factory, whenever it opens its server socket
+        if (state == ServerConstants.SERVER_STATE_ONLINE && configuredSocketFactory != null)
+            socketFactory = configuredSocketFactory;
+
         super.setState(state);
+
+        // notify listeners without waiting for them
+        if (previousState != state)
+            stateDispatcher.post(new ServerStateEvent(this, previousState, state));
+    }
+
+    /**
+     * Start and stop components of the server after its state has changed.
+     * <p>
+     * This listener is registered before any other listener. Therefore other listeners are notified
+     * after the databases and listeners of the server were opened.
+     *
+     * @param event state change
+     */
+    private void startOrStopComponents(ServerStateEvent event) {
+        final int state = event.getState();
+        if (state == ServerConstants.SERVER_STATE_SHUTDOWN) {
+            if (metricsServer != null) {
+                metricsServer.stop();
+                metricsServer = null;
+            }
+            if (connectionDispatcher != null)
+                connectionDispatcher.stop();
+            if (unixSocketListener != null)
+                unixSocketListener.stop();
+            statementStatistics.clear();
+
+            // the listening socket was closed by HSQLDB and the databases were released
+            if (serverHandover != null) {
+                serverHandover.stop();
+                if (listenSocket != null) serverHandover.released();
+            }
+            listenSocket = null;
+        } else if (state == ServerConstants.SERVER_STATE_ONLINE) {
+            // databases are available after the server is online
+            if (statementStatisticsEnabled)
+                installStatementStatistics();
+            if (unixSocketListener != null)
+                startUnixSocketListener();
+            if (serverHandover != null && listenSocket != null && socket == listenSocket)
+                serverHandover.watch(this, listenSocket, () -> {
+                    // connections waiting for the dispatcher are processed before shutdown as well
+                    final ConnectionDispatcher dispatcher = connectionDispatcher;
+                    return getActiveConnectionCount() + ((dispatcher != null) ? dispatcher.getQueueSize() : 0);
+                });
+        }
+    }
+
+    /**
+     * Start accepting connections through a Unix domain socket.
+     */
+    private void startUnixSocketListener() {
+        try {
+            unixSocketListener.start();
+            LOGGER.info("Accepting local connections on socket " + unixSocketListener.getFile().getAbsolutePath() + ".");
+        } catch (Exception ex) {
+            LOGGER.error("Can't open socket " + unixSocketListener.getFile().getAbsolutePath() + "!", ex);
+        }
+    }
+
+    /**
+     * Socket factory, that configures encrypted connections before they are wrapped into a {@link MonitoredSocket}.
+     * <p>
+     * HSQLDB configures every connection through the socket factory of the server, when it starts processing the
+     * connection. Encrypted connections have to be configured through the original socket instead. Therefore the
+     * server configures them right after they were accepted and HSQLDB does not configure them again.
+     */
+    private static class ConfiguredSocketFactory extends HsqlSocketFactory {
+        private final HsqlSocketFactory factory;
+
+        /**
+         * Create socket factory.
+         *
+         * @param factory socket factory provided by HSQLDB
+         * @throws Exception if the factory can't be created
+         */
+        private ConfiguredSocketFactory(HsqlSocketFactory factory) throws Exception {
+            super();
+            this.factory = factory;
+        }
+
+        /**
+         * Configure an accepted connection.
+         *
+         * @param socket accepted connection
+         */
+        private void configure(Socket socket) {
+            // connections of the Unix domain socket are not encrypted
+            if (!factory.isSecure() || socket instanceof SSLSocket) factory.configureSocket(socket);
+        }
+
+        @Override
+        public void configureSocket(Socket socket) {
+            // the connection was already configured after it was accepted
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws Exception {
+            return factory.createServerSocket(port);
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, String address) throws Exception {
+            return factory.createServerSocket(port, address);
+        }
+
+        @Override
+        public Socket createSocket(Socket socket, String host, int port) throws Exception {
+            return factory.createSocket(socket, host, port);
+        }
+
+        @Override
+        public Socket createSocket(String host, int port) throws Exception {
+            return factory.createSocket(host, port);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return factory.isSecure();
+        }
+    }
+
+    /**
+     * Receiver of the requests of a client connection.
+     * <p>
+     * The listener releases the admitted connection and session and notifies the dispatcher about processed
+     * connections, when the connection is closed.
+     */
+    private class ConnectionListener implements MonitoredSocket.RequestListener {
+        private final AdmissionControl admission;
+        private final InetAddress address;
+        private volatile boolean started = false;
+        private volatile String database = null;
+        private StatementStatistics.Client statements = null;
+
+        private ConnectionListener(AdmissionControl admission, InetAddress address) {
+            this.admission = admission;
+            this.address = address;
+        }
+
+        @Override
+        public String checkLogin(int databaseId) {
+            final String name = getDatabaseNameById(databaseId);
+            if (admission != null && !admission.admitSession(name))
+                return "Too many sessions of the '" + name + "' database.";
+
+            database = name;
+            final StatementStatistics statistics = (name != null && statementStatisticsEnabled) ?
+                    statementStatistics.get(name) : null;
+            if (statistics != null) statements = statistics.createClient();
+            return null;
+        }
+
+        @Override
+        public void connectionClosed() {
+            if (admission != null) {
+                admission.releaseClient(address);
+                admission.releaseSession(database);
+            }
+            if (started) {
+                activeConnectionCount.decrementAndGet();
+                final ConnectionDispatcher dispatcher = connectionDispatcher;
+                if (dispatcher != null) dispatcher.connectionClosed();
+            }
+        }
+
+        @Override
+        public void requestFinished(long duration, MonitoredSocket.Request request) {
+            statementLatency.record(duration);
+            if (statements != null) statements.record(request, duration);
+        }
+
+        private void start() {
+            started = true;
+            activeConnectionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Translations of the server, that are loaded on first access.
+     */
+    private static final class I18nHolder {
+        private static final I18n I18N = I18nFactory.getI18n(Server.class);
     }
 }
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.function.IntSupplier;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hands over the server port from a running server process to a new server process.
+ * <p>
+ * Both processes listen on the same port via <code>SO_REUSEPORT</code>. The new process requests the handover
+ * through a file. The running process stops accepting connections, waits until its open connections were
+ * closed and shuts down. Afterwards the new process opens the databases and processes the connections, that
+ * were queued in the meantime.
+ *
+ * @since 1.1
+ */
+class ServerHandover {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerHandover.class);
+
+    /**
+     * Interval in milliseconds to check the handover file.
+     */
+    private static final long POLL_INTERVAL = 500;
+
+    /**
+     * Maximal time in milliseconds for a running process to confirm a handover request.
+     */
+    private static final long CONFIRM_TIMEOUT = 5000;
+
+    private static final String LISTENING = "listening";
+    private static final String REQUESTED = "requested";
+    private static final String DRAINING = "draining";
+    private final File file;
+    private final long drainTimeout;
+    private volatile boolean watching = false;
+    private Thread thread = null;
+
+    /**
+     * Create handover.
+     *
+     * @param file         file to exchange handover requests
+     * @param drainTimeout maximal time in milliseconds to wait for open connections, before they are closed
+     */
+    ServerHandover(File file, long drainTimeout) {
+        this.file = file;
+        this.drainTimeout = drainTimeout;
+    }
+
+    private static String getPid() {
+        // the runtime name contains the process id in front of the host name
+        return StringUtils.substringBefore(ManagementFactory.getRuntimeMXBean().getName(), "@");
+    }
+
+    private String read() {
+        try {
+            return (file.isFile()) ? StringUtils.trimToEmpty(FileUtils.readFileToString(file, StandardCharsets.UTF_8)) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Drain the running server and shut it down.
+     *
+     * @param server            running server
+     * @param listenSocket      listening socket of the running server
+     * @param activeConnections provides the number of open connections
+     */
+    private void drain(Server server, ListenSocket listenSocket, IntSupplier activeConnections) {
+        try {
+            FileUtils.writeStringToFile(file, DRAINING + " " + getPid(), StandardCharsets.UTF_8);
+            listenSocket.pause();
+        } catch (IOException ex) {
+            LOGGER.error("Can't stop accepting connections for the handover!", ex);
+            return;
+        }
+
+        final long deadline = System.currentTimeMillis() + drainTimeout;
+        int count = activeConnections.getAsInt();
+        LOGGER.info("Waiting for " + count + " open connections before shutdown.");
+        while (count > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            count = activeConnections.getAsInt();
+        }
+        if (count > 0)
+            LOGGER.warn("Closing " + count + " open connections for the handover.");
+
+        server.shutdown();
+    }
+
+    /**
+     * Notify the new process, that the databases were closed.
+     */
+    void released() {
+        if (watching && file.exists() && !file.delete())
+            LOGGER.warn("Can't remove handover file " + file.getAbsolutePath() + "!");
+        watching = false;
+    }
+
+    /**
+     * Request a handover from a running server process.
+     * <p>
+     * This method returns, after the running process has closed its databases.
+     *
+     * @return true, if a running process handed over the port, false if no process is running or the running
+     * process did not confirm the request
+     * @throws IOException if the handover failed
+     */
+    boolean request() throws IOException {
+        final String listening = read();
+        if (listening == null || !listening.startsWith(LISTENING)) return false;
+        FileUtils.writeStringToFile(file, REQUESTED + " " + getPid(), StandardCharsets.UTF_8);
+
+        // wait for confirmation of the running process
+        long deadline = System.currentTimeMillis() + CONFIRM_TIMEOUT;
+        String state = read();
+        while (state != null && state.startsWith(REQUESTED) && System.currentTimeMillis() < deadline) {
+            sleep();
+            state = read();
+        }
+        if (state != null && state.startsWith(REQUESTED)) {
+            if (!file.delete()) throw new IOException("Can't remove handover file " + file.getAbsolutePath() + "!");
+            return false;
+        }
+
+        // wait until the running process has closed its databases and removed the file
+        if (state != null)
+            LOGGER.info("Waiting for handover from process " + StringUtils.substringAfter(state, " ") + ".");
+        deadline = System.currentTimeMillis() + drainTimeout + 60000;
+        while (file.exists() && System.currentTimeMillis() < deadline) {
+            sleep();
+        }
+        if (file.exists())
+            throw new IOException("The running process did not finish the handover in time.");
+        return true;
+    }
+
+    private static void sleep() throws IOException {
+        try {
+            Thread.sleep(POLL_INTERVAL);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The handover was interrupted!", ex);
+        }
+    }
+
+    /**
+     * Start waiting for handover requests of a new process.
+     *
+     * @param server            running server
+     * @param listenSocket      listening socket of the running server
+     * @param activeConnections provides the number of open connections
+     */
+    synchronized void watch(Server server, ListenSocket listenSocket, IntSupplier activeConnections) {
+        if (thread != null) return;
+        try {
+            FileUtils.writeStringToFile(file, LISTENING + " " + getPid(), StandardCharsets.UTF_8);
+            watching = true;
+        } catch (IOException ex) {
+            LOGGER.error("Can't write handover file " + file.getAbsolutePath() + "!", ex);
+            return;
+        }
+
+        thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                final String request = read();
+                if (request != null && request.startsWith(REQUESTED)) {
+                    LOGGER.info("Handing over to process " + StringUtils.substringAfter(request, " ") + ".");
+                    drain(server, listenSocket, activeConnections);
+                    return;
+                }
+                try {
+                    Thread.sleep(POLL_INTERVAL);
+                } catch (InterruptedException ex) {
+                    return;
+                }
+            }
+        }, "ServerHandover");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop waiting for handover requests.
+     */
+    synchronized void stop() {
+        if (thread == null) return;
+        if (thread != Thread.currentThread()) thread.interrupt();
+        thread = null;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Management bean of the server instance.
+ * <p>
+ * The bean is registered as <code>org.openestate.tool.server:type=Server</code> together with a
+ * {@link DatabaseMonitor} as <code>org.openestate.tool.server:type=Database,name=&lt;name&gt;</code>
+ * for every database provided by the server.
+ *
+ * @since 1.1
+ */
+public class ServerMonitor implements ServerMonitorMBean {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerMonitor.class);
+    private static final String DOMAIN = "org.openestate.tool.server";
+    private final Server server;
+    private final List<DatabaseMonitor> databases;
+
+    /**
+     * Create management bean.
+     *
+     * @param server server instance
+     */
+    ServerMonitor(Server server) {
+        this.server = server;
+        final List<DatabaseMonitor> databases = new ArrayList<>();
+        for (int i = 0; server.getDatabasePath(i, true) != null; i++) {
+            databases.add(new DatabaseMonitor(server, i));
+        }
+        this.databases = Collections.unmodifiableList(databases);
+    }
+
+    /**
+     * Register management beans of a server in the platform MBean server.
+     *
+     * @param server server instance
+     * @return management bean of the server, that is also returned if registration failed
+     */
+    static ServerMonitor register(Server server) {
+        final ServerMonitor monitor = new ServerMonitor(server);
+        final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            mBeanServer.registerMBean(monitor, new ObjectName(DOMAIN + ":type=Server"));
+            for (DatabaseMonitor database : monitor.databases) {
+                mBeanServer.registerMBean(database, new ObjectName(
+                        DOMAIN + ":type=Database,name=" + ObjectName.quote(database.getName())));
+            }
+            return monitor;
+        } catch (JMException ex) {
+            LOGGER.warn("Can't register management beans!");
+            LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
+            return monitor;
+        }
+    }
+
+    @Override
+    public long getAcceptedConnections() {
+        return server.getAcceptedConnectionCount();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return server.getActiveConnectionCount();
+    }
+
+    @Override
+    public String getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public String[] getDatabaseNames() {
+        final String[] names = new String[databases.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = databases.get(i).getName();
+        }
+        return names;
+    }
+
+    @Override
+    public int getPendingStateChanges() {
+        return server.getStateDispatcher().getPendingCount();
+    }
+
+    /**
+     * Get management beans of the databases provided by the server.
+     *
+     * @return management beans of databases
+     */
+    public List<DatabaseMonitor> getDatabases() {
+        return databases;
+    }
+
+    @Override
+    public int getPort() {
+        return server.getPort();
+    }
+
+    @Override
+    public int getQueuedConnections() {
+        final ConnectionDispatcher dispatcher = server.getConnectionDispatcher();
+        return (dispatcher != null) ? dispatcher.getQueueSize() : 0;
+    }
+
+    @Override
+    public double getQueueWaitTime() {
+        final ConnectionDispatcher dispatcher = server.getConnectionDispatcher();
+        if (dispatcher == null) return 0;
+        final LatencyHistogram latency = dispatcher.getQueueLatency();
+        final long count = latency.getCount();
+        return (count > 0) ? latency.getSum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    @Override
+    public long getRejectedConnections() {
+        final ConnectionDispatcher dispatcher = server.getConnectionDispatcher();
+        final AdmissionControl admission = server.getAdmissionControl();
+        long count = (dispatcher != null) ? dispatcher.getRejectedConnectionCount() : 0;
+        if (admission != null) count += admission.getRejectedClientCount() + admission.getRejectedDatabaseCount();
+        return count;
+    }
+
+    @Override
+    public int getSessionCount() {
+        int count = 0;
+        for (DatabaseMonitor database : databases) {
+            count += database.getSessionCount();
+        }
+        return count;
+    }
+
+    @Override
+    public String getState() {
+        return server.getStateDescriptor();
+    }
+
+    @Override
+    public double getStateChangeLag() {
+        final LatencyHistogram lag = server.getStateDispatcher().getLag();
+        final long count = lag.getCount();
+        return (count > 0) ? lag.getSum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1) : 0;
+    }
+
+    @Override
+    public long getStateChanges() {
+        return server.getStateDispatcher().getLag().getCount();
+    }
+
+    @Override
+    public long getStatementCount() {
+        return server.getStatementLatency().getCount();
+    }
+
+    @Override
+    public long getStatementTime() {
+        return TimeUnit.NANOSECONDS.toMillis(server.getStatementLatency().getSum());
+    }
+
+    @Override
+    public long getUptime() {
+        final long startTime = server.getStartTime();
+        return (startTime > 0) ? System.currentTimeMillis() - startTime : 0;
+    }
+}
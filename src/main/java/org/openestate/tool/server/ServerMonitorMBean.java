@@ -0,0 +1,139 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+/**
+ * Management interface of the server instance.
+ *
+ * @since 1.1
+ */
+@SuppressWarnings("unused")
+public interface ServerMonitorMBean {
+    /**
+     * Get number of client connections accepted since the server was started.
+     *
+     * @return number of accepted connections
+     */
+    long getAcceptedConnections();
+
+    /**
+     * Get number of currently open client connections.
+     *
+     * @return number of active connections
+     */
+    int getActiveConnections();
+
+    /**
+     * Get number of client connections, that wait for processing.
+     *
+     * @return number of waiting connections
+     */
+    int getQueuedConnections();
+
+    /**
+     * Get average waiting time of client connections, before they were processed.
+     *
+     * @return waiting time in milliseconds
+     */
+    double getQueueWaitTime();
+
+    /**
+     * Get address, the server is listening on.
+     *
+     * @return address or null, if the server is listening on all interfaces
+     */
+    String getAddress();
+
+    /**
+     * Get names of the databases provided by the server.
+     *
+     * @return database names
+     */
+    String[] getDatabaseNames();
+
+    /**
+     * Get number of state changes, that were not delivered to the registered listeners yet.
+     *
+     * @return number of pending state changes
+     */
+    int getPendingStateChanges();
+
+    /**
+     * Get port, the server is listening on.
+     *
+     * @return port number
+     */
+    int getPort();
+
+    /**
+     * Get number of client connections, that were rejected because of too many concurrent connections,
+     * too many connections from the same client or too many sessions of a database.
+     *
+     * @return number of rejected connections
+     */
+    long getRejectedConnections();
+
+    /**
+     * Get number of open sessions in all databases.
+     *
+     * @return number of sessions
+     */
+    int getSessionCount();
+
+    /**
+     * Get current state of the server.
+     *
+     * @return state description
+     */
+    String getState();
+
+    /**
+     * Get average time between state changes and the completed notification of the registered listeners.
+     *
+     * @return lag in milliseconds
+     */
+    double getStateChangeLag();
+
+    /**
+     * Get number of state changes, that were delivered to the registered listeners.
+     *
+     * @return number of state changes
+     */
+    long getStateChanges();
+
+    /**
+     * Get number of statements served since the server was started.
+     * <p>
+     * Every request of a client is counted, that was received through an unencrypted connection.
+     *
+     * @return number of statements
+     */
+    long getStatementCount();
+
+    /**
+     * Get total time spent on serving statements since the server was started.
+     *
+     * @return time in milliseconds
+     */
+    long getStatementTime();
+
+    /**
+     * Get time since the server was started.
+     *
+     * @return uptime in milliseconds
+     */
+    long getUptime();
+}
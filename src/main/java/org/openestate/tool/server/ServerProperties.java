@@ -18,13 +18,21 @@ package org.openestate.tool.server;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xnap.commons.i18n.I18n;
-import org.xnap.commons.i18n.I18nFactory;
 
 /**
  * Properties for the HSQLDB Server.
@@ -36,8 +44,128 @@ import org.xnap.commons.i18n.I18nFactory;
 public class ServerProperties extends org.hsqldb.server.ServerProperties {
     @SuppressWarnings("unused")
     private static final Logger LOGGER = LoggerFactory.getLogger(ServerProperties.class);
-    @SuppressWarnings("unused")
-    private static final I18n I18N = I18nFactory.getI18n(ServerProperties.class);
+
+    /**
+     * Maximal number of connections from the same client address.
+     */
+    public static final String CONNECTIONS_CLIENT = "server.connections.client";
+
+    /**
+     * Maximal number of sessions per database.
+     * <p>
+     * The limit of a certain database may be configured by appending its name
+     * - e.g. <code>server.connections.database.immotool</code>.
+     */
+    public static final String CONNECTIONS_DATABASE = "server.connections.database";
+
+    /**
+     * Maximal number of concurrently processed client connections.
+     */
+    public static final String CONNECTIONS_MAX = "server.connections.max";
+
+    /**
+     * Maximal number of client connections, that wait for processing.
+     */
+    public static final String CONNECTIONS_QUEUE = "server.connections.queue";
+
+    /**
+     * Maximal waiting time of client connections in milliseconds.
+     */
+    public static final String CONNECTIONS_QUEUE_TIMEOUT = "server.connections.queue.timeout";
+
+    /**
+     * Enable the handover of the server port to a newly started server process.
+     */
+    public static final String HANDOVER = "server.handover";
+
+    /**
+     * Maximal time in milliseconds to wait for open connections during a handover.
+     */
+    public static final String HANDOVER_TIMEOUT = "server.handover.timeout";
+
+    /**
+     * Maximal number of databases, that are initialized concurrently at startup.
+     */
+    public static final String INIT_THREADS = "server.init.threads";
+
+    /**
+     * Enable the HTTP listener for metrics.
+     */
+    public static final String METRICS = "server.metrics";
+
+    /**
+     * Address of the HTTP listener for metrics.
+     */
+    public static final String METRICS_ADDRESS = "server.metrics.address";
+
+    /**
+     * Port of the HTTP listener for metrics.
+     */
+    public static final String METRICS_PORT = "server.metrics.port";
+
+    /**
+     * Path of a Unix domain socket, that accepts connections from local clients.
+     */
+    public static final String SOCKET = "server.socket";
+
+    /**
+     * Enable statistics about executed statements.
+     */
+    public static final String STATEMENTS = "server.statements";
+
+    /**
+     * Record the number of rows updated by executed statements.
+     */
+    public static final String STATEMENTS_ROWS = "server.statements.rows";
+
+    /**
+     * Minimal duration of statements in milliseconds, that are written into the log of slow statements.
+     */
+    public static final String STATEMENTS_SLOW = "server.statements.slow";
+
+    /**
+     * Properties, that are provided by OpenEstate-ImmoServer in addition to the properties of HSQLDB.
+     */
+    private static final Set<String> CUSTOM_PROPERTIES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            CONNECTIONS_CLIENT,
+            CONNECTIONS_DATABASE,
+            CONNECTIONS_MAX,
+            CONNECTIONS_QUEUE,
+            CONNECTIONS_QUEUE_TIMEOUT,
+            HANDOVER,
+            HANDOVER_TIMEOUT,
+            INIT_THREADS,
+            METRICS,
+            METRICS_ADDRESS,
+            METRICS_PORT,
+            SOCKET,
+            STATEMENTS,
+            STATEMENTS_ROWS,
+            STATEMENTS_SLOW
+    )));
+
+    /**
+     * Prefixes of properties, that are provided by OpenEstate-ImmoServer in addition to the properties of HSQLDB.
+     */
+    private static final Set<String> CUSTOM_PROPERTY_PREFIXES = Collections.unmodifiableSet(new HashSet<>(Collections.singletonList(
+            CONNECTIONS_DATABASE + "."
+    )));
+
+    /**
+     * Properties, that contain a limit of client connections.
+     */
+    private static final Set<String> CONNECTION_LIMITS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            CONNECTIONS_CLIENT,
+            CONNECTIONS_DATABASE,
+            CONNECTIONS_MAX,
+            CONNECTIONS_QUEUE,
+            CONNECTIONS_QUEUE_TIMEOUT
+    )));
+
+    /**
+     * Values of properties, that are not supported by HSQLDB.
+     */
+    private final Properties customProps = new Properties();
 
     /**
      * Create server properties instance.
@@ -68,8 +196,76 @@ public class ServerProperties extends org.hsqldb.server.ServerProperties {
         }
     }
 
+    /**
+     * Get value of a custom property as boolean.
+     *
+     * @param key          property name
+     * @param defaultValue default value, if the property is not set
+     * @return property value
+     */
+    public boolean getCustomBooleanProperty(String key, boolean defaultValue) {
+        final String value = getCustomProperty(key);
+        return (value != null) ? BooleanUtils.toBoolean(value) : defaultValue;
+    }
+
+    /**
+     * Get value of a custom property as integer.
+     *
+     * @param key          property name
+     * @param defaultValue default value, if the property is not set or invalid
+     * @return property value
+     */
+    public int getCustomIntProperty(String key, int defaultValue) {
+        return NumberUtils.toInt(getCustomProperty(key), defaultValue);
+    }
+
+    /**
+     * Get values of custom properties with a common prefix as integers.
+     *
+     * @param prefix property name without the trailing dot
+     * @return property values by the remaining part of their name
+     */
+    public Map<String, Integer> getCustomIntProperties(String prefix) {
+        final Map<String, Integer> values = new HashMap<>();
+        for (String key : customProps.stringPropertyNames()) {
+            if (!key.startsWith(prefix + ".")) continue;
+            final int value = NumberUtils.toInt(getCustomProperty(key), -1);
+            if (value >= 0) values.put(key.substring(prefix.length() + 1), value);
+        }
+        return values;
+    }
+
+    /**
+     * Get value of a custom property.
+     * <p>
+     * Custom properties are provided by OpenEstate-ImmoServer in addition to the properties of HSQLDB.
+     *
+     * @param key property name
+     * @return property value or null, if it is not set
+     */
+    public String getCustomProperty(String key) {
+        return StringUtils.trimToNull(customProps.getProperty(key));
+    }
+
+    /**
+     * Test, if a property is provided by OpenEstate-ImmoServer in addition to the properties of HSQLDB.
+     *
+     * @param key property name
+     * @return true, if the property is not supported by HSQLDB
+     */
+    private static boolean isCustomProperty(String key) {
+        if (CUSTOM_PROPERTIES.contains(key)) return true;
+        for (String prefix : CUSTOM_PROPERTY_PREFIXES) {
+            if (key.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
     /**
      * Replace system properties in server configuration.
+     * <p>
+     * Custom properties are moved out of the server configuration,
+     * because HSQLDB does not accept unknown properties.
      */
     private void init() {
         Enumeration e = this.stringProps.keys();
@@ -77,8 +273,26 @@ public class ServerProperties extends org.hsqldb.server.ServerProperties {
             String key = (String) e.nextElement();
             String value = this.stringProps.getProperty(key);
             if (value.contains("${")) {
-                this.stringProps.setProperty(key, StringSubstitutor.replaceSystemProperties(value));
+                value = StringSubstitutor.replaceSystemProperties(value);
+                this.stringProps.setProperty(key, value);
             }
+            if (isCustomProperty(key)) {
+                this.customProps.setProperty(key, value);
+            }
+        }
+
+        // ignore invalid connection limits
+        for (String key : this.customProps.stringPropertyNames()) {
+            if (!CONNECTION_LIMITS.contains(key) && !key.startsWith(CONNECTIONS_DATABASE + ".")) continue;
+            final int limit = NumberUtils.toInt(StringUtils.trimToEmpty(this.customProps.getProperty(key)), -1);
+            if (limit < 0) {
+                LOGGER.warn("Ignoring invalid value '{}' of server property '{}'!", this.customProps.getProperty(key), key);
+                this.customProps.remove(key);
+                this.stringProps.remove(key);
+            }
+        }
+        for (String key : this.customProps.stringPropertyNames()) {
+            this.stringProps.remove(key);
         }
     }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies listeners about changes of the server state.
+ * <p>
+ * State changes are queued and delivered by a separate thread, so that the server does not wait for its
+ * listeners. The time between a state change and the completed notification of all listeners is recorded as lag.
+ *
+ * @since 1.1
+ */
+class ServerStateDispatcher {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServerStateDispatcher.class);
+
+    /**
+     * Time in milliseconds, after which a listener is logged as slow.
+     */
+    private static final long SLOW_LISTENER = 1000;
+    private final List<ServerStateListener> listeners = new CopyOnWriteArrayList<>();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "ServerStateDispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Register a listener.
+     *
+     * @param listener listener to register
+     */
+    void addListener(ServerStateListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Stop delivery after the queued state changes were delivered.
+     *
+     * @param timeout maximal time in milliseconds to wait for queued state changes
+     */
+    void close(long timeout) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+                LOGGER.warn(pendingCount.get() + " state changes were not delivered in time.");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void deliver(ServerStateEvent event, long posted) {
+        for (ServerStateListener listener : listeners) {
+            final long start = System.nanoTime();
+            try {
+                listener.stateChanged(event);
+            } catch (RuntimeException ex) {
+                LOGGER.error("State listener " + listener.getClass().getName() + " failed!", ex);
+            }
+            final long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            if (duration >= SLOW_LISTENER)
+                LOGGER.warn("State listener " + listener.getClass().getName() + " took " + duration + " ms.");
+        }
+        lag.record(System.nanoTime() - posted);
+        pendingCount.decrementAndGet();
+    }
+
+    /**
+     * Get time between state changes and the completed notification of all listeners.
+     *
+     * @return histogram of lags
+     */
+    LatencyHistogram getLag() {
+        return lag;
+    }
+
+    /**
+     * Get number of state changes, that were not delivered yet.
+     *
+     * @return number of pending state changes
+     */
+    int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Queue a state change for delivery.
+     * <p>
+     * This method returns immediately without waiting for the listeners.
+     *
+     * @param event state change
+     */
+    void post(ServerStateEvent event) {
+        final long posted = System.nanoTime();
+        pendingCount.incrementAndGet();
+        try {
+            executor.execute(() -> deliver(event, posted));
+        } catch (RejectedExecutionException ex) {
+            pendingCount.decrementAndGet();
+            LOGGER.debug("Can't deliver state change after shutdown.", ex);
+        }
+    }
+
+    /**
+     * Unregister a listener.
+     *
+     * @param listener listener to unregister
+     */
+    void removeListener(ServerStateListener listener) {
+        listeners.remove(listener);
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import org.hsqldb.server.ServerConstants;
+
+/**
+ * Change of the server state.
+ *
+ * @since 1.1
+ */
+public class ServerStateEvent {
+    private final Server server;
+    private final int previousState;
+    private final int state;
+    private final long time;
+
+    /**
+     * Create event.
+     *
+     * @param server        server instance
+     * @param previousState state before the change
+     * @param state         state after the change
+     */
+    ServerStateEvent(Server server, int previousState, int state) {
+        this.server = server;
+        this.previousState = previousState;
+        this.state = state;
+        this.time = System.currentTimeMillis();
+    }
+
+    /**
+     * Get state before the change.
+     *
+     * @return previous state, one of the <code>SERVER_STATE_*</code> constants in {@link ServerConstants}
+     */
+    public int getPreviousState() {
+        return previousState;
+    }
+
+    /**
+     * Get server instance.
+     *
+     * @return server
+     */
+    public Server getServer() {
+        return server;
+    }
+
+    /**
+     * Get state after the change.
+     *
+     * @return state, one of the <code>SERVER_STATE_*</code> constants in {@link ServerConstants}
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * Get time of the change.
+     *
+     * @return time in milliseconds
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "ServerStateEvent[previousState=" + previousState + ", state=" + state + ", time=" + time + "]";
+    }
+}
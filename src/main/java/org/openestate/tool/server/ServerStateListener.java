@@ -0,0 +1,38 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+/**
+ * Receives changes of the server state.
+ * <p>
+ * Listeners are notified asynchronously by a separate thread in the order of the state changes. Therefore the
+ * server may already have changed its state again, when a listener is notified. Listeners should return quickly,
+ * as further notifications wait until the listener has finished.
+ * <p>
+ * Listeners may be registered via {@link Server#addStateListener(ServerStateListener)} or as a service provider
+ * in <code>META-INF/services/org.openestate.tool.server.ServerStateListener</code>.
+ *
+ * @since 1.1
+ */
+@FunctionalInterface
+public interface ServerStateListener {
+    /**
+     * The state of the server was changed.
+     *
+     * @param event state change
+     */
+    void stateChanged(ServerStateEvent event);
+}
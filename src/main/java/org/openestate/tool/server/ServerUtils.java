@@ -28,8 +28,6 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringSubstitutor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xnap.commons.i18n.I18n;
-import org.xnap.commons.i18n.I18nFactory;
 
 /**
  * Helper methods for the server environment.
@@ -41,8 +39,6 @@ import org.xnap.commons.i18n.I18nFactory;
 public class ServerUtils {
     @SuppressWarnings("unused")
     private static final Logger LOGGER;
-    @SuppressWarnings("unused")
-    private static final I18n I18N = I18nFactory.getI18n(ServerUtils.class);
 
     /**
      * Name of the server.
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.hsqldb.lib.LongKeyHashMap;
+import org.hsqldb.result.ResultConstants;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Latencies of the statements executed by a database.
+ * <p>
+ * Statements are grouped by their shape, that is the SQL text with literals replaced by <code>?</code>.
+ * Statements are identified by the requests of the client connections. The shape of a prepared statement is
+ * calculated once, when it is prepared, and recording its executions does not allocate objects. The SQL text of
+ * directly executed statements is decoded for every execution.
+ * <p>
+ * Statements, that took longer than the configured threshold, are written to the
+ * <code>org.openestate.tool.server.slow</code> logger.
+ *
+ * @since 1.1
+ */
+class StatementStatistics {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(StatementStatistics.class);
+    private static final Logger SLOW_LOGGER = LoggerFactory.getLogger("org.openestate.tool.server.slow");
+    private static final int MAX_SQL_CACHE = 10000;
+    private static final int MAX_SHAPES = 1000;
+    private static final int MAX_PREPARED_STATEMENTS = 1000;
+    private static final String OTHER_SHAPE = "(other statements)";
+    private static final String COMMIT_SHAPE = "COMMIT";
+    private static final String ROLLBACK_SHAPE = "ROLLBACK";
+    private final String databaseName;
+    private final long slowThreshold;
+    private final boolean rows;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ConcurrentHashMap<String, Shape> shapesBySql = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    /**
+     * Create statistics for a database.
+     *
+     * @param databaseName  name of the database
+     * @param slowThreshold minimal duration of slow statements in milliseconds, 0 disables logging of slow statements
+     * @param rows          record the number of rows updated by statements
+     */
+    StatementStatistics(String databaseName, long slowThreshold, boolean rows) {
+        this.databaseName = databaseName;
+        this.slowThreshold = (slowThreshold > 0) ? TimeUnit.MILLISECONDS.toNanos(slowThreshold) : 0;
+        this.rows = rows;
+    }
+
+    /**
+     * Get the shape of a statement.
+     *
+     * @param sql SQL text of the statement
+     * @return SQL text with normalized whitespace and literals replaced by <code>?</code>
+     */
+    static String normalize(String sql) {
+        final StringBuilder shape = new StringBuilder(sql.length());
+        final int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            final char c = sql.charAt(i);
+            if (c == '\'') {
+                // string literal
+                i++;
+                while (i < length) {
+                    if (sql.charAt(i) == '\'') {
+                        if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+                            i += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    i++;
+                }
+                shape.append('?');
+                i++;
+            } else if (c == '"') {
+                // quoted identifier
+                final int end = sql.indexOf('"', i + 1);
+                final int next = (end < 0) ? length : end + 1;
+                shape.append(sql, i, next);
+                i = next;
+            } else if (Character.isDigit(c) && (shape.length() < 1 || !Character.isJavaIdentifierPart(shape.charAt(shape.length() - 1)))) {
+                // numeric literal
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                shape.append('?');
+            } else if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (shape.length() > 0) shape.append(' ');
+            } else {
+                shape.append(c);
+                i++;
+            }
+        }
+        return shape.toString().trim();
+    }
+
+    /**
+     * Get minimal duration of slow statements.
+     *
+     * @return minimal duration in nanoseconds or 0, if slow statements are not logged
+     */
+    long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    /**
+     * Create a recorder for the statements of a client connection.
+     *
+     * @return recorder
+     */
+    Client createClient() {
+        return new Client();
+    }
+
+    /**
+     * Get latencies of all statements.
+     *
+     * @return histogram of statement latencies
+     */
+    LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    private Shape getShape(String sql) {
+        Shape shape = shapesBySql.get(sql);
+        if (shape != null) return shape;
+
+        String normalizedSql = normalize(sql);
+        if (shapes.size() >= MAX_SHAPES && !shapes.containsKey(normalizedSql))
+            normalizedSql = OTHER_SHAPE;
+        shape = shapes.computeIfAbsent(normalizedSql, Shape::new);
+        if (shapesBySql.size() < MAX_SQL_CACHE)
+            shapesBySql.putIfAbsent(sql, shape);
+        return shape;
+    }
+
+    /**
+     * Get statistics of the statements with the highest total duration.
+     *
+     * @param limit maximum number of statements
+     * @return statistics of statements
+     */
+    List<String> getTopStatements(int limit) {
+        final List<Shape> values = new ArrayList<>(shapes.values());
+        values.sort((s1, s2) -> Long.compare(s2.latency.getSum(), s1.latency.getSum()));
+        final List<String> result = new ArrayList<>();
+        for (Shape shape : values.subList(0, Math.min(limit, values.size()))) {
+            final LatencyHistogram h = shape.latency;
+            result.add(String.format(Locale.ENGLISH,
+                    "count=%d total=%.1fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms rows=%d sql=%s",
+                    h.getCount(), h.getSum() / 1e6d, h.getPercentile(50), h.getPercentile(95),
+                    h.getPercentile(99), h.getMax() / 1e6d, shape.rows.sum(), shape.sql));
+        }
+        return result;
+    }
+
+    private void record(Shape shape, String sql, long duration, long updatedRows) {
+        shape.latency.record(duration);
+        if (rows && updatedRows > 0) shape.rows.add(updatedRows);
+        latency.record(duration);
+
+        if (slowThreshold > 0 && duration >= slowThreshold) {
+            SLOW_LOGGER.warn("{} ms in '{}' database, {} rows: {}",
+                    TimeUnit.NANOSECONDS.toMillis(duration), databaseName, rows ? updatedRows : -1, sql);
+        }
+    }
+
+    /**
+     * Recorder for the statements of a client connection.
+     * <p>
+     * The recorder keeps the shapes of the statements prepared by the connection. It is not thread safe and
+     * must be used only by the thread, that processes the connection.
+     */
+    class Client {
+        private final LongKeyHashMap preparedShapes = new LongKeyHashMap();
+
+        private Client() {
+            super();
+        }
+
+        /**
+         * Record a finished request of the client.
+         * <p>
+         * Executions of direct and prepared statements and the end of transactions are recorded. Other requests
+         * are ignored.
+         *
+         * @param request  finished request
+         * @param duration duration of the request in nanoseconds
+         */
+        void record(MonitoredSocket.Request request, long duration) {
+            final Shape shape;
+            final String sql;
+            switch (request.getMode()) {
+                case ResultConstants.PREPARE:
+                    final long statementId = request.getStatementId();
+                    final String preparedSql = (statementId >= 0) ? request.getSql() : null;
+                    if (preparedSql == null) return;
+                    if (preparedShapes.size() >= MAX_PREPARED_STATEMENTS) preparedShapes.clear();
+                    preparedShapes.put(statementId, getShape(preparedSql));
+                    return;
+
+                case ResultConstants.EXECUTE:
+                case ResultConstants.BATCHEXECUTE:
+                    shape = (Shape) preparedShapes.get(request.getStatementId());
+                    if (shape == null) return;
+                    sql = shape.sql;
+                    break;
+
+                case ResultConstants.EXECDIRECT:
+                    sql = request.getSql();
+                    shape = (sql != null) ? getShape(sql) : shapes.computeIfAbsent(OTHER_SHAPE, Shape::new);
+                    break;
+
+                case ResultConstants.ENDTRAN:
+                    switch (request.getTransactionType()) {
+                        case ResultConstants.TX_COMMIT:
+                        case ResultConstants.TX_COMMIT_AND_CHAIN:
+                            sql = COMMIT_SHAPE;
+                            break;
+                        case ResultConstants.TX_ROLLBACK:
+                        case ResultConstants.TX_ROLLBACK_AND_CHAIN:
+                            sql = ROLLBACK_SHAPE;
+                            break;
+                        default:
+                            return;
+                    }
+                    shape = shapes.computeIfAbsent(sql, Shape::new);
+                    break;
+
+                default:
+                    return;
+            }
+            StatementStatistics.this.record(shape, sql, duration, request.getUpdateCount());
+        }
+    }
+
+    /**
+     * Statistics of statements with the same shape.
+     */
+    private static class Shape {
+        private final String sql;
+        private final LatencyHistogram latency = LatencyHistogram.createPrecise();
+        private final LongAdder rows = new LongAdder();
+
+        private Shape(String sql) {
+            this.sql = sql;
+        }
+    }
+}
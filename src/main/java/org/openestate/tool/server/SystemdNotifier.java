@@ -0,0 +1,209 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.hsqldb.server.ServerConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Notifies systemd about the state of the server.
+ * <p>
+ * The notifications are sent to the socket given by the <code>NOTIFY_SOCKET</code> environment variable, if the
+ * server was started by a systemd unit with <code>Type=notify</code>. Java can't send datagrams to a Unix domain
+ * socket. Therefore the notifications are sent via the <code>systemd-notify</code> command, which requires
+ * <code>NotifyAccess=all</code> in the unit. The command is called with the process id of the server, so that
+ * systemd attributes the notifications to the server, even if the command has already exited.
+ * <p>
+ * If the unit configures <code>WatchdogSec</code>, the watchdog is notified periodically, as long as the server
+ * is responsive. The watchdog is not enabled by default.
+ * <p>
+ * The notifier is registered as {@link ServerStateListener}, so that the server does not wait for the command.
+ *
+ * @since 1.1
+ */
+class SystemdNotifier implements ServerStateListener {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(SystemdNotifier.class);
+
+    /**
+     * Maximal time in milliseconds to wait for the systemd-notify command.
+     */
+    private static final long COMMAND_TIMEOUT = 10000;
+    private final String command;
+    private final String pid;
+    private final long watchdogInterval;
+    private ScheduledExecutorService watchdog = null;
+    private boolean failed = false;
+
+    private SystemdNotifier(String command, String pid, long watchdogInterval) {
+        this.command = command;
+        this.pid = pid;
+        this.watchdogInterval = watchdogInterval;
+    }
+
+    /**
+     * Create notifier for the current process.
+     *
+     * @return notifier or null, if the process was not started by systemd with <code>Type=notify</code>
+     */
+    static SystemdNotifier create() {
+        if (StringUtils.isBlank(System.getenv("NOTIFY_SOCKET"))) return null;
+
+        // notify the watchdog twice within the configured interval
+        long watchdogInterval = TimeUnit.MICROSECONDS.toMillis(NumberUtils.toLong(System.getenv("WATCHDOG_USEC"), 0)) / 2;
+        final String pid = getPid();
+        final String watchdogPid = StringUtils.trimToNull(System.getenv("WATCHDOG_PID"));
+        if (watchdogPid != null && !watchdogPid.equals(pid)) watchdogInterval = 0;
+
+        return new SystemdNotifier(findCommand(), pid, watchdogInterval);
+    }
+
+    private static String findCommand() {
+        for (String dir : StringUtils.split(StringUtils.defaultString(System.getenv("PATH")), File.pathSeparatorChar)) {
+            final File file = new File(dir, "systemd-notify");
+            if (file.canExecute()) return file.getAbsolutePath();
+        }
+        return "/bin/systemd-notify";
+    }
+
+    private static String getPid() {
+        // the runtime name contains the process id in front of the host name
+        return StringUtils.substringBefore(ManagementFactory.getRuntimeMXBean().getName(), "@");
+    }
+
+    /**
+     * Get interval for notifications of the watchdog.
+     *
+     * @return interval in milliseconds or 0, if the watchdog is disabled
+     */
+    long getWatchdogInterval() {
+        return watchdogInterval;
+    }
+
+    /**
+     * Send a notification to systemd.
+     *
+     * @param assignments variable assignments to send, e.g. <code>READY=1</code>
+     * @return true, if the notification was sent successfully
+     */
+    synchronized boolean send(String... assignments) {
+        final List<String> args = new ArrayList<>();
+        args.add(command);
+        if (NumberUtils.isDigits(pid)) args.add("--pid=" + pid);
+        args.addAll(Arrays.asList(assignments));
+
+        try {
+            final Process process = new ProcessBuilder(args)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+            if (!process.waitFor(COMMAND_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroy();
+                throw new IOException("The command " + command + " did not finish in time.");
+            }
+            if (process.exitValue() != 0)
+                throw new IOException("The command " + command + " failed with exit code " + process.exitValue() + ".");
+
+            failed = false;
+            return true;
+        } catch (IOException ex) {
+            // avoid repeated warnings for the watchdog
+            if (!failed) LOGGER.warn("Can't notify systemd about " + StringUtils.join(assignments, ", ") + "!", ex);
+            failed = true;
+            return false;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void stateChanged(ServerStateEvent event) {
+        switch (event.getState()) {
+            case ServerConstants.SERVER_STATE_OPENING:
+                send("STATUS=Starting up.");
+                break;
+
+            case ServerConstants.SERVER_STATE_ONLINE:
+                // the server is ready after its databases and listeners were opened
+                send("READY=1", "STATUS=Available for incoming connections.");
+                startWatchdog(event.getServer()::isResponsive);
+                break;
+
+            case ServerConstants.SERVER_STATE_CLOSING:
+                stopWatchdog();
+                send("STOPPING=1", "STATUS=Shutting down.");
+                break;
+
+            case ServerConstants.SERVER_STATE_SHUTDOWN:
+                stopWatchdog();
+                if (event.getPreviousState() != ServerConstants.SERVER_STATE_CLOSING)
+                    send("STOPPING=1", "STATUS=Shut down.");
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Start periodic notifications of the watchdog.
+     *
+     * @param responsive tests, if the server is responsive within the given number of milliseconds
+     */
+    synchronized void startWatchdog(LongPredicate responsive) {
+        if (watchdogInterval < 1 || watchdog != null) return;
+
+        watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "SystemdWatchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchdog.scheduleWithFixedDelay(() -> {
+            try {
+                if (responsive.test(watchdogInterval / 2))
+                    send("WATCHDOG=1");
+                else
+                    LOGGER.warn("Skipping notification of the watchdog, because the server is not responsive.");
+            } catch (RuntimeException ex) {
+                LOGGER.error("Can't check, if the server is responsive!", ex);
+            }
+        }, 0, watchdogInterval, TimeUnit.MILLISECONDS);
+        LOGGER.info("Notifying the systemd watchdog every " + watchdogInterval + " ms.");
+    }
+
+    /**
+     * Stop periodic notifications of the watchdog.
+     */
+    synchronized void stopWatchdog() {
+        if (watchdog == null) return;
+        watchdog.shutdownNow();
+        watchdog = null;
+    }
+}
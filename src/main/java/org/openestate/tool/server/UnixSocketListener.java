@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+import org.openestate.tool.server.utils.UnixSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Accepts client connections on a Unix domain socket.
+ * <p>
+ * Local clients may use the HSQL protocol through a Unix domain socket instead of a TCP connection. These
+ * connections are not encrypted, even if TLS is enabled for the TCP listener.
+ *
+ * @since 1.1
+ */
+class UnixSocketListener {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnixSocketListener.class);
+    private final File file;
+    private final Consumer<Socket> handler;
+    private ServerSocketChannel channel = null;
+
+    /**
+     * Create listener.
+     *
+     * @param file    socket file
+     * @param handler processes accepted connections
+     */
+    UnixSocketListener(File file, Consumer<Socket> handler) {
+        this.file = file;
+        this.handler = handler;
+    }
+
+    /**
+     * Get socket file.
+     *
+     * @return socket file
+     */
+    File getFile() {
+        return file;
+    }
+
+    private void run(ServerSocketChannel channel) {
+        while (channel.isOpen()) {
+            final SocketChannel client;
+            try {
+                client = channel.accept();
+            } catch (ClosedChannelException ex) {
+                break;
+            } catch (IOException ex) {
+                LOGGER.error("Can't accept connection on socket " + file.getAbsolutePath() + "!", ex);
+                continue;
+            }
+
+            final UnixSocket socket = new UnixSocket(client);
+            try {
+                handler.accept(socket);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Can't process connection!", ex);
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Start listening for connections.
+     *
+     * @throws IOException if the socket can't be opened
+     */
+    synchronized void start() throws IOException {
+        if (channel != null) return;
+
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Can't create directory " + dir.getAbsolutePath() + "!");
+
+        final ServerSocketChannel serverChannel = UnixSocket.bind(file);
+        channel = serverChannel;
+        final Thread thread = new Thread(() -> run(serverChannel), "UnixSocketListener");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop listening for connections and remove the socket file.
+     */
+    synchronized void stop() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.warn("Can't close socket " + file.getAbsolutePath() + "!", ex);
+        }
+        channel = null;
+
+        if (file.exists() && !file.delete())
+            LOGGER.warn("Can't remove socket " + file.getAbsolutePath() + "!");
+    }
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.manager;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.util.Collection;
+import java.util.Locale;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.hsqldb.lib.RCData;
+import org.openestate.tool.server.ServerUtils;
+import org.openestate.tool.server.utils.AdvisorUtils;
+import org.openestate.tool.server.utils.SslUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+/**
+ * Propose indexes for a database workload.
+ * <p>
+ * This application reads statements from SQL files or from the log of slow statements written by the server and
+ * requests their execution plans from a running database. Tables, that are read by a full scan, are reported
+ * together with a proposed index. The statements of the workload are never executed.
+ *
+ * @since 1.1
+ */
+public class ManagerAdvisor {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER;
+    @SuppressWarnings("unused")
+    private static final I18n I18N = I18nFactory.getI18n(ManagerAdvisor.class);
+    private static final String HELP_OPTION = "help";
+    private static final String CONF_OPTION = "conf";
+    private static final String ID_OPTION = "id";
+    private static final String MIN_ROWS_OPTION = "minRows";
+    private static final String OUTPUT_OPTION = "output";
+    private static final String WAIT_OPTION = "wait";
+
+    static {
+        ServerUtils.init();
+
+        // Create the logger instance after initialization. This makes sure, that logging environment is properly
+        // configured before the logger is actually created.
+        LOGGER = LoggerFactory.getLogger(ManagerAdvisor.class);
+    }
+
+    /**
+     * Start index advisor application.
+     *
+     * @param args command line arguments
+     */
+    @SuppressWarnings("Duplicates")
+    public static void main(String[] args) {
+        final Options options = new Options()
+                .addOption(
+                        Option.builder(HELP_OPTION)
+                                .longOpt("help")
+                                .desc("Show usage information.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(CONF_OPTION)
+                                .longOpt("config")
+                                .hasArg()
+                                .argName("file")
+                                .desc("Configuration file with connection settings. By default manager.conf from the etc directory is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(ID_OPTION)
+                                .longOpt("urlid")
+                                .hasArg()
+                                .argName("urlid")
+                                .desc("The connection ID defined in the provided configuration file. By default the first connection from the configuration file is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(MIN_ROWS_OPTION)
+                                .longOpt("minRows")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Only propose indexes for tables with at least this number of rows. By default tables with at least 1000 rows are considered.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(OUTPUT_OPTION)
+                                .longOpt("output")
+                                .hasArg()
+                                .argName("file")
+                                .desc("Write the proposed CREATE INDEX statements into a SQL file.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(WAIT_OPTION)
+                                .longOpt("wait")
+                                .desc("Wait for user input before the application is closed.")
+                                .build()
+                );
+
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args, false);
+        } catch (ParseException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Invalid command line arguments!");
+            System.err.println(ex.getLocalizedMessage());
+            printHelp(options);
+            System.exit(1);
+            return;
+        }
+
+        // detect wait
+        final boolean wait = commandLine.hasOption(WAIT_OPTION);
+
+        if (commandLine.hasOption(HELP_OPTION)) {
+            printHelp(options);
+            if (wait) waitForEnter(false);
+            System.exit(0);
+            return;
+        }
+
+        // load workload
+        if (commandLine.getArgList().isEmpty()) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("No workload was specified!");
+            printHelp(options);
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+        final AdvisorUtils.Workload workload = new AdvisorUtils.Workload();
+        for (String arg : commandLine.getArgList()) {
+            final File f = new File(arg);
+            if (!f.isFile()) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided workload file '" + arg + "' was not found!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            try {
+                workload.load(f);
+            } catch (IOException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided workload file '" + arg + "' is not readable!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+        if (workload.getStatements().isEmpty()) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The provided workload does not contain any statements!");
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        // detect minimal number of rows
+        long minRows = 1000;
+        if (commandLine.hasOption(MIN_ROWS_OPTION)) {
+            try {
+                minRows = Long.parseLong(StringUtils.trimToEmpty(commandLine.getOptionValue(MIN_ROWS_OPTION)));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of rows is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // detect connection configuration
+        final File rcFile;
+        if (commandLine.hasOption(CONF_OPTION)) {
+            // use the configuration file provided from the command line
+            rcFile = new File(StringUtils.trimToEmpty(commandLine.getOptionValue(CONF_OPTION)));
+            if (!rcFile.isFile()) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided configuration file was not found!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        } else {
+            // use the default configuration file
+            try {
+                rcFile = new File(ServerUtils.getEtcDir(), "manager.conf");
+            } catch (IOException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("Can't find the default configuration file!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // get list of available connection id's
+        final Collection<String> urlIds;
+        try {
+            urlIds = ManagerUtils.getUrlIds(rcFile);
+        } catch (IOException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The configuration file is not readable!");
+            System.err.println(ex.getLocalizedMessage());
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+        if (urlIds.isEmpty()) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The configuration file does not contain any connections!");
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        // detect connection id
+        final String urlId;
+        if (commandLine.hasOption(ID_OPTION)) {
+            // use the connection ID provided from the command line
+            urlId = StringUtils.trimToNull(commandLine.getOptionValue(ID_OPTION));
+            if (urlId == null) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided connection ID is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            } else if (!urlIds.contains(urlId)) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The configuration file does not contain a connection with urlid '" + urlId + "'!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        } else {
+            // use the first configured connection ID
+            urlId = urlIds.iterator().next();
+        }
+
+        // trust all certificates
+        try {
+            SslUtils.installLooseSslSocketFactory();
+        } catch (Exception ex) {
+            LOGGER.warn("Can't setup SSL context!", ex);
+        }
+
+        // analyze the workload
+        LOGGER.info("Analyzing {} statements with '{}' database...", workload.getStatements().size(), urlId);
+        final AdvisorUtils.Report report;
+        try (Connection c = new RCData(rcFile, urlId).getConnection()) {
+            report = AdvisorUtils.analyze(c, workload, minRows);
+        } catch (Exception ex) {
+            LOGGER.error("Can't analyze the workload!", ex);
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Can't analyze the workload!");
+            System.err.println(ex.getLocalizedMessage());
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        for (String message : report.getSkipped()) {
+            LOGGER.warn("Skipped statement: {}", message);
+        }
+        LOGGER.info("Analyzed {} statements and found {} missing indexes.",
+                report.getAnalyzed(), report.getProposals().size());
+        printReport(report);
+
+        // write proposed indexes into a file
+        final String output = StringUtils.trimToNull(commandLine.getOptionValue(OUTPUT_OPTION));
+        if (output != null) {
+            final File outputFile = new File(output);
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8))) {
+                for (AdvisorUtils.Proposal proposal : report.getProposals()) {
+                    writer.println(String.format(Locale.ENGLISH, "-- avoids ~%d rows, %d executions, %d writes",
+                            proposal.getBenefit(), proposal.getExecutions(), proposal.getWrites()));
+                    writer.println(proposal.getSql());
+                }
+            } catch (IOException ex) {
+                LOGGER.error("Can't write proposed indexes!", ex);
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("Can't write proposed indexes to '" + outputFile.getAbsolutePath() + "'!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            LOGGER.info("Wrote proposed indexes to '{}'.", outputFile.getAbsolutePath());
+        }
+
+        if (wait) waitForEnter(true);
+    }
+
+    /**
+     * Print usage information to System.out.
+     *
+     * @param options command line options
+     */
+    private static void printHelp(Options options) {
+        final String commandLine;
+        if (SystemUtils.IS_OS_WINDOWS)
+            commandLine = "ManagerAdvisor.bat / ManagerAdvisor.exe";
+        else
+            commandLine = "ManagerAdvisor.sh";
+
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        new HelpFormatter().printHelp(
+                commandLine + " [OPTION]... [workload1] [workload2] ...",
+                "Propose indexes for a database workload. You might use the following custom settings:" + System.lineSeparator() + StringUtils.SPACE,
+                options,
+                StringUtils.SPACE + System.lineSeparator() + "Append one or more workload files after the options. A workload file might be a SQL file with statements separated by semicolons or a log of slow statements written by the server. " + System.lineSeparator() + System.lineSeparator()
+                        + "The statements are not executed. Only their execution plans are requested from the database." + System.lineSeparator() + System.lineSeparator()
+                        + "See https://manual.openestate.org for more information."
+        );
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Print proposed indexes to System.out.
+     *
+     * @param report result of the analysis
+     */
+    private static void printReport(AdvisorUtils.Report report) {
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        if (report.getProposals().isEmpty()) {
+            System.out.println("No missing indexes were found.");
+        }
+        for (AdvisorUtils.Proposal proposal : report.getProposals()) {
+            System.out.println(proposal.getSql());
+            System.out.println(String.format(Locale.ENGLISH,
+                    "  full scans of %d rows by %d statements (%d executions), ~%d rows per lookup with the index",
+                    proposal.getCardinality(), proposal.getStatements(), proposal.getExecutions(), proposal.getRowsPerLookup()));
+            System.out.println(String.format(Locale.ENGLISH,
+                    "  estimated benefit: ~%d rows not read, %d writes in the workload have to update the index",
+                    proposal.getBenefit(), proposal.getWrites()));
+            System.out.println("  example: " + StringUtils.abbreviate(StringUtils.normalizeSpace(proposal.getExample()), 200));
+        }
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Wait for the user to press ENTER before continue.
+     *
+     * @param printSeparator print a separator before the message shown to the user
+     */
+    private static void waitForEnter(boolean printSeparator) {
+        if (printSeparator) {
+            System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        }
+        System.out.println("Press ENTER to close this application.");
+        System.console().readLine();
+    }
+}
@@ -15,21 +15,30 @@
  */
 package org.openestate.tool.server.manager;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.DefaultParser;
 import org.apache.commons.cli.HelpFormatter;
@@ -37,16 +46,17 @@ import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
 import org.hsqldb.lib.RCData;
-import org.hsqldb.lib.tar.TarGenerator;
-import org.hsqldb.lib.tar.TarMalformatException;
 import org.openestate.tool.server.ServerUtils;
+import org.openestate.tool.server.utils.BackupCatalog;
+import org.openestate.tool.server.utils.CompressionUtils;
 import org.openestate.tool.server.utils.DumpUtils;
 import org.openestate.tool.server.utils.SslUtils;
+import org.openestate.tool.server.utils.TarOutputStream;
+import org.openestate.tool.server.utils.VerifyUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -72,8 +82,28 @@ public class ManagerBackup {
     private static final String DIR_OPTION = "dir";
     private static final String LIMIT_OPTION = "limit";
     private static final String DUMP_OPTION = "dump";
+    private static final String ONLINE_OPTION = "online";
+    private static final String PROBE_OPTION = "probe";
+    private static final String COMPRESSION_OPTION = "compression";
+    private static final String COMPRESSION_THREADS_OPTION = "compressionThreads";
     private static final String DELAY_OPTION = "delay";
     private static final String WAIT_OPTION = "wait";
+    private static final String PARALLEL_OPTION = "parallel";
+    private static final String DUMP_THREADS_OPTION = "dumpThreads";
+    private static final String DUMP_PAGE_SIZE_OPTION = "dumpPageSize";
+    private static final String DUMP_FETCH_SIZE_OPTION = "dumpFetchSize";
+    private static final String DUMP_DEDUPLICATE_OPTION = "dumpDeduplicate";
+    private static final String DUMP_FILE_PREFIX = "db-";
+    private static final String ARCHIVE_SUFFIX = ".tar";
+    private static final String DUMP_TIMESTAMP_FORMAT = "yyyyMMdd'T'HHmmss";
+    private static final String LOB_DIRECTORY_NAME = "lobs";
+    private static final String VERIFY_OPTION = "verify";
+    private static final String VERIFY_SUFFIX = ".verify";
+    private static final String KEEP_DAILY_OPTION = "keepDaily";
+    private static final String KEEP_WEEKLY_OPTION = "keepWeekly";
+    private static final String KEEP_MONTHLY_OPTION = "keepMonthly";
+    private static final String BUDGET_OPTION = "budget";
+    private static final String LIST_OPTION = "list";
 
     static {
         ServerUtils.init();
@@ -85,63 +115,292 @@ public class ManagerBackup {
 
     /**
      * Create a database backup.
+     * <p>
+     * A blocking backup locks the database until all files were copied. An online backup
+     * only locks the database for a checkpoint, afterwards clients may continue writing into the
+     * database while its files are copied.
+     * <p>
+     * HSQLDB compresses the backup with a single thread. Therefore an uncompressed backup is
+     * created and compressed afterwards, if a different codec or multiple threads are used for compression.
+     * In this case the uncompressed backup is kept as a temporary file in the backup directory until it was
+     * compressed, which requires additional disk space of about the size of the database.
      *
-     * @param c         database connection
-     * @param backupDir directory, where backups are stored
+     * @param c                  database connection
+     * @param backupDir          directory, where backups are stored
+     * @param online             create the backup without blocking the database
+     * @param codec              compression codec
+     * @param compressionThreads number of threads, that compress the backup concurrently
+     * @return created backup archive or null, if it can't be detected
+     * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static synchronized void doBackup(Connection c, File backupDir) throws SQLException {
+    private static File doBackup(Connection c, File backupDir, boolean online, CompressionUtils.Codec codec, int compressionThreads) throws IOException, SQLException {
         String path = StringUtils.replace(backupDir.getAbsolutePath(), "'", "\'");
+        final String blocking = (online) ? "NOT BLOCKING" : "BLOCKING";
+        final Set<File> existingFiles = new HashSet<>(Arrays.asList(
+                ObjectUtils.defaultIfNull(backupDir.listFiles(), new File[]{})));
         Statement q = c.createStatement();
-        q.execute("BACKUP DATABASE TO '" + path + "/' BLOCKING;");
+        if (codec == CompressionUtils.Codec.GZIP && compressionThreads <= 1) {
+            q.execute("BACKUP DATABASE TO '" + path + "/' " + blocking + ";");
+            return getCreatedArchive(backupDir, existingFiles);
+        }
+
+        // create an uncompressed backup
+        q.execute("BACKUP DATABASE TO '" + path + "/' NOT COMPRESSED " + blocking + ";");
+        final File archiveFile = getCreatedArchive(backupDir, existingFiles);
+        if (archiveFile == null || codec == CompressionUtils.Codec.NONE) return archiveFile;
+
+        // compress the created backup
+        final File compressedFile = new File(backupDir, archiveFile.getName() + codec.getSuffix());
+        try {
+            CompressionUtils.compress(archiveFile, compressedFile, codec, compressionThreads);
+        } finally {
+            FileUtils.deleteQuietly(archiveFile);
+        }
+        return compressedFile;
     }
 
     /**
      * Create a database dump.
+     * <p>
+     * The dumped files are streamed directly into a tar archive, that is compressed on the fly. If deduplication is enabled,
+     * LOB files are not written into the archive but into the <code>lobs</code> subdirectory of the
+     * backup directory, that is shared by all dumps of the database.
      *
-     * @param c         database connection
+     * @param c                  database connection
+     * @param connections        provider of additional database connections
+     * @param backupDir          directory, where backups are stored
+     * @param settings           settings of the dump process
+     * @param codec              compression codec
+     * @param compressionThreads number of threads, that compress the dump concurrently
+     * @return created dump archive
+     * @throws IOException  if files can't be written
+     * @throws SQLException if communication with the database failed
+     */
+    static File doDump(Connection c, DumpUtils.ConnectionProvider connections, File backupDir, DumpUtils.Settings settings, CompressionUtils.Codec codec, int compressionThreads) throws IOException, SQLException {
+        final DateFormat format = new SimpleDateFormat(DUMP_TIMESTAMP_FORMAT);
+        final File archiveFile = new File(backupDir, DUMP_FILE_PREFIX + format.format(new Date()) + ARCHIVE_SUFFIX + codec.getSuffix());
+
+        // init shared directory for deduplicated LOB files
+        if (settings.isDeduplicate()) {
+            final File lobDir = new File(backupDir, LOB_DIRECTORY_NAME);
+            if (!lobDir.exists() && !lobDir.mkdirs())
+                throw new IOException("Can't create LOB directory at '" + lobDir.getAbsolutePath() + "'!");
+            settings = new DumpUtils.Settings(settings);
+            settings.setLobDirectory(lobDir);
+        }
+
+        try (TarOutputStream archive = new TarOutputStream(CompressionUtils.compress(
+                new BufferedOutputStream(new FileOutputStream(archiveFile), 65536), codec, compressionThreads))) {
+            DumpUtils.dump(c, connections, new DumpUtils.ArchiveTarget(archive), "db", backupDir, settings);
+            archive.finish();
+        } catch (IOException | SQLException | RuntimeException ex) {
+            FileUtils.deleteQuietly(archiveFile);
+            throw ex;
+        }
+        return archiveFile;
+    }
+
+    /**
+     * Verify a created backup.
+     * <p>
+     * The backup is restored into a temporary database within the backup directory. Row counts and
+     * checksums of all tables are compared with the checksums of the source database, that were
+     * calculated before the backup was created, and the result is written next to the backup archive.
+     *
+     * @param expected  checksums of the source database at the time of the backup
+     * @param rcData    connection settings of the source database
+     * @param urlId     connection ID of the database
+     * @param archive   created backup archive
      * @param backupDir directory, where backups are stored
-     * @throws IOException           if files can't be written
-     * @throws SQLException          if communication with the database failed
-     * @throws TarMalformatException if the tar.gz archive can't be written
+     * @param dump      the archive is a database dump
+     * @return true, if the backup was verified successfully
+     * @throws IOException  if the backup can't be verified
+     * @throws SQLException if communication with the database failed
      */
-    private static synchronized void doDump(Connection c, File backupDir) throws IOException, SQLException, TarMalformatException {
-        final DateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmss");
-        final File tempDir = new File(backupDir, "temp");
-        final File archiveFile = new File(backupDir, "db-" + format.format(new Date()) + ".tar.gz");
+    private static boolean doVerify(Map<String, VerifyUtils.TableChecksum> expected, RCData rcData, String urlId, File archive, File backupDir, boolean dump) throws IOException, SQLException {
+        if (archive == null || !archive.isFile())
+            throw new IOException("Can't find the created backup of '" + urlId + "' database for verification!");
+
+        final long start = System.currentTimeMillis();
+        LOGGER.info("Verifying backup of '{}' database...", urlId);
+        final Map<String, VerifyUtils.TableChecksum> actual;
+        final File tempDir = Files.createTempDirectory(backupDir.toPath(), "verify-").toFile();
         try {
-            if (tempDir.exists())
-                FileUtils.deleteQuietly(tempDir);
-            if (!tempDir.exists() && !tempDir.mkdirs())
-                throw new IOException("Can't create temporary backup directory!");
-            if (!tempDir.isDirectory())
-                throw new IOException("The temporary backup directory is invalid!");
-
-            // save dump into temporary directory
-            DumpUtils.dump(c, tempDir, "db");
-
-            // create tar.gz archive of the temporary directory
-            TarGenerator generator = new TarGenerator(archiveFile, true, null);
-            Iterator<File> dumpedFiles = FileUtils.iterateFiles(tempDir, null, true);
-            while (dumpedFiles.hasNext()) {
-                File f = dumpedFiles.next();
-                if (f.isDirectory()) continue;
-                String tarPath = f.getAbsolutePath().substring(
-                        tempDir.getAbsolutePath().length() + 1);
-                generator.queueEntry(tarPath, f);
-            }
-
-            // TarGenerator writes stuff to System.err, that we like to ignore.
-            final PrintStream err = System.err;
-            try {
-                System.setErr(new PrintStream(new NullOutputStream()));
-                generator.write();
-            } finally {
-                System.setErr(err);
-            }
+            if (dump)
+                actual = VerifyUtils.checksumDump(archive, tempDir, rcData.username, rcData.password);
+            else
+                actual = VerifyUtils.checksumBackup(archive, tempDir, rcData.username, rcData.password);
         } finally {
             FileUtils.deleteQuietly(tempDir);
         }
+
+        final List<String> differences = VerifyUtils.compare(expected, actual);
+        VerifyUtils.writeReport(new File(backupDir, archive.getName() + VERIFY_SUFFIX), archive, expected, actual, differences);
+        if (!differences.isEmpty()) {
+            for (String difference : differences) {
+                LOGGER.error("Verification of '{}' database failed: {}", urlId, difference);
+            }
+            return false;
+        }
+        LOGGER.info("Verified {} tables of '{}' database after {} ms.", expected.size(), urlId, System.currentTimeMillis() - start);
+        return true;
+    }
+
+    /**
+     * Get the backup archive, that was created by HSQLDB.
+     *
+     * @param backupDir     directory, where backups are stored
+     * @param existingFiles files, that were present before the backup was created
+     * @return created backup archive or null, if it can't be detected
+     */
+    private static File getCreatedArchive(File backupDir, Set<File> existingFiles) {
+        for (File f : ObjectUtils.defaultIfNull(backupDir.listFiles(), new File[]{})) {
+            if (!existingFiles.contains(f) && f.isFile() && f.getName().contains(ARCHIVE_SUFFIX)) return f;
+        }
+        return null;
+    }
+
+    /**
+     * Create a catalog entry for a backup, that was created before the catalog.
+     * <p>
+     * The creation time is taken from the file name, if possible. Otherwise the modification
+     * time of the file is used.
+     *
+     * @param f backup file
+     * @return catalog entry or null, if the file is not a backup archive
+     */
+    private static BackupCatalog.Entry importBackup(File f) {
+        final String name = f.getName();
+        final int suffixPos = name.indexOf(ARCHIVE_SUFFIX);
+        if (suffixPos < 0 || name.endsWith(VERIFY_SUFFIX) || name.endsWith(".tmp")) return null;
+
+        long created = f.lastModified();
+        final int prefixPos = name.lastIndexOf('-', suffixPos);
+        if (prefixPos >= 0) {
+            try {
+                created = new SimpleDateFormat(DUMP_TIMESTAMP_FORMAT).parse(name.substring(prefixPos + 1, suffixPos)).getTime();
+            } catch (java.text.ParseException ex) {
+                LOGGER.warn("Can't detect creation time of backup at '{}'!", f.getAbsolutePath());
+            }
+        }
+
+        final BackupCatalog.Entry entry = new BackupCatalog.Entry(name, BackupCatalog.Type.UNKNOWN, created);
+        entry.setSize(f.length());
+        return entry;
+    }
+
+    /**
+     * Create a backup of a single database and remove its outdated backups afterwards.
+     * <p>
+     * Every call uses its own connection, backup directory and catalog,
+     * so that multiple databases may be processed concurrently.
+     *
+     * @param rcFile             configuration file with connection settings
+     * @param urlId              connection ID of the database to backup
+     * @param targetDir          directory, where backups are stored
+     * @param dump               create a database dump instead of copying the raw database files
+     * @param online             create the backup without blocking the database
+     * @param probe              measure write stalls during an online backup
+     * @param verify             verify the backup after it was created
+     * @param codec              compression codec
+     * @param compressionThreads number of threads, that compress the backup concurrently
+     * @param dumpSettings       settings for the creation of database dumps
+     * @param retention          policy for automatic removal of outdated backups
+     * @throws Exception if the backup failed
+     */
+    private static void doBackupDatabase(File rcFile, String urlId, File targetDir, boolean dump, boolean online, boolean probe, boolean verify, CompressionUtils.Codec codec, int compressionThreads, DumpUtils.Settings dumpSettings, BackupCatalog.RetentionPolicy retention) throws Exception {
+        final long start = System.currentTimeMillis();
+        if (dump)
+            LOGGER.info("Creating dump of '{}' database...", urlId);
+        else
+            LOGGER.info("Creating backup of '{}' database...", urlId);
+
+        // get connection settings
+        final RCData rcData;
+        try {
+            rcData = new RCData(rcFile, urlId);
+        } catch (Exception ex) {
+            throw new IOException("Can't read connection configuration (" + ex.getLocalizedMessage() + ")!", ex);
+        }
+
+        // init backup directory
+        final File backupDir = new File(targetDir, urlId);
+        if (!backupDir.exists() && !backupDir.mkdirs())
+            throw new IOException("Can't create backup directory at '" + backupDir.getAbsolutePath() + "'!");
+        if (!backupDir.isDirectory())
+            throw new IOException("Invalid backup directory at '" + backupDir.getAbsolutePath() + "'!");
+        final BackupCatalog catalog = BackupCatalog.load(backupDir, ManagerBackup::importBackup);
+
+        // execute backup process
+        try (Connection c = rcData.getConnection()) {
+            // Checksums of the source database are calculated before and after the backup. The backup
+            // is only verified against them, if the database was not modified in the meantime.
+            final Map<String, VerifyUtils.TableChecksum> expected = (verify) ? VerifyUtils.checksum(c) : null;
+
+            final File archive;
+            if (dump) {
+                archive = doDump(c, () -> getConnection(rcData), backupDir, dumpSettings, codec, compressionThreads);
+            } else {
+                final WriteStallProbe stallProbe = (online && probe) ? WriteStallProbe.start(rcData, urlId) : null;
+                try {
+                    archive = doBackup(c, backupDir, online, codec, compressionThreads);
+                } finally {
+                    if (stallProbe != null) stallProbe.stop();
+                }
+            }
+            if (archive == null || !archive.isFile())
+                throw new IOException("Can't find the created backup of '" + urlId + "' database!");
+            LOGGER.info("Backup of '{}' database finished after {} ms.", urlId, System.currentTimeMillis() - start);
+
+            // register the created backup in the catalog
+            final BackupCatalog.Entry entry = new BackupCatalog.Entry(
+                    archive.getName(), (dump) ? BackupCatalog.Type.DUMP : BackupCatalog.Type.BACKUP, start);
+            entry.setDuration(System.currentTimeMillis() - start);
+            entry.setSize(archive.length());
+            entry.setChecksum(BackupCatalog.checksum(archive));
+
+            // verify the created backup
+            if (verify) {
+                try {
+                    if (!VerifyUtils.compare(expected, VerifyUtils.checksum(c)).isEmpty()) {
+                        LOGGER.warn("Skipping verification of '{}' database, because it was modified while the backup was created.", urlId);
+                    } else {
+                        entry.setVerification((doVerify(expected, rcData, urlId, archive, backupDir, dump)) ?
+                                BackupCatalog.Verification.OK : BackupCatalog.Verification.FAILED);
+                    }
+                } catch (IOException | SQLException | RuntimeException ex) {
+                    entry.setVerification(BackupCatalog.Verification.FAILED);
+                    catalog.add(entry);
+                    catalog.save();
+                    throw ex;
+                }
+            }
+            catalog.add(entry);
+            catalog.save();
+            if (entry.getVerification() == BackupCatalog.Verification.FAILED)
+                throw new IOException("Verification of backup '" + archive.getAbsolutePath() + "' failed!");
+        }
+
+        // remove outdated backup files
+        if (retention.isEnabled()) {
+            removeOutdatedBackups(catalog, urlId, retention);
+        }
+    }
+
+    /**
+     * Open a database connection.
+     *
+     * @param rcData connection settings
+     * @return database connection
+     * @throws SQLException if the connection can't be established
+     */
+    private static Connection getConnection(RCData rcData) throws SQLException {
+        try {
+            return rcData.getConnection();
+        } catch (ClassNotFoundException | MalformedURLException ex) {
+            throw new SQLException("Can't open database connection!", ex);
+        }
     }
 
     /**
@@ -190,12 +449,122 @@ public class ManagerBackup {
                                 .desc("Set the maximum number of backups to keep per database. Oldest backup files are removed if the limit is exceeded. Set this value to 0 in order to disable automatic removal. By default 5 backups are kept per database.")
                                 .build()
                 )
+                .addOption(
+                        Option.builder(KEEP_DAILY_OPTION)
+                                .longOpt("keepDaily")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Additionally keep the latest backup of the provided number of days per database.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(KEEP_WEEKLY_OPTION)
+                                .longOpt("keepWeekly")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Additionally keep the latest backup of the provided number of weeks per database.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(KEEP_MONTHLY_OPTION)
+                                .longOpt("keepMonthly")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Additionally keep the latest backup of the provided number of months per database.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(BUDGET_OPTION)
+                                .longOpt("budget")
+                                .hasArg()
+                                .argName("megabytes")
+                                .desc("Set the maximum size of all backups in the target directory. Oldest backups of any database are removed if the budget is exceeded. The latest backup of every database is always kept. By default the size of backups is not limited.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(LIST_OPTION)
+                                .longOpt("list")
+                                .desc("Show the available backups of the databases from their catalog instead of creating new backups.")
+                                .build()
+                )
                 .addOption(
                         Option.builder(DUMP_OPTION)
                                 .longOpt("dump")
                                 .desc("Create a database dump instead of copying the raw database files.")
                                 .build()
                 )
+                .addOption(
+                        Option.builder(ONLINE_OPTION)
+                                .longOpt("online")
+                                .desc("Create the backup without blocking clients, that write into the database while its files are copied. By default the database is locked until the backup is finished. This option is ignored for database dumps.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(PROBE_OPTION)
+                                .longOpt("probe")
+                                .desc("Measure, how long clients were stalled while writing into the database during an online backup. A separate connection periodically writes into a temporary table of its own session. This option is only used together with --online.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(VERIFY_OPTION)
+                                .longOpt("verify")
+                                .desc("Verify every created backup by restoring it into a temporary database and comparing row counts and checksums of all tables with the source database. The result is written next to the backup into a file with .verify suffix. Verification is skipped, if the source database was modified while the backup was created.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(COMPRESSION_OPTION)
+                                .longOpt("compression")
+                                .hasArg()
+                                .argName("codec")
+                                .desc("Set the compression of backup archives. Use \"none\" for uncompressed archives, \"gzip\" for default gzip compression or \"fast\" for faster gzip compression with larger archives. By default gzip is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(COMPRESSION_THREADS_OPTION)
+                                .longOpt("compressionThreads")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Set the number of threads, that compress a backup archive concurrently. By default a single thread is used and HSQLDB compresses backups by itself. Otherwise an uncompressed backup is created temporarily in the backup directory and compressed afterwards, which requires additional disk space.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DUMP_THREADS_OPTION)
+                                .longOpt("dumpThreads")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Set the number of connections, that export LOB's concurrently when a database dump is created. By default LOB's are exported through a single connection.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DUMP_PAGE_SIZE_OPTION)
+                                .longOpt("dumpPageSize")
+                                .hasArg()
+                                .argName("rows")
+                                .desc("Set the maximum number of rows, that are selected by a single query when LOB's are exported into a database dump. By default all rows of a table are selected at once.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DUMP_FETCH_SIZE_OPTION)
+                                .longOpt("dumpFetchSize")
+                                .hasArg()
+                                .argName("rows")
+                                .desc("Set the number of rows, that are fetched from the database at once when LOB's are exported into a database dump. By default the fetch size of the JDBC driver is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DUMP_DEDUPLICATE_OPTION)
+                                .longOpt("dumpDeduplicate")
+                                .desc("Store LOB's of database dumps by the hash of their content in the lobs subfolder of the backup directory. Identical LOB's are stored only once for all dumps of a database. Extract the dump into the backup directory in order to restore it.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(PARALLEL_OPTION)
+                                .longOpt("parallel")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Set the maximum number of databases, that are backed up at the same time. By default databases are backed up one after another.")
+                                .build()
+                )
                 .addOption(
                         Option.builder(DELAY_OPTION)
                                 .longOpt("delay")
@@ -358,11 +727,29 @@ public class ManagerBackup {
             return;
         }
 
+        // list available backups
+        if (commandLine.hasOption(LIST_OPTION)) {
+            try {
+                listBackups(targetDir, urlIdsToBackup);
+            } catch (IOException ex) {
+                LOGGER.error("Can't list backups!", ex);
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("Can't list backups!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            if (wait) waitForEnter(false);
+            return;
+        }
+
+        final BackupCatalog.RetentionPolicy retention = new BackupCatalog.RetentionPolicy();
+
         // detect backup limit
-        final int limit;
         if (commandLine.hasOption(LIMIT_OPTION)) {
             try {
-                limit = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(LIMIT_OPTION)));
+                retention.setLatest(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(LIMIT_OPTION))));
             } catch (NumberFormatException ex) {
                 System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
                 System.err.println("The provided limit is invalid!");
@@ -371,104 +758,397 @@ public class ManagerBackup {
                 return;
             }
         } else {
-            limit = 5;
+            retention.setLatest(5);
+        }
+
+        // detect number of daily backups to keep
+        if (commandLine.hasOption(KEEP_DAILY_OPTION)) {
+            try {
+                retention.setDaily(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(KEEP_DAILY_OPTION))));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of daily backups is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // detect number of weekly backups to keep
+        if (commandLine.hasOption(KEEP_WEEKLY_OPTION)) {
+            try {
+                retention.setWeekly(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(KEEP_WEEKLY_OPTION))));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of weekly backups is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // detect number of monthly backups to keep
+        if (commandLine.hasOption(KEEP_MONTHLY_OPTION)) {
+            try {
+                retention.setMonthly(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(KEEP_MONTHLY_OPTION))));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of monthly backups is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // detect disk budget for all backups
+        final long budget;
+        if (commandLine.hasOption(BUDGET_OPTION)) {
+            try {
+                budget = Long.parseLong(StringUtils.trimToEmpty(commandLine.getOptionValue(BUDGET_OPTION))) * FileUtils.ONE_MB;
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided budget is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        } else {
+            budget = 0;
         }
 
         // detect dump
         final boolean dump = commandLine.hasOption(DUMP_OPTION);
+        final boolean online = commandLine.hasOption(ONLINE_OPTION);
+        final boolean probe = online && commandLine.hasOption(PROBE_OPTION);
+        final boolean verify = commandLine.hasOption(VERIFY_OPTION);
 
-        // trust all certificates
-        try {
-            SslUtils.installLooseSslSocketFactory();
-        } catch (Exception ex) {
-            LOGGER.warn("Can't setup SSL context!", ex);
+        // detect compression codec
+        final CompressionUtils.Codec codec;
+        if (commandLine.hasOption(COMPRESSION_OPTION)) {
+            codec = CompressionUtils.Codec.forName(commandLine.getOptionValue(COMPRESSION_OPTION));
+            if (codec == null) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided compression is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        } else {
+            codec = CompressionUtils.Codec.GZIP;
         }
 
-        // process database backup
-        int count = 0;
-        for (String urlId : urlIdsToBackup) {
-            if (dump)
-                LOGGER.info("Creating dump of '{}' database...", urlId);
-            else
-                LOGGER.info("Creating backup of '{}' database...", urlId);
+        // detect number of threads for compression
+        final int compressionThreads;
+        if (commandLine.hasOption(COMPRESSION_THREADS_OPTION)) {
+            try {
+                compressionThreads = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(COMPRESSION_THREADS_OPTION)));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of compression threads is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            if (compressionThreads < 1) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("At least one compression thread is required!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        } else {
+            compressionThreads = 1;
+        }
+        final DumpUtils.Settings dumpSettings = new DumpUtils.Settings();
 
-            // get connection settings
-            final RCData rcData;
+        // detect number of threads for database dumps
+        if (commandLine.hasOption(DUMP_THREADS_OPTION)) {
+            final int dumpThreads;
             try {
-                rcData = new RCData(rcFile, urlId);
-            } catch (Exception ex) {
-                LOGGER.error("Can't read connection configuration!", ex);
+                dumpThreads = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(DUMP_THREADS_OPTION)));
+            } catch (NumberFormatException ex) {
                 System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
-                System.err.println("Can't read connection configuration (" + ex.getLocalizedMessage() + ")!");
+                System.err.println("The provided number of dump threads is invalid!");
                 if (wait) waitForEnter(true);
                 System.exit(1);
                 return;
             }
+            if (dumpThreads < 1) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of dump threads is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            dumpSettings.setThreads(dumpThreads);
+        }
 
-            // init backup directory
-            final File backupDir = new File(targetDir, urlId);
-            if (!backupDir.exists() && !backupDir.mkdirs()) {
-                LOGGER.error("Can't create backup directory at '{}'!", backupDir.getAbsolutePath());
+        // detect page size for database dumps
+        if (commandLine.hasOption(DUMP_PAGE_SIZE_OPTION)) {
+            final int dumpPageSize;
+            try {
+                dumpPageSize = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(DUMP_PAGE_SIZE_OPTION)));
+            } catch (NumberFormatException ex) {
                 System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
-                System.err.println("Can't create backup directory at '" + backupDir.getAbsolutePath() + "'!");
+                System.err.println("The provided page size for dumps is invalid!");
                 if (wait) waitForEnter(true);
                 System.exit(1);
                 return;
             }
-            if (!backupDir.isDirectory()) {
-                LOGGER.error("Invalid backup directory at '{}'!", backupDir.getAbsolutePath());
+            dumpSettings.setPageSize(Math.max(0, dumpPageSize));
+        }
+
+        // detect fetch size for database dumps
+        if (commandLine.hasOption(DUMP_FETCH_SIZE_OPTION)) {
+            final int dumpFetchSize;
+            try {
+                dumpFetchSize = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(DUMP_FETCH_SIZE_OPTION)));
+            } catch (NumberFormatException ex) {
                 System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
-                System.err.println("Invalid backup directory at '" + backupDir.getAbsolutePath() + "'!");
+                System.err.println("The provided fetch size for dumps is invalid!");
                 if (wait) waitForEnter(true);
                 System.exit(1);
                 return;
             }
+            dumpSettings.setFetchSize(Math.max(0, dumpFetchSize));
+        }
 
-            // execute backup process
-            try (Connection c = rcData.getConnection()) {
-                if (dump)
-                    doDump(c, backupDir);
-                else
-                    doBackup(c, backupDir);
+        // detect deduplication of LOB's for database dumps
+        dumpSettings.setDeduplicate(commandLine.hasOption(DUMP_DEDUPLICATE_OPTION));
 
-                count++;
-            } catch (Exception ex) {
-                LOGGER.error("Backup failed for '" + urlId + "' database!", ex);
+        // detect number of parallel backups
+        final int parallel;
+        if (commandLine.hasOption(PARALLEL_OPTION)) {
+            try {
+                parallel = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(PARALLEL_OPTION)));
+            } catch (NumberFormatException ex) {
                 System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
-                System.err.println("Backup failed for '" + urlId + "' (" + ex.getLocalizedMessage() + ")!");
+                System.err.println("The provided number of parallel backups is invalid!");
                 if (wait) waitForEnter(true);
                 System.exit(1);
+                return;
+            }
+            if (parallel < 1) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of parallel backups is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
             }
+        } else {
+            parallel = 1;
+        }
 
-            // remove outdated backup files
-            if (limit > 0) {
-                TreeMap<Long, File> backupFiles = new TreeMap<>();
-                for (File f : ObjectUtils.defaultIfNull(backupDir.listFiles(), new File[]{})) {
-                    if (!f.isFile()) continue;
-                    long stamp = f.lastModified();
-                    while (backupFiles.containsKey(stamp)) {
-                        stamp++;
-                    }
-                    backupFiles.put(stamp, f);
-                }
-                while (backupFiles.size() > limit) {
-                    Map.Entry<Long, File> entry = backupFiles.firstEntry();
-                    File f = entry.getValue();
-                    LOGGER.info("Removing outdated backup for '{}' database at '{}'...", urlId, f.getAbsolutePath());
-                    FileUtils.deleteQuietly(f);
-                    backupFiles.remove(entry.getKey());
-                }
+        // trust all certificates
+        try {
+            SslUtils.installLooseSslSocketFactory();
+        } catch (Exception ex) {
+            LOGGER.warn("Can't setup SSL context!", ex);
+        }
+
+        // process database backups
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallel, urlIdsToBackup.size()));
+        final Map<String, Future<Void>> backups = new LinkedHashMap<>();
+        try {
+            for (final String urlId : urlIdsToBackup) {
+                backups.put(urlId, executor.submit(() -> {
+                    doBackupDatabase(rcFile, urlId, targetDir, dump, online, probe, verify, codec, compressionThreads, dumpSettings, retention);
+                    return null;
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // collect results of database backups
+        final List<String> failedUrlIds = new ArrayList<>();
+        for (Map.Entry<String, Future<Void>> backup : backups.entrySet()) {
+            final String urlId = backup.getKey();
+            try {
+                backup.getValue().get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                LOGGER.error("Backup was interrupted for '" + urlId + "' database!", ex);
+                failedUrlIds.add(urlId);
+            } catch (ExecutionException ex) {
+                final Throwable cause = ObjectUtils.defaultIfNull(ex.getCause(), ex);
+                LOGGER.error("Backup failed for '" + urlId + "' database!", cause);
+                System.err.println("Backup failed for '" + urlId + "' (" + cause.getLocalizedMessage() + ")!");
+                failedUrlIds.add(urlId);
             }
         }
 
+        // remove outdated backups of all databases, if the budget is exceeded
+        if (budget > 0) {
+            removeBackupsOverBudget(targetDir, budget);
+        }
+
+        final int count = backups.size() - failedUrlIds.size();
         if (count == 1)
             LOGGER.info("One backup was saved at '" + targetDir.getAbsolutePath() + "'.");
         else
             LOGGER.info(count + " backups were saved at '" + targetDir.getAbsolutePath() + "'.");
 
+        if (!failedUrlIds.isEmpty()) {
+            LOGGER.error("Backup failed for {} of {} databases ({}).",
+                    failedUrlIds.size(), backups.size(), StringUtils.join(failedUrlIds, ", "));
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Backup failed for " + failedUrlIds.size() + " of " + backups.size() + " databases (" + StringUtils.join(failedUrlIds, ", ") + ")!");
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
         if (wait) waitForEnter(true);
     }
 
+    /**
+     * Print the backups of databases to System.out.
+     *
+     * @param targetDir directory, where backups are stored
+     * @param urlIds    connection ID's of the databases
+     * @throws IOException if a catalog can't be read
+     */
+    private static void listBackups(File targetDir, List<String> urlIds) throws IOException {
+        final DateFormat format = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.MEDIUM);
+        for (String urlId : urlIds) {
+            final File backupDir = new File(targetDir, urlId);
+            System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            if (!backupDir.isDirectory()) {
+                System.out.println(urlId + ": no backups");
+                continue;
+            }
+            final BackupCatalog catalog = BackupCatalog.load(backupDir, ManagerBackup::importBackup);
+            System.out.println(urlId + ": " + catalog.getEntries().size() + " backups with "
+                    + FileUtils.byteCountToDisplaySize(catalog.getSize()));
+            for (BackupCatalog.Entry entry : catalog.getEntries()) {
+                System.out.println(String.format("%-30s %-8s %-20s %8s ms %10s %s",
+                        entry.getName(),
+                        entry.getType(),
+                        format.format(new Date(entry.getCreated())),
+                        entry.getDuration(),
+                        FileUtils.byteCountToDisplaySize(entry.getSize()),
+                        entry.getVerification()));
+            }
+        }
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Remove a backup and its related files.
+     *
+     * @param catalog catalog of the database
+     * @param entry   backup to remove
+     * @param urlId   connection ID of the database
+     */
+    private static void removeBackup(BackupCatalog catalog, BackupCatalog.Entry entry, String urlId) {
+        final File f = new File(catalog.getDirectory(), entry.getName());
+        LOGGER.info("Removing outdated backup for '{}' database at '{}'...", urlId, f.getAbsolutePath());
+        FileUtils.deleteQuietly(f);
+        FileUtils.deleteQuietly(new File(catalog.getDirectory(), entry.getName() + VERIFY_SUFFIX));
+        catalog.remove(entry);
+    }
+
+    /**
+     * Remove backups of a database, that are not kept by the retention policy.
+     * <p>
+     * Backups are selected from the catalog of the database, so that the backup directory does not have to be
+     * scanned. Backups, that failed verification, are always removed.
+     *
+     * @param catalog   catalog of the database
+     * @param urlId     connection ID of the database
+     * @param retention policy for automatic removal of outdated backups
+     * @throws IOException if the catalog can't be written
+     */
+    private static void removeOutdatedBackups(BackupCatalog catalog, String urlId, BackupCatalog.RetentionPolicy retention) throws IOException {
+        final List<BackupCatalog.Entry> outdated = retention.selectOutdated(catalog);
+        if (outdated.isEmpty()) return;
+        for (BackupCatalog.Entry entry : outdated) {
+            removeBackup(catalog, entry, urlId);
+        }
+        catalog.save();
+        removeUnusedLobs(catalog, urlId);
+    }
+
+    /**
+     * Remove the oldest backups of all databases, if their total size exceeds the budget.
+     * <p>
+     * The sizes are taken from the catalogs of the databases. The latest valid backup of every database
+     * is always kept. Deduplicated LOB files are not counted.
+     *
+     * @param targetDir directory, where backups are stored
+     * @param budget    maximum size of all backups in bytes
+     */
+    private static void removeBackupsOverBudget(File targetDir, long budget) {
+        final Map<BackupCatalog.Entry, BackupCatalog> entries = new LinkedHashMap<>();
+        long size = 0;
+        for (File backupDir : ObjectUtils.defaultIfNull(targetDir.listFiles(), new File[]{})) {
+            if (!new File(backupDir, BackupCatalog.FILE_NAME).isFile()) continue;
+            final BackupCatalog catalog;
+            try {
+                catalog = BackupCatalog.load(backupDir, ManagerBackup::importBackup);
+            } catch (IOException ex) {
+                LOGGER.error("Can't read backup catalog at '" + backupDir.getAbsolutePath() + "'!", ex);
+                continue;
+            }
+            final BackupCatalog.Entry latest = catalog.getLatestValid();
+            for (BackupCatalog.Entry entry : catalog.getEntries()) {
+                size += entry.getSize();
+                if (entry != latest) entries.put(entry, catalog);
+            }
+        }
+        if (size <= budget) return;
+
+        // remove the oldest backups first
+        final List<BackupCatalog.Entry> candidates = new ArrayList<>(entries.keySet());
+        candidates.sort((e1, e2) -> Long.compare(e1.getCreated(), e2.getCreated()));
+        final Set<BackupCatalog> modifiedCatalogs = new HashSet<>();
+        for (BackupCatalog.Entry entry : candidates) {
+            if (size <= budget) break;
+            final BackupCatalog catalog = entries.get(entry);
+            removeBackup(catalog, entry, catalog.getDirectory().getName());
+            modifiedCatalogs.add(catalog);
+            size -= entry.getSize();
+        }
+        for (BackupCatalog catalog : modifiedCatalogs) {
+            try {
+                catalog.save();
+            } catch (IOException ex) {
+                LOGGER.error("Can't write backup catalog at '" + catalog.getFile().getAbsolutePath() + "'!", ex);
+            }
+            removeUnusedLobs(catalog, catalog.getDirectory().getName());
+        }
+        if (size > budget)
+            LOGGER.warn("Backups are still using {} of {} after removal of outdated backups.",
+                    FileUtils.byteCountToDisplaySize(size), FileUtils.byteCountToDisplaySize(budget));
+    }
+
+    /**
+     * Remove deduplicated LOB files of a database, that are not used by any of its remaining dumps.
+     * <p>
+     * Every dump updates the modification time of its LOB files, therefore files modified before the
+     * oldest remaining dump was started are not used anymore.
+     *
+     * @param catalog catalog of the database
+     * @param urlId   connection ID of the database
+     */
+    private static void removeUnusedLobs(BackupCatalog catalog, String urlId) {
+        final File lobDir = new File(catalog.getDirectory(), LOB_DIRECTORY_NAME);
+        if (!lobDir.isDirectory()) return;
+        long oldestDump = Long.MAX_VALUE;
+        for (BackupCatalog.Entry entry : catalog.getEntries()) {
+            if (entry.getType() == BackupCatalog.Type.BACKUP) continue;
+            oldestDump = Math.min(oldestDump, entry.getCreated());
+        }
+        if (oldestDump == Long.MAX_VALUE) return;
+        int removedLobs = 0;
+        for (File f : ObjectUtils.defaultIfNull(lobDir.listFiles(), new File[]{})) {
+            if (f.isFile() && f.lastModified() < oldestDump && f.delete()) removedLobs++;
+        }
+        if (removedLobs > 0)
+            LOGGER.info("Removed {} unused LOB files for '{}' database.", removedLobs, urlId);
+    }
+
     /**
      * Print usage information to System.out.
      *
@@ -503,4 +1183,101 @@ public class ManagerBackup {
         System.out.println("Press ENTER to close this application.");
         System.console().readLine();
     }
+
+    /**
+     * Measure, how long clients are stalled while writing into the database.
+     * <p>
+     * A separate connection periodically writes into a temporary table of its own session and records the latency.
+     * The statement passes the same transaction handling as other writers, but never touches tables of the database.
+     * Therefore no triggers are fired and no table locks are taken, that would compete with the measured backup.
+     */
+    private static class WriteStallProbe implements Runnable {
+        private static final long INTERVAL = 50;
+        private static final long STALL_THRESHOLD = 100;
+        private static final String PROBE_TABLE = "MANAGERBACKUP_PROBE";
+        private final String urlId;
+        private final Connection connection;
+        private final String statement;
+        private final Thread thread;
+        private volatile boolean running = true;
+        private long maxLatency = 0;
+        private long totalStall = 0;
+
+        private WriteStallProbe(String urlId, Connection connection, String statement) {
+            this.urlId = urlId;
+            this.connection = connection;
+            this.statement = statement;
+            this.thread = new Thread(this, "backup-probe-" + urlId);
+            this.thread.setDaemon(true);
+        }
+
+        /**
+         * Start measurement of write stalls.
+         *
+         * @param rcData connection settings
+         * @param urlId  connection ID of the database
+         * @return started probe or null, if the probe can't be started
+         */
+        private static WriteStallProbe start(RCData rcData, String urlId) {
+            Connection c = null;
+            try {
+                c = getConnection(rcData);
+                c.setAutoCommit(true);
+
+                // the temporary table is only visible to this session and removed, when the connection is closed
+                try (Statement s = c.createStatement()) {
+                    s.execute("DECLARE LOCAL TEMPORARY TABLE " + PROBE_TABLE + " (id INT);");
+                }
+
+                final WriteStallProbe probe = new WriteStallProbe(urlId, c, "DELETE FROM SESSION." + PROBE_TABLE + ";");
+                probe.thread.start();
+                return probe;
+            } catch (SQLException ex) {
+                LOGGER.warn("Can't measure write stalls of '{}' database!", urlId, ex);
+                if (c != null) {
+                    try {
+                        c.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+                return null;
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Statement q = connection.createStatement()) {
+                while (running) {
+                    final long start = System.currentTimeMillis();
+                    q.executeUpdate(statement);
+                    final long latency = System.currentTimeMillis() - start;
+                    maxLatency = Math.max(maxLatency, latency);
+                    if (latency >= STALL_THRESHOLD) totalStall += latency;
+                    Thread.sleep(INTERVAL);
+                }
+            } catch (SQLException ex) {
+                LOGGER.warn("Can't measure write stalls of '{}' database!", urlId, ex);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Stop measurement of write stalls and log the result.
+         */
+        private void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                LOGGER.warn("Can't close connection!", ex);
+            }
+            LOGGER.info("Writers of '{}' database were stalled for {} ms at most and for {} ms in total.", urlId, maxLatency, totalStall);
+        }
+    }
 }
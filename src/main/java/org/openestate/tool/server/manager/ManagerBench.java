@@ -0,0 +1,568 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.manager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.hsqldb.Database;
+import org.hsqldb.lib.RCData;
+import org.hsqldb.server.ServerConstants;
+import org.openestate.tool.server.Server;
+import org.openestate.tool.server.ServerProperties;
+import org.openestate.tool.server.ServerUtils;
+import org.openestate.tool.server.utils.BenchUtils;
+import org.openestate.tool.server.utils.DumpUtils;
+import org.openestate.tool.server.utils.LatencyHistogram;
+import org.openestate.tool.server.utils.SslUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measure the performance of a database server with a generated workload.
+ * <p>
+ * This application connects concurrent clients to a database and executes reading, writing and LOB operations
+ * modeled on the usage of OpenEstate-ImmoTool. Throughput and latencies of the operations are reported afterwards.
+ * Optionally an embedded server is started on a free local port, so that no running server is required.
+ *
+ * @since 1.1
+ */
+public class ManagerBench {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER;
+    private static final String HELP_OPTION = "help";
+    private static final String CONF_OPTION = "conf";
+    private static final String ID_OPTION = "id";
+    private static final String EMBEDDED_OPTION = "embedded";
+    private static final String SERVER_OPTION = "server";
+    private static final String CLIENTS_OPTION = "clients";
+    private static final String DURATION_OPTION = "duration";
+    private static final String WARMUP_OPTION = "warmup";
+    private static final String WORKLOAD_OPTION = "workload";
+    private static final String ROWS_OPTION = "rows";
+    private static final String LOB_SIZE_OPTION = "lobSize";
+    private static final String LOBS_OPTION = "lobs";
+    private static final String KEEP_OPTION = "keep";
+    private static final String WAIT_OPTION = "wait";
+    private static final String EMBEDDED_DATABASE = "bench";
+
+    static {
+        ServerUtils.init();
+
+        // Create the logger instance after initialization. This makes sure, that logging environment is properly
+        // configured before the logger is actually created.
+        LOGGER = LoggerFactory.getLogger(ManagerBench.class);
+    }
+
+    /**
+     * Start benchmark application.
+     *
+     * @param args command line arguments
+     */
+    @SuppressWarnings("Duplicates")
+    public static void main(String[] args) {
+        final Options options = new Options()
+                .addOption(
+                        Option.builder(HELP_OPTION)
+                                .longOpt("help")
+                                .desc("Show usage information.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(CONF_OPTION)
+                                .longOpt("config")
+                                .hasArg()
+                                .argName("file")
+                                .desc("Configuration file with connection settings. By default manager.conf from the etc directory is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(ID_OPTION)
+                                .longOpt("urlid")
+                                .hasArg()
+                                .argName("urlid")
+                                .desc("The connection ID defined in the provided configuration file. By default the first connection from the configuration file is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(EMBEDDED_OPTION)
+                                .longOpt("embedded")
+                                .desc("Start an embedded server with a temporary database on a free local port instead of connecting to a configured server.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(SERVER_OPTION)
+                                .longOpt("server")
+                                .hasArg()
+                                .argName("file")
+                                .desc("Server configuration for the embedded server. Configured databases, ports and addresses are ignored. Implies --embedded.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(CLIENTS_OPTION)
+                                .longOpt("clients")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Number of concurrent clients. By default 4 clients are used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DURATION_OPTION)
+                                .longOpt("duration")
+                                .hasArg()
+                                .argName("seconds")
+                                .desc("Duration of the measurement. By default the workload is measured for 30 seconds.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(WARMUP_OPTION)
+                                .longOpt("warmup")
+                                .hasArg()
+                                .argName("seconds")
+                                .desc("Duration of the warmup phase before the measurement. By default 5 seconds are used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(WORKLOAD_OPTION)
+                                .longOpt("workload")
+                                .hasArg()
+                                .argName("type")
+                                .desc("Type of workload (" + StringUtils.join(BenchUtils.Workload.values(), ", ") + "). By default the MIXED workload is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(ROWS_OPTION)
+                                .longOpt("rows")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Number of generated real estates. By default 1000 real estates are generated.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(LOBS_OPTION)
+                                .longOpt("lobs")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Number of generated images. By default 100 images are generated.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(LOB_SIZE_OPTION)
+                                .longOpt("lobSize")
+                                .hasArg()
+                                .argName("bytes")
+                                .desc("Size of generated images. By default images with 262144 bytes are generated.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(KEEP_OPTION)
+                                .longOpt("keep")
+                                .desc("Keep the generated tables in the database after the measurement.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(WAIT_OPTION)
+                                .longOpt("wait")
+                                .desc("Wait for user input before the application is closed.")
+                                .build()
+                );
+
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args, false);
+        } catch (ParseException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Invalid command line arguments!");
+            System.err.println(ex.getLocalizedMessage());
+            printHelp(options);
+            System.exit(1);
+            return;
+        }
+
+        // detect wait
+        final boolean wait = commandLine.hasOption(WAIT_OPTION);
+
+        if (commandLine.hasOption(HELP_OPTION)) {
+            printHelp(options);
+            if (wait) waitForEnter(false);
+            System.exit(0);
+            return;
+        }
+
+        // detect settings of the workload
+        final BenchUtils.Settings settings = new BenchUtils.Settings();
+        try {
+            if (commandLine.hasOption(CLIENTS_OPTION))
+                settings.setClients(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(CLIENTS_OPTION))));
+            if (commandLine.hasOption(DURATION_OPTION))
+                settings.setDuration(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(DURATION_OPTION))));
+            if (commandLine.hasOption(WARMUP_OPTION))
+                settings.setWarmup(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(WARMUP_OPTION))));
+            if (commandLine.hasOption(ROWS_OPTION))
+                settings.setRows(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(ROWS_OPTION))));
+            if (commandLine.hasOption(LOBS_OPTION))
+                settings.setLobs(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(LOBS_OPTION))));
+            if (commandLine.hasOption(LOB_SIZE_OPTION))
+                settings.setLobSize(Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(LOB_SIZE_OPTION))));
+        } catch (NumberFormatException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The provided number is invalid!");
+            System.err.println(ex.getLocalizedMessage());
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+        if (commandLine.hasOption(WORKLOAD_OPTION)) {
+            try {
+                settings.setWorkload(BenchUtils.Workload.valueOf(
+                        StringUtils.trimToEmpty(commandLine.getOptionValue(WORKLOAD_OPTION)).toUpperCase(Locale.ENGLISH)));
+            } catch (IllegalArgumentException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided workload is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+        }
+
+        // trust all certificates
+        try {
+            SslUtils.installLooseSslSocketFactory();
+        } catch (Exception ex) {
+            LOGGER.warn("Can't setup SSL context!", ex);
+        }
+
+        final DumpUtils.ConnectionProvider connections;
+        final String target;
+        Server server = null;
+        File serverDir = null;
+        if (commandLine.hasOption(EMBEDDED_OPTION) || commandLine.hasOption(SERVER_OPTION)) {
+
+            // detect configuration of the embedded server
+            File serverFile = null;
+            if (commandLine.hasOption(SERVER_OPTION)) {
+                serverFile = new File(StringUtils.trimToEmpty(commandLine.getOptionValue(SERVER_OPTION)));
+                if (!serverFile.isFile()) {
+                    System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                    System.err.println("The provided server configuration was not found!");
+                    if (wait) waitForEnter(true);
+                    System.exit(1);
+                    return;
+                }
+            }
+
+            // start the embedded server
+            try {
+                serverDir = Files.createTempDirectory("openestate-bench-").toFile();
+                server = startEmbeddedServer(serverFile, serverDir);
+            } catch (Exception ex) {
+                LOGGER.error("Can't start the embedded server!", ex);
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("Can't start the embedded server!");
+                System.err.println(ex.getLocalizedMessage());
+                stopEmbeddedServer(server, serverDir);
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+
+            final String url = "jdbc:hsqldb:" + (server.isTls() ? "hsqls" : "hsql") + "://127.0.0.1:"
+                    + server.getPort() + "/" + EMBEDDED_DATABASE;
+            connections = () -> DriverManager.getConnection(url, "SA", StringUtils.EMPTY);
+            target = "embedded server on port " + server.getPort();
+
+        } else {
+
+            // detect connection configuration
+            final File rcFile;
+            if (commandLine.hasOption(CONF_OPTION)) {
+                // use the configuration file provided from the command line
+                rcFile = new File(StringUtils.trimToEmpty(commandLine.getOptionValue(CONF_OPTION)));
+                if (!rcFile.isFile()) {
+                    System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                    System.err.println("The provided configuration file was not found!");
+                    if (wait) waitForEnter(true);
+                    System.exit(1);
+                    return;
+                }
+            } else {
+                // use the default configuration file
+                try {
+                    rcFile = new File(ServerUtils.getEtcDir(), "manager.conf");
+                } catch (IOException ex) {
+                    System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                    System.err.println("Can't find the default configuration file!");
+                    System.err.println(ex.getLocalizedMessage());
+                    if (wait) waitForEnter(true);
+                    System.exit(1);
+                    return;
+                }
+            }
+
+            // get list of available connection id's
+            final Collection<String> urlIds;
+            try {
+                urlIds = ManagerUtils.getUrlIds(rcFile);
+            } catch (IOException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The configuration file is not readable!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            if (urlIds.isEmpty()) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The configuration file does not contain any connections!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+
+            // detect connection id
+            final String urlId;
+            if (commandLine.hasOption(ID_OPTION)) {
+                // use the connection ID provided from the command line
+                urlId = StringUtils.trimToNull(commandLine.getOptionValue(ID_OPTION));
+                if (urlId == null) {
+                    System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                    System.err.println("The provided connection ID is invalid!");
+                    if (wait) waitForEnter(true);
+                    System.exit(1);
+                    return;
+                } else if (!urlIds.contains(urlId)) {
+                    System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                    System.err.println("The configuration file does not contain a connection with urlid '" + urlId + "'!");
+                    if (wait) waitForEnter(true);
+                    System.exit(1);
+                    return;
+                }
+            } else {
+                // use the first configured connection ID
+                urlId = urlIds.iterator().next();
+            }
+
+            final RCData rcData;
+            try {
+                rcData = new RCData(rcFile, urlId);
+            } catch (Exception ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The configuration file is not readable!");
+                System.err.println(ex.getLocalizedMessage());
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            connections = () -> {
+                try {
+                    return rcData.getConnection();
+                } catch (SQLException ex) {
+                    throw ex;
+                } catch (Exception ex) {
+                    throw new SQLException(ex.getLocalizedMessage(), ex);
+                }
+            };
+            target = "'" + urlId + "' database";
+        }
+
+        // execute the workload
+        BenchUtils.Report report = null;
+        Exception error = null;
+        try (Connection c = connections.getConnection()) {
+            LOGGER.info("Generating {} real estates and {} images in {}...",
+                    settings.getRows(), settings.getLobs(), target);
+            BenchUtils.prepare(c, settings);
+            try {
+                LOGGER.info("Executing {} workload from {} clients for {} seconds after {} seconds of warmup...",
+                        settings.getWorkload(), settings.getClients(), settings.getDuration(), settings.getWarmup());
+                report = BenchUtils.run(connections, settings);
+            } finally {
+                if (!commandLine.hasOption(KEEP_OPTION)) {
+                    LOGGER.info("Removing generated tables...");
+                    BenchUtils.cleanup(c);
+                }
+            }
+        } catch (Exception ex) {
+            LOGGER.error("Can't execute the workload!", ex);
+            error = ex;
+        } finally {
+            stopEmbeddedServer(server, serverDir);
+        }
+
+        if (error != null) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Can't execute the workload!");
+            System.err.println(error.getLocalizedMessage());
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        printReport(report);
+        if (wait) waitForEnter(true);
+    }
+
+    /**
+     * Print usage information to System.out.
+     *
+     * @param options command line options
+     */
+    private static void printHelp(Options options) {
+        final String commandLine;
+        if (SystemUtils.IS_OS_WINDOWS)
+            commandLine = "ManagerBench.bat / ManagerBench.exe";
+        else
+            commandLine = "ManagerBench.sh";
+
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        new HelpFormatter().printHelp(
+                commandLine + " [OPTION]...",
+                "Measure the performance of a database server with a generated workload. You might use the following custom settings:" + System.lineSeparator() + StringUtils.SPACE,
+                options,
+                StringUtils.SPACE + System.lineSeparator() + "The workload is executed on its own tables, that are removed afterwards. Other tables of the database are not modified. " + System.lineSeparator() + System.lineSeparator()
+                        + "See https://manual.openestate.org for more information."
+        );
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Print throughput and latencies to System.out.
+     *
+     * @param report result of the measurement
+     */
+    private static void printReport(BenchUtils.Report report) {
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        System.out.println(String.format(Locale.ENGLISH, "%-10s %10s %10s %10s %10s %10s %10s",
+                "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms"));
+        for (BenchUtils.Operation operation : BenchUtils.Operation.values()) {
+            final LatencyHistogram latencies = report.getLatencies(operation);
+            if (latencies.getCount() > 0) printLatencies(operation.name(), report, latencies);
+        }
+        printLatencies("TOTAL", report, report.getTotal());
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        System.out.println(String.format(Locale.ENGLISH, "%d operations failed within %d seconds.",
+                report.getErrors(), TimeUnit.NANOSECONDS.toSeconds(report.getDurationNanos())));
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    private static void printLatencies(String name, BenchUtils.Report report, LatencyHistogram latencies) {
+        // percentiles are upper bounds of buckets and might exceed the maximal latency
+        final double max = latencies.getMax() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        System.out.println(String.format(Locale.ENGLISH, "%-10s %10d %10.1f %10.2f %10.2f %10.2f %10.2f",
+                name, latencies.getCount(), report.getThroughput(latencies),
+                Math.min(max, latencies.getPercentile(50)), Math.min(max, latencies.getPercentile(99)),
+                Math.min(max, latencies.getPercentile(99.9)), max));
+    }
+
+    /**
+     * Start an embedded server with a temporary database.
+     *
+     * @param serverFile server configuration or null to use the default settings
+     * @param dir        directory for the temporary database
+     * @return started server
+     * @throws Exception if the server can't be started
+     */
+    private static Server startEmbeddedServer(File serverFile, File dir) throws Exception {
+        final Properties props = new Properties();
+        if (serverFile != null) {
+            try (InputStream input = Files.newInputStream(serverFile.toPath())) {
+                props.load(input);
+            }
+        }
+
+        // replace databases and listening address by a temporary database on a free local port
+        for (String key : props.stringPropertyNames()) {
+            if (key.startsWith("server.database.") || key.startsWith("server.dbname."))
+                props.remove(key);
+        }
+        props.setProperty("server.port", "0");
+        props.setProperty("server.address", "127.0.0.1");
+        props.setProperty("server.no_system_exit", "true");
+        props.setProperty("server.silent", "true");
+        props.setProperty("server.remote_open", "false");
+        props.setProperty("server.database.0", "file:" + new File(dir, "db").getAbsolutePath());
+        props.setProperty("server.dbname.0", EMBEDDED_DATABASE);
+
+        final ServerProperties serverProperties;
+        try (ByteArrayOutputStream output = new ByteArrayOutputStream()) {
+            props.store(output, null);
+            serverProperties = ServerProperties.create(ServerConstants.SC_PROTOCOL_HSQL,
+                    new ByteArrayInputStream(output.toByteArray()));
+        }
+
+        final Server server = Server.create(serverProperties);
+        LOGGER.info("Starting embedded server...");
+        server.start();
+
+        // wait until the database is opened
+        final long timeout = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+        while (server.getState() != ServerConstants.SERVER_STATE_ONLINE) {
+            if (server.getState() == ServerConstants.SERVER_STATE_SHUTDOWN || System.currentTimeMillis() > timeout) {
+                final Throwable cause = server.getServerError();
+                throw new IOException("The embedded server was not started!", cause);
+            }
+            Thread.sleep(50);
+        }
+        LOGGER.info("Started embedded server on port {}.", server.getPort());
+        return server;
+    }
+
+    /**
+     * Stop an embedded server and remove its temporary database.
+     *
+     * @param server embedded server or null, if no server was started
+     * @param dir    directory of the temporary database
+     */
+    private static void stopEmbeddedServer(Server server, File dir) {
+        if (server != null && server.getState() != ServerConstants.SERVER_STATE_SHUTDOWN) {
+            LOGGER.info("Stopping embedded server...");
+            server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+        }
+        if (dir != null) FileUtils.deleteQuietly(dir);
+    }
+
+    /**
+     * Wait for the user to press ENTER before continue.
+     *
+     * @param printSeparator print a separator before the message shown to the user
+     */
+    private static void waitForEnter(boolean printSeparator) {
+        if (printSeparator) {
+            System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        }
+        System.out.println("Press ENTER to close this application.");
+        System.console().readLine();
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.manager;
+
+import java.io.File;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.openestate.tool.server.ServerUtils;
+import org.openestate.tool.server.utils.RestoreUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+/**
+ * Restore database dumps created by {@link ManagerBackup}.
+ * <p>
+ * This application restores a database dump into a new HSQLDB database,
+ * that may be used by the server afterwards.
+ *
+ * @since 1.1
+ */
+public class ManagerRestore {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER;
+    @SuppressWarnings("unused")
+    private static final I18n I18N = I18nFactory.getI18n(ManagerRestore.class);
+    private static final String HELP_OPTION = "help";
+    private static final String FILE_OPTION = "file";
+    private static final String TARGET_OPTION = "target";
+    private static final String USER_OPTION = "user";
+    private static final String PASSWORD_OPTION = "password";
+    private static final String THREADS_OPTION = "threads";
+    private static final String BATCH_SIZE_OPTION = "batchSize";
+    private static final String WAIT_OPTION = "wait";
+
+    static {
+        ServerUtils.init();
+
+        // Create the logger instance after initialization. This makes sure, that logging environment is properly
+        // configured before the logger is actually created.
+        LOGGER = LoggerFactory.getLogger(ManagerRestore.class);
+    }
+
+    /**
+     * Start restore application.
+     *
+     * @param args command line arguments
+     */
+    @SuppressWarnings("Duplicates")
+    public static void main(String[] args) {
+        final Options options = new Options()
+                .addOption(
+                        Option.builder(HELP_OPTION)
+                                .longOpt("help")
+                                .desc("Show usage information.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(FILE_OPTION)
+                                .longOpt("file")
+                                .hasArg()
+                                .argName("file")
+                                .desc("The database dump to restore. This may be an archive created by ManagerBackup -dump or a directory with an extracted dump.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(TARGET_OPTION)
+                                .longOpt("target")
+                                .hasArg()
+                                .argName("path")
+                                .desc("The path of the new database without file suffix - e.g.:" + System.lineSeparator() + "-target var/data/restored/restored" + System.lineSeparator() + "The database must not exist yet.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(USER_OPTION)
+                                .longOpt("user")
+                                .hasArg()
+                                .argName("name")
+                                .desc("The name of a database user contained in the dump. By default SA is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(PASSWORD_OPTION)
+                                .longOpt("password")
+                                .hasArg()
+                                .argName("password")
+                                .desc("The password of the database user. By default an empty password is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(THREADS_OPTION)
+                                .longOpt("threads")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Set the number of connections, that restore LOB's concurrently. By default all available processors are used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(BATCH_SIZE_OPTION)
+                                .longOpt("batchSize")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Set the number of LOB's, that are restored by a single batch. By default 100 LOB's are restored at once.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(WAIT_OPTION)
+                                .longOpt("wait")
+                                .desc("Wait for user input before the application is closed.")
+                                .build()
+                );
+
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args, false);
+        } catch (ParseException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Invalid command line arguments!");
+            System.err.println(ex.getLocalizedMessage());
+            printHelp(options);
+            System.exit(1);
+            return;
+        }
+
+        // detect wait
+        final boolean wait = commandLine.hasOption(WAIT_OPTION);
+
+        if (commandLine.hasOption(HELP_OPTION)) {
+            printHelp(options);
+            if (wait) waitForEnter(false);
+            System.exit(0);
+            return;
+        }
+
+        // get database dump
+        final String dumpPath = StringUtils.trimToNull(commandLine.getOptionValue(FILE_OPTION));
+        if (dumpPath == null) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("No database dump was specified!");
+            printHelp(options);
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+        final File dump = new File(dumpPath);
+        if (!dump.exists()) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The provided database dump does not exist!");
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        // get target database
+        final String targetPath = StringUtils.trimToNull(commandLine.getOptionValue(TARGET_OPTION));
+        if (targetPath == null) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("No target database was specified!");
+            printHelp(options);
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+        final File target = new File(targetPath);
+
+        // get credentials
+        final String user = StringUtils.defaultIfBlank(commandLine.getOptionValue(USER_OPTION), "SA");
+        final String password = StringUtils.defaultString(commandLine.getOptionValue(PASSWORD_OPTION));
+
+        final RestoreUtils.Settings settings = new RestoreUtils.Settings();
+
+        // detect number of threads
+        if (commandLine.hasOption(THREADS_OPTION)) {
+            final int threads;
+            try {
+                threads = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(THREADS_OPTION)));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided number of threads is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            if (threads < 1) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("At least one thread is required!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            settings.setThreads(threads);
+        } else {
+            settings.setThreads(Runtime.getRuntime().availableProcessors());
+        }
+
+        // detect batch size
+        if (commandLine.hasOption(BATCH_SIZE_OPTION)) {
+            final int batchSize;
+            try {
+                batchSize = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(BATCH_SIZE_OPTION)));
+            } catch (NumberFormatException ex) {
+                System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+                System.err.println("The provided batch size is invalid!");
+                if (wait) waitForEnter(true);
+                System.exit(1);
+                return;
+            }
+            settings.setBatchSize(Math.max(1, batchSize));
+        }
+
+        // restore the database dump
+        final long start = System.currentTimeMillis();
+        LOGGER.info("Restoring '{}' into '{}'...", dump.getAbsolutePath(), target.getAbsolutePath());
+        final long failedLobs;
+        try {
+            failedLobs = RestoreUtils.restore(dump, target, user, password, settings);
+        } catch (Exception ex) {
+            LOGGER.error("Can't restore database dump!", ex);
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Can't restore database dump!");
+            System.err.println(ex.getLocalizedMessage());
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        if (failedLobs > 0) {
+            LOGGER.warn("The database dump was restored after {} ms, but {} LOB's are missing.", System.currentTimeMillis() - start, failedLobs);
+            if (wait) waitForEnter(true);
+            System.exit(1);
+            return;
+        }
+
+        LOGGER.info("The database dump was restored after {} ms.", System.currentTimeMillis() - start);
+        if (wait) waitForEnter(true);
+    }
+
+    /**
+     * Print usage information to System.out.
+     *
+     * @param options command line options
+     */
+    private static void printHelp(Options options) {
+        final String commandLine;
+        if (SystemUtils.IS_OS_WINDOWS)
+            commandLine = "ManagerRestore.bat / ManagerRestore.exe";
+        else
+            commandLine = "ManagerRestore.sh";
+
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        new HelpFormatter().printHelp(
+                commandLine + " [OPTION]...",
+                "Restore a database dump into a new HSQLDB database. You might use the following custom settings:" + System.lineSeparator() + StringUtils.SPACE,
+                options,
+                StringUtils.SPACE + System.lineSeparator() + "See https://manual.openestate.org for more information."
+        );
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Wait for the user to press ENTER before continue.
+     *
+     * @param printSeparator print a separator before the message shown to the user
+     */
+    private static void waitForEnter(boolean printSeparator) {
+        if (printSeparator) {
+            System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        }
+        System.out.println("Press ENTER to close this application.");
+        System.console().readLine();
+    }
+}
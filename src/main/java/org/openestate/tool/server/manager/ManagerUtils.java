@@ -26,8 +26,6 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xnap.commons.i18n.I18n;
-import org.xnap.commons.i18n.I18nFactory;
 
 /**
  * Helper methods for the management tools.
@@ -39,8 +37,6 @@ import org.xnap.commons.i18n.I18nFactory;
 public class ManagerUtils {
     @SuppressWarnings("unused")
     private static final Logger LOGGER = LoggerFactory.getLogger(ManagerUtils.class);
-    @SuppressWarnings("unused")
-    private static final I18n I18N = I18nFactory.getI18n(ManagerUtils.class);
 
     private ManagerUtils() {
         super();
@@ -0,0 +1,557 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods to propose indexes for a database workload.
+ * <p>
+ * The statements of the workload are not executed. Their execution plans are requested via
+ * <code>EXPLAIN PLAN FOR</code> and tables, that are read by a full scan, are checked for columns used in
+ * conditions of the statement.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class AdvisorUtils {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(AdvisorUtils.class);
+    private final static Pattern SLOW_LOG_PATTERN = Pattern.compile(
+            "^\\S+ \\S+ (\\d+) ms in '[^']*' database, -?\\d+ rows: (.+)$");
+    private final static Pattern STATEMENT_TYPE_PATTERN = Pattern.compile(
+            "^(SELECT|WITH|INSERT|UPDATE|DELETE|MERGE)\\b", Pattern.CASE_INSENSITIVE);
+    private final static Pattern WRITE_TARGET_PATTERN = Pattern.compile(
+            "^(?:INSERT\\s+INTO|UPDATE|DELETE\\s+FROM|MERGE\\s+INTO)\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+    private final static Pattern TABLE_PATTERN = Pattern.compile(
+            "^\\s*table=(\\S+)\\s*$", Pattern.MULTILINE);
+    private final static Pattern CARDINALITY_PATTERN = Pattern.compile(
+            "^\\s*cardinality=(\\d+)\\s*$", Pattern.MULTILINE);
+    private final static Pattern ACCESS_PATTERN = Pattern.compile(
+            "^\\s*access=(.+?)\\s*$", Pattern.MULTILINE);
+    private final static Pattern COMPARISON_PATTERN = Pattern.compile(
+            "(?<![A-Z_])(EQUAL|IS NULL|GREATER_EQUAL|GREATER|SMALLER_EQUAL|SMALLER) arg_left=\\[\\s*(?:ROW =\\s*)?COLUMN: (\\S+)");
+    private final static Pattern JOIN_PATTERN = Pattern.compile(
+            "(?<![A-Z_])EQUAL arg_left=\\[\\s*COLUMN: (\\S+)\\s*] arg_right=\\[\\s*COLUMN: (\\S+)");
+    private final static String RANGE_VARIABLE = "[range variable ";
+    private final static int MAX_INDEX_COLUMNS = 3;
+
+    /**
+     * Assumed share of rows, that are selected by a range condition.
+     */
+    private final static double RANGE_SELECTIVITY = 1d / 3d;
+
+    private AdvisorUtils() {
+        super();
+    }
+
+    /**
+     * Propose indexes for a workload.
+     * <p>
+     * Statements of the workload are only explained and never executed. The connection is used within a transaction,
+     * that is rolled back afterwards.
+     *
+     * @param c        database connection
+     * @param workload statements to analyze
+     * @param minRows  minimal number of rows of a table, that is considered as large
+     * @return result of the analysis
+     * @throws SQLException if communication with the database failed
+     */
+    public static Report analyze(Connection c, Workload workload, long minRows) throws SQLException {
+        final boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            final Report report = new Report();
+            final Map<String, Proposal> proposals = new LinkedHashMap<>();
+            final Map<String, List<List<String>>> indexes = new HashMap<>();
+            final Map<String, Long> distinctValues = new HashMap<>();
+
+            for (Map.Entry<String, Long> entry : workload.getStatements().entrySet()) {
+                final String sql = entry.getKey();
+                final long executions = entry.getValue();
+                if (!STATEMENT_TYPE_PATTERN.matcher(sql).find()) {
+                    report.skipped.add("Unsupported statement: " + StringUtils.abbreviate(sql, 100));
+                    continue;
+                }
+
+                final String plan;
+                try {
+                    plan = explain(c, sql);
+                } catch (SQLException ex) {
+                    report.skipped.add(ex.getLocalizedMessage());
+                    continue;
+                }
+                report.analyzed++;
+
+                for (ScanCandidate candidate : findScans(plan, minRows)) {
+                    final String tableKey = candidate.schema + "." + candidate.table;
+                    if (isIndexed(c, indexes, candidate)) {
+                        LOGGER.debug("Full scan of {} is not caused by a missing index: {}", tableKey, sql);
+                        continue;
+                    }
+
+                    final String key = tableKey + "(" + StringUtils.join(candidate.columns, ",") + ")";
+                    Proposal proposal = proposals.get(key);
+                    if (proposal == null) {
+                        final long rowsPerLookup = estimateRowsPerLookup(c, distinctValues, candidate);
+                        proposal = new Proposal(candidate, rowsPerLookup, sql);
+                        proposals.put(key, proposal);
+                    }
+                    proposal.statements++;
+                    proposal.executions += executions;
+                }
+            }
+
+            // count writes to the tables, that would have to maintain the proposed indexes
+            for (Proposal proposal : proposals.values()) {
+                for (Map.Entry<String, Long> entry : workload.getStatements().entrySet()) {
+                    final Matcher m = WRITE_TARGET_PATTERN.matcher(entry.getKey());
+                    if (m.find() && proposal.table.equalsIgnoreCase(StringUtils.substringAfterLast("." + m.group(1), ".").replace("\"", "")))
+                        proposal.writes += entry.getValue();
+                }
+            }
+
+            report.proposals.addAll(proposals.values());
+            report.proposals.sort((p1, p2) -> Long.compare(p2.getBenefit(), p1.getBenefit()));
+            return report;
+        } finally {
+            try {
+                c.rollback();
+            } finally {
+                c.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    private static long estimateRowsPerLookup(Connection c, Map<String, Long> distinctValues, ScanCandidate candidate) throws SQLException {
+        if (candidate.equalityColumns < 1)
+            return Math.max(1, Math.round(candidate.cardinality * RANGE_SELECTIVITY));
+
+        // the selectivity is estimated by the number of distinct values of the first column
+        final String column = candidate.columns.get(0);
+        final String key = candidate.schema + "." + candidate.table + "." + column;
+        Long distinct = distinctValues.get(key);
+        if (distinct == null) {
+            try (Statement statement = c.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT COUNT(DISTINCT " + quote(column) + ") "
+                         + "FROM " + quote(candidate.schema) + "." + quote(candidate.table))) {
+                distinct = (result.next()) ? result.getLong(1) : 0;
+            }
+            distinctValues.put(key, distinct);
+        }
+        return Math.max(1, candidate.cardinality / Math.max(1, distinct));
+    }
+
+    private static String explain(Connection c, String sql) throws SQLException {
+        final StringBuilder plan = new StringBuilder();
+        try (PreparedStatement statement = c.prepareStatement("EXPLAIN PLAN FOR " + sql);
+             ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                plan.append(result.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+
+    private static List<ScanCandidate> findScans(String plan, long minRows) {
+        final List<ScanCandidate> candidates = new ArrayList<>();
+        int pos = plan.indexOf(RANGE_VARIABLE);
+        while (pos >= 0) {
+            final int next = plan.indexOf(RANGE_VARIABLE, pos + 1);
+            final String block = (next < 0) ? plan.substring(pos) : plan.substring(pos, next);
+            pos = next;
+
+            final Matcher table = TABLE_PATTERN.matcher(block);
+            final Matcher cardinality = CARDINALITY_PATTERN.matcher(block);
+            final Matcher access = ACCESS_PATTERN.matcher(block);
+            if (!table.find() || !cardinality.find() || !access.find()) continue;
+            if (!"FULL SCAN".equalsIgnoreCase(access.group(1))) continue;
+            if (Long.parseLong(cardinality.group(1)) < minRows) continue;
+
+            // A single index is not used for conditions combined by OR.
+            if (block.contains(" OR arg_left=")) continue;
+
+            final String tableName = table.group(1);
+            final Set<String> equalityColumns = new LinkedHashSet<>();
+            final Set<String> rangeColumns = new LinkedHashSet<>();
+            String schema = null;
+
+            final Matcher comparison = COMPARISON_PATTERN.matcher(block);
+            while (comparison.find()) {
+                final String[] column = splitColumn(comparison.group(2));
+                if (column == null || !tableName.equals(column[1])) continue;
+                schema = column[0];
+                if ("EQUAL".equals(comparison.group(1)) || "IS NULL".equals(comparison.group(1)))
+                    equalityColumns.add(column[2]);
+                else
+                    rangeColumns.add(column[2]);
+            }
+
+            final Matcher join = JOIN_PATTERN.matcher(block);
+            while (join.find()) {
+                for (int i = 1; i <= 2; i++) {
+                    final String[] column = splitColumn(join.group(i));
+                    if (column == null || !tableName.equals(column[1])) continue;
+                    schema = column[0];
+                    equalityColumns.add(column[2]);
+                }
+            }
+            if (schema == null || "INFORMATION_SCHEMA".equals(schema) || "SYSTEM_LOBS".equals(schema)) continue;
+
+            final List<String> columns = new ArrayList<>();
+            for (String column : equalityColumns) {
+                if (columns.size() < MAX_INDEX_COLUMNS) columns.add(column);
+            }
+            final int equalityCount = columns.size();
+            for (String column : rangeColumns) {
+                if (columns.size() < MAX_INDEX_COLUMNS && !columns.contains(column)) {
+                    columns.add(column);
+                    break;
+                }
+            }
+            if (columns.isEmpty()) continue;
+
+            candidates.add(new ScanCandidate(schema, tableName, columns, equalityCount,
+                    Long.parseLong(cardinality.group(1))));
+        }
+        return candidates;
+    }
+
+    private static boolean isIndexed(Connection c, Map<String, List<List<String>>> indexes, ScanCandidate candidate) throws SQLException {
+        final String key = candidate.schema + "." + candidate.table;
+        List<List<String>> tableIndexes = indexes.get(key);
+        if (tableIndexes == null) {
+            final Map<String, List<String>> columnsByIndex = new LinkedHashMap<>();
+            try (ResultSet result = c.getMetaData().getIndexInfo(null, candidate.schema, candidate.table, false, true)) {
+                while (result.next()) {
+                    final String indexName = result.getString("INDEX_NAME");
+                    final String columnName = result.getString("COLUMN_NAME");
+                    if (indexName == null || columnName == null) continue;
+                    columnsByIndex.computeIfAbsent(indexName, k -> new ArrayList<>()).add(columnName);
+                }
+            }
+            tableIndexes = new ArrayList<>(columnsByIndex.values());
+            indexes.put(key, tableIndexes);
+        }
+
+        // HSQLDB uses an index, if its first column is used by a condition
+        for (List<String> columns : tableIndexes) {
+            if (!columns.isEmpty() && columns.get(0).equals(candidate.columns.get(0))) return true;
+        }
+        return false;
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static String[] splitColumn(String qualifiedName) {
+        final String[] parts = StringUtils.split(qualifiedName, '.');
+        return (parts != null && parts.length == 3) ? parts : null;
+    }
+
+    /**
+     * A table, that is read by a full scan.
+     */
+    private static class ScanCandidate {
+        private final String schema;
+        private final String table;
+        private final List<String> columns;
+        private final int equalityColumns;
+        private final long cardinality;
+
+        private ScanCandidate(String schema, String table, List<String> columns, int equalityColumns, long cardinality) {
+            this.schema = schema;
+            this.table = table;
+            this.columns = columns;
+            this.equalityColumns = equalityColumns;
+            this.cardinality = cardinality;
+        }
+    }
+
+    /**
+     * A proposed index.
+     */
+    public static class Proposal {
+        private final String schema;
+        private final String table;
+        private final List<String> columns;
+        private final long cardinality;
+        private final long rowsPerLookup;
+        private final String example;
+        private int statements = 0;
+        private long executions = 0;
+        private long writes = 0;
+
+        private Proposal(ScanCandidate candidate, long rowsPerLookup, String example) {
+            this.schema = candidate.schema;
+            this.table = candidate.table;
+            this.columns = Collections.unmodifiableList(candidate.columns);
+            this.cardinality = candidate.cardinality;
+            this.rowsPerLookup = rowsPerLookup;
+            this.example = example;
+        }
+
+        /**
+         * Get estimated number of rows, that are not read by the workload, if the index is created.
+         *
+         * @return number of rows
+         */
+        public long getBenefit() {
+            return Math.max(0, cardinality - rowsPerLookup) * executions;
+        }
+
+        /**
+         * Get number of rows of the table according to the query planner.
+         *
+         * @return number of rows
+         */
+        public long getCardinality() {
+            return cardinality;
+        }
+
+        /**
+         * Get indexed columns.
+         *
+         * @return column names
+         */
+        public List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Get a statement of the workload, that would use the index.
+         *
+         * @return SQL statement
+         */
+        public String getExample() {
+            return example;
+        }
+
+        /**
+         * Get number of executions of statements, that would use the index.
+         *
+         * @return number of executions
+         */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /**
+         * Get estimated number of rows read through the index by a single execution.
+         *
+         * @return number of rows
+         */
+        public long getRowsPerLookup() {
+            return rowsPerLookup;
+        }
+
+        /**
+         * Get schema of the indexed table.
+         *
+         * @return schema name
+         */
+        public String getSchema() {
+            return schema;
+        }
+
+        /**
+         * Get SQL statement to create the index.
+         *
+         * @return SQL statement
+         */
+        public String getSql() {
+            final List<String> quotedColumns = new ArrayList<>();
+            for (String column : columns) quotedColumns.add(quote(column));
+            final String name = StringUtils.left(("IDX_" + table + "_" + StringUtils.join(columns, "_"))
+                    .toUpperCase(Locale.ENGLISH).replaceAll("[^A-Z0-9_]", "_"), 128);
+            return "CREATE INDEX " + quote(name) + " ON " + quote(schema) + "." + quote(table)
+                    + " (" + StringUtils.join(quotedColumns, ", ") + ");";
+        }
+
+        /**
+         * Get number of different statements, that would use the index.
+         *
+         * @return number of statements
+         */
+        public int getStatements() {
+            return statements;
+        }
+
+        /**
+         * Get name of the indexed table.
+         *
+         * @return table name
+         */
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * Get number of writes to the table in the workload, that would have to update the index.
+         *
+         * @return number of executed INSERT, UPDATE, DELETE or MERGE statements
+         */
+        public long getWrites() {
+            return writes;
+        }
+    }
+
+    /**
+     * Result of the analysis.
+     */
+    public static class Report {
+        private final List<Proposal> proposals = new ArrayList<>();
+        private final List<String> skipped = new ArrayList<>();
+        private int analyzed = 0;
+
+        private Report() {
+            super();
+        }
+
+        /**
+         * Get number of statements, that were explained by the database.
+         *
+         * @return number of statements
+         */
+        public int getAnalyzed() {
+            return analyzed;
+        }
+
+        /**
+         * Get proposed indexes ordered by their estimated benefit.
+         *
+         * @return proposed indexes
+         */
+        public List<Proposal> getProposals() {
+            return proposals;
+        }
+
+        /**
+         * Get reasons for statements, that could not be analyzed.
+         *
+         * @return messages
+         */
+        public List<String> getSkipped() {
+            return skipped;
+        }
+    }
+
+    /**
+     * Statements of a workload.
+     */
+    public static class Workload {
+        private final Map<String, Long> statements = new LinkedHashMap<>();
+
+        /**
+         * Create an empty workload.
+         */
+        public Workload() {
+            super();
+        }
+
+        /**
+         * Add a statement to the workload.
+         *
+         * @param sql        SQL statement
+         * @param executions number of executions
+         */
+        public void add(String sql, long executions) {
+            sql = StringUtils.trimToNull(StringUtils.removeEnd(StringUtils.trimToEmpty(sql), ";"));
+            if (sql == null || executions < 1) return;
+            statements.merge(sql, executions, Long::sum);
+        }
+
+        /**
+         * Get statements of the workload.
+         *
+         * @return number of executions by SQL statement
+         */
+        public Map<String, Long> getStatements() {
+            return Collections.unmodifiableMap(statements);
+        }
+
+        /**
+         * Load statements from a file.
+         * <p>
+         * The file might be a log of slow statements written by the server. Otherwise it is read as SQL script with
+         * statements separated by semicolons.
+         *
+         * @param file file to read
+         * @throws IOException if the file is not readable
+         */
+        public void load(File file) throws IOException {
+            final List<String> lines = new ArrayList<>();
+            boolean slowLog = true;
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (StringUtils.isBlank(line)) continue;
+                    lines.add(line);
+                    if (slowLog && !SLOW_LOG_PATTERN.matcher(line).matches()) slowLog = false;
+                }
+            }
+
+            if (slowLog) {
+                for (String line : lines) {
+                    final Matcher m = SLOW_LOG_PATTERN.matcher(line);
+                    if (m.matches()) add(m.group(2), 1);
+                }
+                return;
+            }
+
+            // split the script into statements
+            final StringBuilder statement = new StringBuilder();
+            boolean quoted = false;
+            for (String line : lines) {
+                if (!quoted && line.trim().startsWith("--")) continue;
+                for (int i = 0; i < line.length(); i++) {
+                    final char c = line.charAt(i);
+                    if (c == '\'') quoted = !quoted;
+                    if (c == ';' && !quoted) {
+                        add(statement.toString(), 1);
+                        statement.setLength(0);
+                    } else {
+                        statement.append(c);
+                    }
+                }
+                statement.append('\n');
+            }
+            add(statement.toString(), 1);
+        }
+    }
+}
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.IsoFields;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Catalog of the backups of a single database.
+ * <p>
+ * The catalog is stored as a text file within the backup directory of the database and contains one line
+ * per backup with its type, creation time, duration, size, checksum and verification status. Backups are
+ * listed and pruned by reading this file, so that the backup directory does not have to be scanned.
+ * The directory is only scanned once, if no catalog exists yet.
+ */
+public class BackupCatalog {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(BackupCatalog.class);
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Name of the catalog file within the backup directory.
+     */
+    public final static String FILE_NAME = "catalog.txt";
+
+    private final File directory;
+    private final List<Entry> entries = new ArrayList<>();
+
+    private BackupCatalog(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Load the catalog of a backup directory.
+     * <p>
+     * If the directory does not contain a catalog yet, a new catalog is created from the files
+     * in the directory.
+     *
+     * @param directory backup directory of a database
+     * @param importer  creates catalog entries for existing files in the directory, returns null for files,
+     *                  that are not a backup
+     * @return catalog
+     * @throws IOException if the catalog can't be read
+     */
+    public static BackupCatalog load(File directory, Function<File, Entry> importer) throws IOException {
+        final BackupCatalog catalog = new BackupCatalog(directory);
+        final File file = catalog.getFile();
+        if (!file.isFile()) {
+            for (File f : ObjectUtils.defaultIfNull(directory.listFiles(), new File[]{})) {
+                if (!f.isFile() || f.getName().startsWith(FILE_NAME)) continue;
+                final Entry entry = importer.apply(f);
+                if (entry != null) catalog.add(entry);
+            }
+            if (!catalog.entries.isEmpty()) {
+                LOGGER.info("Created catalog with {} existing backups at '{}'.", catalog.entries.size(), file.getAbsolutePath());
+                catalog.save();
+            }
+            return catalog;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (StringUtils.isBlank(line) || line.startsWith("#")) continue;
+                catalog.add(Entry.parse(line));
+            }
+        }
+        return catalog;
+    }
+
+    /**
+     * Calculate the checksum of a file.
+     *
+     * @param file file to read
+     * @return SHA-256 checksum as hex string
+     * @throws IOException if the file can't be read
+     */
+    public static String checksum(File file) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("SHA-256 is not supported!", ex);
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream input = new DigestInputStream(Files.newInputStream(file.toPath()), digest)) {
+            //noinspection StatementWithEmptyBody
+            while (input.read(buffer) >= 0) {
+            }
+        }
+        return DumpUtils.toHex(digest.digest());
+    }
+
+    /**
+     * Add a backup to the catalog.
+     *
+     * @param entry backup to add
+     */
+    public void add(Entry entry) {
+        entries.add(entry);
+        entries.sort(Comparator.comparingLong(Entry::getCreated));
+    }
+
+    /**
+     * Get the backup directory.
+     *
+     * @return backup directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Get backups of the catalog.
+     *
+     * @return backups, ordered by their creation time
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the catalog file.
+     *
+     * @return catalog file
+     */
+    public File getFile() {
+        return new File(directory, FILE_NAME);
+    }
+
+    /**
+     * Get the latest backup, that did not fail verification.
+     *
+     * @return latest backup or null, if no backup is available
+     */
+    public Entry getLatestValid() {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final Entry entry = entries.get(i);
+            if (entry.getVerification() != Verification.FAILED) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Get the total size of all backups in the catalog.
+     *
+     * @return size in bytes
+     */
+    public long getSize() {
+        long size = 0;
+        for (Entry entry : entries) {
+            size += entry.getSize();
+        }
+        return size;
+    }
+
+    /**
+     * Remove a backup from the catalog.
+     * <p>
+     * The backup file itself is not removed.
+     *
+     * @param entry backup to remove
+     */
+    public void remove(Entry entry) {
+        entries.remove(entry);
+    }
+
+    /**
+     * Write the catalog into the backup directory.
+     * <p>
+     * The catalog is written into a temporary file, that replaces the previous catalog afterwards.
+     *
+     * @throws IOException if the catalog can't be written
+     */
+    public void save() throws IOException {
+        final File file = getFile();
+        final File tempFile = new File(directory, FILE_NAME + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write("# name\ttype\tcreated\tduration\tsize\tchecksum\tverification");
+                writer.newLine();
+                for (Entry entry : entries) {
+                    writer.write(entry.format());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Types of backups.
+     */
+    public enum Type {
+        /**
+         * Copy of the raw database files.
+         */
+        BACKUP,
+
+        /**
+         * Database dump.
+         */
+        DUMP,
+
+        /**
+         * Unknown type of a backup, that was created before the catalog.
+         */
+        UNKNOWN
+    }
+
+    /**
+     * Verification status of backups.
+     */
+    public enum Verification {
+        /**
+         * The backup was not verified.
+         */
+        NONE,
+
+        /**
+         * The backup was verified successfully.
+         */
+        OK,
+
+        /**
+         * Verification of the backup failed.
+         */
+        FAILED
+    }
+
+    /**
+     * A backup in the catalog.
+     */
+    public static class Entry {
+        private final String name;
+        private final Type type;
+        private final long created;
+        private long duration = 0;
+        private long size = 0;
+        private String checksum = null;
+        private Verification verification = Verification.NONE;
+
+        /**
+         * Create a catalog entry.
+         *
+         * @param name    file name of the backup within the backup directory
+         * @param type    type of the backup
+         * @param created time, when creation of the backup was started
+         */
+        public Entry(String name, Type type, long created) {
+            this.name = name;
+            this.type = ObjectUtils.defaultIfNull(type, Type.UNKNOWN);
+            this.created = created;
+        }
+
+        private static Entry parse(String line) throws IOException {
+            final String[] values = StringUtils.splitPreserveAllTokens(line, '\t');
+            if (values.length < 7)
+                throw new IOException("Invalid line in backup catalog: " + line);
+            try {
+                final Entry entry = new Entry(values[0], Type.valueOf(values[1]), Long.parseLong(values[2]));
+                entry.setDuration(Long.parseLong(values[3]));
+                entry.setSize(Long.parseLong(values[4]));
+                entry.setChecksum(StringUtils.trimToNull(values[5]));
+                entry.setVerification(Verification.valueOf(values[6]));
+                return entry;
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Invalid line in backup catalog: " + line, ex);
+            }
+        }
+
+        private String format() {
+            return StringUtils.join(new Object[]{
+                    name, type, created, duration, size, StringUtils.defaultString(checksum), verification}, '\t');
+        }
+
+        /**
+         * Get checksum of the backup file.
+         *
+         * @return SHA-256 checksum as hex string or null, if it is unknown
+         */
+        public String getChecksum() {
+            return checksum;
+        }
+
+        /**
+         * Set checksum of the backup file.
+         *
+         * @param checksum SHA-256 checksum as hex string
+         */
+        public void setChecksum(String checksum) {
+            this.checksum = checksum;
+        }
+
+        /**
+         * Get time, when creation of the backup was started.
+         *
+         * @return creation time in milliseconds
+         */
+        public long getCreated() {
+            return created;
+        }
+
+        /**
+         * Get duration of the backup process.
+         *
+         * @return duration in milliseconds
+         */
+        public long getDuration() {
+            return duration;
+        }
+
+        /**
+         * Set duration of the backup process.
+         *
+         * @param duration duration in milliseconds
+         */
+        public void setDuration(long duration) {
+            this.duration = duration;
+        }
+
+        /**
+         * Get file name of the backup.
+         *
+         * @return file name within the backup directory
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get size of the backup file.
+         *
+         * @return size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Set size of the backup file.
+         *
+         * @param size size in bytes
+         */
+        public void setSize(long size) {
+            this.size = size;
+        }
+
+        /**
+         * Get type of the backup.
+         *
+         * @return type
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Get verification status of the backup.
+         *
+         * @return verification status
+         */
+        public Verification getVerification() {
+            return verification;
+        }
+
+        /**
+         * Set verification status of the backup.
+         *
+         * @param verification verification status
+         */
+        public void setVerification(Verification verification) {
+            this.verification = ObjectUtils.defaultIfNull(verification, Verification.NONE);
+        }
+    }
+
+    /**
+     * Policy, that selects the backups to keep.
+     * <p>
+     * A backup is kept, if it is one of the latest backups or the latest backup of one of the latest days,
+     * weeks or months. Backups, that failed verification, are never kept by the policy.
+     */
+    public static class RetentionPolicy {
+        private int latest = 0;
+        private int daily = 0;
+        private int weekly = 0;
+        private int monthly = 0;
+
+        /**
+         * Create a retention policy, that keeps all backups.
+         */
+        public RetentionPolicy() {
+            super();
+        }
+
+        /**
+         * Get number of days, whose latest backup is kept.
+         *
+         * @return number of days
+         */
+        public int getDaily() {
+            return daily;
+        }
+
+        /**
+         * Set number of days, whose latest backup is kept.
+         *
+         * @param daily number of days
+         */
+        public void setDaily(int daily) {
+            this.daily = Math.max(0, daily);
+        }
+
+        /**
+         * Get number of latest backups to keep.
+         *
+         * @return number of backups
+         */
+        public int getLatest() {
+            return latest;
+        }
+
+        /**
+         * Set number of latest backups to keep.
+         *
+         * @param latest number of backups
+         */
+        public void setLatest(int latest) {
+            this.latest = Math.max(0, latest);
+        }
+
+        /**
+         * Get number of months, whose latest backup is kept.
+         *
+         * @return number of months
+         */
+        public int getMonthly() {
+            return monthly;
+        }
+
+        /**
+         * Set number of months, whose latest backup is kept.
+         *
+         * @param monthly number of months
+         */
+        public void setMonthly(int monthly) {
+            this.monthly = Math.max(0, monthly);
+        }
+
+        /**
+         * Get number of weeks, whose latest backup is kept.
+         *
+         * @return number of weeks
+         */
+        public int getWeekly() {
+            return weekly;
+        }
+
+        /**
+         * Set number of weeks, whose latest backup is kept.
+         *
+         * @param weekly number of weeks
+         */
+        public void setWeekly(int weekly) {
+            this.weekly = Math.max(0, weekly);
+        }
+
+        /**
+         * Test, if the policy removes any backups.
+         *
+         * @return true, if at least one rule was configured
+         */
+        public boolean isEnabled() {
+            return latest > 0 || daily > 0 || weekly > 0 || monthly > 0;
+        }
+
+        /**
+         * Select backups of a catalog, that are not kept by this policy.
+         *
+         * @param catalog backup catalog
+         * @return backups to remove, ordered by their creation time
+         */
+        public List<Entry> selectOutdated(BackupCatalog catalog) {
+            final List<Entry> outdated = new ArrayList<>();
+            if (!isEnabled()) return outdated;
+
+            final List<Entry> candidates = new ArrayList<>();
+            for (Entry entry : catalog.getEntries()) {
+                if (entry.getVerification() != Verification.FAILED) candidates.add(entry);
+            }
+            Collections.reverse(candidates);
+
+            final Set<Entry> keep = new HashSet<>(candidates.subList(0, Math.min(latest, candidates.size())));
+            final ZoneId zone = ZoneId.systemDefault();
+            keepLatestPerPeriod(candidates, keep, daily, e -> toDate(e, zone).toString());
+            keepLatestPerPeriod(candidates, keep, weekly, e -> {
+                final LocalDate date = toDate(e, zone);
+                return date.get(IsoFields.WEEK_BASED_YEAR) + "-W" + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            });
+            keepLatestPerPeriod(candidates, keep, monthly, e -> {
+                final LocalDate date = toDate(e, zone);
+                return date.getYear() + "-" + date.getMonthValue();
+            });
+
+            for (Entry entry : catalog.getEntries()) {
+                if (!keep.contains(entry)) outdated.add(entry);
+            }
+            return outdated;
+        }
+
+        private static void keepLatestPerPeriod(List<Entry> candidates, Set<Entry> keep, int count, Function<Entry, String> period) {
+            if (count < 1) return;
+            final Set<String> periods = new HashSet<>();
+            for (Entry entry : candidates) {
+                if (periods.size() >= count) break;
+                if (periods.add(period.apply(entry))) keep.add(entry);
+            }
+        }
+
+        private static LocalDate toDate(Entry entry, ZoneId zone) {
+            return Instant.ofEpochMilli(entry.getCreated()).atZone(zone).toLocalDate();
+        }
+    }
+}
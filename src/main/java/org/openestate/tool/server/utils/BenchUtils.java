@@ -0,0 +1,659 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods to measure the performance of a database with a generated workload.
+ * <p>
+ * The workload is modeled on the usage of OpenEstate-ImmoTool: real estates are listed and opened, their
+ * properties are changed and attached images are uploaded and downloaded. The workload is executed on its own
+ * tables, that are created before and removed after the measurement.
+ *
+ * @since 1.1
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class BenchUtils {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(BenchUtils.class);
+    private final static String OBJECTS_TABLE = "MANAGERBENCH_OBJECTS";
+    private final static String FILES_TABLE = "MANAGERBENCH_FILES";
+    private final static String WORDS = "apartment house garden balcony kitchen garage basement terrace view quiet central ";
+    private final static int BATCH_SIZE = 100;
+    private final static int PAGE_SIZE = 50;
+
+    private BenchUtils() {
+        super();
+    }
+
+    /**
+     * Remove the tables of the workload.
+     *
+     * @param c database connection
+     * @throws SQLException if the tables can't be removed
+     */
+    public static void cleanup(Connection c) throws SQLException {
+        try (Statement s = c.createStatement()) {
+            s.execute("DROP TABLE " + FILES_TABLE + " IF EXISTS CASCADE;");
+            s.execute("DROP TABLE " + OBJECTS_TABLE + " IF EXISTS CASCADE;");
+        }
+        if (!c.getAutoCommit()) c.commit();
+    }
+
+    /**
+     * Create the tables of the workload and fill them with generated data.
+     * <p>
+     * Tables of a previous run are removed beforehand.
+     *
+     * @param c        database connection
+     * @param settings settings of the workload
+     * @throws SQLException if the tables can't be created
+     */
+    public static void prepare(Connection c, Settings settings) throws SQLException {
+        cleanup(c);
+
+        final boolean autoCommit = c.getAutoCommit();
+        c.setAutoCommit(false);
+        try {
+            try (Statement s = c.createStatement()) {
+                s.execute("CREATE CACHED TABLE " + OBJECTS_TABLE + " ("
+                        + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                        + "public_id VARCHAR(50) NOT NULL, "
+                        + "title VARCHAR(255) NOT NULL, "
+                        + "price DECIMAL(15,2), "
+                        + "modified TIMESTAMP NOT NULL, "
+                        + "description CLOB);");
+                s.execute("CREATE INDEX " + OBJECTS_TABLE + "_PRICE ON " + OBJECTS_TABLE + " (price);");
+                s.execute("CREATE CACHED TABLE " + FILES_TABLE + " ("
+                        + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                        + "object_id BIGINT NOT NULL, "
+                        + "file_name VARCHAR(255) NOT NULL, "
+                        + "file_data BLOB NOT NULL, "
+                        + "FOREIGN KEY (object_id) REFERENCES " + OBJECTS_TABLE + " (id) ON DELETE CASCADE);");
+            }
+            c.commit();
+
+            final Random random = new Random();
+            try (PreparedStatement insert = c.prepareStatement("INSERT INTO " + OBJECTS_TABLE + " "
+                    + "(public_id, title, price, modified, description) VALUES (?, ?, ?, ?, ?);")) {
+                for (int i = 1; i <= settings.getRows(); i++) {
+                    setObject(insert, random, "OBJ-" + i);
+                    insert.addBatch();
+                    if (i % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                        c.commit();
+                    }
+                }
+                if (settings.getRows() % BATCH_SIZE != 0) {
+                    insert.executeBatch();
+                    c.commit();
+                }
+            }
+
+            final byte[] data = new byte[settings.getLobSize()];
+            try (PreparedStatement insert = c.prepareStatement("INSERT INTO " + FILES_TABLE + " "
+                    + "(object_id, file_name, file_data) VALUES (?, ?, ?);")) {
+                for (int i = 1; i <= settings.getLobs(); i++) {
+                    random.nextBytes(data);
+                    insert.setLong(1, 1 + (i % settings.getRows()));
+                    insert.setString(2, "image-" + i + ".jpg");
+                    insert.setBinaryStream(3, new ByteArrayInputStream(data), data.length);
+                    insert.executeUpdate();
+                    c.commit();
+                }
+            }
+        } catch (SQLException | RuntimeException ex) {
+            c.rollback();
+            throw ex;
+        } finally {
+            c.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Execute the workload from concurrent clients.
+     * <p>
+     * Every client opens its own connection and executes operations one after another without pauses. Every
+     * operation is executed in its own transaction. Latencies of operations, that were started during the warmup
+     * phase, are not recorded.
+     *
+     * @param connections provider of database connections
+     * @param settings    settings of the workload
+     * @return result of the measurement
+     * @throws SQLException         if a client can't connect to the database
+     * @throws InterruptedException if the measurement was interrupted
+     */
+    public static Report run(DumpUtils.ConnectionProvider connections, Settings settings) throws SQLException, InterruptedException {
+        final Report report = new Report();
+        final List<Client> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < settings.getClients(); i++) {
+                clients.add(new Client(connections.getConnection(), settings, report));
+            }
+
+            final AtomicInteger counter = new AtomicInteger();
+            final ExecutorService pool = Executors.newFixedThreadPool(clients.size(),
+                    r -> new Thread(r, "ManagerBench-" + counter.incrementAndGet()));
+            try {
+                final long start = System.nanoTime();
+                final long measureStart = start + TimeUnit.SECONDS.toNanos(settings.getWarmup());
+                final long end = measureStart + TimeUnit.SECONDS.toNanos(settings.getDuration());
+                final List<Future<Void>> futures = new ArrayList<>();
+                for (Client client : clients) {
+                    client.measureStart = measureStart;
+                    client.end = end;
+                    futures.add(pool.submit(client));
+                }
+                for (Future<Void> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ex) {
+                        LOGGER.error("Client was aborted!", ex.getCause());
+                    }
+                }
+                report.durationNanos = end - measureStart;
+            } finally {
+                pool.shutdownNow();
+            }
+            return report;
+        } finally {
+            for (Client client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private static void setObject(PreparedStatement statement, Random random, String publicId) throws SQLException {
+        statement.setString(1, publicId);
+        statement.setString(2, StringUtils.capitalize(WORDS.substring(random.nextInt(40)).trim()));
+        statement.setBigDecimal(3, BigDecimal.valueOf(50000 + random.nextInt(950000)));
+        statement.setTimestamp(4, new Timestamp(System.currentTimeMillis()));
+        statement.setString(5, StringUtils.repeat(WORDS, 1 + random.nextInt(20)));
+    }
+
+    /**
+     * Operations of a workload.
+     */
+    public enum Operation {
+        /**
+         * List real estates within a price range or open a single real estate.
+         */
+        READ,
+
+        /**
+         * Change the properties of a real estate or add a new real estate.
+         */
+        WRITE,
+
+        /**
+         * Upload or download an attached image.
+         */
+        LOB
+    }
+
+    /**
+     * Predefined mixtures of operations.
+     */
+    public enum Workload {
+        /**
+         * Only reading operations.
+         */
+        READ(100, 0, 0),
+
+        /**
+         * Only writing operations.
+         */
+        WRITE(0, 100, 0),
+
+        /**
+         * Only uploads and downloads of images.
+         */
+        LOB(0, 0, 100),
+
+        /**
+         * Mostly reading operations, as caused by users of OpenEstate-ImmoTool.
+         */
+        MIXED(80, 15, 5);
+
+        private final int read;
+        private final int write;
+        private final int lob;
+
+        Workload(int read, int write, int lob) {
+            this.read = read;
+            this.write = write;
+            this.lob = lob;
+        }
+
+        /**
+         * Get share of operations with LOB's.
+         *
+         * @return share in percent
+         */
+        public int getLob() {
+            return lob;
+        }
+
+        /**
+         * Get share of reading operations.
+         *
+         * @return share in percent
+         */
+        public int getRead() {
+            return read;
+        }
+
+        /**
+         * Get share of writing operations.
+         *
+         * @return share in percent
+         */
+        public int getWrite() {
+            return write;
+        }
+
+        private Operation next(Random random) {
+            final int value = random.nextInt(read + write + lob);
+            if (value < read) return Operation.READ;
+            if (value < read + write) return Operation.WRITE;
+            return Operation.LOB;
+        }
+    }
+
+    /**
+     * A client, that executes operations on its own connection.
+     */
+    private static class Client implements Callable<Void>, AutoCloseable {
+        private final Connection connection;
+        private final Settings settings;
+        private final Report report;
+        private final PreparedStatement listObjects;
+        private final PreparedStatement selectObject;
+        private final PreparedStatement updateObject;
+        private final PreparedStatement insertObject;
+        private final PreparedStatement selectFile;
+        private final PreparedStatement updateFile;
+        private final byte[] data;
+        private long measureStart;
+        private long end;
+
+        private Client(Connection connection, Settings settings, Report report) throws SQLException {
+            this.connection = connection;
+            this.settings = settings;
+            this.report = report;
+            this.data = new byte[settings.getLobSize()];
+            try {
+                connection.setAutoCommit(false);
+                listObjects = connection.prepareStatement("SELECT id, public_id, title, price FROM " + OBJECTS_TABLE + " "
+                        + "WHERE price BETWEEN ? AND ? ORDER BY price LIMIT " + PAGE_SIZE + ";");
+                selectObject = connection.prepareStatement("SELECT id, public_id, title, price, modified, description FROM " + OBJECTS_TABLE + " "
+                        + "WHERE id = ?;");
+                updateObject = connection.prepareStatement("UPDATE " + OBJECTS_TABLE + " "
+                        + "SET price = ?, modified = ? WHERE id = ?;");
+                insertObject = connection.prepareStatement("INSERT INTO " + OBJECTS_TABLE + " "
+                        + "(public_id, title, price, modified, description) VALUES (?, ?, ?, ?, ?);");
+                selectFile = connection.prepareStatement("SELECT file_name, file_data FROM " + FILES_TABLE + " "
+                        + "WHERE id = ?;");
+                updateFile = connection.prepareStatement("UPDATE " + FILES_TABLE + " "
+                        + "SET file_data = ? WHERE id = ?;");
+            } catch (SQLException | RuntimeException ex) {
+                connection.close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public Void call() throws Exception {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            random.nextBytes(data);
+
+            long now = System.nanoTime();
+            while (now < end && !Thread.currentThread().isInterrupted()) {
+                final Operation operation = settings.getWorkload().next(random);
+                boolean failed = false;
+                try {
+                    execute(operation, random);
+                    connection.commit();
+                } catch (SQLException | IOException ex) {
+                    LOGGER.debug("Operation {} failed!", operation, ex);
+                    failed = true;
+                    try {
+                        connection.rollback();
+                    } catch (SQLException ignored) {
+                    }
+                }
+
+                final long finished = System.nanoTime();
+                if (now >= measureStart && finished <= end) {
+                    report.latencies.get(operation).record(finished - now);
+                    report.total.record(finished - now);
+                    if (failed) report.errors.increment();
+                }
+                if (failed && connection.isClosed()) break;
+                now = finished;
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            try {
+                connection.close();
+            } catch (SQLException ex) {
+                LOGGER.warn("Can't close connection!", ex);
+            }
+        }
+
+        private void execute(Operation operation, Random random) throws SQLException, IOException {
+            final boolean alternative = random.nextInt(100) < 50;
+            switch (operation) {
+                case READ:
+                    if (alternative) {
+                        // list a page of real estates
+                        final int from = 50000 + random.nextInt(900000);
+                        listObjects.setBigDecimal(1, BigDecimal.valueOf(from));
+                        listObjects.setBigDecimal(2, BigDecimal.valueOf(from + 50000));
+                        try (ResultSet result = listObjects.executeQuery()) {
+                            while (result.next()) {
+                                result.getString("title");
+                            }
+                        }
+                    } else {
+                        // open a single real estate
+                        selectObject.setLong(1, 1 + random.nextInt(settings.getRows()));
+                        try (ResultSet result = selectObject.executeQuery()) {
+                            if (result.next()) {
+                                try (Reader reader = result.getCharacterStream("description")) {
+                                    if (reader != null) IOUtils.skip(reader, Long.MAX_VALUE);
+                                }
+                            }
+                        }
+                    }
+                    break;
+
+                case WRITE:
+                    if (alternative) {
+                        // change the properties of a real estate
+                        updateObject.setBigDecimal(1, BigDecimal.valueOf(50000 + random.nextInt(950000)));
+                        updateObject.setTimestamp(2, new Timestamp(System.currentTimeMillis()));
+                        updateObject.setLong(3, 1 + random.nextInt(settings.getRows()));
+                        updateObject.executeUpdate();
+                    } else {
+                        // add a new real estate
+                        setObject(insertObject, random, "NEW-" + Thread.currentThread().getId() + "-" + System.nanoTime());
+                        insertObject.executeUpdate();
+                    }
+                    break;
+
+                case LOB:
+                    if (alternative) {
+                        // replace an attached image
+                        updateFile.setBinaryStream(1, new ByteArrayInputStream(data), data.length);
+                        updateFile.setLong(2, 1 + random.nextInt(settings.getLobs()));
+                        updateFile.executeUpdate();
+                    } else {
+                        // download an attached image
+                        selectFile.setLong(1, 1 + random.nextInt(settings.getLobs()));
+                        try (ResultSet result = selectFile.executeQuery()) {
+                            if (result.next()) {
+                                try (InputStream input = result.getBinaryStream("file_data")) {
+                                    if (input != null) IOUtils.skip(input, Long.MAX_VALUE);
+                                }
+                            }
+                        }
+                    }
+                    break;
+
+                default:
+                    throw new IllegalArgumentException("Unsupported operation " + operation + "!");
+            }
+        }
+    }
+
+    /**
+     * Result of a measurement.
+     */
+    public static class Report {
+        private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+        private final LatencyHistogram total = LatencyHistogram.createPrecise();
+        private final LongAdder errors = new LongAdder();
+        private long durationNanos = 0;
+
+        private Report() {
+            super();
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, LatencyHistogram.createPrecise());
+            }
+        }
+
+        /**
+         * Get duration of the measurement, that excludes the warmup phase.
+         *
+         * @return duration in nanoseconds
+         */
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        /**
+         * Get number of failed operations.
+         *
+         * @return number of failed operations
+         */
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        /**
+         * Get latencies of an operation.
+         *
+         * @param operation operation
+         * @return latencies of successful and failed operations
+         */
+        public LatencyHistogram getLatencies(Operation operation) {
+            return latencies.get(operation);
+        }
+
+        /**
+         * Get number of executed operations per second.
+         *
+         * @param histogram latencies of the operations
+         * @return operations per second
+         */
+        public double getThroughput(LatencyHistogram histogram) {
+            return (durationNanos > 0) ?
+                    histogram.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos :
+                    0;
+        }
+
+        /**
+         * Get latencies of all operations.
+         *
+         * @return latencies of successful and failed operations
+         */
+        public LatencyHistogram getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * Settings of a workload.
+     */
+    public static class Settings {
+        private int clients = 4;
+        private int duration = 30;
+        private int warmup = 5;
+        private Workload workload = Workload.MIXED;
+        private int rows = 1000;
+        private int lobSize = 256 * 1024;
+        private int lobs = 100;
+
+        /**
+         * Get number of concurrent clients.
+         *
+         * @return number of concurrent clients
+         */
+        public int getClients() {
+            return clients;
+        }
+
+        /**
+         * Set number of concurrent clients.
+         *
+         * @param clients number of concurrent clients
+         */
+        public void setClients(int clients) {
+            this.clients = Math.max(1, clients);
+        }
+
+        /**
+         * Get duration of the measurement.
+         *
+         * @return duration in seconds
+         */
+        public int getDuration() {
+            return duration;
+        }
+
+        /**
+         * Set duration of the measurement.
+         *
+         * @param duration duration in seconds
+         */
+        public void setDuration(int duration) {
+            this.duration = Math.max(1, duration);
+        }
+
+        /**
+         * Get size of generated LOB's.
+         *
+         * @return size in bytes
+         */
+        public int getLobSize() {
+            return lobSize;
+        }
+
+        /**
+         * Set size of generated LOB's.
+         *
+         * @param lobSize size in bytes
+         */
+        public void setLobSize(int lobSize) {
+            this.lobSize = Math.max(1, lobSize);
+        }
+
+        /**
+         * Get number of generated LOB's.
+         *
+         * @return number of LOB's
+         */
+        public int getLobs() {
+            return lobs;
+        }
+
+        /**
+         * Set number of generated LOB's.
+         *
+         * @param lobs number of LOB's
+         */
+        public void setLobs(int lobs) {
+            this.lobs = Math.max(1, lobs);
+        }
+
+        /**
+         * Get number of generated real estates.
+         *
+         * @return number of real estates
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Set number of generated real estates.
+         *
+         * @param rows number of real estates
+         */
+        public void setRows(int rows) {
+            this.rows = Math.max(1, rows);
+        }
+
+        /**
+         * Get duration of the warmup phase.
+         *
+         * @return duration in seconds
+         */
+        public int getWarmup() {
+            return warmup;
+        }
+
+        /**
+         * Set duration of the warmup phase.
+         *
+         * @param warmup duration in seconds
+         */
+        public void setWarmup(int warmup) {
+            this.warmup = Math.max(0, warmup);
+        }
+
+        /**
+         * Get mixture of operations.
+         *
+         * @return mixture of operations
+         */
+        public Workload getWorkload() {
+            return workload;
+        }
+
+        /**
+         * Set mixture of operations.
+         *
+         * @param workload mixture of operations
+         */
+        public void setWorkload(Workload workload) {
+            this.workload = (workload != null) ? workload : Workload.MIXED;
+        }
+    }
+}
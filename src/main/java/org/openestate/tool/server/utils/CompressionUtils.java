@@ -0,0 +1,216 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods to compress and decompress backup archives.
+ */
+public class CompressionUtils {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(CompressionUtils.class);
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private CompressionUtils() {
+        super();
+    }
+
+    /**
+     * Compress a file.
+     * <p>
+     * The compressed data is written into a temporary file, that is renamed after compression
+     * has finished. The source file is kept.
+     *
+     * @param source  file to compress
+     * @param target  compressed file
+     * @param codec   compression codec
+     * @param threads number of threads, that compress concurrently
+     * @throws IOException if the file can't be compressed
+     */
+    public static void compress(File source, File target, Codec codec, int threads) throws IOException {
+        final File tempFile = new File(target.getParentFile(), target.getName() + ".tmp");
+        try {
+            try (InputStream input = new FileInputStream(source);
+                 OutputStream output = compress(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE), codec, threads)) {
+                IOUtils.copyLarge(input, output, new byte[BUFFER_SIZE]);
+            }
+            Files.move(tempFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            FileUtils.deleteQuietly(tempFile);
+        }
+    }
+
+    /**
+     * Create a stream, that compresses its data.
+     *
+     * @param output  stream, that receives the compressed data
+     * @param codec   compression codec
+     * @param threads number of threads, that compress concurrently
+     * @return compressing stream, that has to be closed in order to finish compression
+     * @throws IOException if the stream can't be created
+     */
+    public static OutputStream compress(OutputStream output, Codec codec, int threads) throws IOException {
+        if (codec == null || codec == Codec.NONE)
+            return output;
+        else if (threads > 1)
+            return new ParallelGZIPOutputStream(output, codec.getLevel(), threads);
+        else
+            return createGZIPOutputStream(output, codec.getLevel(), BUFFER_SIZE);
+    }
+
+    /**
+     * Create a gzip stream with a certain compression level.
+     *
+     * @param output     stream, that receives the compressed data
+     * @param level      compression level as defined by {@link Deflater}
+     * @param bufferSize size of the output buffer
+     * @return gzip stream
+     * @throws IOException if the stream can't be created
+     */
+    public static GZIPOutputStream createGZIPOutputStream(OutputStream output, int level, int bufferSize) throws IOException {
+        return new GZIPOutputStream(output, bufferSize) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+
+    /**
+     * Create a stream, that decompresses its data.
+     * <p>
+     * The compression is detected from the data itself, so archives of every supported codec
+     * (including archives written concurrently) can be read.
+     *
+     * @param input stream with possibly compressed data
+     * @return decompressing stream
+     * @throws IOException if the stream can't be read
+     */
+    public static InputStream decompress(InputStream input) throws IOException {
+        final InputStream bufferedInput = (input.markSupported()) ?
+                input : new BufferedInputStream(input, BUFFER_SIZE);
+
+        bufferedInput.mark(2);
+        final int b1 = bufferedInput.read();
+        final int b2 = bufferedInput.read();
+        bufferedInput.reset();
+
+        // GZIPInputStream also reads multiple gzip members written by ParallelGZIPOutputStream
+        if (b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) && b2 == ((GZIPInputStream.GZIP_MAGIC >> 8) & 0xff))
+            return new GZIPInputStream(bufferedInput, BUFFER_SIZE);
+        else
+            return bufferedInput;
+    }
+
+    /**
+     * Open a possibly compressed file for reading.
+     *
+     * @param file file to read
+     * @return decompressing stream
+     * @throws IOException if the file can't be read
+     */
+    public static InputStream decompress(File file) throws IOException {
+        final InputStream input = new FileInputStream(file);
+        try {
+            return decompress(input);
+        } catch (IOException | RuntimeException ex) {
+            try {
+                input.close();
+            } catch (IOException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Supported compression codecs.
+     */
+    public enum Codec {
+        /**
+         * No compression.
+         */
+        NONE(Deflater.NO_COMPRESSION, StringUtils.EMPTY),
+
+        /**
+         * gzip compression with the default compression level.
+         */
+        GZIP(Deflater.DEFAULT_COMPRESSION, ".gz"),
+
+        /**
+         * gzip compression with the fastest compression level.
+         */
+        FAST(Deflater.BEST_SPEED, ".gz");
+
+        private final int level;
+        private final String suffix;
+
+        Codec(int level, String suffix) {
+            this.level = level;
+            this.suffix = suffix;
+        }
+
+        /**
+         * Get codec by its name.
+         *
+         * @param name name of the codec
+         * @return codec or null, if no codec was found
+         */
+        public static Codec forName(String name) {
+            name = StringUtils.trimToNull(name);
+            if (name == null) return null;
+            for (Codec codec : values()) {
+                if (codec.name().equalsIgnoreCase(name)) return codec;
+            }
+            return null;
+        }
+
+        /**
+         * Get compression level.
+         *
+         * @return compression level as defined by {@link Deflater}
+         */
+        public int getLevel() {
+            return level;
+        }
+
+        /**
+         * Get suffix of compressed files.
+         *
+         * @return file suffix
+         */
+        public String getSuffix() {
+            return suffix;
+        }
+    }
+}
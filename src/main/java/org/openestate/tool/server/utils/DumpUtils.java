@@ -15,13 +15,23 @@
  */
 package org.openestate.tool.server.utils;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Connection;
@@ -32,9 +42,21 @@ import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.output.FileWriterWithEncoding;
+import org.apache.commons.io.input.ProxyInputStream;
+import org.apache.commons.io.input.ProxyReader;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.ObjectUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -50,6 +72,9 @@ import org.slf4j.LoggerFactory;
 public class DumpUtils {
     @SuppressWarnings("unused")
     private final static Logger LOGGER = LoggerFactory.getLogger(DumpUtils.class);
+    private final static int BUFFER_THRESHOLD = 4 * 1024 * 1024;
+    private final static long MIN_ROWS_PER_RANGE = 1000;
+    private final static int BUFFER_SIZE = 64 * 1024;
     private static long stamp = System.currentTimeMillis();
 
     /**
@@ -74,184 +99,361 @@ public class DumpUtils {
      * @throws SQLException if communication with the database failed
      */
     public static void dump(Connection c, File directory, String dbName) throws IOException, SQLException {
-        if (!directory.isDirectory() && !directory.mkdirs()) {
-            throw new IOException("Can't create directory: " + directory.getAbsolutePath());
-        }
-        File lobsDirectory = new File(directory, "lobs");
-        if (!lobsDirectory.isDirectory() && !lobsDirectory.mkdirs()) {
-            throw new IOException("Can't create directory: " + lobsDirectory.getAbsolutePath());
+        dump(c, new DirectoryTarget(directory), dbName, directory);
+    }
+
+    /**
+     * Create a database dump.
+     * <p>
+     * The schema script is written by the database server into a temporary file.
+     * Therefore the temporary directory has to be located on the same machine as the database server.
+     *
+     * @param c       database connection
+     * @param target  target, that receives the dumped files
+     * @param dbName  database name used in the generated files
+     * @param tempDir directory for temporary files
+     * @throws IOException  if files can't be written
+     * @throws SQLException if communication with the database failed
+     */
+    public static void dump(Connection c, Target target, String dbName, File tempDir) throws IOException, SQLException {
+        dump(c, null, target, dbName, tempDir, new Settings());
+    }
+
+    /**
+     * Create a database dump.
+     * <p>
+     * The schema script is written by the database server into a temporary file.
+     * Therefore the temporary directory has to be located on the same machine as the database server.
+     * <p>
+     * If more than one thread is configured in the settings, LOB's are exported concurrently through
+     * additional connections of the provided {@link ConnectionProvider}. Every thread reads its LOB's
+     * in a separate transaction, so rows modified during the dump may be exported in different states.
+     *
+     * @param c           database connection
+     * @param connections provider of additional database connections for concurrent LOB export,
+     *                    LOB's are exported through the provided database connection only, if null
+     * @param target      target, that receives the dumped files
+     * @param dbName      database name used in the generated files
+     * @param tempDir     directory for temporary files
+     * @param settings    settings of the dump process
+     * @throws IOException  if files can't be written
+     * @throws SQLException if communication with the database failed
+     */
+    public static void dump(Connection c, ConnectionProvider connections, Target target, String dbName, File tempDir, Settings settings) throws IOException, SQLException {
+        if (!tempDir.isDirectory() && !tempDir.mkdirs()) {
+            throw new IOException("Can't create directory: " + tempDir.getAbsolutePath());
         }
 
         // dump schema and non LOB data
         dbName = ObjectUtils.defaultIfNull(StringUtils.trimToNull(dbName), "dump");
-        File dumpFile = new File(directory, dbName + ".script");
-        dumpSchema(c, dumpFile);
+        dumpSchema(c, target, dbName + ".script", tempDir);
 
         // dump LOB's into separate files
-        File lobsFile = new File(directory, "lobs.sql");
-        dumpLobs(c, lobsFile, lobsDirectory);
-
-        // remove empty lobs.sql file
-        if (lobsFile.isFile() && lobsFile.length() < 1) {
-            FileUtils.deleteQuietly(lobsFile);
-        }
+        dumpLobs(c, connections, target, "lobs.sql", tempDir, settings);
     }
 
     /**
      * Dump LOB's into separate files.
      *
-     * @param c        database connection
-     * @param lobsFile SQL file for a later import of LOB files
-     * @param lobsDir  directory to store exported LOB files
+     * @param c           database connection
+     * @param connections provider of additional database connections for concurrent LOB export
+     * @param target      target, that receives the dumped files
+     * @param lobsPath    path of the SQL file for a later import of LOB files
+     * @param tempDir     directory for temporary files
+     * @param settings    settings of the dump process
      * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static void dumpLobs(Connection c, File lobsFile, File lobsDir) throws IOException, SQLException {
-        PreparedStatement statement = null;
-        ResultSet result = null;
-        int i;
-
-        boolean append = lobsFile.exists();
-        try (Writer lobsWriter = new FileWriterWithEncoding(lobsFile, StandardCharsets.UTF_8, append)) {
-            // get LOB fields from the database
-            statement = c.prepareStatement("SELECT * "
-                    + "FROM information_schema.system_columns "
-                    + "WHERE type_name IN (?, ?) "
-                    + "AND table_cat IN (?) "
-                    + "AND table_name IN (SELECT table_name FROM information_schema.system_tables WHERE table_type=?);");
-            i = 0;
-            statement.setString(++i, "BLOB");
-            statement.setString(++i, "CLOB");
-            statement.setString(++i, "PUBLIC");
-            statement.setString(++i, "TABLE");
-            result = statement.executeQuery();
-            while (result.next()) {
-                String tableCat = result.getString("table_cat");
-                String tableScheme = result.getString("table_schem");
-                String tableName = result.getString("table_name");
-                String columnName = result.getString("column_name");
-                String columnType = result.getString("type_name");
+    private static void dumpLobs(Connection c, ConnectionProvider connections, Target target, String lobsPath, File tempDir, Settings settings) throws IOException, SQLException {
+        final int threads = (connections != null) ? Math.max(1, settings.getThreads()) : 1;
+        final List<LobExport> exports = new ArrayList<>();
+        for (LobColumn column : getLobColumns(c)) {
+            if (threads > 1)
+                exports.addAll(getLobExports(c, column, threads));
+            else
+                exports.add(new LobExport(column, null, null));
+        }
 
-                // export LOB column
-                dumpLobsFromColumn(c, lobsWriter, lobsDir, tableCat, tableScheme, tableName, columnName, columnType);
+        final LobFiles files = new LobFiles(target, tempDir, settings);
+        final DeferredFileOutputStream lobsBuffer = new DeferredFileOutputStream(
+                BUFFER_THRESHOLD, "lobs-", ".sql", tempDir);
+        try {
+            if (threads > 1) {
+                // export LOB's concurrently and merge the generated statements in their original order
+                try {
+                    dumpLobsConcurrently(c, connections, files, exports, threads, lobsBuffer);
+                } finally {
+                    for (LobExport export : exports) {
+                        export.cleanup();
+                    }
+                    lobsBuffer.close();
+                }
+            } else {
+                // export LOB's through the provided connection
+                try (Writer lobsWriter = new OutputStreamWriter(lobsBuffer, StandardCharsets.UTF_8)) {
+                    final byte[] buffer = new byte[Math.max(4096, settings.getBufferSize())];
+                    for (LobExport export : exports) {
+                        dumpLobsFromColumn(c, lobsWriter, files, export, buffer, false);
+                    }
+                }
             }
+
+            // write lobs.sql, if LOB's were exported
+            if (lobsBuffer.getByteCount() > 0) write(target, lobsPath, lobsBuffer);
         } finally {
-            if (statement != null) statement.close();
-            if (result != null) result.close();
+            if (!lobsBuffer.isInMemory()) FileUtils.deleteQuietly(lobsBuffer.getFile());
         }
     }
 
     /**
-     * Dump LOB value of a certain table column.
+     * Dump LOB's concurrently.
+     * <p>
+     * Every thread uses its own database connection and takes the next pending export,
+     * until all exports are processed. The first thread uses the provided connection.
+     * <p>
+     * The generated statements of finished exports are merged in their original order. Statements of an export,
+     * that finished before its predecessors, are moved into a temporary file until they are merged. Therefore
+     * only the statements of currently processed exports are kept in memory.
      *
      * @param c           database connection
-     * @param lobsWriter  writer of the SQL file for a later import of LOB files
-     * @param lobsDir     directory to store exported LOB files
-     * @param tableCat    table catalog
-     * @param tableScheme table schema
-     * @param tableName   table name
-     * @param columnName  column name
-     * @param columnType  column type
+     * @param connections provider of additional database connections
+     * @param files       receiver of the exported LOB files
+     * @param exports     exports to process
+     * @param threads     number of threads, that export LOB's concurrently
+     * @param lobsOutput  receives the merged statements for a later import of LOB files
+     * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static void dumpLobsFromColumn(Connection c, Writer lobsWriter, File lobsDir, String tableCat, String tableScheme, String tableName, String columnName, String columnType) throws SQLException {
-        if (!"BLOB".equalsIgnoreCase(columnType) && !"CLOB".equalsIgnoreCase(columnType)) {
-            LOGGER.warn("Column '" + tableScheme + "." + tableName + "." + columnName + "' is neither a BLOB nor a CLOB!");
-            return;
+    private static void dumpLobsConcurrently(Connection c, ConnectionProvider connections, LobFiles files, List<LobExport> exports, int threads, OutputStream lobsOutput) throws IOException, SQLException {
+        final Queue<LobExport> pendingExports = new ConcurrentLinkedQueue<>(exports);
+        final LobStatementMerger merger = new LobStatementMerger(exports, lobsOutput, files.tempDir);
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, exports.size())));
+        final List<Future<Void>> workers = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads && i < exports.size(); i++) {
+                final boolean ownConnection = i > 0;
+                workers.add(executor.submit(() -> {
+                    final Connection workerConnection = (ownConnection) ? connections.getConnection() : c;
+                    try {
+                        final byte[] buffer = new byte[Math.max(4096, files.settings.getBufferSize())];
+                        LobExport export;
+                        while ((export = pendingExports.poll()) != null) {
+                            export.initStatements(files.tempDir);
+                            try (Writer lobsWriter = new OutputStreamWriter(export.statements, StandardCharsets.UTF_8)) {
+                                dumpLobsFromColumn(workerConnection, lobsWriter, files, export, buffer, true);
+                            }
+                            merger.finished(export);
+                        }
+                        return null;
+                    } catch (Exception ex) {
+                        // stop other threads as soon as possible
+                        pendingExports.clear();
+                        throw ex;
+                    } finally {
+                        if (ownConnection) workerConnection.close();
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
         }
 
-        // get primary key columns from the LOB table
-        String[] tablePK = getPrimaryKeys(c, tableCat, tableScheme, tableName);
-        if (ArrayUtils.isEmpty(tablePK)) {
-            LOGGER.warn("Can't export LOBS from '" + tableScheme + "." + tableName + "." + columnName + "' without primary key!");
-            return;
+        // wait for all threads to finish
+        Exception error = null;
+        for (Future<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                if (error == null) error = ex;
+            } catch (ExecutionException ex) {
+                if (error == null && ex.getCause() instanceof Exception) error = (Exception) ex.getCause();
+                else if (error == null) error = ex;
+            }
         }
+        if (error instanceof IOException)
+            throw (IOException) error;
+        if (error instanceof SQLException)
+            throw (SQLException) error;
+        if (error != null)
+            throw new IOException("Can't export LOB's!", error);
+    }
 
-        PreparedStatement statement = null;
-        ResultSet result = null;
-        try {
-            List<String> columns = new ArrayList<>(Arrays.asList(tablePK));
-            columns.add(columnName);
+    /**
+     * Dump LOB value of a certain table column.
+     * <p>
+     * If a page size is configured, the rows are read in multiple queries, that continue after the primary key
+     * of the last row of the previous page (keyset pagination). This keeps the result sets small and the time,
+     * that a single query occupies the database, short.
+     *
+     * @param c          database connection
+     * @param lobsWriter writer of the SQL file for a later import of LOB files
+     * @param files      receiver of the exported LOB files
+     * @param export     LOB column and range of rows to export
+     * @param buffer     buffer used to copy LOB's
+     * @param buffered   buffer LOB's before they are written into the target
+     * @throws IOException  if files can't be written
+     * @throws SQLException if communication with the database failed
+     */
+    private static void dumpLobsFromColumn(Connection c, Writer lobsWriter, LobFiles files, LobExport export, byte[] buffer, boolean buffered) throws IOException, SQLException {
+        final Settings settings = files.settings;
+        final String tableName = export.column.tableName;
+        final String[] tablePK = export.column.primaryKeys;
+        final boolean isRange = export.lowerBound != null && export.upperBound != null;
+        final int pageSize = Math.max(0, settings.getPageSize());
 
-            statement = c.prepareStatement("SELECT " + StringUtils.join(columns, ",") + " "
-                    + "FROM " + tableName + " "
-                    + "ORDER BY " + StringUtils.join(tablePK, ", ") + ";");
+        final List<String> columns = new ArrayList<>(Arrays.asList(tablePK));
+        columns.add(export.column.columnName);
 
-            result = statement.executeQuery();
-            while (result.next()) {
-                // get primary key value for the table row
-                List<String> pkConditions = new ArrayList<>();
-                boolean pkIsInvalid = false;
-                for (String pkCol : tablePK) {
-                    Object pkValue = result.getObject(pkCol);
-                    if (pkValue instanceof Number) {
-                        pkConditions.add(pkCol + " = " + pkValue.toString());
-                    } else if (pkValue instanceof String) {
-                        pkConditions.add(pkCol + " = '" + pkValue.toString() + "'");
-                    } else {
-                        if (pkValue == null)
-                            LOGGER.warn("Empty primary key in '" + tableScheme + "." + tableName + "." + pkCol + "'");
-                        else
-                            LOGGER.warn("Unsupported type of primary key in '" + tableScheme + "." + tableName + "." + pkCol + "' (" + pkValue.getClass().getName() + ")");
-                        pkIsInvalid = true;
-                        break;
+        Object[] lastKey = null;
+        while (true) {
+            final List<String> conditions = new ArrayList<>();
+            if (isRange) {
+                conditions.add(tablePK[0] + " >= ?");
+                conditions.add(tablePK[0] + " <= ?");
+            }
+            if (lastKey != null) {
+                // (pk1 > ?) OR (pk1 = ? AND pk2 > ?) OR ...
+                final List<String> keyConditions = new ArrayList<>();
+                for (int i = 0; i < tablePK.length; i++) {
+                    final List<String> keyCondition = new ArrayList<>();
+                    for (int j = 0; j < i; j++) {
+                        keyCondition.add(tablePK[j] + " = ?");
                     }
+                    keyCondition.add(tablePK[i] + " > ?");
+                    keyConditions.add("(" + StringUtils.join(keyCondition, " AND ") + ")");
                 }
-                if (pkIsInvalid) continue;
+                conditions.add("(" + StringUtils.join(keyConditions, " OR ") + ")");
+            }
 
-                try {
-                    String lobFileLookup = null;
-
-                    // get BLOB value
-                    if ("BLOB".equalsIgnoreCase(columnType)) {
-                        Blob blob = null;
-                        try {
-                            blob = result.getBlob(columnName);
-                            if (blob != null) {
-                                File file = writeBlob(blob, lobsDir);
-                                String relativePath = file.getAbsolutePath().substring(lobsDir.getParentFile().getAbsolutePath().length() + 1);
-                                lobFileLookup = "LOAD_FILE('" + relativePath + "')";
-                            }
-                        } finally {
-                            if (blob != null) blob.free();
+            int rows = 0;
+            try (PreparedStatement statement = c.prepareStatement("SELECT " + StringUtils.join(columns, ",") + " "
+                    + "FROM " + tableName + " "
+                    + ((!conditions.isEmpty()) ? "WHERE " + StringUtils.join(conditions, " AND ") + " " : StringUtils.EMPTY)
+                    + "ORDER BY " + StringUtils.join(tablePK, ", ")
+                    + ((pageSize > 0) ? " LIMIT " + pageSize : StringUtils.EMPTY) + ";")) {
+
+                if (settings.getFetchSize() > 0)
+                    statement.setFetchSize(settings.getFetchSize());
+
+                int i = 0;
+                if (isRange) {
+                    statement.setLong(++i, export.lowerBound);
+                    statement.setLong(++i, export.upperBound);
+                }
+                if (lastKey != null) {
+                    for (int j = 0; j < lastKey.length; j++) {
+                        for (int k = 0; k <= j; k++) {
+                            statement.setObject(++i, lastKey[k]);
                         }
                     }
+                }
 
-                    // get CLOB value
-                    else if ("CLOB".equalsIgnoreCase(columnType)) {
-                        Clob clob = null;
-                        try {
-                            clob = result.getClob(columnName);
-                            if (clob != null) {
-                                File file = writeClob(clob, lobsDir);
-                                String relativePath = file.getAbsolutePath().substring(lobsDir.getParentFile().getAbsolutePath().length() + 1);
-                                lobFileLookup = "LOAD_FILE('" + relativePath + "', '" + StandardCharsets.UTF_8.name() + "')";
+                try (ResultSet result = statement.executeQuery()) {
+                    while (result.next()) {
+                        rows++;
+                        if (pageSize > 0) {
+                            lastKey = new Object[tablePK.length];
+                            for (int j = 0; j < tablePK.length; j++) {
+                                lastKey[j] = result.getObject(tablePK[j]);
                             }
-                        } finally {
-                            if (clob != null) clob.free();
                         }
-                    } else {
-                        continue;
+                        dumpLobFromRow(result, lobsWriter, files, export, buffer, buffered);
                     }
+                }
+            }
 
-                    if (lobFileLookup != null) {
-                        lobsWriter.write("UPDATE " + tableScheme + "." + tableName + " "
-                                + "SET " + columnName + " = " + lobFileLookup + " "
-                                + "WHERE " + StringUtils.join(pkConditions, " AND ") + ";");
-                        lobsWriter.write(System.lineSeparator());
+            // stop, if the last page was processed
+            if (pageSize < 1 || rows < pageSize) break;
+        }
+    }
+
+    /**
+     * Dump LOB value of the current row of a result set.
+     *
+     * @param result     result set, that points to the row to export
+     * @param lobsWriter writer of the SQL file for a later import of LOB files
+     * @param files      receiver of the exported LOB files
+     * @param export     LOB column and range of rows to export
+     * @param buffer     buffer used to copy LOB's
+     * @param buffered   buffer LOB's before they are written into the target
+     * @throws IOException  if files can't be written
+     * @throws SQLException if communication with the database failed
+     */
+    private static void dumpLobFromRow(ResultSet result, Writer lobsWriter, LobFiles files, LobExport export, byte[] buffer, boolean buffered) throws IOException, SQLException {
+        final String tableScheme = export.column.tableScheme;
+        final String tableName = export.column.tableName;
+        final String columnName = export.column.columnName;
+        final String columnType = export.column.columnType;
+        final String[] tablePK = export.column.primaryKeys;
+
+        // get primary key value for the table row
+        List<String> pkConditions = new ArrayList<>();
+        boolean pkIsInvalid = false;
+        for (String pkCol : tablePK) {
+            Object pkValue = result.getObject(pkCol);
+            if (pkValue instanceof Number) {
+                pkConditions.add(pkCol + " = " + pkValue.toString());
+            } else if (pkValue instanceof String) {
+                pkConditions.add(pkCol + " = '" + StringUtils.replace(pkValue.toString(), "'", "''") + "'");
+            } else {
+                if (pkValue == null)
+                    LOGGER.warn("Empty primary key in '" + tableScheme + "." + tableName + "." + pkCol + "'");
+                else
+                    LOGGER.warn("Unsupported type of primary key in '" + tableScheme + "." + tableName + "." + pkCol + "' (" + pkValue.getClass().getName() + ")");
+                pkIsInvalid = true;
+                break;
+            }
+        }
+        if (pkIsInvalid) return;
+
+        try {
+            String lobFileLookup = null;
+
+            // get BLOB value
+            if ("BLOB".equalsIgnoreCase(columnType)) {
+                Blob blob = null;
+                try {
+                    blob = result.getBlob(columnName);
+                    if (blob != null) {
+                        String path = writeBlob(blob, files, buffer, buffered);
+                        lobFileLookup = "LOAD_FILE('" + path + "')";
                     }
-                } catch (Exception ex) {
-                    LOGGER.warn("Can't write LOB!");
-                    LOGGER.warn("> table       : " + tableScheme + "." + tableName);
-                    LOGGER.warn("> lob column  : " + columnName);
-                    LOGGER.warn("> primary key : " + StringUtils.join(pkConditions, ", "));
-                    LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
-                    //continue;
+                } finally {
+                    if (blob != null) blob.free();
                 }
             }
-        } finally {
-            if (statement != null) statement.close();
-            if (result != null) result.close();
+
+            // get CLOB value
+            else if ("CLOB".equalsIgnoreCase(columnType)) {
+                Clob clob = null;
+                try {
+                    clob = result.getClob(columnName);
+                    if (clob != null) {
+                        String path = writeClob(clob, files, buffer.length);
+                        lobFileLookup = "LOAD_FILE('" + path + "', '" + StandardCharsets.UTF_8.name() + "')";
+                    }
+                } finally {
+                    if (clob != null) clob.free();
+                }
+            } else {
+                return;
+            }
+
+            if (lobFileLookup != null) {
+                lobsWriter.write("UPDATE " + tableScheme + "." + tableName + " "
+                        + "SET " + columnName + " = " + lobFileLookup + " "
+                        + "WHERE " + StringUtils.join(pkConditions, " AND ") + ";");
+                lobsWriter.write(System.lineSeparator());
+            }
+        } catch (SQLException | LobReadException ex) {
+            // Skip LOB's, that can't be read from the database. Failures of the target are not caught,
+            // because the dump would be incomplete or corrupt afterwards.
+            LOGGER.warn("Can't write LOB!");
+            LOGGER.warn("> table       : " + tableScheme + "." + tableName);
+            LOGGER.warn("> lob column  : " + columnName);
+            LOGGER.warn("> primary key : " + StringUtils.join(pkConditions, ", "));
+            LOGGER.warn("> " + ex.getLocalizedMessage(), ex);
         }
     }
 
@@ -259,12 +461,23 @@ public class DumpUtils {
      * Dump schema and non LOB data.
      *
      * @param c          database connection
-     * @param schemaFile SQL file to store the schema and non LOB data
+     * @param target     target, that receives the dumped files
+     * @param schemaPath path of the SQL file to store the schema and non LOB data
+     * @param tempDir    directory for temporary files
+     * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static void dumpSchema(Connection c, File schemaFile) throws SQLException {
-        try (Statement statement = c.createStatement()) {
-            statement.execute("SCRIPT '" + StringUtils.replace(schemaFile.getAbsolutePath(), "'", "\\'") + "'");
+    private static void dumpSchema(Connection c, Target target, String schemaPath, File tempDir) throws IOException, SQLException {
+        // The database server refuses to overwrite existing files.
+        final File schemaFile = File.createTempFile("schema-", ".script", tempDir);
+        FileUtils.deleteQuietly(schemaFile);
+        try {
+            try (Statement statement = c.createStatement()) {
+                statement.execute("SCRIPT '" + StringUtils.replace(schemaFile.getAbsolutePath(), "'", "\\'") + "'");
+            }
+            target.move(schemaPath, schemaFile);
+        } finally {
+            FileUtils.deleteQuietly(schemaFile);
         }
     }
 
@@ -303,52 +516,752 @@ public class DumpUtils {
     }
 
     /**
-     * Write a BLOB value into a file.
+     * Get LOB columns of the database, that can be exported.
+     *
+     * @param c database connection
+     * @return LOB columns
+     * @throws SQLException if communication with the database failed
+     */
+    private static List<LobColumn> getLobColumns(Connection c) throws SQLException {
+        final List<LobColumn> columns = new ArrayList<>();
+        PreparedStatement statement = null;
+        ResultSet result = null;
+        try {
+            // get LOB fields from the database
+            statement = c.prepareStatement("SELECT * "
+                    + "FROM information_schema.system_columns "
+                    + "WHERE type_name IN (?, ?) "
+                    + "AND table_cat IN (?) "
+                    + "AND table_name IN (SELECT table_name FROM information_schema.system_tables WHERE table_type=?);");
+            int i = 0;
+            statement.setString(++i, "BLOB");
+            statement.setString(++i, "CLOB");
+            statement.setString(++i, "PUBLIC");
+            statement.setString(++i, "TABLE");
+            result = statement.executeQuery();
+            while (result.next()) {
+                LobColumn column = new LobColumn();
+                column.tableCat = result.getString("table_cat");
+                column.tableScheme = result.getString("table_schem");
+                column.tableName = result.getString("table_name");
+                column.columnName = result.getString("column_name");
+                column.columnType = result.getString("type_name");
+                columns.add(column);
+            }
+        } finally {
+            if (statement != null) statement.close();
+            if (result != null) result.close();
+        }
+
+        final List<LobColumn> exportableColumns = new ArrayList<>();
+        for (LobColumn column : columns) {
+            if (!"BLOB".equalsIgnoreCase(column.columnType) && !"CLOB".equalsIgnoreCase(column.columnType)) {
+                LOGGER.warn("Column '" + column.tableScheme + "." + column.tableName + "." + column.columnName + "' is neither a BLOB nor a CLOB!");
+                continue;
+            }
+
+            // get primary key columns from the LOB table
+            column.primaryKeys = getPrimaryKeys(c, column.tableCat, column.tableScheme, column.tableName);
+            if (ArrayUtils.isEmpty(column.primaryKeys)) {
+                LOGGER.warn("Can't export LOBS from '" + column.tableScheme + "." + column.tableName + "." + column.columnName + "' without primary key!");
+                continue;
+            }
+            exportableColumns.add(column);
+        }
+        return exportableColumns;
+    }
+
+    /**
+     * Split the export of a LOB column into ranges of its primary key.
+     * <p>
+     * Only tables with a single integer primary key are split.
+     * Other tables are exported as a whole.
+     *
+     * @param c       database connection
+     * @param column  LOB column to export
+     * @param threads number of threads, that export LOB's concurrently
+     * @return exports for the LOB column
+     * @throws SQLException if communication with the database failed
+     */
+    private static List<LobExport> getLobExports(Connection c, LobColumn column, int threads) throws SQLException {
+        final List<LobExport> exports = new ArrayList<>();
+        if (column.primaryKeys.length != 1) {
+            exports.add(new LobExport(column, null, null));
+            return exports;
+        }
+
+        final String pk = column.primaryKeys[0];
+        final Object min;
+        final Object max;
+        final long count;
+        try (Statement statement = c.createStatement();
+             ResultSet result = statement.executeQuery("SELECT MIN(" + pk + "), MAX(" + pk + "), COUNT(*) "
+                     + "FROM " + column.tableName + ";")) {
+            if (!result.next()) {
+                exports.add(new LobExport(column, null, null));
+                return exports;
+            }
+            min = result.getObject(1);
+            max = result.getObject(2);
+            count = result.getLong(3);
+        }
+
+        final boolean isInteger = (min instanceof Long || min instanceof Integer || min instanceof Short || min instanceof Byte)
+                && (max instanceof Long || max instanceof Integer || max instanceof Short || max instanceof Byte);
+        final long ranges = Math.min(count / MIN_ROWS_PER_RANGE, threads * 4L);
+        if (!isInteger || ranges < 2) {
+            exports.add(new LobExport(column, null, null));
+            return exports;
+        }
+
+        final long lower = ((Number) min).longValue();
+        final long upper = ((Number) max).longValue();
+        final long width;
+        try {
+            width = Math.addExact(Math.subtractExact(upper, lower) / ranges, 1);
+        } catch (ArithmeticException ex) {
+            exports.add(new LobExport(column, null, null));
+            return exports;
+        }
+        for (long start = lower; start <= upper; ) {
+            final long end = (upper - start < width) ? upper : start + width - 1;
+            exports.add(new LobExport(column, start, end));
+            if (end == upper) break;
+            start = end + 1;
+        }
+        return exports;
+    }
+
+    /**
+     * Write the content of a buffer into the dump target.
+     *
+     * @param target target, that receives the dumped files
+     * @param path   path of the written file
+     * @param buffer buffer with the content to write
+     * @throws IOException if the file can't be written
+     */
+    private static void write(Target target, String path, DeferredFileOutputStream buffer) throws IOException {
+        if (buffer.isInMemory()) {
+            try (InputStream input = new ByteArrayInputStream(buffer.getData())) {
+                target.write(path, buffer.getByteCount(), input);
+            }
+        } else {
+            target.move(path, buffer.getFile());
+        }
+    }
+
+    /**
+     * Write a BLOB value into the dump.
      *
-     * @param blob    BLOB value
-     * @param lobsDir directory to store exported LOB files
-     * @return created file in the provided directory
+     * @param blob     BLOB value
+     * @param files    receiver of the exported LOB files
+     * @param buffer   buffer used to copy the BLOB
+     * @param buffered buffer the BLOB before it is written into the target
+     * @return path of the written file
      * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static File writeBlob(Blob blob, File lobsDir) throws IOException, SQLException {
-        final long id;
-        synchronized (DumpUtils.class) {
-            id = ++stamp;
-        }
-        File blobFile = new File(lobsDir, id + ".blob");
-        try (OutputStream output = new FileOutputStream(blobFile)) {
-            IOUtils.copy(blob.getBinaryStream(), output);
-            output.flush();
-            return blobFile;
-        } catch (IOException | SQLException ex) {
-            FileUtils.deleteQuietly(blobFile);
-            throw ex;
+    private static String writeBlob(Blob blob, LobFiles files, byte[] buffer, boolean buffered) throws IOException, SQLException {
+        if (!buffered && !files.isDeduplicated()) {
+            final String path = "lobs/" + nextStamp() + ".blob";
+            try (InputStream input = new LobInputStream(blob.getBinaryStream())) {
+                files.target.write(path, blob.length(), input);
+            }
+            return path;
+        }
+
+        // Read the BLOB completely before it is written, so that
+        // the target is not blocked while the BLOB is transferred from the database
+        // and the name of deduplicated files is known.
+        final MessageDigest digest = files.createDigest();
+        final DeferredFileOutputStream blobBuffer = new DeferredFileOutputStream(
+                BUFFER_THRESHOLD, "blob-", ".tmp", files.tempDir);
+        try {
+            try (InputStream input = new LobInputStream(blob.getBinaryStream());
+                 OutputStream output = (digest != null) ? new DigestOutputStream(blobBuffer, digest) : blobBuffer) {
+                IOUtils.copyLarge(input, output, buffer);
+            }
+            return files.write(blobBuffer, digest, ".blob");
+        } finally {
+            if (!blobBuffer.isInMemory()) FileUtils.deleteQuietly(blobBuffer.getFile());
         }
     }
 
     /**
-     * Write a CLOB value into a file.
+     * Write a CLOB value into the dump.
+     * <p>
+     * The CLOB is encoded in UTF-8 and buffered before it is written,
+     * because its size in bytes is unknown until it was completely read.
      *
-     * @param clob    CLOB value
-     * @param lobsDir directory to store exported LOB files
-     * @return created file in the provided directory
+     * @param clob       CLOB value
+     * @param files      receiver of the exported LOB files
+     * @param bufferSize size of the buffer used to copy the CLOB
+     * @return path of the written file
      * @throws IOException  if files can't be written
      * @throws SQLException if communication with the database failed
      */
-    private static File writeClob(Clob clob, File lobsDir) throws IOException, SQLException {
-        final long id;
-        synchronized (DumpUtils.class) {
-            id = ++stamp;
-        }
-        File clobFile = new File(lobsDir, id + ".clob");
-        try (Writer writer = new OutputStreamWriter(new FileOutputStream(clobFile), StandardCharsets.UTF_8)) {
-            IOUtils.copy(clob.getCharacterStream(), writer);
-            writer.flush();
-            return clobFile;
-        } catch (IOException | SQLException ex) {
-            FileUtils.deleteQuietly(clobFile);
-            throw ex;
+    private static String writeClob(Clob clob, LobFiles files, int bufferSize) throws IOException, SQLException {
+        final MessageDigest digest = files.createDigest();
+        final DeferredFileOutputStream clobBuffer = new DeferredFileOutputStream(
+                BUFFER_THRESHOLD, "clob-", ".tmp", files.tempDir);
+        try {
+            try (Writer writer = new OutputStreamWriter((digest != null) ? new DigestOutputStream(clobBuffer, digest) : clobBuffer, StandardCharsets.UTF_8)) {
+                try (Reader reader = new LobReader(clob.getCharacterStream())) {
+                    IOUtils.copyLarge(reader, writer, new char[bufferSize]);
+                }
+                writer.flush();
+            }
+            return files.write(clobBuffer, digest, ".clob");
+        } finally {
+            if (!clobBuffer.isInMemory()) FileUtils.deleteQuietly(clobBuffer.getFile());
+        }
+    }
+
+    /**
+     * Get a unique number for the name of an exported LOB file.
+     *
+     * @return unique number
+     */
+    private static synchronized long nextStamp() {
+        return ++stamp;
+    }
+
+    /**
+     * Convert bytes into a hexadecimal string.
+     *
+     * @param bytes bytes to convert
+     * @return hexadecimal string
+     */
+    static String toHex(byte[] bytes) {
+        final StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Provider of database connections.
+     */
+    public interface ConnectionProvider {
+        /**
+         * Open a new database connection.
+         *
+         * @return database connection
+         * @throws SQLException if the connection can't be established
+         */
+        Connection getConnection() throws SQLException;
+    }
+
+    /**
+     * Settings of the dump process.
+     */
+    public static class Settings {
+        private int threads = 1;
+        private int bufferSize = BUFFER_SIZE;
+        private int pageSize = 0;
+        private int fetchSize = 0;
+        private boolean deduplicate = false;
+        private File lobDirectory = null;
+
+        /**
+         * Create settings with default values.
+         */
+        public Settings() {
+            super();
+        }
+
+        /**
+         * Create a copy of other settings.
+         *
+         * @param other settings to copy
+         */
+        public Settings(Settings other) {
+            this();
+            this.threads = other.threads;
+            this.bufferSize = other.bufferSize;
+            this.pageSize = other.pageSize;
+            this.fetchSize = other.fetchSize;
+            this.deduplicate = other.deduplicate;
+            this.lobDirectory = other.lobDirectory;
+        }
+
+        /**
+         * Get size of the buffer used to copy LOB's.
+         *
+         * @return buffer size in bytes
+         */
+        public int getBufferSize() {
+            return bufferSize;
+        }
+
+        /**
+         * Set size of the buffer used to copy LOB's.
+         *
+         * @param bufferSize buffer size in bytes
+         */
+        public void setBufferSize(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        /**
+         * Test, if exported LOB's are deduplicated.
+         *
+         * @return true, if LOB files are named by the hash of their content and written only once
+         */
+        public boolean isDeduplicate() {
+            return deduplicate;
+        }
+
+        /**
+         * Enable or disable deduplication of exported LOB's.
+         * <p>
+         * If enabled, LOB files are named by the SHA-256 hash of their content and identical LOB's
+         * are written only once into the dump.
+         *
+         * @param deduplicate true, if LOB files are named by the hash of their content and written only once
+         */
+        public void setDeduplicate(boolean deduplicate) {
+            this.deduplicate = deduplicate;
+        }
+
+        /**
+         * Get number of rows, that are fetched from the database at once while LOB's are exported.
+         *
+         * @return fetch size, 0 uses the default of the JDBC driver
+         */
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        /**
+         * Set number of rows, that are fetched from the database at once while LOB's are exported.
+         *
+         * @param fetchSize fetch size, 0 uses the default of the JDBC driver
+         */
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        /**
+         * Get directory, that stores deduplicated LOB files shared by multiple dumps.
+         *
+         * @return LOB directory or null, if LOB files are written into the dump
+         */
+        public File getLobDirectory() {
+            return lobDirectory;
+        }
+
+        /**
+         * Set directory, that stores deduplicated LOB files shared by multiple dumps.
+         * <p>
+         * If a LOB directory is set, LOB's are always deduplicated and their files are written into the
+         * LOB directory instead of the dump. Files already present from previous dumps are reused and their
+         * modification time is updated. The generated lobs.sql refers to the files at <code>lobs/</code>,
+         * therefore the LOB directory should be named <code>lobs</code> and the dump should be restored
+         * next to it.
+         *
+         * @param lobDirectory LOB directory or null, if LOB files are written into the dump
+         */
+        public void setLobDirectory(File lobDirectory) {
+            this.lobDirectory = lobDirectory;
+        }
+
+        /**
+         * Get maximum number of rows, that are selected by a single query while LOB's are exported.
+         *
+         * @return page size, 0 selects all rows of a table at once
+         */
+        public int getPageSize() {
+            return pageSize;
+        }
+
+        /**
+         * Set maximum number of rows, that are selected by a single query while LOB's are exported.
+         *
+         * @param pageSize page size, 0 selects all rows of a table at once
+         */
+        public void setPageSize(int pageSize) {
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Get number of threads, that export LOB's concurrently.
+         *
+         * @return number of threads
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Set number of threads, that export LOB's concurrently.
+         *
+         * @param threads number of threads
+         */
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * A LOB column, that is exported into the dump.
+     */
+    private static class LobColumn {
+        private String tableCat;
+        private String tableScheme;
+        private String tableName;
+        private String columnName;
+        private String columnType;
+        private String[] primaryKeys;
+    }
+
+    /**
+     * A range of rows of a LOB column, that is exported into the dump.
+     */
+    private static class LobExport {
+        private final LobColumn column;
+        private final Long lowerBound;
+        private final Long upperBound;
+        private DeferredFileOutputStream statements = null;
+        private File statementsFile = null;
+        private boolean finished = false;
+        private boolean merged = false;
+
+        private LobExport(LobColumn column, Long lowerBound, Long upperBound) {
+            this.column = column;
+            this.lowerBound = lowerBound;
+            this.upperBound = upperBound;
+        }
+
+        private void cleanup() {
+            if (statements != null && !statements.isInMemory())
+                FileUtils.deleteQuietly(statements.getFile());
+            if (statementsFile != null)
+                FileUtils.deleteQuietly(statementsFile);
+            statements = null;
+            statementsFile = null;
+        }
+
+        private void copyStatements(OutputStream output) throws IOException {
+            if (statementsFile != null) {
+                FileUtils.copyFile(statementsFile, output);
+            } else if (statements == null || statements.getByteCount() < 1) {
+                return;
+            } else if (statements.isInMemory()) {
+                output.write(statements.getData());
+            } else {
+                FileUtils.copyFile(statements.getFile(), output);
+            }
+        }
+
+        private void moveStatementsToFile(File tempDir) throws IOException {
+            if (statements == null || !statements.isInMemory() || statements.getByteCount() < 1) return;
+            final File file = File.createTempFile("lobs-", ".sql", tempDir);
+            try {
+                FileUtils.writeByteArrayToFile(file, statements.getData());
+            } catch (IOException ex) {
+                FileUtils.deleteQuietly(file);
+                throw ex;
+            }
+            statementsFile = file;
+            statements = null;
+        }
+
+        private void initStatements(File tempDir) {
+            statements = new DeferredFileOutputStream(BUFFER_THRESHOLD, "lobs-", ".sql", tempDir);
+        }
+    }
+
+    /**
+     * Merges the statements of finished exports in their original order.
+     */
+    private static class LobStatementMerger {
+        private final List<LobExport> exports;
+        private final OutputStream output;
+        private final File tempDir;
+        private int next = 0;
+
+        private LobStatementMerger(List<LobExport> exports, OutputStream output, File tempDir) {
+            this.exports = exports;
+            this.output = output;
+            this.tempDir = tempDir;
+        }
+
+        /**
+         * Merge the statements of an export, that has finished.
+         * <p>
+         * If a previous export is still running, the statements are moved into a temporary file.
+         *
+         * @param export finished export
+         * @throws IOException if the statements can't be written
+         */
+        private synchronized void finished(LobExport export) throws IOException {
+            export.finished = true;
+            while (next < exports.size() && exports.get(next).finished) {
+                final LobExport nextExport = exports.get(next++);
+                nextExport.copyStatements(output);
+                nextExport.cleanup();
+                nextExport.merged = true;
+            }
+            if (!export.merged) export.moveStatementsToFile(tempDir);
+        }
+    }
+
+    /**
+     * Stream of a BLOB value, that marks failures while reading from the database.
+     */
+    private static class LobInputStream extends ProxyInputStream {
+        private LobInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        protected void handleIOException(IOException ex) throws IOException {
+            throw new LobReadException(ex);
+        }
+    }
+
+    /**
+     * Failure while a LOB value is read from the database.
+     */
+    private static class LobReadException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private LobReadException(IOException cause) {
+            super(cause.getLocalizedMessage(), cause);
+        }
+    }
+
+    /**
+     * Reader of a CLOB value, that marks failures while reading from the database.
+     */
+    private static class LobReader extends ProxyReader {
+        private LobReader(Reader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected void handleIOException(IOException ex) throws IOException {
+            throw new LobReadException(ex);
+        }
+    }
+
+    /**
+     * Receiver of the LOB files exported into a dump.
+     * <p>
+     * If deduplication is enabled, LOB files are named by the SHA-256 hash of their content
+     * and every distinct content is written only once.
+     */
+    private static class LobFiles {
+        private final Target target;
+        private final File tempDir;
+        private final Settings settings;
+        private final ConcurrentMap<String, CompletableFuture<Void>> writtenPaths = new ConcurrentHashMap<>();
+
+        private LobFiles(Target target, File tempDir, Settings settings) {
+            this.target = target;
+            this.tempDir = tempDir;
+            this.settings = settings;
+        }
+
+        private MessageDigest createDigest() throws IOException {
+            if (!isDeduplicated()) return null;
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IOException("SHA-256 is not supported!", ex);
+            }
+        }
+
+        private boolean isDeduplicated() {
+            return settings.isDeduplicate() || settings.getLobDirectory() != null;
+        }
+
+        private String write(DeferredFileOutputStream buffer, MessageDigest digest, String extension) throws IOException {
+            if (digest == null) {
+                final String path = "lobs/" + nextStamp() + extension;
+                DumpUtils.write(target, path, buffer);
+                return path;
+            }
+
+            final String name = toHex(digest.digest()) + extension;
+            final String path = "lobs/" + name;
+
+            // The same content is written only once into this dump. Other threads with the same content wait
+            // until the file was completely written, so that they never reference a missing or partial file.
+            final CompletableFuture<Void> written = new CompletableFuture<>();
+            CompletableFuture<Void> previous;
+            while ((previous = writtenPaths.putIfAbsent(path, written)) != null) {
+                try {
+                    previous.get();
+                    return path;
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for '" + path + "'!");
+                } catch (ExecutionException ex) {
+                    // the previous write failed, try to write the content again
+                    writtenPaths.remove(path, previous);
+                }
+            }
+
+            try {
+                writeFile(path, name, buffer);
+                written.complete(null);
+                return path;
+            } catch (IOException | RuntimeException ex) {
+                writtenPaths.remove(path, written);
+                written.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+
+        private void writeFile(String path, String name, DeferredFileOutputStream buffer) throws IOException {
+            final File lobDirectory = settings.getLobDirectory();
+            if (lobDirectory == null) {
+                DumpUtils.write(target, path, buffer);
+                return;
+            }
+
+            // the same content was already written by a previous dump,
+            // update its modification time in order to mark it as used
+            final File lobFile = new File(lobDirectory, name);
+            if (lobFile.isFile()) {
+                if (!lobFile.setLastModified(System.currentTimeMillis()))
+                    LOGGER.warn("Can't update modification time of '" + lobFile.getAbsolutePath() + "'!");
+                return;
+            }
+
+            // write into a temporary file and rename it afterwards,
+            // so that incomplete files are never visible in the LOB directory
+            final File tempFile = File.createTempFile("lob-", ".tmp", lobDirectory);
+            try {
+                if (buffer.isInMemory())
+                    FileUtils.writeByteArrayToFile(tempFile, buffer.getData());
+                else
+                    FileUtils.copyFile(buffer.getFile(), tempFile);
+                Files.move(tempFile.toPath(), lobFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                FileUtils.deleteQuietly(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Target, that receives the files of a database dump.
+     */
+    public interface Target {
+        /**
+         * Move a file into the dump.
+         * <p>
+         * The provided file is not used by the caller anymore.
+         * Implementations may rename or delete it.
+         *
+         * @param path path of the file within the dump
+         * @param file file to move into the dump
+         * @throws IOException if the file can't be written
+         */
+        void move(String path, File file) throws IOException;
+
+        /**
+         * Write a file into the dump.
+         *
+         * @param path  path of the file within the dump
+         * @param size  number of bytes provided by the input stream
+         * @param input content of the file
+         * @throws IOException if the file can't be written
+         */
+        void write(String path, long size, InputStream input) throws IOException;
+    }
+
+    /**
+     * Write a database dump into a tar archive.
+     */
+    public static class ArchiveTarget implements Target {
+        private final TarOutputStream archive;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        /**
+         * Create dump target.
+         *
+         * @param archive tar archive, that receives the dumped files
+         */
+        public ArchiveTarget(TarOutputStream archive) {
+            this.archive = archive;
+        }
+
+        @Override
+        public void move(String path, File file) throws IOException {
+            try (InputStream input = new FileInputStream(file)) {
+                write(path, file.length(), input);
+            } finally {
+                FileUtils.deleteQuietly(file);
+            }
+        }
+
+        @Override
+        public synchronized void write(String path, long size, InputStream input) throws IOException {
+            archive.putEntry(path, size, System.currentTimeMillis());
+            try {
+                IOUtils.copyLarge(input, archive, 0, size, buffer);
+            } finally {
+                // Fill up incomplete entries in order to keep the archive readable.
+                // The incomplete file is not referenced in the dump.
+                final long remaining = archive.getRemainingEntrySize();
+                if (remaining > 0) {
+                    final byte[] zeros = new byte[(int) Math.min(remaining, 8192)];
+                    for (long i = remaining; i > 0; i -= zeros.length) {
+                        archive.write(zeros, 0, (int) Math.min(i, zeros.length));
+                    }
+                }
+                archive.closeEntry();
+            }
+            if (input.read() != -1)
+                throw new IOException("The file '" + path + "' is larger than " + size + " bytes!");
+        }
+    }
+
+    /**
+     * Write a database dump into a directory.
+     */
+    public static class DirectoryTarget implements Target {
+        private final File directory;
+
+        /**
+         * Create dump target.
+         *
+         * @param directory directory, that receives the dumped files
+         */
+        public DirectoryTarget(File directory) {
+            this.directory = directory;
+        }
+
+        private File getFile(String path) throws IOException {
+            final File file = new File(directory, FilenameUtils.separatorsToSystem(path));
+            final File parent = file.getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs())
+                throw new IOException("Can't create directory: " + parent.getAbsolutePath());
+            return file;
+        }
+
+        @Override
+        public void move(String path, File file) throws IOException {
+            final File targetFile = getFile(path);
+            FileUtils.deleteQuietly(targetFile);
+            FileUtils.moveFile(file, targetFile);
+        }
+
+        @Override
+        public void write(String path, long size, InputStream input) throws IOException {
+            final File targetFile = getFile(path);
+            try (OutputStream output = new FileOutputStream(targetFile)) {
+                IOUtils.copyLarge(input, output, new byte[BUFFER_SIZE]);
+                output.flush();
+            } catch (IOException ex) {
+                FileUtils.deleteQuietly(targetFile);
+                throw ex;
+            }
         }
     }
 }
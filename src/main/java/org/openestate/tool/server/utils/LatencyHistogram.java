@@ -0,0 +1,177 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of latencies with fixed buckets.
+ * <p>
+ * Values are recorded without locking and without allocation of objects, so that the histogram may be updated
+ * by many threads concurrently.
+ */
+public class LatencyHistogram {
+    /**
+     * Default upper bounds of the buckets in milliseconds.
+     */
+    public final static double[] DEFAULT_BUCKETS = new double[]{
+            0.5, 1, 2.5, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final static double[] PRECISE_STEPS = new double[]{
+            1, 1.25, 1.5, 1.75, 2, 2.5, 3, 3.5, 4, 5, 6, 7, 8, 9};
+    private final long[] bounds;
+    private final double[] buckets;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Create a histogram with default buckets.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_BUCKETS);
+    }
+
+    /**
+     * Create a histogram.
+     *
+     * @param buckets upper bounds of the buckets in milliseconds in ascending order
+     */
+    public LatencyHistogram(double[] buckets) {
+        this.buckets = buckets.clone();
+        this.bounds = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            this.bounds[i] = (long) (buckets[i] * TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        this.counts = new AtomicLongArray(buckets.length + 1);
+    }
+
+    /**
+     * Create a histogram with buckets of bounded relative error.
+     * <p>
+     * Similar to HdrHistogram every decade from 0.01 ms up to 100 seconds is divided into linear steps,
+     * so that percentiles are reported with an error of at most 25%.
+     *
+     * @return histogram
+     */
+    public static LatencyHistogram createPrecise() {
+        final List<Double> buckets = new ArrayList<>();
+        for (double decade = 0.01; decade < 100000; decade *= 10) {
+            for (double step : PRECISE_STEPS) {
+                buckets.add(Math.round(decade * step * 1000d) / 1000d);
+            }
+        }
+        final double[] values = new double[buckets.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buckets.get(i);
+        }
+        return new LatencyHistogram(values);
+    }
+
+    /**
+     * Get upper bounds of the buckets.
+     *
+     * @return upper bounds in milliseconds
+     */
+    public double[] getBuckets() {
+        return buckets.clone();
+    }
+
+    /**
+     * Get number of recorded values.
+     *
+     * @return number of values
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get cumulative number of recorded values per bucket.
+     * <p>
+     * The last element contains the number of all values including values above the largest bucket.
+     *
+     * @return number of values, that are less or equal to the upper bound of each bucket
+     */
+    public long[] getCumulativeCounts() {
+        final long[] result = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < result.length; i++) {
+            total += counts.get(i);
+            result[i] = total;
+        }
+        return result;
+    }
+
+    /**
+     * Get largest recorded value.
+     *
+     * @return largest value in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the value at a certain percentile.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return upper bound of the bucket, that contains the percentile, in milliseconds
+     */
+    public double getPercentile(double percentile) {
+        final long[] cumulative = getCumulativeCounts();
+        final long total = cumulative[cumulative.length - 1];
+        if (total < 1) return 0;
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100d));
+        for (int i = 0; i < buckets.length; i++) {
+            if (cumulative[i] >= rank) return buckets[i];
+        }
+        return max.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Get sum of recorded values.
+     *
+     * @return sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        final int pos = Arrays.binarySearch(bounds, nanos);
+        counts.incrementAndGet((pos >= 0) ? pos : -pos - 1);
+        count.increment();
+        sum.add(nanos);
+
+        long current = max.get();
+        while (nanos > current && !max.compareAndSet(current, nanos)) {
+            current = max.get();
+        }
+    }
+}
@@ -15,25 +15,34 @@
  */
 package org.openestate.tool.server.utils;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.output.FileWriterWithEncoding;
 import org.apache.commons.lang3.StringUtils;
 import org.hsqldb.persist.HsqlDatabaseProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xnap.commons.i18n.I18n;
-import org.xnap.commons.i18n.I18nFactory;
 
 /**
  * Helper methods for database migration.
+ * <p>
+ * The script of a database is migrated by a chain of {@link ScriptStep} implementations. All steps, that apply to
+ * the version of the database, are processed in a single pass over the script without loading it into memory.
  *
  * @author Andreas Rudolph
  * @since 1.0
@@ -41,13 +50,37 @@ import org.xnap.commons.i18n.I18nFactory;
 public final class MigrationUtils {
     @SuppressWarnings("unused")
     private static final Logger LOGGER = LoggerFactory.getLogger(MigrationUtils.class);
-    @SuppressWarnings("unused")
-    private static final I18n I18N = I18nFactory.getI18n(MigrationUtils.class);
+
+    /**
+     * Size of the buffers for reading and writing scripts.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Registered steps for the migration of database scripts.
+     */
+    private static final List<ScriptStep> SCRIPT_STEPS = new CopyOnWriteArrayList<>();
+
+    static {
+        // upgrade database structures from HSQLDB 2.2.x
+        SCRIPT_STEPS.add(new IdentityStep());
+    }
 
     private MigrationUtils() {
         super();
     }
 
+    /**
+     * Register a step for the migration of database scripts.
+     * <p>
+     * Steps are processed in the order of their registration.
+     *
+     * @param step migration step
+     */
+    public static void addScriptStep(ScriptStep step) {
+        SCRIPT_STEPS.add(step);
+    }
+
     /**
      * Migrate from an older database version.
      *
@@ -71,31 +104,127 @@ public final class MigrationUtils {
 
         final String dbVersion = StringUtils.trimToEmpty(props.getProperty("version"));
 
-        // upgrade database structures from HSQLDB 2.2.x
-        if (dbVersion.startsWith("2.2.")) {
-            LOGGER.info("Migrating database '" + dbDir.getAbsolutePath() + "' from " + dbVersion + " to " + HsqlDatabaseProperties.THIS_VERSION + ".");
-
-            File dbScriptFileNew = new File(dbDir, dbScriptFile.getName() + ".new");
-            File dbScriptFileOld = new File(dbDir, dbScriptFile.getName() + ".old");
-            //noinspection RegExpRedundantEscape
-            Pattern pattern = Pattern.compile(
-                    "SELECT ([\\w]*) INTO ([\\w]*) FROM ([\\w\\.]*) WHERE ([\\w]*)\\s?=\\s?CURRENT VALUE FOR ([\\w\\.]*);");
-
-            try (Writer output = new FileWriterWithEncoding(dbScriptFileNew, "UTF-8")) {
-                for (String line : FileUtils.readLines(dbScriptFile, "UTF-8")) {
-                    Matcher m = pattern.matcher(line);
-                    while (m.find()) {
-                        line = StringUtils.replace(
-                                line, m.group(0), "SET " + m.group(2) + " = IDENTITY();");
+        // collect steps for the database version
+        final List<ScriptStep> steps = new ArrayList<>();
+        for (ScriptStep step : SCRIPT_STEPS) {
+            if (step.isApplicable(dbVersion)) steps.add(step);
+        }
+        if (steps.isEmpty()) return;
+
+        LOGGER.info("Migrating database '" + dbDir.getAbsolutePath() + "' from " + dbVersion + " to " + HsqlDatabaseProperties.THIS_VERSION + ".");
+        migrateScript(dbScriptFile, steps);
+    }
+
+    /**
+     * Migrate a database script.
+     * <p>
+     * The migrated script is written into a temporary file, that replaces the script afterwards. The original
+     * script is kept with the suffix <code>.old</code>.
+     *
+     * @param scriptFile database script
+     * @param steps      migration steps to apply on every line of the script
+     * @return number of changed lines
+     * @throws IOException if migration failed
+     */
+    public static long migrateScript(File scriptFile, List<ScriptStep> steps) throws IOException {
+        final long start = System.nanoTime();
+        final File scriptFileNew = new File(scriptFile.getParentFile(), scriptFile.getName() + ".new");
+        final File scriptFileOld = new File(scriptFile.getParentFile(), scriptFile.getName() + ".old");
+        final ScriptStep[] chain = steps.toArray(new ScriptStep[0]);
+        long lineCount = 0;
+        long changeCount = 0;
+
+        try {
+            try (BufferedReader reader = new BufferedReader(Files.newBufferedReader(scriptFile.toPath(), StandardCharsets.UTF_8), BUFFER_SIZE);
+                 BufferedWriter writer = new BufferedWriter(Files.newBufferedWriter(scriptFileNew.toPath(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineCount++;
+                    final String original = line;
+                    for (ScriptStep step : chain) {
+                        line = step.migrate(line);
                     }
-                    output.write(line);
-                    output.write(System.lineSeparator());
+                    if (!original.equals(line)) changeCount++;
+                    writer.write(line);
+                    writer.write(System.lineSeparator());
                 }
-                output.flush();
             }
 
-            FileUtils.copyFile(dbScriptFile, dbScriptFileOld);
-            FileUtils.copyFile(dbScriptFileNew, dbScriptFile);
+            // keep the script, if nothing was changed
+            if (changeCount < 1) {
+                LOGGER.info("No changes were necessary in " + lineCount + " lines of '" + scriptFile.getAbsolutePath() + "'.");
+                return 0;
+            }
+
+            // keep the original script without copying its content
+            final File dir = scriptFile.getParentFile();
+            Files.deleteIfExists(scriptFileOld.toPath());
+            try {
+                Files.createLink(scriptFileOld.toPath(), scriptFile.toPath());
+            } catch (IOException | UnsupportedOperationException ex) {
+                LOGGER.debug("Can't create hard link in '" + dir.getAbsolutePath() + "', copying the script instead.", ex);
+                Files.copy(scriptFile.toPath(), scriptFileOld.toPath(), StandardCopyOption.COPY_ATTRIBUTES);
+            }
+
+            // replace the script with the migrated script
+            try {
+                Files.move(scriptFileNew.toPath(), scriptFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(scriptFileNew.toPath(), scriptFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            LOGGER.info("Changed " + changeCount + " of " + lineCount + " lines of '" + scriptFile.getAbsolutePath() + "' in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+            return changeCount;
+        } finally {
+            FileUtils.deleteQuietly(scriptFileNew);
+        }
+    }
+
+    /**
+     * A step for the migration of database scripts.
+     */
+    public interface ScriptStep {
+        /**
+         * Test, if the step is necessary for a database version.
+         *
+         * @param version version of HSQLDB, that has written the database
+         * @return true, if the step is necessary
+         */
+        boolean isApplicable(String version);
+
+        /**
+         * Migrate a line of the database script.
+         * <p>
+         * This method is called for every line of the script. Implementations should check the line with a cheap
+         * test before more expensive operations like regular expressions are applied.
+         *
+         * @param line line of the script
+         * @return migrated line or the provided line, if no changes were necessary
+         */
+        String migrate(String line);
+    }
+
+    /**
+     * Replace sequence lookups in procedures by <code>IDENTITY()</code>, which is required for scripts of
+     * HSQLDB 2.2.x.
+     */
+    static class IdentityStep implements ScriptStep {
+        private static final String MARKER = "CURRENT VALUE FOR";
+        //noinspection RegExpRedundantEscape
+        private static final Pattern PATTERN = Pattern.compile(
+                "SELECT ([\\w]*) INTO ([\\w]*) FROM ([\\w\\.]*) WHERE ([\\w]*)\\s?=\\s?CURRENT VALUE FOR ([\\w\\.]*);");
+
+        @Override
+        public boolean isApplicable(String version) {
+            return version.startsWith("2.2.");
+        }
+
+        @Override
+        public String migrate(String line) {
+            if (!line.contains(MARKER)) return line;
+            final Matcher m = PATTERN.matcher(line);
+            return (m.find()) ? m.replaceAll("SET $2 = IDENTITY();") : line;
         }
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Write gzip compressed data by using multiple threads.
+ * <p>
+ * The data is split into blocks, that are compressed concurrently into separate gzip members. The members are
+ * written in their original order, so the result is a valid multi-member gzip file, that can be decompressed by
+ * {@link java.util.zip.GZIPInputStream} or any other gzip implementation.
+ */
+public class ParallelGZIPOutputStream extends FilterOutputStream {
+    private static final int BLOCK_SIZE = 1024 * 1024;
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+    private final int level;
+    private final int maxPendingBlocks;
+    private final ExecutorService executor;
+    private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength = 0;
+    private boolean empty = true;
+    private boolean finished = false;
+
+    /**
+     * Create parallel gzip stream.
+     *
+     * @param out     stream, that receives the compressed data
+     * @param level   compression level as defined by {@link java.util.zip.Deflater}
+     * @param threads number of threads, that compress blocks concurrently
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int level, int threads) {
+        super(out);
+        this.level = level;
+        this.maxPendingBlocks = Math.max(1, threads) * 2;
+
+        final String poolName = "gzip-" + POOL_COUNTER.incrementAndGet() + "-";
+        final AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            final Thread thread = new Thread(runnable, poolName + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Finish the compressed data and close the wrapped stream.
+     *
+     * @throws IOException if the data can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) finish();
+        } finally {
+            executor.shutdownNow();
+            super.close();
+        }
+    }
+
+    /**
+     * Compress a block of data into a single gzip member.
+     *
+     * @param data   data to compress
+     * @param length number of bytes to compress
+     * @param level  compression level as defined by {@link java.util.zip.Deflater}
+     * @return compressed gzip member
+     * @throws IOException if compression failed
+     */
+    private static byte[] compress(byte[] data, int length, int level) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(length / 2 + 64);
+        try (GZIPOutputStream gzip = CompressionUtils.createGZIPOutputStream(output, level, 8192)) {
+            gzip.write(data, 0, length);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Finish the compressed data without closing the wrapped stream.
+     *
+     * @throws IOException if the data can't be written
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        if (blockLength > 0 || empty) submitBlock();
+        while (!pendingBlocks.isEmpty()) {
+            writePendingBlock();
+        }
+        out.flush();
+        executor.shutdown();
+        finished = true;
+    }
+
+    /**
+     * Compress and write all buffered data.
+     *
+     * @throws IOException if the data can't be written
+     */
+    @Override
+    public void flush() throws IOException {
+        if (finished) return;
+        if (blockLength > 0) submitBlock();
+        while (!pendingBlocks.isEmpty()) {
+            writePendingBlock();
+        }
+        out.flush();
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] data = block;
+        final int length = blockLength;
+        pendingBlocks.add(executor.submit(() -> compress(data, length, level)));
+        block = new byte[BLOCK_SIZE];
+        blockLength = 0;
+        empty = false;
+
+        // limit the number of blocks in memory
+        while (pendingBlocks.size() > maxPendingBlocks) {
+            writePendingBlock();
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (finished)
+            throw new IOException("The stream was already finished!");
+        while (len > 0) {
+            final int count = Math.min(len, BLOCK_SIZE - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            if (blockLength >= BLOCK_SIZE) submitBlock();
+        }
+    }
+
+    private void writePendingBlock() throws IOException {
+        final Future<byte[]> pendingBlock = pendingBlocks.poll();
+        if (pendingBlock == null) return;
+        try {
+            out.write(pendingBlock.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Compression was interrupted!", ex);
+        } catch (ExecutionException ex) {
+            final Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Compression failed!", cause);
+        }
+    }
+}
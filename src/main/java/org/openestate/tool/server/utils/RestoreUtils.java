@@ -0,0 +1,711 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods to restore database dumps.
+ * <p>
+ * A dump created by {@link DumpUtils} is restored into a new file database. The script of the dump contains
+ * the schema and all non LOB data and is loaded natively by HSQLDB. Afterwards the LOB's referenced by
+ * <code>lobs.sql</code> are loaded with batched prepared statements through multiple connections.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class RestoreUtils {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(RestoreUtils.class);
+    private final static String[] DATABASE_FILE_SUFFIXES = new String[]{
+            ".script", ".properties", ".data", ".lobs", ".log", ".backup", ".lck"};
+    private final static Pattern LOB_UPDATE_PATTERN = Pattern.compile(
+            "^UPDATE (\\S+) SET (\\S+) = LOAD_FILE\\('((?:[^']|'')*)'(, '[^']*')?\\) WHERE (.+);$");
+    private final static Pattern LOB_CONDITION_PATTERN = Pattern.compile(
+            "(\\S+) = ('(?:[^']|'')*'|[^' ]+)( AND |$)");
+    private final static long PROGRESS_INTERVAL = 10000;
+    private final static String CREATE_MEMORY_TABLE = "CREATE MEMORY TABLE ";
+    private final static String CREATE_CACHED_TABLE = "CREATE CACHED TABLE ";
+
+    private RestoreUtils() {
+        super();
+    }
+
+    /**
+     * Restore a database dump into a new file database.
+     *
+     * @param dump         dump archive (optionally compressed tar file) or directory with an extracted dump
+     * @param databasePath path of the database files to create (without file suffix)
+     * @param user         name of the database user
+     * @param password     password of the database user
+     * @param settings     settings of the restore process
+     * @return number of LOB's, that could not be restored
+     * @throws IOException  if files can't be read or written
+     * @throws SQLException if communication with the database failed
+     */
+    public static long restore(File dump, File databasePath, String user, String password, Settings settings) throws IOException, SQLException {
+        if (!dump.exists())
+            throw new IOException("The dump at '" + dump.getAbsolutePath() + "' does not exist!");
+        for (String suffix : DATABASE_FILE_SUFFIXES) {
+            final File file = new File(databasePath.getAbsolutePath() + suffix);
+            if (file.exists())
+                throw new IOException("The database file '" + file.getAbsolutePath() + "' already exists!");
+        }
+
+        final File databaseDir = databasePath.getAbsoluteFile().getParentFile();
+        if (!databaseDir.exists() && !databaseDir.mkdirs())
+            throw new IOException("Can't create directory at '" + databaseDir.getAbsolutePath() + "'!");
+
+        File workDir = null;
+        boolean success = false;
+        try {
+            // get files of the dump
+            final File dumpDir;
+            final File lobDir;
+            if (dump.isDirectory()) {
+                dumpDir = dump;
+                lobDir = null;
+            } else {
+                workDir = Files.createTempDirectory(databaseDir.toPath(), databasePath.getName() + "-restore-").toFile();
+                LOGGER.info("Extracting dump into '{}'...", workDir.getAbsolutePath());
+                extract(dump, workDir);
+                dumpDir = workDir;
+
+                // deduplicated LOB's are stored next to the dump
+                lobDir = dump.getAbsoluteFile().getParentFile();
+            }
+
+            // restore schema and non LOB data
+            long start = System.currentTimeMillis();
+            final File scriptFile = getScriptFile(dumpDir);
+            final File databaseScriptFile = new File(databasePath.getAbsolutePath() + ".script");
+            if (settings.isCachedTables())
+                copyScript(scriptFile, databaseScriptFile, true);
+            else if (workDir != null)
+                FileUtils.moveFile(scriptFile, databaseScriptFile);
+            else
+                FileUtils.copyFile(scriptFile, databaseScriptFile);
+
+            final String url = "jdbc:hsqldb:file:" + databasePath.getAbsolutePath();
+            final Properties info = new Properties();
+            info.setProperty("user", StringUtils.defaultString(user));
+            info.setProperty("password", StringUtils.defaultString(password));
+            info.setProperty("ifexists", "true");
+
+            final long failedLobs;
+            try (Connection c = DriverManager.getConnection(url, info)) {
+                try {
+                    LOGGER.info("Restored schema and data after {} ms.", System.currentTimeMillis() - start);
+
+                    // restore LOB's
+                    final File lobsFile = new File(dumpDir, "lobs.sql");
+                    if (lobsFile.isFile()) {
+                        start = System.currentTimeMillis();
+                        failedLobs = restoreLobs(c, () -> DriverManager.getConnection(url, info), lobsFile, dumpDir, lobDir, settings);
+                        LOGGER.info("Restored LOB's after {} ms.", System.currentTimeMillis() - start);
+                    } else {
+                        failedLobs = 0;
+                    }
+                } finally {
+                    // close the database, so that its files are released
+                    try (Statement q = c.createStatement()) {
+                        q.execute("SHUTDOWN;");
+                    }
+                }
+            }
+            success = true;
+            return failedLobs;
+        } finally {
+            if (workDir != null) FileUtils.deleteQuietly(workDir);
+            if (!success) {
+                for (String suffix : DATABASE_FILE_SUFFIXES) {
+                    FileUtils.deleteQuietly(new File(databasePath.getAbsolutePath() + suffix));
+                }
+                FileUtils.deleteQuietly(new File(databasePath.getAbsolutePath() + ".tmp"));
+            }
+        }
+    }
+
+    /**
+     * Restore LOB's referenced by a lobs.sql file.
+     * <p>
+     * Updates of the same column are combined into batches, that are executed concurrently through
+     * multiple connections. The transaction control is switched to MVCC while LOB's are restored,
+     * so that concurrent updates of the same table do not block each other.
+     *
+     * @param c           database connection
+     * @param connections provider of additional database connections
+     * @param lobsFile    SQL file, that references the LOB files
+     * @param dumpDir     directory of the extracted dump
+     * @param lobDir      alternative directory with deduplicated LOB files, may be null
+     * @param settings    settings of the restore process
+     * @return number of LOB's, that could not be restored
+     * @throws IOException  if files can't be read
+     * @throws SQLException if communication with the database failed
+     */
+    public static long restoreLobs(Connection c, DumpUtils.ConnectionProvider connections, File lobsFile, File dumpDir, File lobDir, Settings settings) throws IOException, SQLException {
+        final int threads = Math.max(1, settings.getThreads());
+        final int batchSize = Math.max(1, settings.getBatchSize());
+
+        // count LOB's in order to report progress
+        long total = 0;
+        try (BufferedReader reader = Files.newBufferedReader(lobsFile.toPath(), StandardCharsets.UTF_8)) {
+            while (reader.readLine() != null) total++;
+        }
+        LOGGER.info("Restoring {} LOB's with {} connections...", total, threads);
+
+        // use MVCC while LOB's are restored
+        final String txControl = getTransactionControl(c);
+        final boolean switchTxControl = threads > 1 && !"MVCC".equalsIgnoreCase(txControl);
+        if (switchTxControl) setTransactionControl(c, "MVCC");
+
+        final Progress progress = new Progress(total);
+        final BlockingQueue<LobBatch> queue = new ArrayBlockingQueue<>(threads * 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final List<Future<Void>> workers = new ArrayList<>();
+        boolean finished = false;
+        try {
+            for (int i = 0; i < threads; i++) {
+                final boolean primary = (i == 0);
+                workers.add(executor.submit(() -> {
+                    final Connection workerConnection = (primary) ? c : connections.getConnection();
+                    final boolean autoCommit = workerConnection.getAutoCommit();
+                    final Map<String, PreparedStatement> statements = new HashMap<>();
+                    try {
+                        workerConnection.setAutoCommit(false);
+                        LobBatch batch;
+                        while ((batch = queue.take()) != LobBatch.END) {
+                            PreparedStatement statement = statements.get(batch.sql);
+                            if (statement == null) {
+                                statement = workerConnection.prepareStatement(batch.sql);
+                                statements.put(batch.sql, statement);
+                            }
+                            final long failed = restoreLobBatch(workerConnection, statement, batch, dumpDir, lobDir);
+                            progress.add(batch.updates.size(), failed);
+                        }
+                    } finally {
+                        for (PreparedStatement statement : statements.values()) {
+                            statement.close();
+                        }
+                        if (primary)
+                            workerConnection.setAutoCommit(autoCommit);
+                        else
+                            workerConnection.close();
+                    }
+                    return null;
+                }));
+            }
+
+            // read lobs.sql and pass batches to the workers
+            final Map<String, LobBatch> batches = new LinkedHashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(lobsFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = StringUtils.trimToNull(line);
+                    if (line == null) continue;
+
+                    final LobUpdate update = LobUpdate.parse(line);
+                    if (update == null) {
+                        LOGGER.warn("Can't parse LOB statement: {}", line);
+                        progress.add(1, 1);
+                        continue;
+                    }
+
+                    LobBatch batch = batches.get(update.sql);
+                    if (batch == null) {
+                        batch = new LobBatch(update.sql, update.clob);
+                        batches.put(update.sql, batch);
+                    }
+                    batch.updates.add(update);
+                    if (batch.updates.size() >= batchSize) {
+                        put(queue, batch, workers);
+                        batches.remove(update.sql);
+                    }
+                }
+            }
+            for (LobBatch batch : batches.values()) {
+                put(queue, batch, workers);
+            }
+            for (int i = 0; i < threads; i++) {
+                put(queue, LobBatch.END, workers);
+            }
+
+            // wait for the workers to finish
+            for (Future<Void> worker : workers) {
+                try {
+                    worker.get();
+                } catch (ExecutionException ex) {
+                    final Throwable cause = ex.getCause();
+                    if (cause instanceof IOException) throw (IOException) cause;
+                    if (cause instanceof SQLException) throw (SQLException) cause;
+                    throw new SQLException("Can't restore LOB's!", cause);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Restore of LOB's was interrupted!", ex);
+                }
+            }
+            finished = true;
+        } finally {
+            // wait until all workers have stopped and closed their connections
+            executor.shutdownNow();
+            awaitTermination(executor);
+
+            // restore the original transaction control,
+            // a failure is only reported, if it does not hide a previous error
+            if (switchTxControl) {
+                try {
+                    setTransactionControl(c, txControl);
+                } catch (SQLException ex) {
+                    if (finished) throw ex;
+                    LOGGER.warn("Can't restore transaction control!", ex);
+                }
+            }
+        }
+
+        progress.log(true);
+        if (progress.failed.get() > 0)
+            LOGGER.warn("{} of {} LOB's could not be restored!", progress.failed.get(), total);
+        return progress.failed.get();
+    }
+
+    /**
+     * Wait until all tasks of an executor have stopped.
+     * <p>
+     * An interruption does not stop waiting, but it is restored, after the executor has terminated.
+     *
+     * @param executor executor, that was shut down
+     */
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.MINUTES)) break;
+                LOGGER.warn("Waiting for the restore of LOB's to stop...");
+            } catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Close streams of LOB files, that were bound to a statement.
+     *
+     * @param inputs opened streams, the list is cleared afterwards
+     */
+    private static void closeInputs(List<InputStream> inputs) {
+        for (InputStream input : inputs) {
+            try {
+                input.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Can't close LOB file!", ex);
+            }
+        }
+        inputs.clear();
+    }
+
+    /**
+     * Restore a batch of LOB's.
+     * <p>
+     * If the batch fails, its LOB's are restored one by one,
+     * so that a single broken LOB does not prevent the restore of the others.
+     *
+     * @param c         database connection
+     * @param statement prepared statement of the batch
+     * @param batch     batch to restore
+     * @param dumpDir   directory of the extracted dump
+     * @param lobDir    alternative directory with deduplicated LOB files, may be null
+     * @return number of LOB's, that could not be restored
+     * @throws SQLException if communication with the database failed
+     */
+    private static long restoreLobBatch(Connection c, PreparedStatement statement, LobBatch batch, File dumpDir, File lobDir) throws SQLException {
+        final List<InputStream> inputs = new ArrayList<>();
+        try {
+            long failed = 0;
+            for (LobUpdate update : batch.updates) {
+                if (!bindLobUpdate(statement, update, batch.clob, dumpDir, lobDir, inputs)) {
+                    failed++;
+                    continue;
+                }
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            c.commit();
+            return failed;
+        } catch (SQLException ex) {
+            c.rollback();
+            statement.clearBatch();
+            LOGGER.warn("Can't restore a batch of LOB's, restoring them separately ({}).", ex.getLocalizedMessage());
+        } finally {
+            closeInputs(inputs);
+        }
+
+        long failed = 0;
+        for (LobUpdate update : batch.updates) {
+            try {
+                if (!bindLobUpdate(statement, update, batch.clob, dumpDir, lobDir, inputs)) {
+                    failed++;
+                    continue;
+                }
+                statement.executeUpdate();
+                c.commit();
+            } catch (SQLException ex) {
+                c.rollback();
+                LOGGER.warn("Can't restore LOB from '{}'!", update.path, ex);
+                failed++;
+            } finally {
+                closeInputs(inputs);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Bind the parameters of a LOB update to a prepared statement.
+     *
+     * @param statement prepared statement
+     * @param update    LOB update
+     * @param clob      the LOB is a CLOB
+     * @param dumpDir   directory of the extracted dump
+     * @param lobDir    alternative directory with deduplicated LOB files, may be null
+     * @param inputs    receives opened streams, that have to be closed after the statement was executed
+     * @return true, if the parameters were bound
+     * @throws SQLException if communication with the database failed
+     */
+    private static boolean bindLobUpdate(PreparedStatement statement, LobUpdate update, boolean clob, File dumpDir, File lobDir, List<InputStream> inputs) throws SQLException {
+        File lobFile = new File(dumpDir, update.path);
+        if (!lobFile.isFile() && lobDir != null) lobFile = new File(lobDir, update.path);
+        if (!lobFile.isFile()) {
+            LOGGER.warn("Can't find LOB file '{}'!", update.path);
+            return false;
+        }
+
+        final InputStream input;
+        try {
+            input = new FileInputStream(lobFile);
+        } catch (IOException ex) {
+            LOGGER.warn("Can't read LOB file '{}'!", lobFile.getAbsolutePath(), ex);
+            return false;
+        }
+        inputs.add(input);
+
+        if (clob) {
+            final Reader reader = new InputStreamReader(input, StandardCharsets.UTF_8);
+            statement.setCharacterStream(1, reader);
+        } else {
+            statement.setBinaryStream(1, input, lobFile.length());
+        }
+        for (int i = 0; i < update.keys.size(); i++) {
+            statement.setObject(i + 2, update.keys.get(i));
+        }
+        return true;
+    }
+
+    /**
+     * Copy a database script.
+     * <p>
+     * Memory tables may be converted into cached tables, so that their rows are not kept in memory
+     * while the database is opened.
+     *
+     * @param source       script to copy
+     * @param target       copied script
+     * @param cachedTables convert memory tables into cached tables
+     * @throws IOException if the script can't be copied
+     */
+    public static void copyScript(File source, File target, boolean cachedTables) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(target.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (cachedTables && line.startsWith(CREATE_MEMORY_TABLE))
+                    line = CREATE_CACHED_TABLE + line.substring(CREATE_MEMORY_TABLE.length());
+                writer.write(line);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Extract an archive.
+     *
+     * @param archive   archive (optionally compressed tar file)
+     * @param directory directory, that receives the extracted files
+     * @throws IOException if the archive can't be extracted
+     */
+    public static void extract(File archive, File directory) throws IOException {
+        final String directoryPath = directory.getCanonicalPath() + File.separator;
+        try (TarInputStream input = new TarInputStream(CompressionUtils.decompress(archive))) {
+            TarInputStream.Entry entry;
+            while ((entry = input.getNextEntry()) != null) {
+                final File file = new File(directory, entry.getName());
+                if (!file.getCanonicalPath().startsWith(directoryPath))
+                    throw new IOException("Invalid path '" + entry.getName() + "' in archive!");
+                FileUtils.forceMkdirParent(file);
+                Files.copy(input, file.toPath());
+            }
+        }
+    }
+
+    /**
+     * Get the script file of an extracted dump.
+     *
+     * @param dumpDir directory of the extracted dump
+     * @return script file
+     * @throws IOException if no unique script file was found
+     */
+    private static File getScriptFile(File dumpDir) throws IOException {
+        File scriptFile = null;
+        for (File f : ObjectUtils.defaultIfNull(dumpDir.listFiles(), new File[]{})) {
+            if (!f.isFile() || !f.getName().toLowerCase().endsWith(".script")) continue;
+            if (scriptFile != null)
+                throw new IOException("The dump contains multiple script files!");
+            scriptFile = f;
+        }
+        if (scriptFile == null)
+            throw new IOException("The dump does not contain a script file!");
+        return scriptFile;
+    }
+
+    private static String getTransactionControl(Connection c) throws SQLException {
+        try (Statement q = c.createStatement();
+             ResultSet result = q.executeQuery("SELECT property_value "
+                     + "FROM information_schema.system_properties "
+                     + "WHERE property_name = 'hsqldb.tx';")) {
+            return (result.next()) ? StringUtils.trimToNull(result.getString(1)) : null;
+        }
+    }
+
+    private static void put(BlockingQueue<LobBatch> queue, LobBatch batch, List<Future<Void>> workers) throws SQLException {
+        try {
+            // stop waiting, if all workers failed
+            while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+                if (workers.stream().allMatch(Future::isDone))
+                    throw new SQLException("No worker is available for the restore of LOB's!");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Restore of LOB's was interrupted!", ex);
+        }
+    }
+
+    private static void setTransactionControl(Connection c, String txControl) throws SQLException {
+        if (StringUtils.isBlank(txControl)) return;
+        try (Statement q = c.createStatement()) {
+            q.execute("SET DATABASE TRANSACTION CONTROL " + txControl.toUpperCase() + ";");
+        }
+    }
+
+    /**
+     * Settings of the restore process.
+     */
+    public static class Settings {
+        private int threads = 1;
+        private int batchSize = 100;
+        private boolean cachedTables = false;
+
+        /**
+         * Create settings with default values.
+         */
+        public Settings() {
+            super();
+        }
+
+        /**
+         * Get number of LOB's, that are restored by a single batch.
+         *
+         * @return batch size
+         */
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        /**
+         * Set number of LOB's, that are restored by a single batch.
+         *
+         * @param batchSize batch size
+         */
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Test, if memory tables are restored as cached tables.
+         *
+         * @return true, if memory tables are converted into cached tables
+         */
+        public boolean isCachedTables() {
+            return cachedTables;
+        }
+
+        /**
+         * Enable or disable the conversion of memory tables into cached tables.
+         * <p>
+         * The rows of cached tables are stored on disk, so that memory usage is bounded by the cache
+         * size of the database, no matter how large the restored database is.
+         *
+         * @param cachedTables true, if memory tables are converted into cached tables
+         */
+        public void setCachedTables(boolean cachedTables) {
+            this.cachedTables = cachedTables;
+        }
+
+        /**
+         * Get number of connections, that restore LOB's concurrently.
+         *
+         * @return number of connections
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Set number of connections, that restore LOB's concurrently.
+         *
+         * @param threads number of connections
+         */
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+    }
+
+    /**
+     * A batch of LOB updates, that use the same SQL statement.
+     */
+    private static class LobBatch {
+        private final static LobBatch END = new LobBatch(null, false);
+        private final String sql;
+        private final boolean clob;
+        private final List<LobUpdate> updates = new ArrayList<>();
+
+        private LobBatch(String sql, boolean clob) {
+            this.sql = sql;
+            this.clob = clob;
+        }
+    }
+
+    /**
+     * A single LOB update parsed from lobs.sql.
+     */
+    static class LobUpdate {
+        final String sql;
+        final String path;
+        final boolean clob;
+        final List<Object> keys;
+
+        private LobUpdate(String sql, String path, boolean clob, List<Object> keys) {
+            this.sql = sql;
+            this.path = path;
+            this.clob = clob;
+            this.keys = keys;
+        }
+
+        /**
+         * Parse a statement from lobs.sql, as it is written by {@link DumpUtils}.
+         *
+         * @param line statement
+         * @return parsed update or null, if the statement is not supported
+         */
+        static LobUpdate parse(String line) {
+            final Matcher matcher = LOB_UPDATE_PATTERN.matcher(line);
+            if (!matcher.matches()) return null;
+
+            final List<String> columns = new ArrayList<>();
+            final List<Object> keys = new ArrayList<>();
+            final Matcher conditionMatcher = LOB_CONDITION_PATTERN.matcher(matcher.group(5));
+            int pos = 0;
+            while (conditionMatcher.find() && conditionMatcher.start() == pos) {
+                final String value = conditionMatcher.group(2);
+                columns.add(conditionMatcher.group(1) + " = ?");
+                if (value.startsWith("'"))
+                    keys.add(StringUtils.replace(value.substring(1, value.length() - 1), "''", "'"));
+                else
+                    keys.add(new BigDecimal(value));
+                pos = conditionMatcher.end();
+                if (pos >= matcher.group(5).length()) break;
+            }
+            if (columns.isEmpty() || pos < matcher.group(5).length()) return null;
+
+            final String sql = "UPDATE " + matcher.group(1) + " "
+                    + "SET " + matcher.group(2) + " = ? "
+                    + "WHERE " + StringUtils.join(columns, " AND ") + ";";
+            final String path = StringUtils.replace(matcher.group(3), "''", "'");
+            return new LobUpdate(sql, path, matcher.group(4) != null, keys);
+        }
+    }
+
+    /**
+     * Progress of the restore process.
+     */
+    private static class Progress {
+        private final long total;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private long lastLog = System.currentTimeMillis();
+
+        private Progress(long total) {
+            this.total = total;
+        }
+
+        private void add(long processedCount, long failedCount) {
+            processed.addAndGet(processedCount);
+            failed.addAndGet(failedCount);
+            log(false);
+        }
+
+        private synchronized void log(boolean force) {
+            final long now = System.currentTimeMillis();
+            if (!force && now - lastLog < PROGRESS_INTERVAL) return;
+            lastLog = now;
+            final long count = processed.get();
+            LOGGER.info("Restored {} of {} LOB's ({}%).", count, total, (total > 0) ? count * 100 / total : 100);
+        }
+    }
+}
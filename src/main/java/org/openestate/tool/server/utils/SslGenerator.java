@@ -118,9 +118,6 @@ public class SslGenerator {
         console.writer().println(line);
         console.writer().println(StringUtils.EMPTY);
 
-        // register bouncy castle provider
-        Security.addProvider(new BouncyCastleProvider());
-
         // get common name
         String commonName = (args.length > 0) ? StringUtils.trimToNull(args[0]) : null;
         while (commonName == null) {
@@ -178,6 +175,10 @@ public class SslGenerator {
             return;
         }
 
+        // register bouncy castle provider, after the user has entered the required values
+        if (Security.getProvider(PROVIDER) == null)
+            Security.addProvider(new BouncyCastleProvider());
+
         // create random number generator
         final SecureRandom random = new SecureRandom();
 
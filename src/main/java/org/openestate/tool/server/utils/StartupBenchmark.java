@@ -0,0 +1,542 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.SystemUtils;
+import org.openestate.tool.server.Server;
+import org.openestate.tool.server.ServerUtils;
+import org.openestate.tool.server.manager.ManagerAdvisor;
+import org.openestate.tool.server.manager.ManagerBackup;
+import org.openestate.tool.server.manager.ManagerBench;
+import org.openestate.tool.server.manager.ManagerConsole;
+import org.openestate.tool.server.manager.ManagerRestore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measure the startup time of the applications.
+ * <p>
+ * Every application is started several times in a fresh Java runtime. The time is measured until the application
+ * has done its first useful work: the server accepts a JDBC connection, the manager applications finished their
+ * task on a running server.
+ * <p>
+ * The benchmark may also record the classes loaded by the applications into class lists. These are used to create
+ * application class-data-sharing archives, that are compared against the startup without archive.
+ *
+ * @since 1.1
+ */
+public final class StartupBenchmark {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER;
+    private static final String HELP_OPTION = "help";
+    private static final String DIR_OPTION = "dir";
+    private static final String RUNS_OPTION = "runs";
+    private static final String CLASSLISTS_OPTION = "classlists";
+    private static final String ARCHIVES_OPTION = "archives";
+    private static final String TIMEOUT_OPTION = "timeout";
+
+    /**
+     * Interval in milliseconds to check, if the server accepts connections.
+     */
+    private static final long POLL_INTERVAL = 10;
+
+    /**
+     * Name of the database used by the benchmark.
+     */
+    private static final String DATABASE = "bench";
+
+    static {
+        ServerUtils.init();
+
+        // Create the logger instance after initialization. This makes sure, that logging environment is properly
+        // configured before the logger is actually created.
+        LOGGER = LoggerFactory.getLogger(StartupBenchmark.class);
+    }
+
+    private final File workDir;
+    private final long timeout;
+    private final int port;
+
+    private StartupBenchmark(File workDir, long timeout) throws IOException {
+        super();
+        this.workDir = workDir;
+        this.timeout = timeout;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            this.port = socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Get the entry points of the applications, that are measured by the benchmark.
+     * <p>
+     * The graphical manager and the SSL generator are not measured, because they require user interaction.
+     *
+     * @return entry points
+     */
+    private List<EntryPoint> getEntryPoints() {
+        final String conf = new File(getEtcDir(), "manager.conf").getAbsolutePath();
+        final String workload = new File(workDir, "workload.sql").getAbsolutePath();
+        final String backups = new File(getVarDir(), "backups").getAbsolutePath();
+        return Arrays.asList(
+                new EntryPoint("server", Server.class, true),
+                new EntryPoint("manager-console", ManagerConsole.class, false,
+                        "-conf", conf, "-id", DATABASE, "-sql", "VALUES CURRENT_TIMESTAMP;"),
+                new EntryPoint("manager-backup", ManagerBackup.class, false,
+                        "-conf", conf, "-id", DATABASE, "-dir", backups, "-limit", "1"),
+                new EntryPoint("manager-advisor", ManagerAdvisor.class, false,
+                        "-conf", conf, "-id", DATABASE, workload),
+                new EntryPoint("manager-restore", ManagerRestore.class, false,
+                        "-help"),
+                new EntryPoint("manager-bench", ManagerBench.class, false,
+                        "-help")
+        );
+    }
+
+    private File getEtcDir() {
+        return new File(workDir, "etc");
+    }
+
+    private File getVarDir() {
+        return new File(workDir, "var");
+    }
+
+    /**
+     * Start the benchmark application.
+     *
+     * @param args command line arguments
+     */
+    @SuppressWarnings("Duplicates")
+    public static void main(String[] args) {
+        final Options options = new Options()
+                .addOption(
+                        Option.builder(HELP_OPTION)
+                                .longOpt("help")
+                                .desc("Show usage information.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(DIR_OPTION)
+                                .longOpt("dir")
+                                .hasArg()
+                                .argName("directory")
+                                .desc("Directory for the configuration and databases of the started applications. By default a temporary directory is used.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(RUNS_OPTION)
+                                .longOpt("runs")
+                                .hasArg()
+                                .argName("number")
+                                .desc("Number of measured runs per application after a warm up. By default 5 runs are measured.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(CLASSLISTS_OPTION)
+                                .longOpt("classlists")
+                                .hasArg()
+                                .argName("directory")
+                                .desc("Record the classes loaded by each application into a class list within this directory.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(ARCHIVES_OPTION)
+                                .longOpt("archives")
+                                .hasArg()
+                                .argName("directory")
+                                .desc("Compare the startup with class-data-sharing archives from this directory. Missing archives are created from the class lists in this directory.")
+                                .build()
+                )
+                .addOption(
+                        Option.builder(TIMEOUT_OPTION)
+                                .longOpt("timeout")
+                                .hasArg()
+                                .argName("milliseconds")
+                                .desc("Maximal time for a single run of an application. By default 60000 milliseconds are used.")
+                                .build()
+                );
+
+        final CommandLine commandLine;
+        try {
+            commandLine = new DefaultParser().parse(options, args, false);
+        } catch (ParseException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("Invalid command line arguments!");
+            System.err.println(ex.getLocalizedMessage());
+            printHelp(options);
+            System.exit(1);
+            return;
+        }
+
+        if (commandLine.hasOption(HELP_OPTION)) {
+            printHelp(options);
+            System.exit(0);
+            return;
+        }
+
+        final int runs;
+        final long timeout;
+        try {
+            runs = Integer.parseInt(StringUtils.trimToEmpty(commandLine.getOptionValue(RUNS_OPTION, "5")));
+            timeout = Long.parseLong(StringUtils.trimToEmpty(commandLine.getOptionValue(TIMEOUT_OPTION, "60000")));
+            if (runs < 0 || timeout < 1) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            System.err.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+            System.err.println("The provided number of runs or timeout is invalid!");
+            System.exit(1);
+            return;
+        }
+
+        final File classListDir = (commandLine.hasOption(CLASSLISTS_OPTION)) ?
+                new File(StringUtils.trimToEmpty(commandLine.getOptionValue(CLASSLISTS_OPTION))).getAbsoluteFile() :
+                null;
+        final File archiveDir = (commandLine.hasOption(ARCHIVES_OPTION)) ?
+                new File(StringUtils.trimToEmpty(commandLine.getOptionValue(ARCHIVES_OPTION))).getAbsoluteFile() :
+                null;
+
+        final boolean temporary = !commandLine.hasOption(DIR_OPTION);
+        File workDir = null;
+        try {
+            workDir = (temporary) ?
+                    Files.createTempDirectory("startup-benchmark-").toFile() :
+                    new File(StringUtils.trimToEmpty(commandLine.getOptionValue(DIR_OPTION))).getAbsoluteFile();
+
+            final StartupBenchmark benchmark = new StartupBenchmark(workDir, timeout);
+            benchmark.prepare();
+
+            final List<EntryPoint> entryPoints = benchmark.getEntryPoints();
+            if (classListDir != null) benchmark.record(entryPoints, classListDir);
+            if (runs > 0) benchmark.measure(entryPoints, runs, archiveDir);
+        } catch (Exception ex) {
+            LOGGER.error("The startup benchmark failed!");
+            LOGGER.error("> " + ex.getLocalizedMessage(), ex);
+            System.exit(1);
+        } finally {
+            if (temporary && workDir != null) FileUtils.deleteQuietly(workDir);
+        }
+    }
+
+    /**
+     * Create a class-data-sharing archive from a class list.
+     *
+     * @param classList class list
+     * @param archive   archive file to create
+     * @return true, if the archive was created
+     * @throws IOException if the Java runtime can't be started
+     */
+    private boolean dump(File classList, File archive) throws IOException {
+        final File output = new File(workDir, archive.getName() + ".log");
+        final Process process = new ProcessBuilder(getJavaCommand(),
+                "-Xshare:dump",
+                "-XX:SharedClassListFile=" + classList.getAbsolutePath(),
+                "-XX:SharedArchiveFile=" + archive.getAbsolutePath(),
+                "-classpath", SystemUtils.JAVA_CLASS_PATH)
+                .redirectErrorStream(true)
+                .redirectOutput(output)
+                .start();
+        final int exitCode = waitFor(process);
+        if (exitCode == 0 && archive.isFile()) return true;
+        LOGGER.warn("Can't create class-data-sharing archive " + archive.getAbsolutePath() + ", see " + output.getAbsolutePath() + ".");
+        return false;
+    }
+
+    private static String getJavaCommand() {
+        return new File(new File(SystemUtils.getJavaHome(), "bin"), "java").getAbsolutePath();
+    }
+
+    /**
+     * Measure the startup time of the applications.
+     *
+     * @param entryPoints applications to measure
+     * @param runs        number of measured runs per application
+     * @param archiveDir  directory with class-data-sharing archives or null
+     * @throws Exception if an application failed
+     */
+    private void measure(List<EntryPoint> entryPoints, int runs, File archiveDir) throws Exception {
+        final List<String> results = new ArrayList<>();
+        results.add(String.format("%-28s %8s %8s %8s", "application", "min", "median", "max"));
+
+        for (EntryPoint entryPoint : entryPoints) {
+            final List<List<String>> variants = new ArrayList<>();
+            final List<String> labels = new ArrayList<>();
+            variants.add(Collections.emptyList());
+            labels.add(entryPoint.app);
+
+            if (archiveDir != null) {
+                final File archive = new File(archiveDir, entryPoint.app + ".jsa");
+                final File classList = new File(archiveDir, entryPoint.app + ".classlist");
+                if (!archive.isFile() && classList.isFile()) dump(classList, archive);
+                if (archive.isFile()) {
+                    variants.add(Arrays.asList("-Xshare:auto", "-XX:SharedArchiveFile=" + archive.getAbsolutePath()));
+                    labels.add(entryPoint.app + " (appcds)");
+                }
+            }
+
+            for (int i = 0; i < variants.size(); i++) {
+                final List<String> jvmOptions = variants.get(i);
+                LOGGER.info("Measuring startup of " + labels.get(i) + ".");
+
+                // the first run is not measured, so that databases and caches are prepared
+                run(entryPoint, jvmOptions);
+
+                final long[] times = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    times[run] = run(entryPoint, jvmOptions);
+                }
+                Arrays.sort(times);
+                results.add(String.format("%-28s %8d %8d %8d", labels.get(i),
+                        TimeUnit.NANOSECONDS.toMillis(times[0]),
+                        TimeUnit.NANOSECONDS.toMillis(times[runs / 2]),
+                        TimeUnit.NANOSECONDS.toMillis(times[runs - 1])));
+            }
+        }
+
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        System.out.println("Time to first useful work in milliseconds (" + runs + " runs)");
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        for (String result : results) System.out.println(result);
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Write configuration files for the started applications.
+     *
+     * @throws IOException if the files can't be written
+     */
+    private void prepare() throws IOException {
+        final File etcDir = getEtcDir();
+        final File varDir = getVarDir();
+        for (File dir : new File[]{etcDir, new File(varDir, "backups")}) {
+            if (!dir.isDirectory() && !dir.mkdirs())
+                throw new IOException("Can't create directory " + dir.getAbsolutePath() + "!");
+        }
+
+        final File logback = new File(ServerUtils.getEtcDir(), "logback.xml");
+        if (logback.isFile()) FileUtils.copyFileToDirectory(logback, etcDir);
+
+        FileUtils.writeLines(new File(etcDir, "server.properties"), StandardCharsets.UTF_8.name(), Arrays.asList(
+                "server.port=" + port,
+                "server.address=127.0.0.1",
+                "server.silent=true",
+                "server.tls=false",
+                "server.remote_open=false",
+                "server.database.0=file:" + new File(varDir, "data/" + DATABASE + "/db").getAbsolutePath().replace('\\', '/'),
+                "server.dbname.0=" + DATABASE
+        ));
+        FileUtils.writeLines(new File(etcDir, "manager.conf"), StandardCharsets.UTF_8.name(), Arrays.asList(
+                "urlid " + DATABASE,
+                "url " + getUrl(),
+                "username SA",
+                "password"
+        ));
+        FileUtils.writeStringToFile(new File(workDir, "workload.sql"),
+                "SELECT * FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER_NAME = 'SA';" + System.lineSeparator(),
+                StandardCharsets.UTF_8);
+    }
+
+    private static void printHelp(Options options) {
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+        new HelpFormatter().printHelp(
+                "java " + StartupBenchmark.class.getName() + " [OPTION]...",
+                "Measure the startup time of the applications. You might use the following custom settings:" + System.lineSeparator() + StringUtils.SPACE,
+                options,
+                StringUtils.SPACE + System.lineSeparator() + "Every application is started in a fresh Java runtime with the classpath of the benchmark. "
+                        + "The time is measured until the server accepts a JDBC connection or until a manager application finished its task." + System.lineSeparator() + System.lineSeparator()
+                        + "See https://manual.openestate.org for more information."
+        );
+        System.out.println(StringUtils.repeat('-', HelpFormatter.DEFAULT_WIDTH));
+    }
+
+    /**
+     * Record the classes loaded by the applications.
+     * <p>
+     * Entries for lambda expressions are removed from the class lists, because they can't be processed by older
+     * Java runtimes.
+     *
+     * @param entryPoints  applications to record
+     * @param classListDir directory for the class lists
+     * @throws Exception if an application failed
+     */
+    private void record(List<EntryPoint> entryPoints, File classListDir) throws Exception {
+        if (!classListDir.isDirectory() && !classListDir.mkdirs())
+            throw new IOException("Can't create directory " + classListDir.getAbsolutePath() + "!");
+
+        for (EntryPoint entryPoint : entryPoints) {
+            LOGGER.info("Recording loaded classes of " + entryPoint.app + ".");
+            final File classList = new File(classListDir, entryPoint.app + ".classlist");
+            final File recorded = new File(workDir, entryPoint.app + ".classlist");
+            FileUtils.deleteQuietly(recorded);
+
+            run(entryPoint, Collections.singletonList("-XX:DumpLoadedClassList=" + recorded.getAbsolutePath()));
+            if (!recorded.isFile()) {
+                LOGGER.warn("The Java runtime did not record the loaded classes of " + entryPoint.app + ".");
+                continue;
+            }
+
+            final List<String> lines = new ArrayList<>();
+            for (String line : FileUtils.readLines(recorded, StandardCharsets.UTF_8)) {
+                if (line.startsWith("#") || (!line.startsWith("@") && !StringUtils.containsWhitespace(line)))
+                    lines.add(line);
+            }
+            FileUtils.writeLines(classList, StandardCharsets.UTF_8.name(), lines);
+        }
+    }
+
+    /**
+     * Start an application and wait until it has done its first useful work.
+     * <p>
+     * Manager applications are executed on a running server, that is not measured.
+     *
+     * @param entryPoint application to start
+     * @param jvmOptions additional options for the Java runtime
+     * @return elapsed time in nanoseconds
+     * @throws Exception if the application failed
+     */
+    private long run(EntryPoint entryPoint, List<String> jvmOptions) throws Exception {
+        if (entryPoint.server) {
+            final long start = System.nanoTime();
+            final Process server = start(entryPoint, jvmOptions);
+            try {
+                waitForServer(server);
+                return System.nanoTime() - start;
+            } finally {
+                stop(server);
+            }
+        }
+
+        final Process server = start(new EntryPoint("server", Server.class, true), Collections.emptyList());
+        try {
+            waitForServer(server);
+
+            final long start = System.nanoTime();
+            final int exitCode = waitFor(start(entryPoint, jvmOptions));
+            final long time = System.nanoTime() - start;
+            if (exitCode != 0)
+                throw new IOException("The application " + entryPoint.app + " failed with exit code " + exitCode + ".");
+            return time;
+        } finally {
+            stop(server);
+        }
+    }
+
+    private String getUrl() {
+        return "jdbc:hsqldb:hsql://127.0.0.1:" + port + "/" + DATABASE;
+    }
+
+    private Process start(EntryPoint entryPoint, List<String> jvmOptions) throws IOException {
+        final List<String> command = new ArrayList<>();
+        command.add(getJavaCommand());
+        command.addAll(jvmOptions);
+        command.add("-Djava.awt.headless=true");
+        command.add("-D" + ServerUtils.APP_PROPERTY + "=" + entryPoint.app);
+        command.add("-D" + ServerUtils.ETC_DIR_PROPERTY + "=" + getEtcDir().getAbsolutePath());
+        command.add("-D" + ServerUtils.LOG_DIR_PROPERTY + "=" + new File(getVarDir(), "logs").getAbsolutePath());
+        command.add("-D" + ServerUtils.VAR_DIR_PROPERTY + "=" + getVarDir().getAbsolutePath());
+        command.add("-classpath");
+        command.add(SystemUtils.JAVA_CLASS_PATH);
+        command.add(entryPoint.mainClass);
+        command.addAll(entryPoint.args);
+
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(new File(workDir, entryPoint.app + ".out")))
+                .start();
+    }
+
+    private void stop(Process process) throws InterruptedException {
+        // let the server close its databases through its shutdown hook
+        process.destroy();
+        if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+            LOGGER.warn("Killing server, that did not shut down in time.");
+            process.destroyForcibly().waitFor();
+        }
+    }
+
+    private int waitFor(Process process) throws IOException {
+        try {
+            if (!process.waitFor(timeout, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("The application did not finish within " + timeout + " ms.");
+            }
+            return process.exitValue();
+        } catch (InterruptedException ex) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("The benchmark was interrupted!", ex);
+        }
+    }
+
+    private void waitForServer(Process server) throws IOException, InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeout;
+        SQLException lastError = null;
+        while (System.currentTimeMillis() < deadline) {
+            if (!server.isAlive())
+                throw new IOException("The server exited with code " + server.exitValue() + ".");
+            try {
+                DriverManager.getConnection(getUrl(), "SA", StringUtils.EMPTY).close();
+                return;
+            } catch (SQLException ex) {
+                lastError = ex;
+            }
+            Thread.sleep(POLL_INTERVAL);
+        }
+        throw new IOException("The server did not accept connections within " + timeout + " ms.", lastError);
+    }
+
+    /**
+     * An application, that is measured by the benchmark.
+     */
+    private static final class EntryPoint {
+        private final String app;
+        private final String mainClass;
+        private final boolean server;
+        private final List<String> args;
+
+        /**
+         * Create entry point.
+         *
+         * @param app       name of the application, as used by the launchers
+         * @param mainClass main class of the application
+         * @param server    true, if the application is the server
+         * @param args      command line arguments
+         */
+        private EntryPoint(String app, Class<?> mainClass, boolean server, String... args) {
+            this.app = app;
+            this.mainClass = mainClass.getName();
+            this.server = server;
+            this.args = Arrays.asList(args);
+        }
+    }
+}
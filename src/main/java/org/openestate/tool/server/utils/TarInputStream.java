@@ -0,0 +1,206 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Read entries from a tar archive (POSIX ustar format).
+ * <p>
+ * This is the counterpart of {@link TarOutputStream}. Only regular files are returned,
+ * other entries (directories, links and extended headers) are skipped.
+ */
+public class TarInputStream extends FilterInputStream {
+    private static final int BLOCK_SIZE = 512;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long entryRemaining = 0;
+    private long entryPadding = 0;
+
+    /**
+     * Create tar archive stream.
+     *
+     * @param in stream, that provides the archive
+     */
+    public TarInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.min(entryRemaining, super.available()));
+    }
+
+    /**
+     * Get the next regular file in the archive.
+     * <p>
+     * The content of the file is provided by the read methods of this stream.
+     *
+     * @return next file or null, if the end of the archive was reached
+     * @throws IOException if the archive can't be read
+     */
+    public Entry getNextEntry() throws IOException {
+        while (true) {
+            // skip remaining data of the current entry
+            IOUtils.skipFully(in, entryRemaining + entryPadding);
+            entryRemaining = 0;
+            entryPadding = 0;
+
+            // an empty block or the end of the stream marks the end of the archive
+            final int count = IOUtils.read(in, header);
+            if (count <= 0) return null;
+            if (count < BLOCK_SIZE)
+                throw new EOFException("Incomplete header in tar archive!");
+            if (isEmptyBlock()) return null;
+            if (readOctal(148, 8) != getChecksum())
+                throw new IOException("Invalid checksum in tar archive!");
+
+            final long size = readSize();
+            final char type = (char) header[156];
+            entryRemaining = size;
+            entryPadding = (size % BLOCK_SIZE > 0) ? BLOCK_SIZE - (size % BLOCK_SIZE) : 0;
+            if (type != '0' && type != 0) continue;
+
+            String name = readString(0, 100);
+            if ("ustar".equals(StringUtils.trim(readString(257, 6)))) {
+                final String prefix = readString(345, 155);
+                if (StringUtils.isNotEmpty(prefix)) name = prefix + "/" + name;
+            }
+            return new Entry(name, size, readOctal(136, 12) * 1000);
+        }
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (entryRemaining <= 0) return -1;
+        final int b = in.read();
+        if (b < 0) throw new EOFException("Unexpected end of tar archive!");
+        entryRemaining--;
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (entryRemaining <= 0) return -1;
+        final int count = in.read(b, off, (int) Math.min(len, entryRemaining));
+        if (count < 0) throw new EOFException("Unexpected end of tar archive!");
+        entryRemaining -= count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        final long count = in.skip(Math.min(n, entryRemaining));
+        entryRemaining -= count;
+        return count;
+    }
+
+    private long getChecksum() {
+        long checksum = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            checksum += (i >= 148 && i < 156) ? ' ' : header[i] & 0xff;
+        }
+        return checksum;
+    }
+
+    private boolean isEmptyBlock() {
+        for (byte b : header) {
+            if (b != 0) return false;
+        }
+        return true;
+    }
+
+    private long readOctal(int offset, int length) throws IOException {
+        final String value = StringUtils.trimToEmpty(readString(offset, length));
+        try {
+            return (value.isEmpty()) ? 0 : Long.parseLong(value, 8);
+        } catch (NumberFormatException ex) {
+            throw new IOException("Invalid number '" + value + "' in tar archive!", ex);
+        }
+    }
+
+    private long readSize() throws IOException {
+        if ((header[124] & 0x80) == 0) return readOctal(124, 12);
+
+        // binary size, see GNU tar extension
+        long size = 0;
+        for (int i = 125; i < 136; i++) {
+            size = (size << 8) | (header[i] & 0xff);
+        }
+        return size;
+    }
+
+    private String readString(int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A regular file in the tar archive.
+     */
+    public static class Entry {
+        private final String name;
+        private final long size;
+        private final long modTime;
+
+        private Entry(String name, long size, long modTime) {
+            this.name = name;
+            this.size = size;
+            this.modTime = modTime;
+        }
+
+        /**
+         * Get modification time of the file.
+         *
+         * @return modification time in milliseconds
+         */
+        public long getModTime() {
+            return modTime;
+        }
+
+        /**
+         * Get path of the file within the archive.
+         *
+         * @return path
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get size of the file.
+         *
+         * @return size in bytes
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Write entries into a tar archive (POSIX ustar format).
+ * <p>
+ * In contrast to {@link org.hsqldb.lib.tar.TarGenerator} entries are written directly into the wrapped stream,
+ * so the archive can be created without putting its content into a temporary directory first.
+ */
+public class TarOutputStream extends FilterOutputStream {
+    private static final int BLOCK_SIZE = 512;
+    private static final long MAX_OCTAL_SIZE = 077777777777L;
+    private final byte[] header = new byte[BLOCK_SIZE];
+    private long entrySize = -1;
+    private long entryWritten = 0;
+    private boolean finished = false;
+
+    /**
+     * Create tar archive stream.
+     *
+     * @param out stream, that receives the archive
+     */
+    public TarOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    /**
+     * Finish the tar archive and close the wrapped stream.
+     *
+     * @throws IOException if the archive can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) finish();
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * Close the current entry.
+     * <p>
+     * The data of the entry is padded to the next block boundary.
+     *
+     * @throws IOException if the archive can't be written or if not all data of the entry was written
+     */
+    public void closeEntry() throws IOException {
+        if (entrySize < 0) return;
+        if (entryWritten != entrySize)
+            throw new IOException("Only " + entryWritten + " of " + entrySize + " bytes were written into the entry!");
+
+        final int padding = (int) (entrySize % BLOCK_SIZE);
+        if (padding > 0) out.write(new byte[BLOCK_SIZE - padding]);
+        entrySize = -1;
+        entryWritten = 0;
+    }
+
+    /**
+     * Finish the tar archive without closing the wrapped stream.
+     *
+     * @throws IOException if the archive can't be written
+     */
+    public void finish() throws IOException {
+        if (finished) return;
+        closeEntry();
+        out.write(new byte[BLOCK_SIZE * 2]);
+        out.flush();
+        finished = true;
+    }
+
+    /**
+     * Get the number of bytes, that still have to be written into the current entry.
+     *
+     * @return number of remaining bytes
+     */
+    public long getRemainingEntrySize() {
+        return (entrySize < 0) ? 0 : entrySize - entryWritten;
+    }
+
+    /**
+     * Start a new entry in the tar archive.
+     * <p>
+     * Exactly <code>size</code> bytes have to be written into the stream before the next entry is started.
+     *
+     * @param path    path of the entry within the archive
+     * @param size    number of bytes in the entry
+     * @param modTime modification time of the entry in milliseconds
+     * @throws IOException if the archive can't be written
+     */
+    public void putEntry(String path, long size, long modTime) throws IOException {
+        if (finished)
+            throw new IOException("The archive was already finished!");
+        if (size < 0)
+            throw new IOException("Invalid size of entry '" + path + "'!");
+        closeEntry();
+
+        // split long paths into prefix and name
+        path = StringUtils.replace(path, "\\", "/");
+        String prefix = StringUtils.EMPTY;
+        String name = path;
+        if (name.getBytes(StandardCharsets.UTF_8).length > 100) {
+            final int pos = path.lastIndexOf('/', 155);
+            if (pos > 0) {
+                prefix = path.substring(0, pos);
+                name = path.substring(pos + 1);
+            }
+            if (name.getBytes(StandardCharsets.UTF_8).length > 100 || prefix.getBytes(StandardCharsets.UTF_8).length > 155)
+                throw new IOException("The path '" + path + "' is too long for a tar archive!");
+        }
+
+        Arrays.fill(header, (byte) 0);
+        writeString(name, 0, 100);
+        writeOctal(0644, 100, 8);
+        writeOctal(0, 108, 8);
+        writeOctal(0, 116, 8);
+        if (size <= MAX_OCTAL_SIZE) {
+            writeOctal(size, 124, 12);
+        } else {
+            // binary size, see GNU tar extension
+            long value = size;
+            for (int i = 135; i > 124; i--) {
+                header[i] = (byte) (value & 0xff);
+                value >>>= 8;
+            }
+            header[124] = (byte) 0x80;
+        }
+        writeOctal(modTime / 1000, 136, 12);
+        header[156] = '0';
+        writeString("ustar", 257, 6);
+        writeString("00", 263, 2);
+        writeString(prefix, 345, 155);
+
+        // calculate checksum
+        Arrays.fill(header, 148, 156, (byte) ' ');
+        long checksum = 0;
+        for (byte b : header) {
+            checksum += b & 0xff;
+        }
+        writeOctal(checksum, 148, 7);
+        header[155] = ' ';
+
+        out.write(header);
+        entrySize = size;
+        entryWritten = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        assertWritable(1);
+        out.write(b);
+        entryWritten++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        assertWritable(len);
+        out.write(b, off, len);
+        entryWritten += len;
+    }
+
+    private void assertWritable(int len) throws IOException {
+        if (entrySize < 0)
+            throw new IOException("No entry was started!");
+        if (entryWritten + len > entrySize)
+            throw new IOException("More data was written than declared for the entry!");
+    }
+
+    private void writeOctal(long value, int offset, int length) {
+        final String octal = StringUtils.leftPad(Long.toOctalString(value), length - 1, '0');
+        writeString(octal, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    private void writeString(String value, int offset, int length) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, header, offset, Math.min(bytes.length, length));
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A connection through a Unix domain socket.
+ * <p>
+ * HSQLDB expects client connections as {@link Socket}. This class provides a {@link SocketChannel} of a Unix
+ * domain socket through the methods of a {@link Socket}, that are used by HSQLDB.
+ * <p>
+ * Unix domain sockets are supported by Java 16 or newer. The required classes are loaded at runtime, in order to
+ * keep compatibility with Java 8.
+ *
+ * @since 1.1
+ */
+public class UnixSocket extends Socket {
+    @SuppressWarnings("unused")
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnixSocket.class);
+    private static final ProtocolFamily UNIX;
+    private static final Method ADDRESS_OF;
+    private static final Method OPEN_CLIENT;
+    private static final Method OPEN_SERVER;
+    private final SocketChannel channel;
+    private final InputStream input;
+    private final OutputStream output;
+
+    static {
+        ProtocolFamily unix = null;
+        Method addressOf = null;
+        Method openClient = null;
+        Method openServer = null;
+        try {
+            unix = StandardProtocolFamily.valueOf("UNIX");
+            addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+            openClient = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (IllegalArgumentException | ClassNotFoundException | NoSuchMethodException ex) {
+            LOGGER.debug("Unix domain sockets are not supported by this Java runtime.");
+        }
+        UNIX = unix;
+        ADDRESS_OF = addressOf;
+        OPEN_CLIENT = openClient;
+        OPEN_SERVER = openServer;
+    }
+
+    /**
+     * Create a connection through a Unix domain socket.
+     *
+     * @param channel connected channel
+     */
+    public UnixSocket(SocketChannel channel) {
+        super();
+        this.channel = channel;
+        this.input = new ChannelInputStream();
+        this.output = new ChannelOutputStream();
+    }
+
+    /**
+     * Listen for connections on a Unix domain socket.
+     * <p>
+     * A socket file, that was left over by a previous process, is replaced.
+     *
+     * @param file socket file
+     * @return channel, that accepts connections
+     * @throws IOException if the socket can't be opened
+     */
+    public static ServerSocketChannel bind(File file) throws IOException {
+        if (file.exists()) {
+            boolean used;
+            try {
+                connect(file).close();
+                used = true;
+            } catch (IOException ex) {
+                used = false;
+            }
+            if (used)
+                throw new IOException("The socket " + file.getAbsolutePath() + " is already used by another process.");
+            if (!file.delete())
+                throw new IOException("Can't remove outdated socket " + file.getAbsolutePath() + "!");
+        }
+
+        final ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER, UNIX);
+        try {
+            channel.bind(address(file));
+            return channel;
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Connect to a Unix domain socket.
+     *
+     * @param file socket file
+     * @return connection
+     * @throws IOException if the connection failed
+     */
+    public static UnixSocket connect(File file) throws IOException {
+        final SocketChannel channel = (SocketChannel) invoke(OPEN_CLIENT, UNIX);
+        try {
+            channel.connect(address(file));
+            return new UnixSocket(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Test, if Unix domain sockets are supported by the Java runtime.
+     *
+     * @return true, if Unix domain sockets are supported
+     */
+    public static boolean isSupported() {
+        return UNIX != null;
+    }
+
+    private static SocketAddress address(File file) throws IOException {
+        return (SocketAddress) invoke(ADDRESS_OF, file.getAbsolutePath());
+    }
+
+    private static Object invoke(Method method, Object arg) throws IOException {
+        if (!isSupported())
+            throw new IOException("Unix domain sockets are not supported by this Java runtime.");
+        try {
+            return method.invoke(null, arg);
+        } catch (InvocationTargetException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw new IOException("Can't open Unix domain socket!", ex.getCause());
+        } catch (IllegalAccessException ex) {
+            throw new IOException("Can't open Unix domain socket!", ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public InetAddress getInetAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return input;
+    }
+
+    @Override
+    public InetAddress getLocalAddress() {
+        return InetAddress.getLoopbackAddress();
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return output;
+    }
+
+    @Override
+    public boolean isBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return !channel.isOpen();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isConnected();
+    }
+
+    @Override
+    public void setTcpNoDelay(boolean on) {
+        // not supported by Unix domain sockets
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        channel.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        channel.shutdownOutput();
+    }
+
+    @Override
+    public String toString() {
+        return "UnixSocket[" + channel + "]";
+    }
+
+    /**
+     * Reads from the channel.
+     * <p>
+     * In contrast to {@link java.nio.channels.Channels#newInputStream} reading and writing don't block each other.
+     * HSQLDB checks for {@link #available()} data before a connection is accepted. Therefore available data is
+     * read ahead without blocking.
+     */
+    private class ChannelInputStream extends InputStream {
+        private final ByteBuffer buffer = (ByteBuffer) ByteBuffer.allocate(8192).flip();
+        private boolean eof = false;
+
+        @Override
+        public synchronized int available() throws IOException {
+            if (!buffer.hasRemaining() && !eof && channel.isOpen()) {
+                buffer.clear();
+                channel.configureBlocking(false);
+                try {
+                    eof = channel.read(buffer) < 0;
+                } finally {
+                    channel.configureBlocking(true);
+                    buffer.flip();
+                }
+            }
+            return buffer.remaining();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0) ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (buffer.hasRemaining()) {
+                final int count = Math.min(len, buffer.remaining());
+                buffer.get(b, off, count);
+                return count;
+            }
+            return (eof) ? -1 : channel.read(ByteBuffer.wrap(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocket.this.close();
+        }
+    }
+
+    /**
+     * Writes into the channel.
+     */
+    private class ChannelOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixSocket.this.close();
+        }
+    }
+}
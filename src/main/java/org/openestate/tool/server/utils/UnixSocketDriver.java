@@ -0,0 +1,208 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.TimeZone;
+import org.apache.commons.lang3.StringUtils;
+import org.hsqldb.ClientConnection;
+import org.hsqldb.HsqlException;
+import org.hsqldb.error.Error;
+import org.hsqldb.error.ErrorCode;
+import org.hsqldb.jdbc.JDBCConnection;
+import org.hsqldb.jdbc.JDBCDriver;
+import org.hsqldb.lib.DataOutputStream;
+
+/**
+ * JDBC driver for connections to the server through a Unix domain socket.
+ * <p>
+ * The URL contains the path of the socket file followed by the name of the database - e.g.
+ * <code>jdbc:openestate:unix:/var/run/openestate-server/server.sock/immotool</code>.
+ * <p>
+ * The connection uses the HSQL protocol without TCP and TLS. Therefore it is only available for clients on the
+ * same machine as the server.
+ *
+ * @since 1.1
+ */
+public class UnixSocketDriver implements Driver {
+    /**
+     * Prefix of URL's, that are accepted by this driver.
+     */
+    public static final String URL_PREFIX = "jdbc:openestate:unix:";
+
+    static {
+        try {
+            DriverManager.registerDriver(new UnixSocketDriver());
+        } catch (SQLException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.regionMatches(true, 0, URL_PREFIX, 0, URL_PREFIX.length());
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) return null;
+
+        final Location location = Location.parse(url);
+        final String user = (info != null) ? StringUtils.defaultString(info.getProperty("user"), "SA") : "SA";
+        final String password = (info != null) ? StringUtils.defaultString(info.getProperty("password")) : "";
+        final int zoneSeconds = TimeZone.getDefault().getOffset(System.currentTimeMillis()) / 1000;
+
+        try {
+            final UnixSocketSession session = new UnixSocketSession(location.socketFile, location.database, user, password, zoneSeconds);
+            final UnixSocketConnection connection = new UnixSocketConnection(session);
+            session.setJDBCConnection(connection);
+            return connection;
+        } catch (HsqlException ex) {
+            throw new SQLException(ex.getMessage(), ex.getSQLState(), ex.getErrorCode(), ex);
+        }
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return new JDBCDriver().getMajorVersion();
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return new JDBCDriver().getMinorVersion();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return true;
+    }
+
+    /**
+     * Socket file and database name of a connection URL.
+     */
+    static class Location {
+        final File socketFile;
+        final String database;
+
+        private Location(File socketFile, String database) {
+            this.socketFile = socketFile;
+            this.database = database;
+        }
+
+        /**
+         * Parse a connection URL.
+         *
+         * @param url connection URL, that is accepted by the driver
+         * @return socket file and database name
+         * @throws SQLException if the URL does not contain a socket file and a database name
+         */
+        static Location parse(String url) throws SQLException {
+            // remove connection properties
+            final String location = StringUtils.substringBefore(url.substring(URL_PREFIX.length()), ";");
+            final int pos = location.lastIndexOf('/');
+            if (pos < 1 || pos >= location.length() - 1)
+                throw new SQLException("The URL does not contain a socket file and a database name: " + url);
+
+            return new Location(new File(location.substring(0, pos)), location.substring(pos + 1));
+        }
+    }
+
+    /**
+     * JDBC connection, that closes its session.
+     * <p>
+     * HSQLDB treats connections for a given session as internal connections, that are not closed by the client.
+     */
+    private static class UnixSocketConnection extends JDBCConnection {
+        private final UnixSocketSession session;
+
+        private UnixSocketConnection(UnixSocketSession session) {
+            super(session);
+            this.session = session;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (!session.isClosed()) session.close();
+        }
+
+        @Override
+        public synchronized boolean isClosed() {
+            return session.isClosed();
+        }
+
+        @Override
+        public boolean isValid(int timeout) {
+            return !session.isClosed();
+        }
+    }
+
+    /**
+     * HSQL session, that communicates through a Unix domain socket.
+     */
+    private static class UnixSocketSession extends ClientConnection {
+        // not initialized explicitly, because the connection is opened by the constructor of the super class
+        private Socket socket;
+
+        private UnixSocketSession(File socketFile, String database, String user, String password, int zoneSeconds) {
+            // HSQLDB opens the connection to the host within the constructor
+            super(socketFile.getPath(), 0, "", database, false, false, user, password, zoneSeconds);
+        }
+
+        @Override
+        protected void closeConnection() {
+            try {
+                if (socket != null) socket.close();
+            } catch (IOException ignored) {
+            } finally {
+                socket = null;
+            }
+        }
+
+        @Override
+        protected void openConnection(String host, int port, boolean isTLS) {
+            try {
+                socket = UnixSocket.connect(new File(host));
+                dataOutput = new DataOutputStream(socket.getOutputStream());
+                dataInput = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                handshake();
+            } catch (IOException ex) {
+                closeConnection();
+                throw Error.error(ex, ErrorCode.X_08001, ex.getMessage());
+            }
+        }
+    }
+}
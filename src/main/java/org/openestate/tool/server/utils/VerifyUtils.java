@@ -0,0 +1,352 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Helper methods to verify backups.
+ * <p>
+ * A backup is restored into a temporary database and the row count and checksum of every table is compared
+ * with the source database. Rows are read as a stream and the checksum of a table does not depend on the order
+ * of its rows, so that tables of any size can be verified with bounded memory.
+ */
+@SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+public class VerifyUtils {
+    @SuppressWarnings("unused")
+    private final static Logger LOGGER = LoggerFactory.getLogger(VerifyUtils.class);
+    private final static int FETCH_SIZE = 1000;
+    private final static int RESULT_MEMORY_ROWS = 10000;
+    private final static int BUFFER_SIZE = 64 * 1024;
+
+    private VerifyUtils() {
+        super();
+    }
+
+    /**
+     * Calculate checksums of all tables in a database.
+     *
+     * @param c database connection
+     * @return checksums of tables by their qualified name
+     * @throws IOException  if a LOB can't be read
+     * @throws SQLException if communication with the database failed
+     */
+    public static Map<String, TableChecksum> checksum(Connection c) throws IOException, SQLException {
+        final MessageDigest digest = createDigest();
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final char[] charBuffer = new char[BUFFER_SIZE / 2];
+
+        // keep large results on disk instead of memory
+        try (Statement q = c.createStatement()) {
+            q.execute("SET SESSION RESULT MEMORY ROWS " + RESULT_MEMORY_ROWS + ";");
+        }
+
+        final Map<String, TableChecksum> checksums = new TreeMap<>();
+        for (Map.Entry<String, String> table : getTables(c).entrySet()) {
+            final TableChecksum checksum = new TableChecksum();
+            try (Statement q = c.createStatement()) {
+                q.setFetchSize(FETCH_SIZE);
+                try (ResultSet result = q.executeQuery("SELECT * FROM " + table.getValue() + ";")) {
+                    final ResultSetMetaData meta = result.getMetaData();
+                    while (result.next()) {
+                        digest.reset();
+                        for (int i = 1; i <= meta.getColumnCount(); i++) {
+                            updateDigest(digest, result, i, meta.getColumnType(i), buffer, charBuffer);
+                        }
+                        checksum.add(digest.digest());
+                    }
+                }
+            }
+            checksums.put(table.getKey(), checksum);
+        }
+        return checksums;
+    }
+
+    /**
+     * Calculate checksums of all tables in a backup created by HSQLDB.
+     *
+     * @param archive  backup archive created by <code>BACKUP DATABASE</code>
+     * @param tempDir  directory, that receives the temporary database
+     * @param user     name of the database user
+     * @param password password of the database user
+     * @return checksums of tables by their qualified name
+     * @throws IOException  if the backup can't be read
+     * @throws SQLException if communication with the temporary database failed
+     */
+    public static Map<String, TableChecksum> checksumBackup(File archive, File tempDir, String user, String password) throws IOException, SQLException {
+        final File extractDir = new File(tempDir, "backup");
+        RestoreUtils.extract(archive, extractDir);
+
+        // find database files
+        String databaseName = null;
+        for (File f : ObjectUtils.defaultIfNull(extractDir.listFiles(), new File[]{})) {
+            if (f.isFile() && f.getName().endsWith(".properties")) {
+                databaseName = StringUtils.removeEnd(f.getName(), ".properties");
+                break;
+            }
+        }
+        if (databaseName == null)
+            throw new IOException("The backup does not contain a database!");
+
+        // convert memory tables into cached tables, so that they are not kept in memory
+        final File scriptFile = new File(extractDir, databaseName + ".script");
+        if (scriptFile.isFile()) {
+            final File originalScriptFile = new File(extractDir, databaseName + ".script.original");
+            Files.move(scriptFile.toPath(), originalScriptFile.toPath());
+            RestoreUtils.copyScript(originalScriptFile, scriptFile, true);
+        }
+
+        return checksumDatabase(new File(extractDir, databaseName), user, password);
+    }
+
+    /**
+     * Calculate checksums of all tables in a database dump created by {@link DumpUtils}.
+     *
+     * @param dump     dump archive or directory
+     * @param tempDir  directory, that receives the temporary database
+     * @param user     name of the database user
+     * @param password password of the database user
+     * @return checksums of tables by their qualified name
+     * @throws IOException  if the dump can't be read
+     * @throws SQLException if communication with the temporary database failed
+     */
+    public static Map<String, TableChecksum> checksumDump(File dump, File tempDir, String user, String password) throws IOException, SQLException {
+        final File databasePath = new File(new File(tempDir, "dump"), "db");
+        final RestoreUtils.Settings settings = new RestoreUtils.Settings();
+        settings.setCachedTables(true);
+        final long failedLobs = RestoreUtils.restore(dump, databasePath, user, password, settings);
+        if (failedLobs > 0)
+            throw new IOException(failedLobs + " LOB's of the dump can't be restored!");
+
+        return checksumDatabase(databasePath, user, password);
+    }
+
+    /**
+     * Compare checksums of two databases.
+     *
+     * @param expected checksums of the source database
+     * @param actual   checksums of the restored database
+     * @return differences between both databases, empty if the checksums are equal
+     */
+    public static List<String> compare(Map<String, TableChecksum> expected, Map<String, TableChecksum> actual) {
+        final List<String> differences = new ArrayList<>();
+        final TreeSet<String> tables = new TreeSet<>(expected.keySet());
+        tables.addAll(actual.keySet());
+        for (String table : tables) {
+            final TableChecksum expectedChecksum = expected.get(table);
+            final TableChecksum actualChecksum = actual.get(table);
+            if (expectedChecksum == null)
+                differences.add("Table " + table + " is not present in the source database.");
+            else if (actualChecksum == null)
+                differences.add("Table " + table + " is not present in the backup.");
+            else if (expectedChecksum.getRows() != actualChecksum.getRows())
+                differences.add("Table " + table + " contains " + actualChecksum.getRows() + " instead of " + expectedChecksum.getRows() + " rows.");
+            else if (!expectedChecksum.getChecksum().equals(actualChecksum.getChecksum()))
+                differences.add("Table " + table + " contains different values.");
+        }
+        return differences;
+    }
+
+    /**
+     * Write the result of a verification into a text file.
+     *
+     * @param file        file to write
+     * @param archive     verified backup
+     * @param expected    checksums of the source database
+     * @param actual      checksums of the restored database
+     * @param differences differences between both databases
+     * @throws IOException if the file can't be written
+     */
+    public static void writeReport(File file, File archive, Map<String, TableChecksum> expected, Map<String, TableChecksum> actual, List<String> differences) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("backup=" + archive.getName());
+            writer.newLine();
+            writer.write("verified=" + System.currentTimeMillis());
+            writer.newLine();
+            writer.write("result=" + ((differences.isEmpty()) ? "ok" : "failed"));
+            writer.newLine();
+            for (Map.Entry<String, TableChecksum> entry : expected.entrySet()) {
+                final TableChecksum actualChecksum = actual.get(entry.getKey());
+                writer.write("table." + entry.getKey() + ".rows=" + entry.getValue().getRows()
+                        + ((actualChecksum != null) ? "/" + actualChecksum.getRows() : StringUtils.EMPTY));
+                writer.newLine();
+                writer.write("table." + entry.getKey() + ".checksum=" + entry.getValue().getChecksum()
+                        + ((actualChecksum != null) ? "/" + actualChecksum.getChecksum() : StringUtils.EMPTY));
+                writer.newLine();
+            }
+            for (int i = 0; i < differences.size(); i++) {
+                writer.write("difference." + (i + 1) + "=" + differences.get(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static Map<String, TableChecksum> checksumDatabase(File databasePath, String user, String password) throws IOException, SQLException {
+        final Properties info = new Properties();
+        info.setProperty("user", StringUtils.defaultString(user));
+        info.setProperty("password", StringUtils.defaultString(password));
+        info.setProperty("ifexists", "true");
+        try (Connection c = DriverManager.getConnection("jdbc:hsqldb:file:" + databasePath.getAbsolutePath(), info)) {
+            try {
+                return checksum(c);
+            } finally {
+                try (Statement q = c.createStatement()) {
+                    q.execute("SHUTDOWN;");
+                }
+            }
+        }
+    }
+
+    private static MessageDigest createDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException("MD5 is not supported!", ex);
+        }
+    }
+
+    /**
+     * Get tables of a database.
+     *
+     * @param c database connection
+     * @return quoted names for SQL statements by qualified table name
+     * @throws SQLException if communication with the database failed
+     */
+    private static Map<String, String> getTables(Connection c) throws SQLException {
+        final Map<String, String> tables = new TreeMap<>();
+        try (ResultSet result = c.getMetaData().getTables(null, null, "%", new String[]{"TABLE"})) {
+            while (result.next()) {
+                final String schema = result.getString("TABLE_SCHEM");
+                final String table = result.getString("TABLE_NAME");
+                if ("SYSTEM_LOBS".equalsIgnoreCase(schema)) continue;
+                tables.put(schema + "." + table, "\"" + StringUtils.replace(schema, "\"", "\"\"") + "\".\""
+                        + StringUtils.replace(table, "\"", "\"\"") + "\"");
+            }
+        }
+        return tables;
+    }
+
+    private static void updateDigest(MessageDigest digest, ResultSet result, int column, int type, byte[] buffer, char[] charBuffer) throws IOException, SQLException {
+        switch (type) {
+            case Types.BLOB:
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                try (InputStream input = result.getBinaryStream(column)) {
+                    if (input == null) break;
+                    digest.update((byte) 1);
+                    int count;
+                    while ((count = input.read(buffer)) > 0) {
+                        digest.update(buffer, 0, count);
+                    }
+                }
+                digest.update((byte) 0);
+                return;
+
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                try (Reader reader = result.getCharacterStream(column)) {
+                    if (reader == null) break;
+                    digest.update((byte) 1);
+                    int count;
+                    while ((count = reader.read(charBuffer)) > 0) {
+                        digest.update(new String(charBuffer, 0, count).getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                digest.update((byte) 0);
+                return;
+
+            default:
+                final String value = result.getString(column);
+                if (value == null) break;
+                digest.update((byte) 1);
+                digest.update(value.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                return;
+        }
+
+        // null value
+        digest.update((byte) 2);
+    }
+
+    /**
+     * Row count and checksum of a table.
+     * <p>
+     * The checksum is the sum of the hashes of all rows, so it does not depend on the order of rows.
+     */
+    public static class TableChecksum {
+        private long rows = 0;
+        private long sum1 = 0;
+        private long sum2 = 0;
+
+        private void add(byte[] hash) {
+            long value1 = 0;
+            long value2 = 0;
+            for (int i = 0; i < 8; i++) {
+                value1 = (value1 << 8) | (hash[i] & 0xff);
+                value2 = (value2 << 8) | (hash[i + 8] & 0xff);
+            }
+            rows++;
+            sum1 += value1;
+            sum2 += value2;
+        }
+
+        /**
+         * Get checksum of the table.
+         *
+         * @return checksum as hexadecimal string
+         */
+        public String getChecksum() {
+            return String.format("%016x%016x", sum1, sum2);
+        }
+
+        /**
+         * Get number of rows in the table.
+         *
+         * @return number of rows
+         */
+        public long getRows() {
+            return rows;
+        }
+    }
+}
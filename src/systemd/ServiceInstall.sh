@@ -34,6 +34,9 @@ BACKUP_TIMER="/etc/systemd/system/$BACKUP_NAME.timer"
 BACKUP_TIMER_TEMPLATE="$ETC_DIR/systemd/openestate-immoserver-backup.timer"
 BACKUP_UNIT="/etc/systemd/system/$BACKUP_NAME.service"
 BACKUP_UNIT_TEMPLATE="$ETC_DIR/systemd/openestate-immoserver-backup.service"
+SOCKET_UNIT="/etc/systemd/system/$SERVICE_NAME.socket"
+SOCKET_UNIT_TEMPLATE="$ETC_DIR/systemd/openestate-immoserver.socket"
+SOCKET_DROPIN="/etc/systemd/system/$SERVICE_NAME.service.d/socket.conf"
 
 SYSTEMCTL="$(which systemctl)"
 SUDO="$(which sudo)"
@@ -112,6 +115,11 @@ read -p "Do you want to install a timer for automatic daily backups (yes/no)? [d
 BACKUP="$( echo ${BACKUP} | sed -e 's/^[ \t]*//' )"
 BACKUP="$( echo ${BACKUP} | tr '[:upper:]' '[:lower:]' )"
 
+# Ask for socket activation.
+read -p "Do you want to open the server port through systemd socket activation (yes/no)? [default is no]: " SOCKET
+SOCKET="$( echo ${SOCKET} | sed -e 's/^[ \t]*//' )"
+SOCKET="$( echo ${SOCKET} | tr '[:upper:]' '[:lower:]' )"
+
 # Create temporary unit file.
 UNIT_TEMP="$(mktemp)"
 "$SED" \
@@ -138,8 +146,64 @@ if [[ ! -f "$SERVER_UNIT" ]] ; then
     exit 1
 fi
 
+# Install socket unit.
+if [[ "$SOCKET" == "y" ]] || [[ "$SOCKET" == "yes" ]] ; then
+    SOCKET="1"
+
+    # Use the port configured for the server.
+    SOCKET_PORT="$( grep -E "^[ \t]*server\.port[ \t]*=" "$ETC_DIR/server.properties" | tail -n 1 | cut -d "=" -f 2 | tr -d "[:space:]" )"
+    if [[ -z "$SOCKET_PORT" ]] ; then
+        SOCKET_PORT="9001"
+    fi
+
+    # Create temporary unit file.
+    UNIT_TEMP="$(mktemp)"
+    "$SED" \
+        -e "s|\${ListenStream}|$SOCKET_PORT|g" \
+        "$SOCKET_UNIT_TEMPLATE" > "$UNIT_TEMP"
+
+    # Create temporary drop-in, that passes the socket to the server.
+    DROPIN_TEMP="$(mktemp)"
+    echo "[Unit]" > "$DROPIN_TEMP"
+    echo "Requires=$SERVICE_NAME.socket" >> "$DROPIN_TEMP"
+    echo "After=$SERVICE_NAME.socket" >> "$DROPIN_TEMP"
+    echo "" >> "$DROPIN_TEMP"
+    echo "[Service]" >> "$DROPIN_TEMP"
+    echo "StandardInput=socket" >> "$DROPIN_TEMP"
+    echo "StandardOutput=journal" >> "$DROPIN_TEMP"
+    echo "StandardError=journal" >> "$DROPIN_TEMP"
+
+    # Move temporary files into the service folder.
+    if [[ $EUID -eq 0 ]] ; then
+        mkdir -p "$(dirname "$SOCKET_DROPIN")"
+        mv "$UNIT_TEMP" "$SOCKET_UNIT"
+        mv "$DROPIN_TEMP" "$SOCKET_DROPIN"
+        chown root:root "$SOCKET_UNIT" "$SOCKET_DROPIN"
+        chmod 644 "$SOCKET_UNIT" "$SOCKET_DROPIN"
+    else
+        "$SUDO" mkdir -p "$(dirname "$SOCKET_DROPIN")"
+        "$SUDO" mv "$UNIT_TEMP" "$SOCKET_UNIT"
+        "$SUDO" mv "$DROPIN_TEMP" "$SOCKET_DROPIN"
+        "$SUDO" chown root:root "$SOCKET_UNIT" "$SOCKET_DROPIN"
+        "$SUDO" chmod 644 "$SOCKET_UNIT" "$SOCKET_DROPIN"
+    fi
+
+    # Make sure, that the unit files are available.
+    if [[ ! -f "$SOCKET_UNIT" ]] || [[ ! -f "$SOCKET_DROPIN" ]] ; then
+        echo "ERROR: Can't copy the socket files."
+        exit 1
+    fi
+fi
+
 # Update systemd.
 ${SYSTEMCTL_COMMAND} daemon-reload
+if [[ "$SOCKET" == "1" ]] ; then
+    ${SYSTEMCTL_COMMAND} enable "$SERVICE_NAME.socket"
+    if [[ $? -ne 0 ]] ; then
+        echo "ERROR: Can't enable the socket."
+        exit 1
+    fi
+fi
 ${SYSTEMCTL_COMMAND} enable "$SERVICE_NAME"
 if [[ $? -ne 0 ]] ; then
     echo "ERROR: Can't enable the service."
@@ -219,6 +283,16 @@ echo ""
 echo " sudo systemctl status $SERVICE_NAME"
 echo "----------------------------------------------------------------------"
 
+if [[ "$SOCKET" == "1" ]] ; then
+    echo " The server port is opened through systemd socket activation at:"
+    echo ""
+    echo " $SOCKET_UNIT"
+    echo ""
+    echo " Please update ListenStream in this file, if the port in"
+    echo " $ETC_DIR/server.properties is changed."
+    echo "----------------------------------------------------------------------"
+fi
+
 if [[ "$BACKUP" == "1" ]] ; then
     echo " IMPORTANT NOTICE:"
     echo ""
@@ -29,6 +29,8 @@ BACKUP_NAME="openestate-immoserver-backup"
 SERVER_UNIT="/etc/systemd/system/$SERVICE_NAME.service"
 BACKUP_TIMER="/etc/systemd/system/$BACKUP_NAME.timer"
 BACKUP_UNIT="/etc/systemd/system/$BACKUP_NAME.service"
+SOCKET_UNIT="/etc/systemd/system/$SERVICE_NAME.socket"
+SOCKET_DROPIN="/etc/systemd/system/$SERVICE_NAME.service.d/socket.conf"
 SYSTEMCTL="$(which systemctl)"
 SUDO="$(which sudo)"
 
@@ -59,6 +61,12 @@ ${SYSTEMCTL_COMMAND} stop "$SERVICE_NAME"
 # Disable the service.
 ${SYSTEMCTL_COMMAND} disable "$SERVICE_NAME"
 
+# Disable socket.
+if [[ -f "$SOCKET_UNIT" ]] ; then
+    ${SYSTEMCTL_COMMAND} stop "$(basename "$SOCKET_UNIT")"
+    ${SYSTEMCTL_COMMAND} disable "$(basename "$SOCKET_UNIT")"
+fi
+
 # Disable backup timer.
 if [[ -f "$BACKUP_TIMER" ]] ; then
     ${SYSTEMCTL_COMMAND} stop "$(basename "$BACKUP_TIMER")"
@@ -70,10 +78,14 @@ if [[ $EUID -ne 0 ]] ; then
     "$SUDO" rm -f "$SERVER_UNIT"
     "$SUDO" rm -f "$BACKUP_TIMER"
     "$SUDO" rm -f "$BACKUP_UNIT"
+    "$SUDO" rm -f "$SOCKET_UNIT"
+    "$SUDO" rm -f "$SOCKET_DROPIN"
 else
     rm -f "$SERVER_UNIT"
     rm -f "$BACKUP_TIMER"
     rm -f "$BACKUP_UNIT"
+    rm -f "$SOCKET_UNIT"
+    rm -f "$SOCKET_DROPIN"
 fi
 
 if [[ -f "$SERVER_UNIT" ]] ; then
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.hsqldb.Database;
+import org.hsqldb.server.ServerConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionControlTest {
+    static {
+        // keep the server environment out of the working directory
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "openestate-server-test");
+        System.setProperty(ServerUtils.ETC_DIR_PROPERTY, new File(dir, "etc").getPath());
+        System.setProperty(ServerUtils.LOG_DIR_PROPERTY, new File(dir, "logs").getPath());
+        System.setProperty(ServerUtils.VAR_DIR_PROPERTY, new File(dir, "var").getPath());
+        System.setProperty(ServerUtils.SYSTEM_TRAY_PROPERTY, "false");
+    }
+
+    private static int getFreePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void query(Connection c) throws SQLException {
+        try (Statement s = c.createStatement(); ResultSet result = s.executeQuery("VALUES 1")) {
+            assertTrue(result.next());
+        }
+    }
+
+    @Test
+    public void testClientLimit() throws Exception {
+        final AdmissionControl admission = new AdmissionControl(2, 0, Collections.emptyMap());
+        final InetAddress client1 = InetAddress.getByName("192.0.2.1");
+        final InetAddress client2 = InetAddress.getByName("192.0.2.2");
+
+        assertTrue(admission.admitClient(client1));
+        assertTrue(admission.admitClient(client1));
+        assertFalse(admission.admitClient(client1));
+        assertTrue(admission.admitClient(client2));
+        assertEquals(2, admission.getClientConnections(client1));
+        assertEquals(1, admission.getClientConnections(client2));
+        assertEquals(1, admission.getRejectedClientCount());
+
+        admission.releaseClient(client1);
+        assertEquals(1, admission.getClientConnections(client1));
+        assertTrue(admission.admitClient(client1));
+
+        admission.releaseClient(client1);
+        admission.releaseClient(client1);
+        admission.releaseClient(client2);
+        assertEquals(0, admission.getClientConnections(client1));
+        assertEquals(0, admission.getClientConnections(client2));
+    }
+
+    @Test
+    public void testDatabaseLimit() {
+        final Map<String, Integer> limits = new HashMap<>();
+        limits.put("small", 1);
+        limits.put("unlimited", 0);
+        final AdmissionControl admission = new AdmissionControl(0, 2, limits);
+        assertTrue(admission.isDatabaseLimited());
+        assertEquals(1, admission.getMaxDatabaseSessions("small"));
+        assertEquals(2, admission.getMaxDatabaseSessions("other"));
+
+        assertTrue(admission.admitSession("small"));
+        assertFalse(admission.admitSession("small"));
+        assertTrue(admission.admitSession("other"));
+        assertTrue(admission.admitSession("other"));
+        assertFalse(admission.admitSession("other"));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(admission.admitSession("unlimited"));
+        }
+        assertEquals(0, admission.getDatabaseSessions("unlimited"));
+        assertEquals(2, admission.getRejectedDatabaseCount());
+
+        admission.releaseSession("small");
+        assertEquals(0, admission.getDatabaseSessions("small"));
+        assertTrue(admission.admitSession("small"));
+    }
+
+    @Test
+    public void testNoLimits() {
+        final AdmissionControl admission = new AdmissionControl(0, 0, Collections.emptyMap());
+        assertFalse(admission.isDatabaseLimited());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(admission.admitClient(InetAddress.getLoopbackAddress()));
+            assertTrue(admission.admitSession("db"));
+        }
+        assertEquals(0, admission.getClientConnections(InetAddress.getLoopbackAddress()));
+        assertEquals(0, admission.getDatabaseSessions("db"));
+    }
+
+    @Test
+    public void testRejectSession() throws Exception {
+        final int port = getFreePort();
+        final String properties = "server.port=" + port + "\n"
+                + "server.database.0=mem:admission\n"
+                + "server.dbname.0=admission\n"
+                + "server.silent=true\n"
+                + "server.no_system_exit=true\n"
+                + "server.connections.database.admission=1\n";
+        final Server server = Server.create(ServerProperties.create(ServerConstants.SC_PROTOCOL_HSQL,
+                new ByteArrayInputStream(properties.getBytes(StandardCharsets.UTF_8))));
+        server.start();
+        try {
+            final String url = "jdbc:hsqldb:hsql://localhost:" + port + "/admission";
+            final AdmissionControl admission = server.getAdmissionControl();
+            try (Connection c = DriverManager.getConnection(url, "SA", "")) {
+                query(c);
+                assertEquals(1, admission.getDatabaseSessions("admission"));
+
+                // internal sessions are not counted
+                final Database database = server.getDatabase(0);
+                database.sessionManager.newSysSession().close();
+
+                try {
+                    DriverManager.getConnection(url, "SA", "").close();
+                    fail("The second session was not rejected.");
+                } catch (SQLException ex) {
+                    assertEquals("08004", ex.getSQLState());
+                }
+                assertEquals(1, admission.getRejectedDatabaseCount());
+
+                // the first session is still usable
+                query(c);
+            }
+
+            // the session is released, when the connection is closed by the server
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (admission.getDatabaseSessions("admission") > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, admission.getDatabaseSessions("admission"));
+            try (Connection c = DriverManager.getConnection(url, "SA", "")) {
+                query(c);
+            }
+        } finally {
+            server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+        }
+    }
+}
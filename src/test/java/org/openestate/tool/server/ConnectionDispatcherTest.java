@@ -0,0 +1,164 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionDispatcherTest {
+    private final BlockingQueue<Socket> started = new LinkedBlockingQueue<>();
+
+    private static void waitUntilClosed(TestSocket socket) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!socket.isClosed() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void testDispatchImmediately() {
+        final ConnectionDispatcher dispatcher = new ConnectionDispatcher(2, 10, 0, started::add);
+        try {
+            final TestSocket socket1 = new TestSocket();
+            final TestSocket socket2 = new TestSocket();
+            dispatcher.dispatch(socket1);
+            dispatcher.dispatch(socket2);
+
+            assertSame(socket1, started.poll());
+            assertSame(socket2, started.poll());
+            assertEquals(0, dispatcher.getQueueSize());
+            assertEquals(2, dispatcher.getQueueLatency().getCount());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testDispatchQueued() throws Exception {
+        final ConnectionDispatcher dispatcher = new ConnectionDispatcher(1, 10, 0, started::add);
+        try {
+            final TestSocket socket1 = new TestSocket();
+            final TestSocket socket2 = new TestSocket();
+            final TestSocket socket3 = new TestSocket();
+            dispatcher.dispatch(socket1);
+            dispatcher.dispatch(socket2);
+            dispatcher.dispatch(socket3);
+            assertSame(socket1, started.poll());
+            assertNull(started.poll(100, TimeUnit.MILLISECONDS));
+            assertEquals(2, dispatcher.getQueueSize());
+
+            // queued connections are processed in order, whenever a processed connection is closed
+            dispatcher.connectionClosed();
+            assertSame(socket2, started.poll(5, TimeUnit.SECONDS));
+            assertNull(started.poll(100, TimeUnit.MILLISECONDS));
+            dispatcher.connectionClosed();
+            assertSame(socket3, started.poll(5, TimeUnit.SECONDS));
+            assertEquals(0, dispatcher.getQueueSize());
+            assertFalse(socket2.isClosed());
+            assertFalse(socket3.isClosed());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testQueueFull() {
+        final ConnectionDispatcher dispatcher = new ConnectionDispatcher(1, 1, 0, started::add);
+        try {
+            final TestSocket socket1 = new TestSocket();
+            final TestSocket socket2 = new TestSocket();
+            final TestSocket socket3 = new TestSocket();
+            dispatcher.dispatch(socket1);
+            dispatcher.dispatch(socket2);
+            dispatcher.dispatch(socket3);
+
+            assertSame(socket1, started.poll());
+            assertEquals(1, dispatcher.getQueueSize());
+            assertFalse(socket2.isClosed());
+            assertTrue(socket3.isClosed());
+            assertEquals(1, dispatcher.getRejectedConnectionCount());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testQueueTimeout() throws Exception {
+        final ConnectionDispatcher dispatcher = new ConnectionDispatcher(1, 10, 100, started::add);
+        try {
+            final TestSocket socket1 = new TestSocket();
+            final TestSocket socket2 = new TestSocket();
+            dispatcher.dispatch(socket1);
+            dispatcher.dispatch(socket2);
+            assertSame(socket1, started.poll());
+
+            waitUntilClosed(socket2);
+            assertTrue(socket2.isClosed());
+            assertEquals(0, dispatcher.getQueueSize());
+            assertEquals(1, dispatcher.getRejectedConnectionCount());
+            assertTrue(dispatcher.getQueueLatency().getMax() >= TimeUnit.MILLISECONDS.toNanos(100));
+
+            // the rejected connection does not occupy a slot
+            dispatcher.connectionClosed();
+            final TestSocket socket3 = new TestSocket();
+            dispatcher.dispatch(socket3);
+            assertSame(socket3, started.poll());
+            assertNull(started.poll());
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testStop() {
+        final ConnectionDispatcher dispatcher = new ConnectionDispatcher(1, 10, 0, started::add);
+        final TestSocket socket1 = new TestSocket();
+        final TestSocket socket2 = new TestSocket();
+        dispatcher.dispatch(socket1);
+        dispatcher.dispatch(socket2);
+        dispatcher.stop();
+
+        assertFalse(socket1.isClosed());
+        assertTrue(socket2.isClosed());
+        assertEquals(0, dispatcher.getQueueSize());
+    }
+
+    /**
+     * Unconnected socket, that remembers whether it was closed.
+     */
+    private static class TestSocket extends Socket {
+        private volatile boolean closed = false;
+
+        @Override
+        public synchronized void close() {
+            closed = true;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ListenSocketTest {
+    private static Thread startAcceptLoop(ListenSocket listenSocket, BlockingQueue<Socket> accepted) {
+        final Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    accepted.add(listenSocket.accept());
+                }
+            } catch (IOException ignored) {
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    @Test
+    public void testAccept() throws Exception {
+        Assume.assumeTrue(ListenSocket.isReusePortSupported());
+        final BlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+        final ListenSocket listenSocket = ListenSocket.bind("127.0.0.1", 0);
+        try {
+            final Thread thread = startAcceptLoop(listenSocket, accepted);
+            try (Socket client = new Socket(InetAddress.getLoopbackAddress(), listenSocket.getLocalPort())) {
+                final Socket socket = accepted.poll(5, TimeUnit.SECONDS);
+                assertNotNull(socket);
+
+                // accepted connections are blocking
+                client.getOutputStream().write(42);
+                assertEquals(42, socket.getInputStream().read());
+                socket.close();
+            }
+
+            listenSocket.close();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        } finally {
+            listenSocket.close();
+        }
+    }
+
+    @Test
+    public void testPauseAcceptsPendingConnections() throws Exception {
+        Assume.assumeTrue(ListenSocket.isReusePortSupported());
+        final BlockingQueue<Socket> accepted = new LinkedBlockingQueue<>();
+        final List<Socket> clients = new ArrayList<>();
+        final ListenSocket listenSocket = ListenSocket.bind("127.0.0.1", 0);
+        try {
+            final int port = listenSocket.getLocalPort();
+
+            // connections wait in the backlog, while the socket is not accepting
+            for (int i = 0; i < 3; i++) {
+                clients.add(new Socket(InetAddress.getLoopbackAddress(), port));
+            }
+
+            final Thread pause = new Thread(() -> {
+                try {
+                    listenSocket.pause();
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+            });
+            pause.start();
+            Thread.sleep(100);
+            final Thread thread = startAcceptLoop(listenSocket, accepted);
+
+            pause.join(10000);
+            assertFalse(pause.isAlive());
+            assertEquals(3, accepted.size());
+
+            // the socket does not accept further connections, but HSQLDB keeps waiting until it is closed
+            try (Socket client = new Socket()) {
+                client.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+                fail("The paused socket accepted a connection.");
+            } catch (SocketException ignored) {
+            }
+            assertTrue(thread.isAlive());
+            assertFalse(listenSocket.isClosed());
+
+            listenSocket.close();
+            thread.join(5000);
+            assertFalse(thread.isAlive());
+        } finally {
+            listenSocket.close();
+            for (Socket client : clients) {
+                client.close();
+            }
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+}
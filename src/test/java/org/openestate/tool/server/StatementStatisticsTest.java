@@ -0,0 +1,132 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import org.hsqldb.Database;
+import org.hsqldb.server.ServerConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StatementStatisticsTest {
+    static {
+        // keep the server environment out of the working directory
+        final File dir = new File(System.getProperty("java.io.tmpdir"), "openestate-server-test");
+        System.setProperty(ServerUtils.ETC_DIR_PROPERTY, new File(dir, "etc").getPath());
+        System.setProperty(ServerUtils.LOG_DIR_PROPERTY, new File(dir, "logs").getPath());
+        System.setProperty(ServerUtils.VAR_DIR_PROPERTY, new File(dir, "var").getPath());
+        System.setProperty(ServerUtils.SYSTEM_TRAY_PROPERTY, "false");
+    }
+
+    private static String find(List<String> statements, String sql) {
+        for (String statement : statements) {
+            if (statement.endsWith(" sql=" + sql)) return statement;
+        }
+        return null;
+    }
+
+    private static int getFreePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void testNormalize() {
+        assertEquals("SELECT * FROM T WHERE NAME = ? AND ID IN (?, ?)",
+                StatementStatistics.normalize("SELECT *  FROM T\nWHERE NAME = 'O''Brien' AND ID IN (1, 2.5)"));
+        assertEquals("SELECT \"Col 1\" FROM T2 WHERE X = ?",
+                StatementStatistics.normalize(" SELECT \"Col 1\" FROM T2 WHERE X = 1e3 "));
+    }
+
+    @Test
+    public void testRecordRequests() throws Exception {
+        final int port = getFreePort();
+        final String properties = "server.port=" + port + "\n"
+                + "server.database.0=mem:statements\n"
+                + "server.dbname.0=statements\n"
+                + "server.silent=true\n"
+                + "server.no_system_exit=true\n"
+                + "server.statements=true\n"
+                + "server.statements.rows=true\n";
+        final Server server = Server.create(ServerProperties.create(ServerConstants.SC_PROTOCOL_HSQL,
+                new ByteArrayInputStream(properties.getBytes(StandardCharsets.UTF_8))));
+        server.start();
+        try {
+            try (Connection c = DriverManager.getConnection("jdbc:hsqldb:hsql://localhost:" + port + "/statements", "SA", "")) {
+                try (Statement s = c.createStatement()) {
+                    s.execute("CREATE TABLE T (ID INTEGER PRIMARY KEY, NAME VARCHAR(50))");
+                }
+
+                c.setAutoCommit(false);
+                try (PreparedStatement s = c.prepareStatement("INSERT INTO T VALUES (?, ?)")) {
+                    for (int i = 0; i < 3; i++) {
+                        s.setInt(1, i);
+                        s.setString(2, "name " + i);
+                        assertEquals(1, s.executeUpdate());
+                    }
+                }
+                c.commit();
+
+                try (Statement s = c.createStatement()) {
+                    assertEquals(3, s.executeUpdate("UPDATE T SET NAME = 'changed' WHERE ID >= 0"));
+                    try (ResultSet result = s.executeQuery("SELECT COUNT(*) FROM T WHERE NAME = 'changed'")) {
+                        assertTrue(result.next());
+                        assertEquals(3, result.getInt(1));
+                    }
+                }
+                c.rollback();
+            }
+
+            final StatementStatistics statistics = server.getStatementStatistics(0);
+            assertNotNull(statistics);
+            final List<String> statements = statistics.getTopStatements(100);
+
+            final String insert = find(statements, "INSERT INTO T VALUES (?, ?)");
+            assertNotNull(insert);
+            assertTrue(insert, insert.startsWith("count=3 "));
+            assertTrue(insert, insert.contains(" rows=3 "));
+
+            final String update = find(statements, "UPDATE T SET NAME = ? WHERE ID >= ?");
+            assertNotNull(update);
+            assertTrue(update, update.startsWith("count=1 "));
+            assertTrue(update, update.contains(" rows=3 "));
+
+            final String select = find(statements, "SELECT COUNT(*) FROM T WHERE NAME = ?");
+            assertNotNull(select);
+            assertTrue(select, select.contains(" rows=0 "));
+
+            assertNotNull(find(statements, "COMMIT"));
+            assertNotNull(find(statements, "ROLLBACK"));
+            assertNull(find(statements, "(other statements)"));
+        } finally {
+            server.shutdownWithCatalogs(Database.CLOSEMODE_IMMEDIATELY);
+        }
+    }
+}
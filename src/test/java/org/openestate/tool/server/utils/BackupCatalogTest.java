@@ -0,0 +1,109 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link BackupCatalog}.
+ */
+public class BackupCatalogTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testDisabledPolicy() throws IOException {
+        final BackupCatalog catalog = createCatalog();
+        final BackupCatalog.Entry entry = add(catalog, "a", 2019, 1, 1, 12);
+        entry.setVerification(BackupCatalog.Verification.FAILED);
+
+        assertEquals(Collections.emptyList(), new BackupCatalog.RetentionPolicy().selectOutdated(catalog));
+    }
+
+    @Test
+    public void testLatest() throws IOException {
+        final BackupCatalog catalog = createCatalog();
+        final BackupCatalog.Entry first = add(catalog, "first", 2019, 1, 1, 12);
+        final BackupCatalog.Entry second = add(catalog, "second", 2019, 1, 2, 12);
+        add(catalog, "third", 2019, 1, 3, 12);
+        add(catalog, "fourth", 2019, 1, 4, 12);
+
+        final BackupCatalog.RetentionPolicy policy = new BackupCatalog.RetentionPolicy();
+        policy.setLatest(2);
+        assertEquals(Arrays.asList(first, second), policy.selectOutdated(catalog));
+    }
+
+    @Test
+    public void testDailyWeeklyMonthly() throws IOException {
+        final BackupCatalog catalog = createCatalog();
+        final BackupCatalog.Entry januaryEarly = add(catalog, "january-early", 2019, 1, 10, 8);
+        final BackupCatalog.Entry januaryLate = add(catalog, "january-late", 2019, 1, 31, 8);
+        final BackupCatalog.Entry mondayMorning = add(catalog, "monday-morning", 2019, 2, 4, 8);
+        final BackupCatalog.Entry mondayEvening = add(catalog, "monday-evening", 2019, 2, 4, 20);
+        final BackupCatalog.Entry tuesday = add(catalog, "tuesday", 2019, 2, 5, 8);
+        final BackupCatalog.Entry nextMonday = add(catalog, "next-monday", 2019, 2, 11, 8);
+
+        final BackupCatalog.RetentionPolicy policy = new BackupCatalog.RetentionPolicy();
+        policy.setDaily(2);
+        assertEquals(Arrays.asList(januaryEarly, januaryLate, mondayMorning, mondayEvening),
+                policy.selectOutdated(catalog));
+
+        policy.setDaily(0);
+        policy.setWeekly(2);
+        assertEquals(Arrays.asList(januaryEarly, januaryLate, mondayMorning, mondayEvening),
+                policy.selectOutdated(catalog));
+
+        policy.setWeekly(0);
+        policy.setMonthly(2);
+        assertEquals(Arrays.asList(januaryEarly, mondayMorning, mondayEvening, tuesday),
+                policy.selectOutdated(catalog));
+    }
+
+    @Test
+    public void testFailedVerification() throws IOException {
+        final BackupCatalog catalog = createCatalog();
+        add(catalog, "older", 2019, 1, 1, 12);
+        final BackupCatalog.Entry failed = add(catalog, "failed", 2019, 1, 2, 12);
+        failed.setVerification(BackupCatalog.Verification.FAILED);
+
+        final BackupCatalog.RetentionPolicy policy = new BackupCatalog.RetentionPolicy();
+        policy.setLatest(1);
+        policy.setDaily(5);
+        assertEquals(Collections.singletonList(failed), policy.selectOutdated(catalog));
+    }
+
+    private BackupCatalog createCatalog() throws IOException {
+        return BackupCatalog.load(tempFolder.newFolder(), f -> null);
+    }
+
+    private static BackupCatalog.Entry add(BackupCatalog catalog, String name, int year, int month, int day, int hour) {
+        final long created = LocalDateTime.of(year, month, day, hour, 0)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        final BackupCatalog.Entry entry = new BackupCatalog.Entry(name, BackupCatalog.Type.BACKUP, created);
+        catalog.add(entry);
+        return entry;
+    }
+}
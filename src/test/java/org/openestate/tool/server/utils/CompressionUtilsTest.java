@@ -0,0 +1,102 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link CompressionUtils} and {@link ParallelGZIPOutputStream}.
+ */
+public class CompressionUtilsTest {
+
+    @Test
+    public void testParallelMembers() throws IOException {
+        // several blocks of 1 MB are written as separate gzip members
+        final byte[] data = createData(3 * 1024 * 1024 + 12345);
+        final byte[] compressed = compress(data, CompressionUtils.Codec.GZIP, 4);
+        assertTrue(countMembers(compressed) > 1);
+        assertArrayEquals(data, decompress(compressed));
+    }
+
+    @Test
+    public void testConcatenatedMembers() throws IOException {
+        final byte[] first = createData(1000);
+        final byte[] second = createData(2000);
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        output.write(compress(first, CompressionUtils.Codec.FAST, 1));
+        output.write(compress(second, CompressionUtils.Codec.GZIP, 2));
+
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(first);
+        expected.write(second);
+        assertArrayEquals(expected.toByteArray(), decompress(output.toByteArray()));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        assertArrayEquals(new byte[0], decompress(compress(new byte[0], CompressionUtils.Codec.GZIP, 4)));
+    }
+
+    @Test
+    public void testUncompressed() throws IOException {
+        final byte[] data = createData(5000);
+        assertArrayEquals(data, compress(data, CompressionUtils.Codec.NONE, 4));
+        assertArrayEquals(data, decompress(data));
+    }
+
+    private static byte[] compress(byte[] data, CompressionUtils.Codec codec, int threads) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (OutputStream compressor = CompressionUtils.compress(output, codec, threads)) {
+            compressor.write(data);
+        }
+        return output.toByteArray();
+    }
+
+    private static int countMembers(byte[] data) {
+        int count = 0;
+        for (int i = 0; i < data.length - 3; i++) {
+            // gzip magic bytes followed by the deflate method and the header flags written by java.util.zip
+            if (data[i] == (byte) 0x1f && data[i + 1] == (byte) 0x8b && data[i + 2] == 8 && data[i + 3] == 0) count++;
+        }
+        return count;
+    }
+
+    private static byte[] createData(int length) {
+        // random letters of a small alphabet, so that the data is compressible
+        final Random random = new Random(length);
+        final byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            data[i] = (byte) ('a' + random.nextInt(4));
+        }
+        return data;
+    }
+
+    private static byte[] decompress(byte[] data) throws IOException {
+        try (InputStream input = CompressionUtils.decompress(new ByteArrayInputStream(data))) {
+            return IOUtils.toByteArray(input);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link DumpUtils}.
+ */
+public class DumpUtilsTest {
+    private static final Pattern KEY = Pattern.compile("WHERE (.+?);?$");
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private static List<String> readKeys(File dumpDir) throws Exception {
+        final List<String> keys = new ArrayList<>();
+        for (String line : FileUtils.readLines(new File(dumpDir, "lobs.sql"), StandardCharsets.UTF_8)) {
+            final Matcher m = KEY.matcher(line.trim());
+            if (m.find()) keys.add(m.group(1));
+        }
+        return keys;
+    }
+
+    private static void shutdown(Connection c) throws SQLException {
+        try (Statement statement = c.createStatement()) {
+            statement.execute("SHUTDOWN;");
+        }
+    }
+
+    @Test
+    public void testDumpLobsConcurrently() throws Exception {
+        final String url = "jdbc:hsqldb:file:" + new File(tempFolder.newFolder(), "db").getAbsolutePath();
+        final List<String> expectedKeys = new ArrayList<>();
+        try (Connection c = DriverManager.getConnection(url, "SA", "")) {
+            try (Statement statement = c.createStatement()) {
+                statement.execute("CREATE TABLE PUBLIC.IMG (ID INTEGER PRIMARY KEY, DATA BLOB);");
+            }
+            try (PreparedStatement statement = c.prepareStatement("INSERT INTO PUBLIC.IMG VALUES (?, ?);")) {
+                // keys with gaps, that are not evenly distributed over the ranges
+                for (int i = 0; i < 6000; i++) {
+                    final int id = (i < 3000) ? i * 7 : 100000 + i;
+                    if (id % 11 == 0) continue;
+                    statement.setInt(1, id);
+                    statement.setBytes(2, ("row " + id).getBytes(StandardCharsets.UTF_8));
+                    statement.addBatch();
+                    expectedKeys.add("ID = " + id);
+                }
+                statement.executeBatch();
+            }
+
+            final File singleDir = tempFolder.newFolder();
+            DumpUtils.dump(c, null, new DumpUtils.DirectoryTarget(singleDir), "db", singleDir, new DumpUtils.Settings());
+            assertEquals(expectedKeys, readKeys(singleDir));
+
+            // the rows are split into ranges, that are exported concurrently and merged in their original order
+            final DumpUtils.Settings settings = new DumpUtils.Settings();
+            settings.setThreads(4);
+            final File concurrentDir = tempFolder.newFolder();
+            DumpUtils.dump(c, () -> DriverManager.getConnection(url, "SA", ""),
+                    new DumpUtils.DirectoryTarget(concurrentDir), "db", concurrentDir, settings);
+            assertEquals(expectedKeys, readKeys(concurrentDir));
+
+            shutdown(c);
+        }
+    }
+
+    @Test
+    public void testDumpLobsWithPages() throws Exception {
+        final String url = "jdbc:hsqldb:file:" + new File(tempFolder.newFolder(), "db").getAbsolutePath();
+        try (Connection c = DriverManager.getConnection(url, "SA", "")) {
+            try (Statement statement = c.createStatement()) {
+                statement.execute("CREATE TABLE PUBLIC.DOC (A INTEGER, B VARCHAR(20), DATA CLOB, PRIMARY KEY (A, B));");
+            }
+            try (PreparedStatement statement = c.prepareStatement("INSERT INTO PUBLIC.DOC VALUES (?, ?, ?);")) {
+                // 49 rows fill exactly 7 pages, the first key column repeats across page boundaries
+                for (int i = 0; i < 49; i++) {
+                    statement.setInt(1, i % 5);
+                    statement.setString(2, ((i % 3 == 0) ? "O'" : "B") + (48 - i));
+                    statement.setString(3, "row " + i);
+                    statement.executeUpdate();
+                }
+            }
+
+            final List<String> expectedKeys = new ArrayList<>();
+            try (Statement statement = c.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT A, B FROM PUBLIC.DOC ORDER BY A, B;")) {
+                while (result.next()) {
+                    expectedKeys.add("A = " + result.getInt(1) + " AND B = '"
+                            + result.getString(2).replace("'", "''") + "'");
+                }
+            }
+            assertEquals(49, expectedKeys.size());
+
+            for (int pageSize : new int[]{1, 7, 10, 100}) {
+                final DumpUtils.Settings settings = new DumpUtils.Settings();
+                settings.setPageSize(pageSize);
+                final File dumpDir = tempFolder.newFolder();
+                DumpUtils.dump(c, null, new DumpUtils.DirectoryTarget(dumpDir), "db", dumpDir, settings);
+                assertEquals(expectedKeys, readKeys(dumpDir));
+            }
+
+            shutdown(c);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+    private final static double DELTA = 0.000001;
+
+    @Test
+    public void testEmpty() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(99), DELTA);
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram(new double[]{1, 10, 100});
+        for (int i = 0; i < 90; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertEquals(100, histogram.getCount());
+        assertArrayEquals(new long[]{90, 99, 100, 100}, histogram.getCumulativeCounts());
+        assertEquals(1, histogram.getPercentile(0), DELTA);
+        assertEquals(1, histogram.getPercentile(50), DELTA);
+        assertEquals(1, histogram.getPercentile(90), DELTA);
+        assertEquals(10, histogram.getPercentile(95), DELTA);
+        assertEquals(10, histogram.getPercentile(99), DELTA);
+        assertEquals(100, histogram.getPercentile(100), DELTA);
+    }
+
+    @Test
+    public void testPercentileAboveLastBucket() {
+        final LatencyHistogram histogram = new LatencyHistogram(new double[]{1, 10});
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(250));
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), histogram.getMax());
+        assertEquals(10, histogram.getPercentile(50), DELTA);
+        assertEquals(250, histogram.getPercentile(99), DELTA);
+    }
+
+    @Test
+    public void testPrecise() {
+        final LatencyHistogram histogram = LatencyHistogram.createPrecise();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3300));
+        assertEquals(3.5, histogram.getPercentile(50), DELTA);
+    }
+}
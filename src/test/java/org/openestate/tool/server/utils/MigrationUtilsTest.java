@@ -0,0 +1,43 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link MigrationUtils}.
+ */
+public class MigrationUtilsTest {
+
+    @Test
+    public void testIdentityStep() {
+        final MigrationUtils.IdentityStep step = new MigrationUtils.IdentityStep();
+        assertTrue(step.isApplicable("2.2.9"));
+        assertFalse(step.isApplicable("2.3.0"));
+
+        assertEquals("SET X = IDENTITY();",
+                step.migrate("SELECT ID INTO X FROM T WHERE ID = CURRENT VALUE FOR S;"));
+        assertEquals("BEGIN ATOMIC SET NEW_ID = IDENTITY(); END",
+                step.migrate("BEGIN ATOMIC SELECT ID INTO NEW_ID FROM PUBLIC.T WHERE ID=CURRENT VALUE FOR PUBLIC.S; END"));
+
+        final String unchanged = "SELECT ID INTO X FROM T WHERE ID = 1;";
+        assertEquals(unchanged, step.migrate(unchanged));
+    }
+}
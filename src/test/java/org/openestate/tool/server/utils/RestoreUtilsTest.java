@@ -0,0 +1,116 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link RestoreUtils}.
+ */
+public class RestoreUtilsTest {
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTripWithQuotedKey() throws Exception {
+        final byte[] data = "LOB of O'Brien".getBytes(StandardCharsets.UTF_8);
+        final File dumpDir = tempFolder.newFolder();
+        final String sourceUrl = "jdbc:hsqldb:file:" + new File(tempFolder.newFolder(), "source").getAbsolutePath();
+        try (Connection c = DriverManager.getConnection(sourceUrl, "SA", "")) {
+            try (Statement statement = c.createStatement()) {
+                statement.execute("CREATE TABLE PUBLIC.IMG (NAME VARCHAR(50) PRIMARY KEY, DATA BLOB);");
+            }
+            try (PreparedStatement statement = c.prepareStatement("INSERT INTO PUBLIC.IMG VALUES (?, ?);")) {
+                statement.setString(1, "O'Brien");
+                statement.setBytes(2, data);
+                statement.executeUpdate();
+            }
+            DumpUtils.dump(c, dumpDir);
+            shutdown(c);
+        }
+
+        final File databasePath = new File(tempFolder.newFolder(), "restored");
+        assertEquals(0, RestoreUtils.restore(dumpDir, databasePath, "SA", "", new RestoreUtils.Settings()));
+
+        try (Connection c = DriverManager.getConnection("jdbc:hsqldb:file:" + databasePath.getAbsolutePath(), "SA", "")) {
+            try (Statement statement = c.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT NAME, DATA FROM PUBLIC.IMG;")) {
+                assertTrue(result.next());
+                assertEquals("O'Brien", result.getString(1));
+                assertArrayEquals(data, result.getBytes(2));
+                assertFalse(result.next());
+            }
+            shutdown(c);
+        }
+    }
+
+    @Test
+    public void testParseBlobUpdate() {
+        final RestoreUtils.LobUpdate update = RestoreUtils.LobUpdate.parse(
+                "UPDATE PUBLIC.IMG SET DATA = LOAD_FILE('lobs/1792208905217.blob') WHERE ID = 1;");
+        assertNotNull(update);
+        assertEquals("UPDATE PUBLIC.IMG SET DATA = ? WHERE ID = ?;", update.sql);
+        assertEquals("lobs/1792208905217.blob", update.path);
+        assertFalse(update.clob);
+        assertEquals(Arrays.<Object>asList(new BigDecimal("1")), update.keys);
+    }
+
+    @Test
+    public void testParseClobUpdate() {
+        final RestoreUtils.LobUpdate update = RestoreUtils.LobUpdate.parse(
+                "UPDATE PUBLIC.TXT SET BODY = LOAD_FILE('lobs/it''s.clob', 'UTF-8') "
+                        + "WHERE NAME = 'O''Brien' AND NR = -2.5;");
+        assertNotNull(update);
+        assertEquals("UPDATE PUBLIC.TXT SET BODY = ? WHERE NAME = ? AND NR = ?;", update.sql);
+        assertEquals("lobs/it's.clob", update.path);
+        assertTrue(update.clob);
+        assertEquals(Arrays.<Object>asList("O'Brien", new BigDecimal("-2.5")), update.keys);
+    }
+
+    @Test
+    public void testParseUnsupported() {
+        assertNull(RestoreUtils.LobUpdate.parse("INSERT INTO PUBLIC.IMG VALUES(1);"));
+        assertNull(RestoreUtils.LobUpdate.parse(
+                "UPDATE PUBLIC.IMG SET DATA = LOAD_FILE('lobs/1.blob') WHERE ID > 1;"));
+        assertNull(RestoreUtils.LobUpdate.parse(
+                "UPDATE PUBLIC.IMG SET DATA = LOAD_FILE('lobs/1.blob') WHERE ID = 1 OR ID = 2;"));
+    }
+
+    private static void shutdown(Connection c) throws SQLException {
+        try (Statement statement = c.createStatement()) {
+            statement.execute("SHUTDOWN;");
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link TarOutputStream} and {@link TarInputStream}.
+ */
+public class TarStreamTest {
+    private final static long MOD_TIME = 1546300800000L;
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final byte[] small = "Hello World!".getBytes(StandardCharsets.UTF_8);
+        final byte[] block = new byte[1024];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (byte) i;
+        }
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(output)) {
+            tar.putEntry("data/small.txt", small.length, MOD_TIME);
+            tar.write(small);
+            tar.putEntry("data/empty.txt", 0, MOD_TIME);
+            tar.putEntry("data/block.bin", block.length, MOD_TIME);
+            tar.write(block);
+            tar.closeEntry();
+        }
+        assertEquals(0, output.size() % 512);
+
+        try (TarInputStream tar = new TarInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEntry(tar, "data/small.txt", small);
+            assertEntry(tar, "data/empty.txt", new byte[0]);
+            assertEntry(tar, "data/block.bin", block);
+            assertNull(tar.getNextEntry());
+        }
+    }
+
+    @Test
+    public void testLongName() throws IOException {
+        final String path = StringUtils.repeat("directory/", 12) + StringUtils.repeat("x", 90) + ".txt";
+        final byte[] data = "long".getBytes(StandardCharsets.UTF_8);
+
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (TarOutputStream tar = new TarOutputStream(output)) {
+            tar.putEntry(path, data.length, MOD_TIME);
+            tar.write(data);
+        }
+
+        try (TarInputStream tar = new TarInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEntry(tar, path, data);
+            assertNull(tar.getNextEntry());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTooLongName() throws IOException {
+        try (TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream())) {
+            tar.putEntry(StringUtils.repeat("x", 101), 0, MOD_TIME);
+        }
+    }
+
+    @Test
+    public void testLargeSize() throws IOException {
+        // only the header is written, because the data would exceed the capacity of the octal size field
+        final long size = 10L * 1024 * 1024 * 1024;
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final TarOutputStream tar = new TarOutputStream(output);
+        tar.putEntry("large.bin", size, MOD_TIME);
+        assertEquals(size, tar.getRemainingEntrySize());
+        assertEquals(512, output.size());
+
+        try (TarInputStream input = new TarInputStream(new ByteArrayInputStream(output.toByteArray()))) {
+            final TarInputStream.Entry entry = input.getNextEntry();
+            assertNotNull(entry);
+            assertEquals("large.bin", entry.getName());
+            assertEquals(size, entry.getSize());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testIncompleteEntry() throws IOException {
+        try (TarOutputStream tar = new TarOutputStream(new ByteArrayOutputStream())) {
+            tar.putEntry("incomplete.txt", 10, MOD_TIME);
+            tar.write(new byte[5]);
+            tar.closeEntry();
+        }
+    }
+
+    private static void assertEntry(TarInputStream tar, String name, byte[] data) throws IOException {
+        final TarInputStream.Entry entry = tar.getNextEntry();
+        assertNotNull(entry);
+        assertEquals(name, entry.getName());
+        assertEquals(data.length, entry.getSize());
+        assertEquals(MOD_TIME, entry.getModTime());
+        assertArrayEquals(data, IOUtils.toByteArray(tar));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2009-2019 OpenEstate.org.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.openestate.tool.server.utils;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.Properties;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UnixSocketDriverTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAcceptsURL() {
+        final UnixSocketDriver driver = new UnixSocketDriver();
+        assertTrue(driver.acceptsURL("jdbc:openestate:unix:/run/openestate/server.sock/immotool"));
+        assertTrue(driver.acceptsURL("JDBC:OpenEstate:Unix:/run/openestate/server.sock/immotool"));
+        assertFalse(driver.acceptsURL("jdbc:hsqldb:hsql://localhost/immotool"));
+        assertFalse(driver.acceptsURL(null));
+    }
+
+    @Test
+    public void testParse() throws SQLException {
+        final UnixSocketDriver.Location location = UnixSocketDriver.Location.parse(
+                "jdbc:openestate:unix:/run/openestate/server.sock/immotool");
+        assertEquals(new File("/run/openestate/server.sock"), location.socketFile);
+        assertEquals("immotool", location.database);
+    }
+
+    @Test
+    public void testParseWithProperties() throws SQLException {
+        final UnixSocketDriver.Location location = UnixSocketDriver.Location.parse(
+                "jdbc:openestate:unix:server.sock/immotool;user=SA;password=secret/value");
+        assertEquals(new File("server.sock"), location.socketFile);
+        assertEquals("immotool", location.database);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testParseWithoutDatabase() throws SQLException {
+        UnixSocketDriver.Location.parse("jdbc:openestate:unix:/run/openestate/server.sock/");
+    }
+
+    @Test(expected = SQLException.class)
+    public void testParseWithoutSocketFile() throws SQLException {
+        UnixSocketDriver.Location.parse("jdbc:openestate:unix:/immotool");
+    }
+
+    @Test(expected = SQLException.class)
+    public void testParseWithoutPath() throws SQLException {
+        UnixSocketDriver.Location.parse("jdbc:openestate:unix:immotool;user=SA");
+    }
+
+    @Test
+    public void testConnectWithForeignURL() throws SQLException {
+        assertNull(new UnixSocketDriver().connect("jdbc:hsqldb:mem:test", new Properties()));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testConnectWithMissingSocketFile() throws Exception {
+        Assume.assumeTrue(UnixSocket.isSupported());
+        final File socketFile = new File(folder.newFolder(), "missing.sock");
+        new UnixSocketDriver().connect(
+                "jdbc:openestate:unix:" + socketFile.getAbsolutePath() + "/immotool", new Properties());
+    }
+}
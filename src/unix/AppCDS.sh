@@ -0,0 +1,47 @@
+#!/usr/bin/env bash
+# ----------------------------------------------------------------------------
+# ${project.baseName} ${project.version}
+# class-data-sharing archives for the launchers of ${project.baseName}
+# Copyright (C) 2009-2019 OpenEstate.org
+# ----------------------------------------------------------------------------
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+# http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+# This file is sourced by the launchers and is not meant to be executed.
+#
+
+# Create a class-data-sharing archive on first launch (requires Java 11 or newer).
+# The Java options, that use the archive, are stored in $APPCDS_OPTIONS.
+#
+# Usage: appcds_init <application name>
+appcds_init() {
+    APPCDS_OPTIONS=()
+    local APPCDS_LIST="$BASE_DIR/lib/appcds/$1.classlist"
+    local APPCDS_ARCHIVE="$SERVER_VAR_DIR/appcds/$1.jsa"
+    if [[ "$JAVA_APPCDS" != "0" ]] && [[ -f "$APPCDS_LIST" ]] ; then
+        if [[ "$APPCDS_LIST" -nt "$APPCDS_ARCHIVE" ]] && [[ "$APPCDS_LIST" -nt "$APPCDS_ARCHIVE.failed" ]] ; then
+            echo "Creating class-data-sharing archive..."
+            mkdir -p "$SERVER_VAR_DIR/appcds"
+            rm -f "$APPCDS_ARCHIVE" "$APPCDS_ARCHIVE.failed"
+            ( cd "$BASE_DIR" && "$JAVA_COMMAND" \
+                -Xshare:dump \
+                -XX:SharedClassListFile="$APPCDS_LIST" \
+                -XX:SharedArchiveFile="$APPCDS_ARCHIVE" \
+                -classpath "./lib/*" > "$APPCDS_ARCHIVE.log" 2>&1 ) \
+                || { rm -f "$APPCDS_ARCHIVE" ; touch "$APPCDS_ARCHIVE.failed" ; }
+        fi
+        if [[ -f "$APPCDS_ARCHIVE" ]] ; then
+            APPCDS_OPTIONS=("-Xshare:auto" "-XX:SharedArchiveFile=$APPCDS_ARCHIVE")
+        fi
+    fi
+}
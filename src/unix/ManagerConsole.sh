@@ -46,6 +46,9 @@ JAVA_OPTIONS_MAC=""
 # Additional Java options for other systems
 JAVA_OPTIONS_OTHER=""
 
+# Set to "0" in order to disable the class-data-sharing archive, that speeds up the startup
+#JAVA_APPCDS="1"
+
 # Path to the folder, where the server configuration files are stored.
 #SERVER_ETC_DIR=""
 
@@ -152,11 +155,16 @@ if [[ -z "$SERVER_VAR_DIR" ]] ; then
     SERVER_VAR_DIR="$HOME/OpenEstate-Files"
 fi
 
+# Create a class-data-sharing archive on first launch (requires Java 11 or newer).
+source "$SCRIPT_DIR/AppCDS.sh"
+appcds_init "manager-console"
+
 # Launch application.
 cd "$BASE_DIR"
 exec "$JAVA_COMMAND" \
     "-Xms$JAVA_HEAP_MINIMUM" \
     "-Xmx$JAVA_HEAP_MAXIMUM" \
+    "${APPCDS_OPTIONS[@]}" \
     -classpath "./lib/*" \
     ${JAVA_OPTIONS} \
     -Dopenestate.server.app="manager-console" \